@@ -0,0 +1,191 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.examples.nio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.DefaultBHttpClientConnection;
+import org.apache.http.impl.nio.bootstrap.HttpServer;
+import org.apache.http.impl.nio.bootstrap.ServerBootstrap;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.protocol.BasicAsyncRequestHandler;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Measures latency of small request / response exchanges served by a single
+ * I/O dispatcher that is concurrently streaming large responses to other clients,
+ * with and without a per session I/O budget.
+ * <p>
+ * Usage: {@code IOBudgetFairnessBenchmark [session I/O budget in bytes]}.
+ * </p>
+ */
+public class IOBudgetFairnessBenchmark {
+
+    private static final int BULK_CLIENTS = 4;
+    private static final int SMALL_CLIENTS = 16;
+    private static final int BULK_SIZE = 32 * 1024 * 1024;
+    private static final long DURATION = 10000;
+
+    public static void main(final String[] args) throws Exception {
+        final int budget = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+
+        final byte[] bulkContent = new byte[BULK_SIZE];
+        final byte[] smallContent = new byte[256];
+        final HttpServer server = ServerBootstrap.bootstrap()
+                .setLocalAddress(InetAddress.getByName("127.0.0.1"))
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(1)
+                        .setSessionIOBudget(budget)
+                        .build())
+                .registerHandler("/bulk", new BasicAsyncRequestHandler(new ContentHandler(bulkContent)))
+                .registerHandler("/small", new BasicAsyncRequestHandler(new ContentHandler(smallContent)))
+                .create();
+        server.start();
+        server.getEndpoint().waitFor();
+        final InetSocketAddress address = (InetSocketAddress) server.getEndpoint().getAddress();
+
+        final long deadline = System.currentTimeMillis() + DURATION;
+        final List<Client> clients = new ArrayList<Client>();
+        for (int i = 0; i < BULK_CLIENTS; i++) {
+            clients.add(new Client(address, "/bulk", deadline));
+        }
+        final List<Client> smallClients = new ArrayList<Client>();
+        for (int i = 0; i < SMALL_CLIENTS; i++) {
+            smallClients.add(new Client(address, "/small", deadline));
+        }
+        clients.addAll(smallClients);
+        for (final Client client : clients) {
+            client.start();
+        }
+        for (final Client client : clients) {
+            client.join();
+        }
+        server.shutdown(1, TimeUnit.SECONDS);
+
+        long bulkBytes = 0;
+        for (final Client client : clients.subList(0, BULK_CLIENTS)) {
+            bulkBytes += client.bytes;
+        }
+        final List<Long> latencies = new ArrayList<Long>();
+        for (final Client client : smallClients) {
+            latencies.addAll(client.latencies);
+        }
+        final long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = latencies.get(i).longValue();
+        }
+        Arrays.sort(sorted);
+
+        System.out.println("Session I/O budget: " + (budget > 0 ? budget + " bytes" : "disabled"));
+        System.out.println("Bulk throughput: " + (bulkBytes * 1000 / DURATION / (1024 * 1024)) + " MB/s");
+        System.out.println("Small exchanges: " + sorted.length);
+        if (sorted.length > 0) {
+            System.out.println("Small latency p50: " + percentile(sorted, 0.50) + " us");
+            System.out.println("Small latency p99: " + percentile(sorted, 0.99) + " us");
+            System.out.println("Small latency max: " + sorted[sorted.length - 1] + " us");
+        }
+    }
+
+    static long percentile(final long[] sorted, final double p) {
+        final int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, idx)];
+    }
+
+    static class ContentHandler implements HttpRequestHandler {
+
+        private final byte[] content;
+
+        ContentHandler(final byte[] content) {
+            super();
+            this.content = content;
+        }
+
+        @Override
+        public void handle(
+                final HttpRequest request,
+                final HttpResponse response,
+                final HttpContext context) throws HttpException, IOException {
+            response.setEntity(new NByteArrayEntity(this.content));
+        }
+
+    }
+
+    static class Client extends Thread {
+
+        private final InetSocketAddress address;
+        private final String uri;
+        private final long deadline;
+        final List<Long> latencies;
+        long bytes;
+
+        Client(final InetSocketAddress address, final String uri, final long deadline) {
+            super();
+            this.address = address;
+            this.uri = uri;
+            this.deadline = deadline;
+            this.latencies = new ArrayList<Long>();
+        }
+
+        @Override
+        public void run() {
+            final DefaultBHttpClientConnection conn = new DefaultBHttpClientConnection(8 * 1024);
+            try {
+                conn.bind(new Socket(this.address.getAddress(), this.address.getPort()));
+                while (System.currentTimeMillis() < this.deadline) {
+                    final long start = System.nanoTime();
+                    final HttpRequest request = new BasicHttpRequest("GET", this.uri);
+                    request.addHeader("Host", "localhost");
+                    conn.sendRequestHeader(request);
+                    conn.flush();
+                    final HttpResponse response = conn.receiveResponseHeader();
+                    conn.receiveResponseEntity(response);
+                    this.bytes += EntityUtils.toByteArray(response.getEntity()).length;
+                    this.latencies.add(Long.valueOf(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+                }
+                conn.close();
+            } catch (final Exception ex) {
+                System.err.println(this.uri + ": " + ex);
+            }
+        }
+
+    }
+
+}
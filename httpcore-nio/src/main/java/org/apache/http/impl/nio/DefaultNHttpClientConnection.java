@@ -278,6 +278,13 @@ public void consumeInput(final NHttpClientEventHandler handler) {
             // Finally set buffered input flag
             this.hasBufferedInput = this.inbuf.hasData();
         }
+        for (int i = 0; i < EAGER_FLUSH_PASSES && isEagerFlushPossible(); i++) {
+            produceOutput(handler);
+            if (this.outbuf.hasData()) {
+                // channel not writable; leave the rest to the I/O reactor
+                break;
+            }
+        }
     }
 
     public void produceOutput(final NHttpClientEventHandler handler) {
@@ -303,6 +310,7 @@ public void produceOutput(final NHttpClientEventHandler handler) {
                 if (this.status == CLOSING) {
                     this.session.close();
                     this.status = CLOSED;
+                    releaseBufferAccount();
                     resetOutput();
                 }
             }
@@ -167,7 +167,7 @@ protected DefaultNHttpClientConnection createConnection(
 
     @Override
     public DefaultNHttpClientConnection createConnection(final IOSession session) {
-        return new DefaultNHttpClientConnection(
+        final DefaultNHttpClientConnection conn = new DefaultNHttpClientConnection(
                 session,
                 this.cconfig.getBufferSize(),
                 this.cconfig.getFragmentSizeHint(),
@@ -179,6 +179,8 @@ public DefaultNHttpClientConnection createConnection(final IOSession session) {
                 this.outgoingContentStrategy,
                 this.requestWriterFactory,
                 this.responseParserFactory);
+        conn.setEagerFlush(this.cconfig.isEagerFlush());
+        return conn;
     }
 
 }
@@ -297,6 +297,13 @@ public void consumeInput(final NHttpServerEventHandler handler) {
             // Finally set buffered input flag
             this.hasBufferedInput = this.inbuf.hasData();
         }
+        for (int i = 0; i < EAGER_FLUSH_PASSES && isEagerFlushPossible(); i++) {
+            produceOutput(handler);
+            if (this.outbuf.hasData()) {
+                // channel not writable; leave the rest to the I/O reactor
+                break;
+            }
+        }
     }
 
     public void produceOutput(final NHttpServerEventHandler handler) {
@@ -322,6 +329,7 @@ public void produceOutput(final NHttpServerEventHandler handler) {
                 if (this.status == CLOSING) {
                     this.session.close();
                     this.status = CLOSED;
+                    releaseBufferAccount();
                     resetOutput();
                 }
             }
@@ -154,7 +154,7 @@ public DefaultNHttpServerConnectionFactory() {
 
     @Override
     public DefaultNHttpServerConnection createConnection(final IOSession session) {
-        return new DefaultNHttpServerConnection(session,
+        final DefaultNHttpServerConnection conn = new DefaultNHttpServerConnection(session,
                 this.cconfig.getBufferSize(),
                 this.cconfig.getFragmentSizeHint(),
                 this.allocator,
@@ -165,6 +165,8 @@ public DefaultNHttpServerConnection createConnection(final IOSession session) {
                 this.outgoingContentStrategy,
                 this.requestParserFactory,
                 this.responseWriterFactory);
+        conn.setEagerFlush(this.cconfig.isEagerFlush());
+        return conn;
     }
 
 }
@@ -33,6 +33,7 @@
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
@@ -56,6 +57,7 @@
 import org.apache.http.impl.entity.LaxContentLengthStrategy;
 import org.apache.http.impl.entity.StrictContentLengthStrategy;
 import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.impl.io.InstrumentedTransportMetrics;
 import org.apache.http.impl.nio.codecs.ChunkDecoder;
 import org.apache.http.impl.nio.codecs.ChunkEncoder;
 import org.apache.http.impl.nio.codecs.IdentityDecoder;
@@ -69,11 +71,13 @@
 import org.apache.http.nio.ContentEncoder;
 import org.apache.http.nio.NHttpConnection;
 import org.apache.http.nio.reactor.EventMask;
+import org.apache.http.nio.reactor.IOReactorAffinity;
 import org.apache.http.nio.reactor.IOSession;
 import org.apache.http.nio.reactor.SessionBufferStatus;
 import org.apache.http.nio.reactor.SessionInputBuffer;
 import org.apache.http.nio.reactor.SessionOutputBuffer;
 import org.apache.http.nio.reactor.SocketAccessor;
+import org.apache.http.nio.util.BufferMemoryGovernor;
 import org.apache.http.nio.util.ByteBufferAllocator;
 import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.CoreProtocolPNames;
@@ -100,6 +104,7 @@
     protected final SessionInputBufferImpl inbuf;
     protected final SessionOutputBufferImpl outbuf;
     private final int fragmentSizeHint;
+    private final BufferMemoryGovernor.Account bufferAccount;
     private final MessageConstraints constraints;
 
     protected final HttpTransportMetricsImpl inTransportMetrics;
@@ -118,6 +123,14 @@
 
     protected volatile int status;
 
+    /**
+     * Maximum number of output passes run at the end of an input pass
+     * in eager flush mode.
+     */
+    static final int EAGER_FLUSH_PASSES = 2;
+
+    private volatile boolean eagerFlush;
+
     /**
      * Creates a new instance of this class given the underlying I/O session.
      *
@@ -162,8 +175,10 @@ public NHttpConnectionBase(
             decoder.onMalformedInput(malformedCharAction).onUnmappableCharacter(unmappableCharAction);
             encoder.onMalformedInput(malformedCharAction).onUnmappableCharacter(unmappableCharAction);
         }
-        this.inbuf = new SessionInputBufferImpl(bufferSize, lineBufferSize, decoder, allocator);
-        this.outbuf = new SessionOutputBufferImpl(bufferSize, lineBufferSize, encoder, allocator);
+        this.bufferAccount = registerBufferAccount(session, allocator);
+        final ByteBufferAllocator bufferAllocator = this.bufferAccount != null ? this.bufferAccount : allocator;
+        this.inbuf = new SessionInputBufferImpl(bufferSize, lineBufferSize, decoder, bufferAllocator);
+        this.outbuf = new SessionOutputBufferImpl(bufferSize, lineBufferSize, encoder, bufferAllocator);
         this.fragmentSizeHint = bufferSize;
         this.constraints = MessageConstraints.DEFAULT;
 
@@ -218,12 +233,14 @@ protected NHttpConnectionBase(
         if (lineBufferSize > 512) {
             lineBufferSize = 512;
         }
-        this.inbuf = new SessionInputBufferImpl(bufferSize, lineBufferSize, charDecoder, allocator);
-        this.outbuf = new SessionOutputBufferImpl(bufferSize, lineBufferSize, charEncoder, allocator);
+        this.bufferAccount = registerBufferAccount(session, allocator);
+        final ByteBufferAllocator bufferAllocator = this.bufferAccount != null ? this.bufferAccount : allocator;
+        this.inbuf = new SessionInputBufferImpl(bufferSize, lineBufferSize, charDecoder, bufferAllocator);
+        this.outbuf = new SessionOutputBufferImpl(bufferSize, lineBufferSize, charEncoder, bufferAllocator);
         this.fragmentSizeHint = fragmentSizeHint >= 0 ? fragmentSizeHint : bufferSize;
 
-        this.inTransportMetrics = new HttpTransportMetricsImpl();
-        this.outTransportMetrics = new HttpTransportMetricsImpl();
+        this.inTransportMetrics = new InstrumentedTransportMetrics(this, true);
+        this.outTransportMetrics = new InstrumentedTransportMetrics(this, false);
         this.connMetrics = new HttpConnectionMetricsImpl(this.inTransportMetrics, this.outTransportMetrics);
         this.constraints = constraints != null ? constraints : MessageConstraints.DEFAULT;
         this.incomingContentStrategy = incomingContentStrategy != null ? incomingContentStrategy :
@@ -268,8 +285,46 @@ protected NHttpConnectionBase(
                 null, incomingContentStrategy, outgoingContentStrategy);
     }
 
+    private static BufferMemoryGovernor.Account registerBufferAccount(
+            final IOSession session, final ByteBufferAllocator allocator) {
+        return allocator instanceof BufferMemoryGovernor && session != null
+                        ? ((BufferMemoryGovernor) allocator).register(session) : null;
+    }
+
+    /**
+     * Returns the buffer memory account of this connection or {@code null}
+     * if its buffers are not allocated through a {@link BufferMemoryGovernor}.
+     *
+     * @since 4.4.17
+     */
+    public BufferMemoryGovernor.Account getBufferAccount() {
+        return this.bufferAccount;
+    }
+
+    /**
+     * Returns the combined capacity in bytes of the session buffers of this connection.
+     *
+     * @since 4.4.17
+     */
+    public long getBufferMemoryUsage() {
+        return (long) this.inbuf.capacity() + this.outbuf.capacity();
+    }
+
+    /**
+     * Credits session buffers of this connection back to its buffer memory account
+     * once the connection has been closed.
+     */
+    void releaseBufferAccount() {
+        if (this.bufferAccount != null) {
+            this.bufferAccount.close();
+        }
+    }
+
     private void setSession(final IOSession session) {
         this.session = session;
+        if (this.bufferAccount != null) {
+            this.bufferAccount.bind(session);
+        }
         this.context = new SessionHttpContext(this.session);
         this.session.setBufferStatus(this);
         this.remote = this.session.getRemoteAddress();
@@ -360,7 +415,14 @@ public void requestOutput() {
 
     @Override
     public void suspendInput() {
-        this.session.clearEvent(EventMask.READ);
+        if (this.bufferAccount != null) {
+            synchronized (this.session) {
+                this.session.clearEvent(EventMask.READ);
+                this.bufferAccount.inputSuspended();
+            }
+        } else {
+            this.session.clearEvent(EventMask.READ);
+        }
     }
 
     @Override
@@ -491,6 +553,59 @@ public boolean hasBufferedOutput() {
         return this.hasBufferedOutput;
     }
 
+    /**
+     * Returns {@code true} if eager flush mode is enabled.
+     *
+     * @since 4.4.17
+     */
+    public boolean isEagerFlush() {
+        return this.eagerFlush;
+    }
+
+    /**
+     * Enables or disables eager flush mode.
+     * <p>
+     * Output requested by a protocol handler is normally produced when the
+     * I/O reactor reports the channel as writable, which costs one more
+     * select cycle per message exchange. In eager flush mode output requested
+     * while processing input is produced and written at the end of the same
+     * input pass, provided the input pass runs on the I/O dispatcher thread
+     * that owns the session. Write interest is only left to the I/O reactor
+     * if the channel does not accept all buffered output. Eager flush is not
+     * applied to sessions that do not write directly to a socket channel,
+     * such as TLS sessions.
+     * </p>
+     * <p>
+     * The default connection factories apply
+     * {@link org.apache.http.config.ConnectionConfig#isEagerFlush()}.
+     * </p>
+     *
+     * @since 4.4.17
+     */
+    public void setEagerFlush(final boolean eagerFlush) {
+        this.eagerFlush = eagerFlush;
+    }
+
+    /**
+     * Determines whether pending output can be produced right away instead
+     * of waiting for the channel to be reported as writable.
+     *
+     * @since 4.4.17
+     */
+    protected boolean isEagerFlushPossible() {
+        if (!this.eagerFlush || this.status == CLOSED || this.session.isClosed()) {
+            return false;
+        }
+        if (!(this.session.channel() instanceof SocketChannel)) {
+            return false;
+        }
+        if ((this.session.getEventMask() & EventMask.WRITE) == 0) {
+            return false;
+        }
+        final Object dispatcher = IOReactorAffinity.current();
+        return dispatcher != null && dispatcher == IOReactorAffinity.getDispatcher(this.session);
+    }
+
     /**
      * Assets if the connection is still open.
      *
@@ -516,6 +631,7 @@ public void close() throws IOException {
         } else {
             this.session.close();
             this.status = CLOSED;
+            releaseBufferAccount();
         }
     }
 
@@ -567,6 +683,7 @@ public int getSocketTimeout() {
     public void shutdown() throws IOException {
         this.status = CLOSED;
         this.session.shutdown();
+        releaseBufferAccount();
     }
 
     @Override
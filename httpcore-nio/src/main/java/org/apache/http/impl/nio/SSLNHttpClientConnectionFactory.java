@@ -43,6 +43,8 @@
 import org.apache.http.nio.NHttpMessageParserFactory;
 import org.apache.http.nio.NHttpMessageWriterFactory;
 import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.ssl.PermanentSSLBufferManagementStrategy;
+import org.apache.http.nio.reactor.ssl.SSLHandshakeMetrics;
 import org.apache.http.nio.reactor.ssl.SSLIOSession;
 import org.apache.http.nio.reactor.ssl.SSLMode;
 import org.apache.http.nio.reactor.ssl.SSLSetupHandler;
@@ -74,6 +76,7 @@
     private final SSLContext sslContext;
     private final SSLSetupHandler sslHandler;
     private final ConnectionConfig cconfig;
+    private final SSLHandshakeMetrics handshakeMetrics;
 
     /**
      * @deprecated (4.3) use {@link
@@ -100,6 +103,7 @@ public SSLNHttpClientConnectionFactory(
         this.responseParserFactory = new DefaultHttpResponseParserFactory(null, responseFactory);
         this.requestWriterFactory = null;
         this.cconfig = HttpParamConfig.getConnectionConfig(params);
+        this.handshakeMetrics = null;
     }
 
     /**
@@ -126,7 +130,12 @@ public SSLNHttpClientConnectionFactory(final HttpParams params) {
     }
 
     /**
-     * @since 4.3
+     * Creates a connection factory that reports completed TLS/SSL handshakes
+     * to the given {@link SSLHandshakeMetrics}.
+     *
+     * @param handshakeMetrics optional handshake metrics. May be {@code null}.
+     *
+     * @since 4.4.17
      */
     public SSLNHttpClientConnectionFactory(
             final SSLContext sslContext,
@@ -136,7 +145,8 @@ public SSLNHttpClientConnectionFactory(
             final NHttpMessageParserFactory<HttpResponse> responseParserFactory,
             final NHttpMessageWriterFactory<HttpRequest> requestWriterFactory,
             final ByteBufferAllocator allocator,
-            final ConnectionConfig cconfig) {
+            final ConnectionConfig cconfig,
+            final SSLHandshakeMetrics handshakeMetrics) {
         super();
         this.sslContext = sslContext != null ? sslContext : SSLContexts.createSystemDefault();
         this.sslHandler = sslHandler;
@@ -146,6 +156,23 @@ public SSLNHttpClientConnectionFactory(
         this.requestWriterFactory = requestWriterFactory;
         this.allocator = allocator;
         this.cconfig = cconfig != null ? cconfig : ConnectionConfig.DEFAULT;
+        this.handshakeMetrics = handshakeMetrics;
+    }
+
+    /**
+     * @since 4.3
+     */
+    public SSLNHttpClientConnectionFactory(
+            final SSLContext sslContext,
+            final SSLSetupHandler sslHandler,
+            final ContentLengthStrategy incomingContentStrategy,
+            final ContentLengthStrategy outgoingContentStrategy,
+            final NHttpMessageParserFactory<HttpResponse> responseParserFactory,
+            final NHttpMessageWriterFactory<HttpRequest> requestWriterFactory,
+            final ByteBufferAllocator allocator,
+            final ConnectionConfig cconfig) {
+        this(sslContext, sslHandler, incomingContentStrategy, outgoingContentStrategy,
+                responseParserFactory, requestWriterFactory, allocator, cconfig, null);
     }
 
     /**
@@ -221,14 +248,24 @@ protected SSLIOSession createSSLIOSession(
         final Object attachment = ioSession.getAttribute(IOSession.ATTACHMENT_KEY);
         return new SSLIOSession(ioSession, SSLMode.CLIENT,
                 attachment instanceof HttpHost ? (HttpHost) attachment : null,
-                sslContext, sslHandler);
+                sslContext, sslHandler, new PermanentSSLBufferManagementStrategy(), this.handshakeMetrics);
+    }
+
+    /**
+     * Returns the handshake metrics of this factory or {@code null} if
+     * handshakes are not measured.
+     *
+     * @since 4.4.17
+     */
+    public SSLHandshakeMetrics getHandshakeMetrics() {
+        return this.handshakeMetrics;
     }
 
     @Override
     public DefaultNHttpClientConnection createConnection(final IOSession ioSession) {
         final SSLIOSession sslioSession = createSSLIOSession(ioSession, this.sslContext, this.sslHandler);
         ioSession.setAttribute(SSLIOSession.SESSION_KEY, sslioSession);
-        return new DefaultNHttpClientConnection(
+        final DefaultNHttpClientConnection conn = new DefaultNHttpClientConnection(
                 sslioSession,
                 this.cconfig.getBufferSize(),
                 this.cconfig.getFragmentSizeHint(),
@@ -240,6 +277,8 @@ public DefaultNHttpClientConnection createConnection(final IOSession ioSession)
                 this.outgoingContentStrategy,
                 this.requestWriterFactory,
                 this.responseParserFactory);
+        conn.setEagerFlush(this.cconfig.isEagerFlush());
+        return conn;
     }
 
 }
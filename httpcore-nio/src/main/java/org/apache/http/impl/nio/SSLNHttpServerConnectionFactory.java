@@ -42,6 +42,8 @@
 import org.apache.http.nio.NHttpMessageParserFactory;
 import org.apache.http.nio.NHttpMessageWriterFactory;
 import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.ssl.PermanentSSLBufferManagementStrategy;
+import org.apache.http.nio.reactor.ssl.SSLHandshakeMetrics;
 import org.apache.http.nio.reactor.ssl.SSLIOSession;
 import org.apache.http.nio.reactor.ssl.SSLMode;
 import org.apache.http.nio.reactor.ssl.SSLSetupHandler;
@@ -71,6 +73,7 @@
     private final NHttpMessageWriterFactory<HttpResponse> responseWriterFactory;
     private final ByteBufferAllocator allocator;
     private final ConnectionConfig cconfig;
+    private final SSLHandshakeMetrics handshakeMetrics;
 
     /**
      * @deprecated (4.3) use {@link
@@ -97,6 +100,7 @@ public SSLNHttpServerConnectionFactory(
         this.responseWriterFactory = null;
         this.allocator = allocator;
         this.cconfig = HttpParamConfig.getConnectionConfig(params);
+        this.handshakeMetrics = null;
     }
 
     /**
@@ -123,7 +127,12 @@ public SSLNHttpServerConnectionFactory(final HttpParams params) {
     }
 
     /**
-     * @since 4.3
+     * Creates a connection factory that reports completed TLS/SSL handshakes
+     * to the given {@link SSLHandshakeMetrics}.
+     *
+     * @param handshakeMetrics optional handshake metrics. May be {@code null}.
+     *
+     * @since 4.4.17
      */
     public SSLNHttpServerConnectionFactory(
             final SSLContext sslContext,
@@ -133,7 +142,8 @@ public SSLNHttpServerConnectionFactory(
             final NHttpMessageParserFactory<HttpRequest> requestParserFactory,
             final NHttpMessageWriterFactory<HttpResponse> responseWriterFactory,
             final ByteBufferAllocator allocator,
-            final ConnectionConfig cconfig) {
+            final ConnectionConfig cconfig,
+            final SSLHandshakeMetrics handshakeMetrics) {
         super();
         this.sslContext = sslContext != null ? sslContext : SSLContexts.createSystemDefault();
         this.sslHandler = sslHandler;
@@ -143,6 +153,23 @@ public SSLNHttpServerConnectionFactory(
         this.responseWriterFactory = responseWriterFactory;
         this.allocator = allocator;
         this.cconfig = cconfig != null ? cconfig : ConnectionConfig.DEFAULT;
+        this.handshakeMetrics = handshakeMetrics;
+    }
+
+    /**
+     * @since 4.3
+     */
+    public SSLNHttpServerConnectionFactory(
+            final SSLContext sslContext,
+            final SSLSetupHandler sslHandler,
+            final ContentLengthStrategy incomingContentStrategy,
+            final ContentLengthStrategy outgoingContentStrategy,
+            final NHttpMessageParserFactory<HttpRequest> requestParserFactory,
+            final NHttpMessageWriterFactory<HttpResponse> responseWriterFactory,
+            final ByteBufferAllocator allocator,
+            final ConnectionConfig cconfig) {
+        this(sslContext, sslHandler, incomingContentStrategy, outgoingContentStrategy,
+                requestParserFactory, responseWriterFactory, allocator, cconfig, null);
     }
 
     /**
@@ -215,16 +242,26 @@ protected SSLIOSession createSSLIOSession(
             final IOSession ioSession,
             final SSLContext sslContext,
             final SSLSetupHandler sslHandler) {
-        final SSLIOSession sslioSession = new SSLIOSession(ioSession, SSLMode.SERVER,
-                sslContext, sslHandler);
+        final SSLIOSession sslioSession = new SSLIOSession(ioSession, SSLMode.SERVER, null,
+                sslContext, sslHandler, new PermanentSSLBufferManagementStrategy(), this.handshakeMetrics);
         return sslioSession;
     }
 
+    /**
+     * Returns the handshake metrics of this factory or {@code null} if
+     * handshakes are not measured.
+     *
+     * @since 4.4.17
+     */
+    public SSLHandshakeMetrics getHandshakeMetrics() {
+        return this.handshakeMetrics;
+    }
+
     @Override
     public DefaultNHttpServerConnection createConnection(final IOSession ioSession) {
         final SSLIOSession sslioSession = createSSLIOSession(ioSession, this.sslContext, this.sslHandler);
         ioSession.setAttribute(SSLIOSession.SESSION_KEY, sslioSession);
-        return new DefaultNHttpServerConnection(sslioSession,
+        final DefaultNHttpServerConnection conn = new DefaultNHttpServerConnection(sslioSession,
                 this.cconfig.getBufferSize(),
                 this.cconfig.getFragmentSizeHint(),
                 this.allocator,
@@ -235,6 +272,8 @@ public DefaultNHttpServerConnection createConnection(final IOSession ioSession)
                 this.outgoingContentStrategy,
                 this.requestParserFactory,
                 this.responseWriterFactory);
+        conn.setEagerFlush(this.cconfig.isEagerFlush());
+        return conn;
     }
 
 }
@@ -32,12 +32,14 @@
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.http.Header;
 import org.apache.http.HttpException;
 import org.apache.http.HttpMessage;
 import org.apache.http.MessageConstraintException;
 import org.apache.http.ParseException;
 import org.apache.http.ProtocolException;
 import org.apache.http.config.MessageConstraints;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicLineParser;
 import org.apache.http.message.LineParser;
 import org.apache.http.nio.NHttpMessageParser;
@@ -62,12 +64,17 @@
     private static final int READ_HEADERS   = 1;
     private static final int COMPLETED      = 2;
 
+    // bounds of the pool of header line buffers kept for recycling
+    private static final int MAX_SPARE_LINES = 128;
+    private static final int MAX_SPARE_CAPACITY = 8192;
+
     private int state;
     private boolean endOfStream;
 
     private T message;
     private CharArrayBuffer lineBuf;
     private final List<CharArrayBuffer> headerBufs;
+    private final List<CharArrayBuffer> spareBufs;
 
     protected final LineParser lineParser;
     private final MessageConstraints constraints;
@@ -95,6 +102,7 @@ public AbstractMessageParser(
         this.state = READ_HEAD_LINE;
         this.endOfStream = false;
         this.headerBufs = new ArrayList<CharArrayBuffer>();
+        this.spareBufs = null;
         this.constraints = HttpParamConfig.getMessageConstraints(params);
         this.lineParser = (lineParser != null) ? lineParser : BasicLineParser.INSTANCE;
     }
@@ -119,6 +127,7 @@ public AbstractMessageParser(
         this.lineParser = lineParser != null ? lineParser : BasicLineParser.INSTANCE;
         this.constraints = constraints != null ? constraints : MessageConstraints.DEFAULT;
         this.headerBufs = new ArrayList<CharArrayBuffer>();
+        this.spareBufs = this.constraints.isBufferRecycling() ? new ArrayList<CharArrayBuffer>() : null;
         this.state = READ_HEAD_LINE;
         this.endOfStream = false;
     }
@@ -127,6 +136,14 @@ public AbstractMessageParser(
     public void reset() {
         this.state = READ_HEAD_LINE;
         this.endOfStream = false;
+        if (this.spareBufs != null) {
+            // message headers are detached from their header lines
+            for (final CharArrayBuffer buffer: this.headerBufs) {
+                if (this.spareBufs.size() < MAX_SPARE_LINES && buffer.capacity() <= MAX_SPARE_CAPACITY) {
+                    this.spareBufs.add(buffer);
+                }
+            }
+        }
         this.headerBufs.clear();
         this.message = null;
     }
@@ -186,7 +203,13 @@ private void parseHeader() throws IOException {
     public T parse() throws IOException, HttpException {
         while (this.state != COMPLETED) {
             if (this.lineBuf == null) {
-                this.lineBuf = new CharArrayBuffer(64);
+                final int spareCount = this.spareBufs != null ? this.spareBufs.size() : 0;
+                if (spareCount > 0) {
+                    this.lineBuf = this.spareBufs.remove(spareCount - 1);
+                    this.lineBuf.clear();
+                } else {
+                    this.lineBuf = new CharArrayBuffer(64);
+                }
             } else {
                 this.lineBuf.clear();
             }
@@ -230,7 +253,10 @@ public T parse() throws IOException, HttpException {
         if (this.state == COMPLETED) {
             for (final CharArrayBuffer buffer : this.headerBufs) {
                 try {
-                    this.message.addHeader(lineParser.parseHeader(buffer));
+                    final Header header = lineParser.parseHeader(buffer);
+                    // recycled header lines must not back the headers handed out
+                    this.message.addHeader(this.spareBufs != null
+                                    ? new BasicHeader(header.getName(), header.getValue()) : header);
                 } catch (final ParseException ex) {
                     throw new ProtocolException(ex.getMessage(), ex);
                 }
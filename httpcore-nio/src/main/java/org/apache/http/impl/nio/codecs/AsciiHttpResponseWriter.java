@@ -0,0 +1,115 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.codecs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.impl.io.AsciiHeadEncoder;
+import org.apache.http.message.BasicLineFormatter;
+import org.apache.http.nio.reactor.SessionOutputBuffer;
+import org.apache.http.util.Args;
+import org.apache.http.util.ByteArrayBuffer;
+
+/**
+ * {@link org.apache.http.nio.NHttpMessageWriter} implementation for
+ * {@link HttpResponse}s that renders message heads consisting of ASCII
+ * characters directly into bytes using {@link AsciiHeadEncoder} and copies
+ * the entire head into the session buffer at once. Status lines and header
+ * names of common responses are copied from a cache of pre-encoded byte
+ * sequences instead of being formatted anew for every message.
+ * <p>
+ * Head elements containing non-ASCII characters are formatted with
+ * {@link BasicLineFormatter} and written out through the char encoder of
+ * the session buffer, same as {@link DefaultHttpResponseWriter} would do,
+ * so the output of both writers is always identical.
+ *
+ * @since 4.4.17
+ */
+public class AsciiHttpResponseWriter extends AbstractMessageWriter<HttpResponse> {
+
+    private final AsciiHeadEncoder headEncoder;
+    private final ByteArrayBuffer headBuf;
+
+    private ByteBuffer headView;
+
+    public AsciiHttpResponseWriter(final SessionOutputBuffer buffer) {
+        super(buffer, BasicLineFormatter.INSTANCE);
+        this.headEncoder = AsciiHeadEncoder.INSTANCE;
+        this.headBuf = new ByteArrayBuffer(256);
+    }
+
+    private void flushHead() {
+        if (this.headBuf.length() > 0) {
+            final byte[] b = this.headBuf.buffer();
+            if (this.headView == null || this.headView.array() != b) {
+                this.headView = ByteBuffer.wrap(b);
+            }
+            this.headView.clear();
+            this.headView.limit(this.headBuf.length());
+            this.sessionBuffer.write(this.headView);
+            this.headBuf.clear();
+        }
+    }
+
+    @Override
+    public void reset() {
+        this.headBuf.clear();
+    }
+
+    @Override
+    protected void writeHeadLine(final HttpResponse message) throws IOException {
+        final StatusLine statusLine = message.getStatusLine();
+        if (!this.headEncoder.encodeStatusLine(statusLine, this.headBuf)) {
+            flushHead();
+            this.sessionBuffer.writeLine(this.lineFormatter.formatStatusLine(this.lineBuf, statusLine));
+        }
+    }
+
+    @Override
+    public void write(final HttpResponse message) throws IOException, HttpException {
+        Args.notNull(message, "HTTP message");
+        this.headBuf.clear();
+        writeHeadLine(message);
+        for (final Iterator<?> it = message.headerIterator(); it.hasNext(); ) {
+            final Header header = (Header) it.next();
+            if (!this.headEncoder.encodeHeader(header, this.headBuf)) {
+                flushHead();
+                this.sessionBuffer.writeLine(this.lineFormatter.formatHeader(this.lineBuf, header));
+            }
+        }
+        this.headEncoder.encodeHeadTerminator(this.headBuf);
+        flushHead();
+    }
+
+}
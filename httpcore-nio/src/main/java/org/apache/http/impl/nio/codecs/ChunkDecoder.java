@@ -35,12 +35,13 @@
 
 import org.apache.http.ConnectionClosedException;
 import org.apache.http.Header;
-import org.apache.http.MalformedChunkCodingException;
 import org.apache.http.MessageConstraintException;
 import org.apache.http.ParseException;
 import org.apache.http.TruncatedChunkException;
 import org.apache.http.config.MessageConstraints;
+import org.apache.http.impl.io.ChunkHeadParser;
 import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.impl.nio.reactor.SessionInputBufferImpl;
 import org.apache.http.message.BufferedHeader;
 import org.apache.http.nio.reactor.SessionInputBuffer;
 import org.apache.http.util.Args;
@@ -63,6 +64,8 @@ public class ChunkDecoder extends AbstractContentDecoder {
     private boolean endOfStream;
 
     private CharArrayBuffer lineBuf;
+    private final ChunkHeadParser headParser;
+    private boolean headPending;
     private long chunkSize;
     private long pos;
 
@@ -87,6 +90,15 @@ public ChunkDecoder(
         this.endOfStream = false;
         this.constraints = constraints != null ? constraints : MessageConstraints.DEFAULT;
         this.trailerBufs = new ArrayList<CharArrayBuffer>();
+        int maxLineLength = this.constraints.getMaxLineLength();
+        if (buffer instanceof SessionInputBufferImpl) {
+            // chunk heads are no longer read as lines; apply the line length limit of the buffer
+            final int bufferMaxLineLength = ((SessionInputBufferImpl) buffer).getMaxLineLength();
+            if (bufferMaxLineLength > 0 && (maxLineLength <= 0 || bufferMaxLineLength < maxLineLength)) {
+                maxLineLength = bufferMaxLineLength;
+            }
+        }
+        this.headParser = new ChunkHeadParser(maxLineLength);
     }
 
     public ChunkDecoder(
@@ -97,46 +109,26 @@ public ChunkDecoder(
     }
 
     private void readChunkHead() throws IOException {
-        if (this.lineBuf == null) {
-            this.lineBuf = new CharArrayBuffer(32);
-        } else {
-            this.lineBuf.clear();
+        if (!this.headPending) {
+            this.headParser.reset(this.endOfChunk);
+            this.headPending = true;
         }
-        if (this.endOfChunk) {
-            if (this.buffer.readLine(this.lineBuf, this.endOfStream)) {
-                if (!this.lineBuf.isEmpty()) {
-                    throw new MalformedChunkCodingException("CRLF expected at end of chunk");
-                }
-            } else {
-                if (this.buffer.length() > 2 || this.endOfStream) {
-                    throw new MalformedChunkCodingException("CRLF expected at end of chunk");
-                }
-                return;
-            }
-            this.endOfChunk = false;
-        }
-        final boolean lineComplete = this.buffer.readLine(this.lineBuf, this.endOfStream);
-        final int maxLineLen = this.constraints.getMaxLineLength();
-        if (maxLineLen > 0 &&
-                (this.lineBuf.length() > maxLineLen ||
-                        (!lineComplete && this.buffer.length() > maxLineLen))) {
-            throw new MessageConstraintException("Maximum line length limit exceeded");
+        boolean complete = false;
+        while (!complete && this.buffer.hasData()) {
+            complete = this.headParser.update(this.buffer.read());
         }
-        if (lineComplete) {
-            int separator = this.lineBuf.indexOf(';');
-            if (separator < 0) {
-                separator = this.lineBuf.length();
-            }
-            final String s = this.lineBuf.substringTrimmed(0, separator);
-            try {
-                this.chunkSize = Long.parseLong(s, 16);
-            } catch (final NumberFormatException e) {
-                throw new MalformedChunkCodingException("Bad chunk header: " + s);
+        if (!complete && this.endOfStream) {
+            complete = this.headParser.endOfStream();
+            if (!complete) {
+                throw new ConnectionClosedException(
+                                "Premature end of chunk coded message body: closing chunk expected");
             }
+        }
+        if (complete) {
+            this.headPending = false;
+            this.endOfChunk = false;
+            this.chunkSize = this.headParser.getChunkSize();
             this.pos = 0L;
-        } else if (this.endOfStream) {
-            throw new ConnectionClosedException(
-                            "Premature end of chunk coded message body: closing chunk expected");
         }
     }
 
@@ -191,7 +183,10 @@ public int read(final ByteBuffer dst) throws IOException {
         int totalRead = 0;
         while (this.state != COMPLETED) {
 
-            if (!this.buffer.hasData() || this.chunkSize == -1L) {
+            // chunk heads are parsed from buffered data first; the channel
+            // is read only once the session buffer has been drained
+            final boolean fill = !this.buffer.hasData() || this.state == READ_FOOTERS;
+            if (fill) {
                 final int bytesRead = fillBufferFromChannel();
                 if (bytesRead == -1) {
                     this.endOfStream = true;
@@ -204,6 +199,10 @@ public int read(final ByteBuffer dst) throws IOException {
                 if (this.chunkSize == -1L) {
                     readChunkHead();
                     if (this.chunkSize == -1L) {
+                        if (!fill) {
+                            // Partial chunk head; try reading the rest from the channel
+                            break;
+                        }
                         // Unable to read a chunk head
                         return totalRead;
                     }
@@ -0,0 +1,238 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.codecs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.apache.http.entity.ZlibSupport;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.util.Args;
+import org.apache.http.util.Asserts;
+
+/**
+ * Content encoder that compresses content using the {@code gzip} or
+ * {@code deflate} coding before passing it to another content encoder.
+ * A {@link Deflater} is taken from the per-thread pool of
+ * {@link ZlibSupport} and returned to it once the encoder completes.
+ * <p>
+ * The encoder is non-blocking: if the underlying encoder does not accept
+ * all compressed output, {@link #write(ByteBuffer)} consumes no further
+ * input until the pending output has been written. Likewise
+ * {@link #complete()} may leave compressed output pending, in which case
+ * {@link #isCompleted()} returns {@code false} and {@code complete()}
+ * must be called again once the channel becomes writable.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+public class CompressingEncoder implements ContentEncoder {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ContentEncoder encoder;
+    private final String encoding;
+    private final int level;
+    private final CRC32 crc;
+    private final ByteBuffer outbuf;
+    private final byte[] inbuf;
+
+    private Deflater deflater;
+    private long size;
+    private boolean finishing;
+    private boolean trailerWritten;
+    private boolean completed;
+
+    /**
+     * @param encoder the encoder compressed content is written to.
+     * @param encoding {@code gzip} or {@code deflate}.
+     * @param level compression level.
+     * @param bufferSize size of the compressed output buffer.
+     */
+    public CompressingEncoder(
+            final ContentEncoder encoder, final String encoding, final int level, final int bufferSize) {
+        super();
+        this.encoder = Args.notNull(encoder, "Content encoder");
+        Args.check(ZlibSupport.isSupported(encoding), "Unsupported content coding: %s", encoding);
+        Args.positive(bufferSize, "Buffer size");
+        this.encoding = encoding;
+        this.level = level;
+        this.deflater = ZlibSupport.leaseDeflater(encoding, level);
+        final boolean gzip = ZlibSupport.isGzip(encoding);
+        this.crc = gzip ? new CRC32() : null;
+        this.trailerWritten = !gzip;
+        this.outbuf = ByteBuffer.allocate(Math.max(bufferSize, 16));
+        this.inbuf = new byte[bufferSize];
+        if (gzip) {
+            this.outbuf.put(ZlibSupport.gzipHeader());
+        }
+        this.outbuf.flip();
+    }
+
+    public CompressingEncoder(final ContentEncoder encoder, final String encoding) {
+        this(encoder, encoding, Deflater.DEFAULT_COMPRESSION, 8192);
+    }
+
+    private boolean flushOutput() throws IOException {
+        while (this.outbuf.hasRemaining()) {
+            if (this.encoder.write(this.outbuf) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean deflate() throws IOException {
+        this.outbuf.clear();
+        final int n = this.deflater.deflate(this.outbuf.array(), 0, this.outbuf.capacity());
+        this.outbuf.limit(n);
+        return flushOutput();
+    }
+
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+        if (src == null) {
+            return 0;
+        }
+        Asserts.check(!this.finishing, "Encoding process already completed");
+        if (!flushOutput()) {
+            return 0;
+        }
+        int total = 0;
+        while (src.hasRemaining()) {
+            final byte[] b;
+            final int off;
+            final int len;
+            if (src.hasArray()) {
+                b = src.array();
+                off = src.arrayOffset() + src.position();
+                len = src.remaining();
+            } else {
+                b = this.inbuf;
+                off = 0;
+                len = Math.min(src.remaining(), this.inbuf.length);
+                src.duplicate().get(b, 0, len);
+            }
+            final long before = this.deflater.getBytesRead();
+            this.deflater.setInput(b, off, len);
+            boolean blocked = false;
+            while (!this.deflater.needsInput()) {
+                if (!deflate()) {
+                    blocked = true;
+                    break;
+                }
+            }
+            final int consumed = (int) (this.deflater.getBytesRead() - before);
+            if (blocked) {
+                // drop the reference to the caller's buffer; unconsumed input is offered again later
+                this.deflater.setInput(EMPTY);
+            }
+            if (this.crc != null) {
+                this.crc.update(b, off, consumed);
+            }
+            src.position(src.position() + consumed);
+            this.size += consumed;
+            total += consumed;
+            if (blocked) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void complete() throws IOException {
+        if (this.completed) {
+            return;
+        }
+        if (!this.finishing) {
+            this.finishing = true;
+            this.deflater.finish();
+        }
+        if (!flushOutput()) {
+            return;
+        }
+        while (!this.deflater.finished()) {
+            if (!deflate()) {
+                return;
+            }
+        }
+        if (!this.trailerWritten) {
+            this.trailerWritten = true;
+            this.outbuf.clear();
+            ZlibSupport.writeGzipTrailer(this.crc.getValue(), this.size, this.outbuf.array(), 0);
+            this.outbuf.limit(ZlibSupport.GZIP_TRAILER_LEN);
+            if (!flushOutput()) {
+                return;
+            }
+        }
+        release();
+        this.encoder.complete();
+        this.completed = true;
+    }
+
+    @Override
+    public boolean isCompleted() {
+        return this.completed;
+    }
+
+    /**
+     * Returns {@code true} if {@link #complete()} has been called but
+     * compressed output is still pending.
+     */
+    public boolean isCompleting() {
+        return this.finishing && !this.completed;
+    }
+
+    /**
+     * Returns the {@link Deflater} to the pool. Needs to be called only if
+     * the encoder is abandoned before it completes.
+     */
+    public void release() {
+        if (this.deflater != null) {
+            ZlibSupport.releaseDeflater(this.deflater, this.encoding, this.level);
+            this.deflater = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("[encoding: ");
+        sb.append(this.encoding);
+        sb.append("; pos: ");
+        sb.append(this.size);
+        sb.append("; completed: ");
+        sb.append(this.completed);
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
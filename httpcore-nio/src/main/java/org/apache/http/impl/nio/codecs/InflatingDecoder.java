@@ -0,0 +1,280 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.codecs;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.apache.http.entity.ZlibSupport;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.util.Args;
+
+/**
+ * Content decoder that decompresses {@code gzip} or {@code deflate} coded
+ * content read from another content decoder. An {@link Inflater} is taken
+ * from the per-thread pool of {@link ZlibSupport} and returned to it once
+ * the compressed stream ends. Both zlib wrapped and raw deflate streams
+ * are accepted as {@code deflate} content.
+ *
+ * @since 4.4.17
+ */
+public class InflatingDecoder implements ContentDecoder {
+
+    enum State { HEADER, BODY, TRAILER, DONE }
+
+    private final ContentDecoder decoder;
+    private final boolean gzip;
+    private final CRC32 crc;
+
+    private ByteBuffer inbuf;
+    private byte[] outbuf;
+    private Inflater inflater;
+    private boolean nowrap;
+    private int inputEnd;
+    private long size;
+    private State state;
+
+    /**
+     * @param decoder the decoder compressed content is read from.
+     * @param encoding {@code gzip}, {@code x-gzip} or {@code deflate}.
+     * @param bufferSize size of the compressed input buffer.
+     */
+    public InflatingDecoder(final ContentDecoder decoder, final String encoding, final int bufferSize) {
+        super();
+        this.decoder = Args.notNull(decoder, "Content decoder");
+        Args.check(ZlibSupport.isSupported(encoding), "Unsupported content coding: %s", encoding);
+        Args.positive(bufferSize, "Buffer size");
+        this.gzip = ZlibSupport.isGzip(encoding);
+        this.crc = this.gzip ? new CRC32() : null;
+        this.inbuf = ByteBuffer.allocate(bufferSize);
+        this.state = State.HEADER;
+    }
+
+    public InflatingDecoder(final ContentDecoder decoder, final String encoding) {
+        this(decoder, encoding, 8192);
+    }
+
+    private boolean endOfInput(final int bytesRead) {
+        return bytesRead == -1 || this.decoder.isCompleted();
+    }
+
+    private int fill() throws IOException {
+        if (!this.inbuf.hasRemaining()) {
+            final ByteBuffer expanded = ByteBuffer.allocate(this.inbuf.capacity() * 2);
+            this.inbuf.flip();
+            expanded.put(this.inbuf);
+            this.inbuf = expanded;
+        }
+        return this.decoder.read(this.inbuf);
+    }
+
+    private boolean readHeader() throws IOException {
+        for (;;) {
+            final int bytesRead = this.decoder.isCompleted() ? -1 : fill();
+            final byte[] b = this.inbuf.array();
+            final int len = this.inbuf.position();
+            final int offset;
+            if (this.gzip) {
+                offset = ZlibSupport.gzipHeaderLength(b, 0, len);
+            } else {
+                offset = len >= 2 ? 0 : -1;
+            }
+            if (offset >= 0) {
+                this.nowrap = this.gzip || !ZlibSupport.isZlibHeader(b[0], b[1]);
+                this.inflater = ZlibSupport.leaseInflater(this.nowrap);
+                this.inflater.setInput(b, offset, len - offset);
+                this.inputEnd = len;
+                this.state = State.BODY;
+                return true;
+            }
+            if (endOfInput(bytesRead)) {
+                if (len == 0) {
+                    this.state = State.DONE;
+                    return true;
+                }
+                throw new EOFException("Unexpected end of compressed stream");
+            }
+            if (bytesRead == 0) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        Args.notNull(dst, "Byte buffer");
+        for (;;) {
+            switch (this.state) {
+            case HEADER:
+                if (!readHeader()) {
+                    return 0;
+                }
+                break;
+            case BODY:
+                if (!dst.hasRemaining()) {
+                    return 0;
+                }
+                final int n = inflate(dst);
+                if (n > 0) {
+                    return n;
+                }
+                if (this.inflater.finished()) {
+                    if (this.gzip) {
+                        final int remaining = this.inflater.getRemaining();
+                        final byte[] b = this.inbuf.array();
+                        System.arraycopy(b, this.inputEnd - remaining, b, 0, remaining);
+                        this.inbuf.clear();
+                        this.inbuf.position(remaining);
+                        this.state = State.TRAILER;
+                    } else {
+                        this.state = State.DONE;
+                    }
+                    release();
+                    break;
+                }
+                if (this.inflater.needsDictionary()) {
+                    throw new ZipException("Preset dictionary not supported");
+                }
+                if (!this.inflater.needsInput()) {
+                    return 0;
+                }
+                this.inbuf.clear();
+                final int bytesRead = this.decoder.read(this.inbuf);
+                if (bytesRead > 0) {
+                    this.inflater.setInput(this.inbuf.array(), 0, bytesRead);
+                    this.inputEnd = bytesRead;
+                } else if (endOfInput(bytesRead)) {
+                    throw new EOFException("Unexpected end of compressed stream");
+                } else {
+                    return 0;
+                }
+                break;
+            case TRAILER:
+                if (this.inbuf.position() < ZlibSupport.GZIP_TRAILER_LEN) {
+                    final int l = this.decoder.isCompleted() ? -1 : this.decoder.read(this.inbuf);
+                    if (this.inbuf.position() < ZlibSupport.GZIP_TRAILER_LEN) {
+                        if (endOfInput(l)) {
+                            throw new EOFException("Unexpected end of gzip trailer");
+                        }
+                        if (l == 0) {
+                            return 0;
+                        }
+                        break;
+                    }
+                }
+                ZlibSupport.verifyGzipTrailer(this.crc.getValue(), this.size, this.inbuf.array(), 0);
+                this.state = State.DONE;
+                break;
+            default:
+                // discard anything beyond the end of the compressed stream
+                while (!this.decoder.isCompleted()) {
+                    this.inbuf.clear();
+                    final int l = this.decoder.read(this.inbuf);
+                    if (l == -1) {
+                        break;
+                    }
+                    if (l == 0) {
+                        return 0;
+                    }
+                }
+                return -1;
+            }
+        }
+    }
+
+    private int inflate(final ByteBuffer dst) throws IOException {
+        final byte[] b;
+        final int off;
+        final int len;
+        if (dst.hasArray()) {
+            b = dst.array();
+            off = dst.arrayOffset() + dst.position();
+            len = dst.remaining();
+        } else {
+            if (this.outbuf == null) {
+                this.outbuf = new byte[this.inbuf.capacity()];
+            }
+            b = this.outbuf;
+            off = 0;
+            len = Math.min(dst.remaining(), this.outbuf.length);
+        }
+        final int n;
+        try {
+            n = this.inflater.inflate(b, off, len);
+        } catch (final DataFormatException ex) {
+            throw new ZipException(ex.getMessage());
+        }
+        if (n > 0) {
+            if (this.crc != null) {
+                this.crc.update(b, off, n);
+            }
+            if (dst.hasArray()) {
+                dst.position(dst.position() + n);
+            } else {
+                dst.put(b, 0, n);
+            }
+            this.size += n;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean isCompleted() {
+        return this.state == State.DONE && this.decoder.isCompleted();
+    }
+
+    /**
+     * Returns the {@link Inflater} to the pool. Needs to be called only if
+     * the decoder is abandoned before the compressed stream ends.
+     */
+    public void release() {
+        if (this.inflater != null) {
+            ZlibSupport.releaseInflater(this.inflater, this.nowrap);
+            this.inflater = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("[gzip: ");
+        sb.append(this.gzip);
+        sb.append("; pos: ");
+        sb.append(this.size);
+        sb.append("; completed: ");
+        sb.append(isCompleted());
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,1053 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpException;
+import org.apache.http.HttpInetConnection;
+import org.apache.http.impl.HttpConnectionMetricsImpl;
+import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.impl.io.InstrumentedTransportMetrics;
+import org.apache.http.nio.reactor.EventMask;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.util.Args;
+import org.apache.http.util.ByteArrayBuffer;
+
+/**
+ * Abstract HTTP/2 connection that multiplexes concurrent message exchanges
+ * over a single {@link IOSession}. This class implements the framing layer,
+ * HPACK header compression, connection and stream level flow control as well
+ * as {@code SETTINGS}, {@code PING} and {@code GOAWAY} handling as defined by
+ * RFC 7540. Message exchange semantics are implemented by super classes.
+ * <p>
+ * Only the cleartext protocol with prior knowledge ({@code h2c}) is supported.
+ * Stream priorities are ignored and server push is disabled.
+ * <p>
+ * Event methods of this class are expected to be called by the I/O dispatch
+ * thread. Cross-thread requests for input or output of individual streams are
+ * signaled to the I/O dispatch thread by setting the {@link EventMask#WRITE}
+ * interest of the session.
+ *
+ * @since 4.4.17
+ */
+public abstract class AbstractH2Connection implements HttpInetConnection {
+
+    static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(Consts.ASCII);
+
+    private static final int OUTPUT_THRESHOLD = 64 * 1024;
+
+    enum ConnectionState { ACTIVE, GRACEFUL_SHUTDOWN, SHUTDOWN }
+
+    private final IOSession session;
+    private final H2Config localConfig;
+    private final boolean client;
+    private final FrameInputBuffer inbuf;
+    private final FrameOutputBuffer outbuf;
+    private final HPackEncoder hpackEncoder;
+    private final HPackDecoder hpackDecoder;
+    private final ByteArrayBuffer headerBlock;
+    private final ByteArrayBuffer headerEncodeBuffer;
+    private final Map<Integer, H2Stream> streams;
+    private final HttpContext context;
+    private final HttpTransportMetricsImpl inTransportMetrics;
+    private final HttpTransportMetricsImpl outTransportMetrics;
+    private final HttpConnectionMetricsImpl connMetrics;
+
+    private volatile ConnectionState connState;
+    private volatile boolean closeRequested;
+
+    private boolean prefaceReceived;
+    private boolean settingsReceived;
+    private boolean localSettingsAcked;
+    private int remoteInitialWindowSize;
+    private int remoteMaxFrameSize;
+    private int remoteMaxConcurrentStreams;
+    private int connOutputWindow;
+    private int connInputWindow;
+    private int connInputCredit;
+    private int continuationStreamId;
+    private int continuationFlags;
+    private int lastLocalStreamId;
+    private int lastRemoteStreamId;
+    private int localStreamCount;
+    private int remoteStreamCount;
+
+    protected AbstractH2Connection(final IOSession session, final H2Config config, final boolean client) {
+        super();
+        this.session = Args.notNull(session, "I/O session");
+        this.localConfig = config != null ? config : H2Config.DEFAULT;
+        this.client = client;
+        this.inbuf = new FrameInputBuffer(this.localConfig.getMaxFrameSize());
+        this.outbuf = new FrameOutputBuffer(H2Frame.HEADER_SIZE + H2Config.MIN_FRAME_SIZE);
+        this.hpackEncoder = new HPackEncoder(H2Config.INITIAL_HEADER_TABLE_SIZE);
+        this.hpackDecoder = new HPackDecoder(this.localConfig.getHeaderTableSize());
+        this.headerBlock = new ByteArrayBuffer(1024);
+        this.headerEncodeBuffer = new ByteArrayBuffer(1024);
+        // streams are iterated in the order they were opened; the headers of new
+        // local streams must go out in ascending stream id order
+        this.streams = new LinkedHashMap<Integer, H2Stream>();
+        this.context = new BasicHttpContext();
+        this.context.setAttribute(HttpCoreContext.HTTP_CONNECTION, this);
+        this.inTransportMetrics = new InstrumentedTransportMetrics(this, true);
+        this.outTransportMetrics = new InstrumentedTransportMetrics(this, false);
+        this.connMetrics = new HttpConnectionMetricsImpl(this.inTransportMetrics, this.outTransportMetrics);
+        this.connState = ConnectionState.ACTIVE;
+        this.remoteInitialWindowSize = H2Config.INITIAL_WINDOW_SIZE;
+        this.remoteMaxFrameSize = H2Config.MIN_FRAME_SIZE;
+        this.remoteMaxConcurrentStreams = Integer.MAX_VALUE;
+        this.connOutputWindow = H2Config.INITIAL_WINDOW_SIZE;
+        this.connInputWindow = H2Config.INITIAL_WINDOW_SIZE;
+    }
+
+    /**
+     * Creates a handler for a stream initiated by the opposite endpoint.
+     */
+    abstract H2StreamHandler createRemoteStreamHandler(H2Stream stream) throws H2ConnectionException;
+
+    /**
+     * Processes requests submitted by other threads. Invoked by the I/O
+     * dispatch thread when the session is ready for output.
+     */
+    abstract void processPendingCommands() throws IOException;
+
+    abstract boolean hasPendingCommands();
+
+    abstract void failPendingCommands(Exception cause);
+
+    IOSession getSession() {
+        return this.session;
+    }
+
+    H2Config getLocalConfig() {
+        return this.localConfig;
+    }
+
+    public HttpContext getContext() {
+        return this.context;
+    }
+
+    boolean isActive() {
+        return this.connState == ConnectionState.ACTIVE && !this.closeRequested;
+    }
+
+    int getStreamCount() {
+        return this.streams.size();
+    }
+
+    /**
+     * Signals the I/O dispatch thread that there is output or buffered input
+     * pending. May be called from any thread.
+     */
+    void requestSessionOutput() {
+        this.session.setEvent(EventMask.WRITE);
+    }
+
+    /**
+     * Determines whether a new stream can be initiated by the local endpoint.
+     */
+    boolean canOpenLocalStream() {
+        // streams are not opened prior to receipt of the peer settings
+        // in order not to exceed its concurrency limits
+        return this.connState == ConnectionState.ACTIVE
+                && this.settingsReceived
+                && this.localStreamCount < this.remoteMaxConcurrentStreams
+                && this.lastLocalStreamId < Integer.MAX_VALUE - 2;
+    }
+
+    H2Stream openLocalStream(final H2StreamHandlerFactory handlerFactory) {
+        final int streamId = this.lastLocalStreamId == 0 ? (this.client ? 1 : 2) : this.lastLocalStreamId + 2;
+        this.lastLocalStreamId = streamId;
+        final H2Stream stream = new H2Stream(
+                this, streamId, this.localConfig.getInitialWindowSize(), this.remoteInitialWindowSize);
+        stream.setHandler(handlerFactory.create(stream));
+        this.streams.put(Integer.valueOf(streamId), stream);
+        this.localStreamCount++;
+        return stream;
+    }
+
+    private boolean isLocalStreamId(final int streamId) {
+        return (streamId & 1) == (this.client ? 1 : 0);
+    }
+
+    // ------------------------------------------------------------ frame output
+
+    private void writeSettings() {
+        final ByteBuffer payload = ByteBuffer.allocate(36);
+        putSetting(payload, H2Setting.HEADER_TABLE_SIZE, this.localConfig.getHeaderTableSize());
+        if (this.client) {
+            putSetting(payload, H2Setting.ENABLE_PUSH, 0);
+        }
+        putSetting(payload, H2Setting.MAX_CONCURRENT_STREAMS, this.localConfig.getMaxConcurrentStreams());
+        putSetting(payload, H2Setting.INITIAL_WINDOW_SIZE, this.localConfig.getInitialWindowSize());
+        putSetting(payload, H2Setting.MAX_FRAME_SIZE, this.localConfig.getMaxFrameSize());
+        if (this.localConfig.getMaxHeaderListSize() > 0) {
+            putSetting(payload, H2Setting.MAX_HEADER_LIST_SIZE, this.localConfig.getMaxHeaderListSize());
+        }
+        payload.flip();
+        this.outbuf.writeFrame(FrameType.SETTINGS, 0, 0, payload, payload.remaining());
+    }
+
+    private static void putSetting(final ByteBuffer payload, final int id, final int value) {
+        payload.putShort((short) id);
+        payload.putInt(value);
+    }
+
+    private void writeWindowUpdate(final int streamId, final int increment) {
+        final byte[] b = new byte[4];
+        putInt(b, increment);
+        this.outbuf.writeFrame(FrameType.WINDOW_UPDATE, 0, streamId, b, 0, b.length);
+    }
+
+    private void writeRstStream(final int streamId, final H2Error error) {
+        final byte[] b = new byte[4];
+        putInt(b, error.getCode());
+        this.outbuf.writeFrame(FrameType.RST_STREAM, 0, streamId, b, 0, b.length);
+    }
+
+    private void writeGoAway(final H2Error error) {
+        final byte[] b = new byte[8];
+        putInt(b, this.lastRemoteStreamId);
+        final byte[] code = new byte[4];
+        putInt(code, error.getCode());
+        System.arraycopy(code, 0, b, 4, 4);
+        this.outbuf.writeFrame(FrameType.GOAWAY, 0, 0, b, 0, b.length);
+    }
+
+    private static void putInt(final byte[] b, final int i) {
+        b[0] = (byte) (i >> 24);
+        b[1] = (byte) (i >> 16);
+        b[2] = (byte) (i >> 8);
+        b[3] = (byte) i;
+    }
+
+    void writeHeaders(final H2Stream stream, final List<Header> headers, final boolean endStream) {
+        this.headerEncodeBuffer.clear();
+        this.hpackEncoder.encodeHeaders(this.headerEncodeBuffer, headers, this.localConfig.isHuffmanEnabled());
+        final byte[] b = this.headerEncodeBuffer.buffer();
+        final int len = this.headerEncodeBuffer.length();
+        int off = 0;
+        boolean first = true;
+        do {
+            final int chunk = Math.min(len - off, this.remoteMaxFrameSize);
+            final boolean last = off + chunk == len;
+            int flags = last ? FrameFlag.END_HEADERS : 0;
+            if (first && endStream) {
+                flags |= FrameFlag.END_STREAM;
+            }
+            this.outbuf.writeFrame(first ? FrameType.HEADERS : FrameType.CONTINUATION,
+                    flags, stream.getId(), b, off, chunk);
+            off += chunk;
+            first = false;
+        } while (off < len);
+    }
+
+    /**
+     * Writes as much content as permitted by the flow-control windows and
+     * the state of the output buffer.
+     */
+    int writeData(final H2Stream stream, final ByteBuffer src) {
+        int total = 0;
+        while (src.hasRemaining() && this.outbuf.length() < OUTPUT_THRESHOLD) {
+            final int chunk = Math.min(Math.min(src.remaining(), this.remoteMaxFrameSize),
+                    Math.min(stream.getOutputWindow(), this.connOutputWindow));
+            if (chunk <= 0) {
+                break;
+            }
+            this.outbuf.writeFrame(FrameType.DATA, 0, stream.getId(), src, chunk);
+            stream.consumeOutputWindow(chunk);
+            this.connOutputWindow -= chunk;
+            total += chunk;
+        }
+        return total;
+    }
+
+    void writeEndStream(final H2Stream stream) {
+        this.outbuf.writeFrame(FrameType.DATA, FrameFlag.END_STREAM, stream.getId());
+    }
+
+    // ------------------------------------------------------------ I/O events
+
+    public void onConnect() throws IOException {
+        if (this.client) {
+            this.outbuf.writeRaw(PREFACE);
+        }
+        writeSettings();
+        final int initialWindowSize = this.localConfig.getInitialWindowSize();
+        if (initialWindowSize > H2Config.INITIAL_WINDOW_SIZE) {
+            writeWindowUpdate(0, initialWindowSize - H2Config.INITIAL_WINDOW_SIZE);
+            this.connInputWindow = initialWindowSize;
+        }
+        this.session.setEvent(EventMask.READ_WRITE);
+    }
+
+    public void onInput() throws IOException {
+        for (;;) {
+            final int bytesRead = this.inbuf.fill(this.session.channel());
+            if (bytesRead > 0) {
+                this.inTransportMetrics.incrementBytesTransferred(bytesRead);
+            }
+            if (!this.client && !this.prefaceReceived) {
+                if (!this.inbuf.consumePreface(PREFACE)) {
+                    if (bytesRead == -1) {
+                        this.session.close();
+                        return;
+                    }
+                    if (bytesRead == 0) {
+                        break;
+                    }
+                    continue;
+                }
+                this.prefaceReceived = true;
+            }
+            H2Frame frame;
+            while ((frame = this.inbuf.parse()) != null) {
+                consumeFrame(frame);
+            }
+            if (bytesRead == -1) {
+                if (this.connState != ConnectionState.SHUTDOWN) {
+                    this.connState = ConnectionState.SHUTDOWN;
+                    failStreams(new ConnectionClosedException("Connection closed by peer"));
+                }
+                this.session.close();
+                return;
+            }
+            if (bytesRead == 0) {
+                break;
+            }
+        }
+        if (hasPendingWork()) {
+            requestSessionOutput();
+        }
+    }
+
+    public void onOutput() throws IOException {
+        if (this.connState != ConnectionState.SHUTDOWN) {
+            if (this.closeRequested && this.connState == ConnectionState.ACTIVE) {
+                this.connState = ConnectionState.GRACEFUL_SHUTDOWN;
+                writeGoAway(H2Error.NO_ERROR);
+                failPendingCommands(new ConnectionClosedException("Connection is closing"));
+            }
+            processPendingCommands();
+            processStreams();
+            if (this.connState == ConnectionState.GRACEFUL_SHUTDOWN && this.streams.isEmpty()) {
+                this.connState = ConnectionState.SHUTDOWN;
+            }
+        }
+        if (this.outbuf.hasData()) {
+            final int bytesWritten = this.outbuf.flush(this.session.channel());
+            if (bytesWritten > 0) {
+                this.outTransportMetrics.incrementBytesTransferred(bytesWritten);
+            }
+        }
+        if (!this.outbuf.hasData()) {
+            if (this.connState == ConnectionState.SHUTDOWN) {
+                this.session.close();
+                return;
+            }
+            this.session.clearEvent(EventMask.WRITE);
+            if (hasPendingWork()) {
+                this.session.setEvent(EventMask.WRITE);
+            }
+        }
+    }
+
+    public void onTimeout() throws IOException {
+        if (this.streams.isEmpty() && !hasPendingCommands()) {
+            close();
+        } else {
+            final SocketTimeoutException ex = new SocketTimeoutException(
+                    "HTTP/2 connection timed out after " + this.session.getSocketTimeout() + " ms");
+            this.connState = ConnectionState.SHUTDOWN;
+            failStreams(ex);
+            failPendingCommands(ex);
+            this.session.shutdown();
+        }
+    }
+
+    public void onException(final Exception ex) {
+        if (ex instanceof H2ConnectionException && this.connState != ConnectionState.SHUTDOWN) {
+            this.connState = ConnectionState.SHUTDOWN;
+            writeGoAway(((H2ConnectionException) ex).getError());
+            failStreams(ex);
+            failPendingCommands(ex);
+            requestSessionOutput();
+        } else {
+            this.connState = ConnectionState.SHUTDOWN;
+            failStreams(ex);
+            failPendingCommands(ex);
+            this.session.shutdown();
+        }
+    }
+
+    public void onDisconnect() {
+        this.connState = ConnectionState.SHUTDOWN;
+        final ConnectionClosedException ex = new ConnectionClosedException("Connection closed");
+        failStreams(ex);
+        failPendingCommands(ex);
+    }
+
+    private boolean isOutputEligible(final H2Stream stream) {
+        if (stream.isLocalEndStream()) {
+            return false;
+        }
+        if (!stream.isHeadersSent()) {
+            return stream.getHandler().isOutputReady();
+        }
+        return stream.isOutputRequested() && stream.getOutputWindow() > 0 && this.connOutputWindow > 0;
+    }
+
+    private boolean isInputPending(final H2Stream stream) {
+        return !stream.isInputTerminated() && !stream.isInputSuspended()
+                && (stream.hasBufferedInput() || stream.isRemoteEndStream());
+    }
+
+    private boolean hasPendingWork() {
+        if (this.outbuf.hasData() || this.closeRequested && this.connState == ConnectionState.ACTIVE) {
+            return true;
+        }
+        if (this.connState == ConnectionState.SHUTDOWN
+                || this.connState == ConnectionState.GRACEFUL_SHUTDOWN && this.streams.isEmpty()) {
+            return !this.session.isClosed();
+        }
+        if (hasPendingCommands() && canOpenLocalStream()) {
+            return true;
+        }
+        for (final H2Stream stream: this.streams.values()) {
+            if (stream.isCancelled() || isInputPending(stream) || isOutputEligible(stream)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void processStreams() throws H2ConnectionException {
+        if (this.streams.isEmpty()) {
+            return;
+        }
+        final List<H2Stream> snapshot = new ArrayList<H2Stream>(this.streams.values());
+        for (final H2Stream stream: snapshot) {
+            if (this.connState == ConnectionState.SHUTDOWN) {
+                return;
+            }
+            if (stream.isCancelled()) {
+                resetStream(stream, H2Error.CANCEL,
+                        new H2StreamResetException(H2Error.CANCEL, "Stream cancelled"));
+                continue;
+            }
+            if (isInputPending(stream)) {
+                deliverInput(stream);
+            }
+            if (this.streams.containsKey(Integer.valueOf(stream.getId()))
+                    && this.outbuf.length() < OUTPUT_THRESHOLD && isOutputEligible(stream)) {
+                produceOutput(stream);
+            }
+        }
+    }
+
+    private void produceOutput(final H2Stream stream) throws H2ConnectionException {
+        try {
+            stream.getHandler().produceOutput();
+        } catch (final H2ConnectionException ex) {
+            throw ex;
+        } catch (final H2StreamResetException ex) {
+            resetStream(stream, ex.getError(), ex);
+            return;
+        } catch (final HttpException ex) {
+            resetStream(stream, H2Error.PROTOCOL_ERROR, ex);
+            return;
+        } catch (final IOException ex) {
+            resetStream(stream, H2Error.INTERNAL_ERROR, ex);
+            return;
+        } catch (final RuntimeException ex) {
+            resetStream(stream, H2Error.INTERNAL_ERROR, ex);
+            return;
+        }
+        if (stream.isClosed()) {
+            closeStream(stream);
+        }
+    }
+
+    private void deliverInput(final H2Stream stream) throws H2ConnectionException {
+        try {
+            stream.getHandler().consumeData();
+        } catch (final H2ConnectionException ex) {
+            throw ex;
+        } catch (final H2StreamResetException ex) {
+            resetStream(stream, ex.getError(), ex);
+            return;
+        } catch (final HttpException ex) {
+            resetStream(stream, H2Error.PROTOCOL_ERROR, ex);
+            return;
+        } catch (final IOException ex) {
+            resetStream(stream, H2Error.INTERNAL_ERROR, ex);
+            return;
+        } catch (final RuntimeException ex) {
+            resetStream(stream, H2Error.INTERNAL_ERROR, ex);
+            return;
+        }
+        if (stream.isInputCompleted()) {
+            stream.setInputTerminated();
+            if (stream.isClosed()) {
+                closeStream(stream);
+            }
+        } else if (!stream.isRemoteEndStream()
+                && stream.getInputCredit() >= this.localConfig.getInitialWindowSize() / 2) {
+            writeWindowUpdate(stream.getId(), stream.takeInputCredit());
+        }
+    }
+
+    private void closeStream(final H2Stream stream) {
+        if (this.streams.remove(Integer.valueOf(stream.getId())) == null) {
+            return;
+        }
+        if (isLocalStreamId(stream.getId())) {
+            this.localStreamCount--;
+        } else {
+            this.remoteStreamCount--;
+        }
+        stream.getHandler().releaseResources();
+    }
+
+    private void resetStream(final H2Stream stream, final H2Error error, final Exception cause) {
+        if (!this.streams.containsKey(Integer.valueOf(stream.getId()))) {
+            return;
+        }
+        // locally initiated streams remain idle until their headers are sent
+        if (stream.isHeadersSent() || !isLocalStreamId(stream.getId())) {
+            writeRstStream(stream.getId(), error);
+        }
+        closeStream(stream);
+        stream.getHandler().failed(cause);
+    }
+
+    private void failStreams(final Exception cause) {
+        if (this.streams.isEmpty()) {
+            return;
+        }
+        final List<H2Stream> snapshot = new ArrayList<H2Stream>(this.streams.values());
+        this.streams.clear();
+        this.localStreamCount = 0;
+        this.remoteStreamCount = 0;
+        for (final H2Stream stream: snapshot) {
+            final H2StreamHandler handler = stream.getHandler();
+            handler.failed(cause);
+            handler.releaseResources();
+        }
+    }
+
+    // ------------------------------------------------------------ frame input
+
+    private void consumeFrame(final H2Frame frame) throws IOException {
+        final int type = frame.getType();
+        if (this.continuationStreamId > 0 && (type != FrameType.CONTINUATION
+                || frame.getStreamId() != this.continuationStreamId)) {
+            throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "CONTINUATION frame expected");
+        }
+        if (!this.settingsReceived && type != FrameType.SETTINGS) {
+            throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "SETTINGS frame expected");
+        }
+        if (this.connState == ConnectionState.SHUTDOWN) {
+            return;
+        }
+        switch (type) {
+            case FrameType.DATA:
+                consumeDataFrame(frame);
+                break;
+            case FrameType.HEADERS:
+                consumeHeadersFrame(frame);
+                break;
+            case FrameType.CONTINUATION:
+                consumeContinuationFrame(frame);
+                break;
+            case FrameType.PRIORITY:
+                if (frame.getStreamId() == 0) {
+                    throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Illegal stream id");
+                }
+                break;
+            case FrameType.RST_STREAM:
+                consumeRstStreamFrame(frame);
+                break;
+            case FrameType.SETTINGS:
+                consumeSettingsFrame(frame);
+                break;
+            case FrameType.PUSH_PROMISE:
+                throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Push is not supported");
+            case FrameType.PING:
+                consumePingFrame(frame);
+                break;
+            case FrameType.GOAWAY:
+                consumeGoAwayFrame(frame);
+                break;
+            case FrameType.WINDOW_UPDATE:
+                consumeWindowUpdateFrame(frame);
+                break;
+            default:
+                // unknown frame types must be ignored
+        }
+    }
+
+    private H2Stream getStream(final int streamId) throws H2ConnectionException {
+        if (streamId == 0) {
+            throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Illegal stream id");
+        }
+        final H2Stream stream = this.streams.get(Integer.valueOf(streamId));
+        if (stream == null) {
+            final boolean idle = isLocalStreamId(streamId)
+                    ? streamId > this.lastLocalStreamId
+                    : streamId > this.lastRemoteStreamId;
+            if (idle) {
+                throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Unexpected stream id: " + streamId);
+            }
+        }
+        return stream;
+    }
+
+    private static ByteBuffer stripPadding(final H2Frame frame, final ByteBuffer payload) throws H2ConnectionException {
+        if (payload != null && frame.isFlagSet(FrameFlag.PADDED)) {
+            final int padLength = payload.get() & 0xff;
+            if (padLength > payload.remaining()) {
+                throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Invalid padding");
+            }
+            payload.limit(payload.limit() - padLength);
+        } else if (payload == null && frame.isFlagSet(FrameFlag.PADDED)) {
+            throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Invalid padding");
+        }
+        return payload;
+    }
+
+    private void consumeDataFrame(final H2Frame frame) throws H2ConnectionException {
+        final int streamId = frame.getStreamId();
+        final int frameLength = frame.getLength();
+        this.connInputWindow -= frameLength;
+        if (this.connInputWindow < 0) {
+            throw new H2ConnectionException(H2Error.FLOW_CONTROL_ERROR, "Connection window exceeded");
+        }
+        // connection window is replenished upon receipt; stream windows
+        // bound the amount of data buffered on behalf of individual streams
+        this.connInputCredit += frameLength;
+        if (this.connInputCredit >= this.localConfig.getInitialWindowSize() / 2) {
+            writeWindowUpdate(0, this.connInputCredit);
+            this.connInputWindow += this.connInputCredit;
+            this.connInputCredit = 0;
+        }
+        final H2Stream stream = getStream(streamId);
+        if (stream == null) {
+            return;
+        }
+        if (stream.isRemoteEndStream()) {
+            resetStream(stream, H2Error.STREAM_CLOSED,
+                    new H2StreamResetException(H2Error.STREAM_CLOSED, "Stream already half-closed"));
+            return;
+        }
+        final ByteBuffer payload = stripPadding(frame, frame.getPayload());
+        if (!stream.appendInput(payload, frameLength) && this.localSettingsAcked) {
+            resetStream(stream, H2Error.FLOW_CONTROL_ERROR,
+                    new H2StreamResetException(H2Error.FLOW_CONTROL_ERROR, "Stream window exceeded"));
+            return;
+        }
+        if (frame.isFlagSet(FrameFlag.END_STREAM)) {
+            stream.setRemoteEndStream();
+        }
+        if (isInputPending(stream)) {
+            deliverInput(stream);
+        }
+    }
+
+    private void consumeHeadersFrame(final H2Frame frame) throws IOException {
+        final int streamId = frame.getStreamId();
+        if (streamId == 0) {
+            throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Illegal stream id");
+        }
+        final ByteBuffer payload = stripPadding(frame, frame.getPayload());
+        if (payload != null && frame.isFlagSet(FrameFlag.PRIORITY)) {
+            if (payload.remaining() < 5) {
+                throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Invalid HEADERS frame");
+            }
+            payload.position(payload.position() + 5);
+        }
+        this.headerBlock.clear();
+        appendHeaderBlock(payload);
+        if (frame.isFlagSet(FrameFlag.END_HEADERS)) {
+            consumeHeaderBlock(streamId, frame.getFlags());
+        } else {
+            this.continuationStreamId = streamId;
+            this.continuationFlags = frame.getFlags();
+        }
+    }
+
+    private void consumeContinuationFrame(final H2Frame frame) throws IOException {
+        if (this.continuationStreamId == 0) {
+            throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Unexpected CONTINUATION frame");
+        }
+        appendHeaderBlock(frame.getPayload());
+        if (frame.isFlagSet(FrameFlag.END_HEADERS)) {
+            final int streamId = this.continuationStreamId;
+            this.continuationStreamId = 0;
+            consumeHeaderBlock(streamId, this.continuationFlags);
+        }
+    }
+
+    private void appendHeaderBlock(final ByteBuffer payload) throws H2ConnectionException {
+        if (payload == null) {
+            return;
+        }
+        final int len = payload.remaining();
+        final int maxHeaderListSize = this.localConfig.getMaxHeaderListSize();
+        if (maxHeaderListSize > 0 && this.headerBlock.length() + len > maxHeaderListSize) {
+            throw new H2ConnectionException(H2Error.ENHANCE_YOUR_CALM, "Header block too large");
+        }
+        this.headerBlock.ensureCapacity(len);
+        payload.get(this.headerBlock.buffer(), this.headerBlock.length(), len);
+        this.headerBlock.setLength(this.headerBlock.length() + len);
+    }
+
+    private void consumeHeaderBlock(final int streamId, final int flags) throws IOException {
+        // the header block must be decoded in any case to keep the compression
+        // context in sync with the opposite endpoint
+        final List<Header> headers = this.hpackDecoder.decodeHeaders(
+                ByteBuffer.wrap(this.headerBlock.buffer(), 0, this.headerBlock.length()));
+        final boolean endStream = (flags & FrameFlag.END_STREAM) != 0;
+        H2Stream stream = this.streams.get(Integer.valueOf(streamId));
+        if (stream == null) {
+            if (isLocalStreamId(streamId) || streamId <= this.lastRemoteStreamId) {
+                getStream(streamId);
+                return;
+            }
+            this.lastRemoteStreamId = streamId;
+            if (this.connState != ConnectionState.ACTIVE) {
+                return;
+            }
+            if (this.remoteStreamCount >= this.localConfig.getMaxConcurrentStreams()) {
+                writeRstStream(streamId, H2Error.REFUSED_STREAM);
+                return;
+            }
+            stream = new H2Stream(this, streamId,
+                    this.localConfig.getInitialWindowSize(), this.remoteInitialWindowSize);
+            stream.setHandler(createRemoteStreamHandler(stream));
+            this.streams.put(Integer.valueOf(streamId), stream);
+            this.remoteStreamCount++;
+        } else if (stream.isRemoteEndStream()) {
+            resetStream(stream, H2Error.STREAM_CLOSED,
+                    new H2StreamResetException(H2Error.STREAM_CLOSED, "Stream already half-closed"));
+            return;
+        }
+        if (endStream) {
+            stream.setRemoteEndStream();
+        }
+        try {
+            stream.getHandler().consumeHeaders(headers, endStream);
+        } catch (final H2ConnectionException ex) {
+            throw ex;
+        } catch (final H2StreamResetException ex) {
+            resetStream(stream, ex.getError(), ex);
+            return;
+        } catch (final HttpException ex) {
+            resetStream(stream, H2Error.PROTOCOL_ERROR, ex);
+            return;
+        } catch (final IOException ex) {
+            resetStream(stream, H2Error.INTERNAL_ERROR, ex);
+            return;
+        } catch (final RuntimeException ex) {
+            resetStream(stream, H2Error.INTERNAL_ERROR, ex);
+            return;
+        }
+        if (isInputPending(stream)) {
+            deliverInput(stream);
+        } else if (stream.isClosed()) {
+            closeStream(stream);
+        }
+    }
+
+    private void consumeRstStreamFrame(final H2Frame frame) throws H2ConnectionException {
+        if (frame.getLength() != 4) {
+            throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Invalid RST_STREAM frame");
+        }
+        final H2Stream stream = getStream(frame.getStreamId());
+        if (stream == null) {
+            return;
+        }
+        final int code = frame.getPayload().getInt();
+        final H2Error error = H2Error.getByCode(code);
+        closeStream(stream);
+        stream.getHandler().failed(new H2StreamResetException(error,
+                "Stream reset by peer (" + (error != null ? error : Integer.toString(code)) + ")"));
+    }
+
+    private void consumeSettingsFrame(final H2Frame frame) throws H2ConnectionException {
+        if (frame.getStreamId() != 0) {
+            throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Illegal stream id");
+        }
+        if (frame.isFlagSet(FrameFlag.ACK)) {
+            if (frame.getLength() != 0) {
+                throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Invalid SETTINGS ACK frame");
+            }
+            this.localSettingsAcked = true;
+            return;
+        }
+        if (frame.getLength() % 6 != 0) {
+            throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Invalid SETTINGS frame");
+        }
+        final ByteBuffer payload = frame.getPayload();
+        while (payload != null && payload.hasRemaining()) {
+            final int id = payload.getShort() & 0xffff;
+            final int value = payload.getInt();
+            applySetting(id, value);
+        }
+        this.settingsReceived = true;
+        this.outbuf.writeFrame(FrameType.SETTINGS, FrameFlag.ACK, 0);
+    }
+
+    private void applySetting(final int id, final int value) throws H2ConnectionException {
+        switch (id) {
+            case H2Setting.HEADER_TABLE_SIZE:
+                this.hpackEncoder.setMaxTableSize(value >= 0
+                        ? Math.min(value, this.localConfig.getHeaderTableSize())
+                        : this.localConfig.getHeaderTableSize());
+                break;
+            case H2Setting.ENABLE_PUSH:
+                if (value != 0 && value != 1) {
+                    throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Invalid ENABLE_PUSH value");
+                }
+                break;
+            case H2Setting.MAX_CONCURRENT_STREAMS:
+                this.remoteMaxConcurrentStreams = value >= 0 ? value : Integer.MAX_VALUE;
+                break;
+            case H2Setting.INITIAL_WINDOW_SIZE:
+                if (value < 0) {
+                    throw new H2ConnectionException(H2Error.FLOW_CONTROL_ERROR, "Invalid INITIAL_WINDOW_SIZE value");
+                }
+                final int delta = value - this.remoteInitialWindowSize;
+                this.remoteInitialWindowSize = value;
+                for (final H2Stream stream: this.streams.values()) {
+                    try {
+                        stream.updateOutputWindow(delta);
+                    } catch (final H2StreamResetException ex) {
+                        throw new H2ConnectionException(H2Error.FLOW_CONTROL_ERROR, ex.getMessage());
+                    }
+                }
+                break;
+            case H2Setting.MAX_FRAME_SIZE:
+                if (value < H2Config.MIN_FRAME_SIZE || value > H2Config.MAX_FRAME_SIZE) {
+                    throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Invalid MAX_FRAME_SIZE value");
+                }
+                this.remoteMaxFrameSize = value;
+                break;
+            default:
+                // MAX_HEADER_LIST_SIZE is advisory; unknown settings must be ignored
+        }
+    }
+
+    private void consumePingFrame(final H2Frame frame) throws H2ConnectionException {
+        if (frame.getStreamId() != 0) {
+            throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Illegal stream id");
+        }
+        if (frame.getLength() != 8) {
+            throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Invalid PING frame");
+        }
+        if (!frame.isFlagSet(FrameFlag.ACK)) {
+            final ByteBuffer payload = frame.getPayload();
+            this.outbuf.writeFrame(FrameType.PING, FrameFlag.ACK, 0, payload, payload.remaining());
+        }
+    }
+
+    private void consumeGoAwayFrame(final H2Frame frame) throws H2ConnectionException {
+        if (frame.getStreamId() != 0) {
+            throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Illegal stream id");
+        }
+        if (frame.getLength() < 8) {
+            throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Invalid GOAWAY frame");
+        }
+        final ByteBuffer payload = frame.getPayload();
+        final int lastStreamId = payload.getInt() & 0x7fffffff;
+        final int code = payload.getInt();
+        if (this.connState == ConnectionState.ACTIVE) {
+            this.connState = ConnectionState.GRACEFUL_SHUTDOWN;
+        }
+        // locally initiated streams above the last stream id have not been
+        // processed by the opposite endpoint and can be safely retried
+        final List<H2Stream> snapshot = new ArrayList<H2Stream>(this.streams.values());
+        for (final H2Stream stream: snapshot) {
+            if (isLocalStreamId(stream.getId()) && stream.getId() > lastStreamId) {
+                closeStream(stream);
+                stream.getHandler().failed(new H2StreamResetException(H2Error.REFUSED_STREAM,
+                        "Stream refused by peer (GOAWAY " + H2Error.getByCode(code) + ")"));
+            }
+        }
+        failPendingCommands(new H2StreamResetException(H2Error.REFUSED_STREAM, "Connection is closing"));
+        if (this.streams.isEmpty()) {
+            this.connState = ConnectionState.SHUTDOWN;
+        }
+    }
+
+    private void consumeWindowUpdateFrame(final H2Frame frame) throws H2ConnectionException {
+        if (frame.getLength() != 4) {
+            throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Invalid WINDOW_UPDATE frame");
+        }
+        final int increment = frame.getPayload().getInt() & 0x7fffffff;
+        final int streamId = frame.getStreamId();
+        if (streamId == 0) {
+            if (increment == 0) {
+                throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Invalid window increment");
+            }
+            final long newWindow = (long) this.connOutputWindow + increment;
+            if (newWindow > H2Config.MAX_WINDOW_SIZE) {
+                throw new H2ConnectionException(H2Error.FLOW_CONTROL_ERROR, "Connection window overflow");
+            }
+            this.connOutputWindow = (int) newWindow;
+            return;
+        }
+        final H2Stream stream = getStream(streamId);
+        if (stream == null) {
+            return;
+        }
+        try {
+            if (increment == 0) {
+                throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, "Invalid window increment");
+            }
+            stream.updateOutputWindow(increment);
+        } catch (final H2StreamResetException ex) {
+            resetStream(stream, ex.getError(), ex);
+        }
+    }
+
+    static void closeQuietly(final Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (final IOException ignore) {
+        }
+    }
+
+    // ------------------------------------------------------------ HttpConnection
+
+    /**
+     * Gracefully closes the connection. The opposite endpoint is notified with
+     * a {@code GOAWAY} frame; streams already in progress are allowed to
+     * complete before the underlying session is closed.
+     */
+    @Override
+    public void close() {
+        this.closeRequested = true;
+        requestSessionOutput();
+    }
+
+    @Override
+    public void shutdown() {
+        this.connState = ConnectionState.SHUTDOWN;
+        this.session.shutdown();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.connState == ConnectionState.ACTIVE && !this.closeRequested && !this.session.isClosed();
+    }
+
+    @Override
+    public boolean isStale() {
+        return !isOpen();
+    }
+
+    @Override
+    public void setSocketTimeout(final int timeout) {
+        this.session.setSocketTimeout(timeout);
+    }
+
+    @Override
+    public int getSocketTimeout() {
+        return this.session.getSocketTimeout();
+    }
+
+    @Override
+    public HttpConnectionMetrics getMetrics() {
+        return this.connMetrics;
+    }
+
+    void incrementResponseCount() {
+        this.connMetrics.incrementResponseCount();
+    }
+
+    void incrementRequestCount() {
+        this.connMetrics.incrementRequestCount();
+    }
+
+    @Override
+    public InetAddress getLocalAddress() {
+        final SocketAddress address = this.session.getLocalAddress();
+        return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getAddress() : null;
+    }
+
+    @Override
+    public int getLocalPort() {
+        final SocketAddress address = this.session.getLocalAddress();
+        return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getPort() : -1;
+    }
+
+    @Override
+    public InetAddress getRemoteAddress() {
+        final SocketAddress address = this.session.getRemoteAddress();
+        return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getAddress() : null;
+    }
+
+    @Override
+    public int getRemotePort() {
+        final SocketAddress address = this.session.getRemoteAddress();
+        return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getPort() : -1;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[").append(this.client ? "client" : "server")
+                .append(", state=").append(this.connState)
+                .append(", streams=").append(this.streams.size())
+                .append(", session=").append(this.session)
+                .append("]");
+        return buffer.toString();
+    }
+
+}
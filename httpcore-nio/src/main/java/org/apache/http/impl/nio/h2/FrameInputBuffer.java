@@ -0,0 +1,131 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Buffer for reading HTTP/2 frames from a non-blocking channel. Frames are
+ * parsed only once fully received; payloads are copied out of the shared
+ * read buffer.
+ */
+final class FrameInputBuffer {
+
+    private final ByteBuffer buffer;
+    private final int maxFrameSize;
+
+    FrameInputBuffer(final int maxFrameSize) {
+        super();
+        this.maxFrameSize = maxFrameSize;
+        this.buffer = ByteBuffer.allocate(Math.max(H2Frame.HEADER_SIZE + maxFrameSize, 8192));
+        this.buffer.flip();
+    }
+
+    /**
+     * Reads available data from the channel.
+     *
+     * @return number of bytes read, possibly zero, or {@code -1} if
+     *   the end of stream has been reached.
+     */
+    int fill(final ReadableByteChannel channel) throws IOException {
+        this.buffer.compact();
+        try {
+            return this.buffer.hasRemaining() ? channel.read(this.buffer) : 0;
+        } finally {
+            this.buffer.flip();
+        }
+    }
+
+    boolean hasData() {
+        return this.buffer.hasRemaining();
+    }
+
+    /**
+     * Consumes the expected connection preface.
+     *
+     * @return {@code true} if the preface has been consumed, {@code false}
+     *   if more data is required.
+     * @throws H2ConnectionException if the received data does not match
+     *   the preface.
+     */
+    boolean consumePreface(final byte[] preface) throws H2ConnectionException {
+        final int pos = this.buffer.position();
+        final int len = Math.min(this.buffer.remaining(), preface.length);
+        for (int i = 0; i < len; i++) {
+            if (this.buffer.get(pos + i) != preface[i]) {
+                throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Invalid connection preface");
+            }
+        }
+        if (len < preface.length) {
+            return false;
+        }
+        this.buffer.position(pos + preface.length);
+        return true;
+    }
+
+    /**
+     * Parses the next frame.
+     *
+     * @return the frame or {@code null} if the frame has not been fully
+     *   received yet.
+     * @throws H2ConnectionException if the frame exceeds the maximum
+     *   frame size.
+     */
+    H2Frame parse() throws H2ConnectionException {
+        if (this.buffer.remaining() < H2Frame.HEADER_SIZE) {
+            return null;
+        }
+        final int pos = this.buffer.position();
+        final int length = ((this.buffer.get(pos) & 0xff) << 16)
+                | ((this.buffer.get(pos + 1) & 0xff) << 8)
+                | (this.buffer.get(pos + 2) & 0xff);
+        if (length > this.maxFrameSize) {
+            throw new H2ConnectionException(H2Error.FRAME_SIZE_ERROR, "Frame size exceeds maximum: " + length);
+        }
+        if (this.buffer.remaining() < H2Frame.HEADER_SIZE + length) {
+            return null;
+        }
+        final int type = this.buffer.get(pos + 3) & 0xff;
+        final int flags = this.buffer.get(pos + 4) & 0xff;
+        final int streamId = this.buffer.getInt(pos + 5) & 0x7fffffff;
+        final ByteBuffer payload;
+        if (length > 0) {
+            final byte[] b = new byte[length];
+            this.buffer.position(pos + H2Frame.HEADER_SIZE);
+            this.buffer.get(b);
+            payload = ByteBuffer.wrap(b);
+        } else {
+            this.buffer.position(pos + H2Frame.HEADER_SIZE);
+            payload = null;
+        }
+        return new H2Frame(type, flags, streamId, payload);
+    }
+
+}
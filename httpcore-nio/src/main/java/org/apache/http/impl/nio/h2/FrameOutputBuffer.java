@@ -0,0 +1,126 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Buffer for writing HTTP/2 frames to a non-blocking channel. The buffer
+ * expands as required; it is up to the caller to stop generating frames
+ * once {@link #length()} exceeds a reasonable threshold.
+ */
+final class FrameOutputBuffer {
+
+    private ByteBuffer buffer;
+
+    FrameOutputBuffer(final int initialSize) {
+        super();
+        this.buffer = ByteBuffer.allocate(initialSize);
+    }
+
+    private void ensureCapacity(final int len) {
+        if (this.buffer.remaining() < len) {
+            final int newCapacity = Math.max(this.buffer.capacity() << 1, this.buffer.position() + len);
+            final ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity);
+            this.buffer.flip();
+            newBuffer.put(this.buffer);
+            this.buffer = newBuffer;
+        }
+    }
+
+    private void writeHeader(final int length, final int type, final int flags, final int streamId) {
+        this.buffer.put((byte) (length >> 16));
+        this.buffer.put((byte) (length >> 8));
+        this.buffer.put((byte) length);
+        this.buffer.put((byte) type);
+        this.buffer.put((byte) flags);
+        this.buffer.putInt(streamId & 0x7fffffff);
+    }
+
+    void writeFrame(
+            final int type, final int flags, final int streamId,
+            final byte[] b, final int off, final int len) {
+        ensureCapacity(H2Frame.HEADER_SIZE + len);
+        writeHeader(len, type, flags, streamId);
+        if (len > 0) {
+            this.buffer.put(b, off, len);
+        }
+    }
+
+    /**
+     * Writes a frame transferring {@code len} bytes of the source buffer
+     * as its payload.
+     */
+    void writeFrame(
+            final int type, final int flags, final int streamId,
+            final ByteBuffer src, final int len) {
+        ensureCapacity(H2Frame.HEADER_SIZE + len);
+        writeHeader(len, type, flags, streamId);
+        if (len > 0) {
+            final int limit = src.limit();
+            src.limit(src.position() + len);
+            this.buffer.put(src);
+            src.limit(limit);
+        }
+    }
+
+    void writeFrame(final int type, final int flags, final int streamId) {
+        writeFrame(type, flags, streamId, (byte[]) null, 0, 0);
+    }
+
+    void writeFrame(final H2Frame frame) {
+        final ByteBuffer payload = frame.getPayload();
+        writeFrame(frame.getType(), frame.getFlags(), frame.getStreamId(),
+                payload, payload != null ? payload.remaining() : 0);
+    }
+
+    void writeRaw(final byte[] b) {
+        ensureCapacity(b.length);
+        this.buffer.put(b);
+    }
+
+    int length() {
+        return this.buffer.position();
+    }
+
+    boolean hasData() {
+        return this.buffer.position() > 0;
+    }
+
+    int flush(final WritableByteChannel channel) throws IOException {
+        this.buffer.flip();
+        try {
+            return channel.write(this.buffer);
+        } finally {
+            this.buffer.compact();
+        }
+    }
+
+}
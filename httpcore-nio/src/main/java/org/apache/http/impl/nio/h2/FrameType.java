@@ -0,0 +1,67 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+/**
+ * HTTP/2 frame types as defined by RFC 7540, section 6.
+ *
+ * @since 4.4.17
+ */
+public final class FrameType {
+
+    public static final int DATA = 0x0;
+    public static final int HEADERS = 0x1;
+    public static final int PRIORITY = 0x2;
+    public static final int RST_STREAM = 0x3;
+    public static final int SETTINGS = 0x4;
+    public static final int PUSH_PROMISE = 0x5;
+    public static final int PING = 0x6;
+    public static final int GOAWAY = 0x7;
+    public static final int WINDOW_UPDATE = 0x8;
+    public static final int CONTINUATION = 0x9;
+
+    private FrameType() {
+    }
+
+    public static String toString(final int type) {
+        switch (type) {
+            case DATA: return "DATA";
+            case HEADERS: return "HEADERS";
+            case PRIORITY: return "PRIORITY";
+            case RST_STREAM: return "RST_STREAM";
+            case SETTINGS: return "SETTINGS";
+            case PUSH_PROMISE: return "PUSH_PROMISE";
+            case PING: return "PING";
+            case GOAWAY: return "GOAWAY";
+            case WINDOW_UPDATE: return "WINDOW_UPDATE";
+            case CONTINUATION: return "CONTINUATION";
+            default: return "UNKNOWN(" + type + ")";
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolException;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.protocol.HttpAsyncClientExchangeHandler;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.util.Args;
+
+/**
+ * Client side HTTP/2 connection. Message exchanges submitted with
+ * {@link #submit(HttpAsyncClientExchangeHandler)} or
+ * {@link #execute(HttpAsyncRequestProducer, HttpAsyncResponseConsumer, HttpContext, FutureCallback)}
+ * from any thread are executed concurrently on individual streams, subject to
+ * the {@code SETTINGS_MAX_CONCURRENT_STREAMS} limit of the server. Exchanges
+ * beyond the limit are queued until a stream becomes available.
+ * <p>
+ * Exchanges refused by the server, either with {@code RST_STREAM} of type
+ * {@code REFUSED_STREAM} or because they were not processed prior to
+ * {@code GOAWAY}, fail with {@link H2StreamResetException} whose
+ * {@link H2StreamResetException#isRetriable()} method returns {@code true}.
+ *
+ * @since 4.4.17
+ */
+public class H2ClientConnection extends AbstractH2Connection {
+
+    private final HttpProcessor httpProcessor;
+    private final Queue<HttpAsyncClientExchangeHandler> pendingExchanges;
+
+    public H2ClientConnection(
+            final IOSession session,
+            final H2Config config,
+            final HttpProcessor httpProcessor) {
+        super(session, config, true);
+        this.httpProcessor = Args.notNull(httpProcessor, "HTTP processor");
+        this.pendingExchanges = new ConcurrentLinkedQueue<HttpAsyncClientExchangeHandler>();
+    }
+
+    /**
+     * Submits a message exchange for execution. The exchange handler is
+     * expected to process messages with a protocol processor by itself.
+     */
+    public void submit(final HttpAsyncClientExchangeHandler exchangeHandler) {
+        Args.notNull(exchangeHandler, "Exchange handler");
+        if (!isOpen()) {
+            exchangeHandler.failed(new ConnectionClosedException("Connection closed"));
+            return;
+        }
+        this.pendingExchanges.add(exchangeHandler);
+        if (!isOpen() && this.pendingExchanges.remove(exchangeHandler)) {
+            exchangeHandler.failed(new ConnectionClosedException("Connection closed"));
+            return;
+        }
+        requestSessionOutput();
+    }
+
+    /**
+     * Executes a message exchange using the protocol processor of this
+     * connection.
+     */
+    public <T> Future<T> execute(
+            final HttpAsyncRequestProducer requestProducer,
+            final HttpAsyncResponseConsumer<T> responseConsumer,
+            final HttpContext context,
+            final FutureCallback<T> callback) {
+        Args.notNull(requestProducer, "HTTP request producer");
+        Args.notNull(responseConsumer, "HTTP response consumer");
+        final H2ClientExchangeHandler<T> handler = new H2ClientExchangeHandler<T>(
+                requestProducer, responseConsumer, callback,
+                context != null ? context : new BasicHttpContext(), this, this.httpProcessor);
+        submit(handler);
+        return handler.getFuture();
+    }
+
+    public <T> Future<T> execute(
+            final HttpAsyncRequestProducer requestProducer,
+            final HttpAsyncResponseConsumer<T> responseConsumer,
+            final FutureCallback<T> callback) {
+        return execute(requestProducer, responseConsumer, null, callback);
+    }
+
+    @Override
+    H2StreamHandler createRemoteStreamHandler(final H2Stream stream) throws H2ConnectionException {
+        throw new H2ConnectionException(H2Error.PROTOCOL_ERROR, "Illegal stream id: " + stream.getId());
+    }
+
+    @Override
+    void processPendingCommands() {
+        while (canOpenLocalStream()) {
+            final HttpAsyncClientExchangeHandler exchangeHandler = this.pendingExchanges.poll();
+            if (exchangeHandler == null) {
+                break;
+            }
+            if (exchangeHandler.isDone()) {
+                closeQuietly(exchangeHandler);
+                continue;
+            }
+            openLocalStream(new H2StreamHandlerFactory() {
+
+                @Override
+                public H2StreamHandler create(final H2Stream stream) {
+                    return new ClientStreamHandler(stream, exchangeHandler);
+                }
+
+            });
+        }
+    }
+
+    @Override
+    boolean hasPendingCommands() {
+        return !this.pendingExchanges.isEmpty();
+    }
+
+    @Override
+    void failPendingCommands(final Exception cause) {
+        HttpAsyncClientExchangeHandler exchangeHandler;
+        while ((exchangeHandler = this.pendingExchanges.poll()) != null) {
+            exchangeHandler.failed(cause);
+            closeQuietly(exchangeHandler);
+        }
+    }
+
+    class ClientStreamHandler implements H2StreamHandler {
+
+        private final H2Stream stream;
+        private final HttpAsyncClientExchangeHandler exchangeHandler;
+
+        private HttpRequest request;
+        private HttpResponse response;
+
+        ClientStreamHandler(final H2Stream stream, final HttpAsyncClientExchangeHandler exchangeHandler) {
+            super();
+            this.stream = stream;
+            this.exchangeHandler = exchangeHandler;
+        }
+
+        private void ensureNotCancelled() throws H2StreamResetException {
+            if (this.exchangeHandler.isDone()) {
+                throw new H2StreamResetException(H2Error.CANCEL, "Exchange cancelled");
+            }
+        }
+
+        @Override
+        public void consumeHeaders(
+                final List<Header> headers, final boolean endStream) throws HttpException, IOException {
+            ensureNotCancelled();
+            if (this.response != null) {
+                // trailers
+                if (!endStream) {
+                    throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, "Unexpected header block");
+                }
+                return;
+            }
+            final int status;
+            try {
+                status = H2Messages.parseStatus(headers);
+                if (status < 200) {
+                    if (status == 101 || endStream) {
+                        throw new ProtocolException("Unexpected response status: " + status);
+                    }
+                    return;
+                }
+                this.response = H2Messages.toResponse(headers, !endStream);
+            } catch (final ProtocolException ex) {
+                throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, ex.getMessage());
+            }
+            incrementResponseCount();
+            this.exchangeHandler.responseReceived(this.response);
+            if (endStream) {
+                this.stream.setInputTerminated();
+                this.exchangeHandler.responseCompleted();
+            }
+        }
+
+        @Override
+        public void consumeData() throws HttpException, IOException {
+            ensureNotCancelled();
+            if (this.response == null) {
+                throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, "Unexpected DATA frame");
+            }
+            final ContentDecoder decoder = this.stream.getContentDecoder();
+            this.exchangeHandler.consumeContent(decoder, this.stream.getIOControl());
+            if (decoder.isCompleted()) {
+                this.exchangeHandler.responseCompleted();
+            }
+        }
+
+        @Override
+        public boolean isOutputReady() {
+            return this.request == null;
+        }
+
+        @Override
+        public void produceOutput() throws HttpException, IOException {
+            ensureNotCancelled();
+            if (this.request == null) {
+                this.request = this.exchangeHandler.generateRequest();
+                final boolean hasEntity = H2Messages.hasEntity(this.request);
+                this.stream.submitHeaders(H2Messages.fromRequest(this.request, null), !hasEntity);
+                incrementRequestCount();
+                if (!hasEntity) {
+                    this.exchangeHandler.requestCompleted();
+                }
+            } else {
+                this.exchangeHandler.produceContent(this.stream.getContentEncoder(), this.stream.getIOControl());
+                if (this.stream.getContentEncoder().isCompleted()) {
+                    this.exchangeHandler.requestCompleted();
+                }
+            }
+        }
+
+        @Override
+        public void failed(final Exception cause) {
+            this.exchangeHandler.failed(cause);
+        }
+
+        @Override
+        public void releaseResources() {
+            closeQuietly(this.exchangeHandler);
+        }
+
+    }
+
+}
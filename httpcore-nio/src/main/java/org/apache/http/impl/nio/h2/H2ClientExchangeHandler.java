@@ -0,0 +1,174 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncClientExchangeHandler;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpProcessor;
+
+/**
+ * Adapts a request producer / response consumer pair to
+ * {@link HttpAsyncClientExchangeHandler} executed on an HTTP/2 stream.
+ * Unlike {@link org.apache.http.nio.protocol.BasicAsyncClientExchangeHandler}
+ * this class makes no connection re-use decisions as HTTP/2 connections
+ * outlive individual exchanges.
+ */
+final class H2ClientExchangeHandler<T> implements HttpAsyncClientExchangeHandler {
+
+    private final HttpAsyncRequestProducer requestProducer;
+    private final HttpAsyncResponseConsumer<T> responseConsumer;
+    private final BasicFuture<T> future;
+    private final HttpContext localContext;
+    private final AbstractH2Connection conn;
+    private final HttpProcessor httpProcessor;
+
+    H2ClientExchangeHandler(
+            final HttpAsyncRequestProducer requestProducer,
+            final HttpAsyncResponseConsumer<T> responseConsumer,
+            final FutureCallback<T> callback,
+            final HttpContext localContext,
+            final AbstractH2Connection conn,
+            final HttpProcessor httpProcessor) {
+        super();
+        this.requestProducer = requestProducer;
+        this.responseConsumer = responseConsumer;
+        this.future = new BasicFuture<T>(callback);
+        this.localContext = localContext;
+        this.conn = conn;
+        this.httpProcessor = httpProcessor;
+    }
+
+    Future<T> getFuture() {
+        return this.future;
+    }
+
+    @Override
+    public HttpRequest generateRequest() throws IOException, HttpException {
+        this.localContext.setAttribute(HttpCoreContext.HTTP_CONNECTION, this.conn);
+        this.localContext.setAttribute(HttpCoreContext.HTTP_TARGET_HOST, this.requestProducer.getTarget());
+        final HttpRequest request = this.requestProducer.generateRequest();
+        this.localContext.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+        this.httpProcessor.process(request, this.localContext);
+        return request;
+    }
+
+    @Override
+    public void produceContent(final ContentEncoder encoder, final IOControl ioControl) throws IOException {
+        this.requestProducer.produceContent(encoder, ioControl);
+    }
+
+    @Override
+    public void requestCompleted() {
+        this.requestProducer.requestCompleted(this.localContext);
+    }
+
+    @Override
+    public void responseReceived(final HttpResponse response) throws IOException, HttpException {
+        this.localContext.setAttribute(HttpCoreContext.HTTP_RESPONSE, response);
+        this.httpProcessor.process(response, this.localContext);
+        this.responseConsumer.responseReceived(response);
+    }
+
+    @Override
+    public void consumeContent(final ContentDecoder decoder, final IOControl ioControl) throws IOException {
+        this.responseConsumer.consumeContent(decoder, ioControl);
+    }
+
+    @Override
+    public void responseCompleted() throws IOException, HttpException {
+        try {
+            this.responseConsumer.responseCompleted(this.localContext);
+            final T result = this.responseConsumer.getResult();
+            final Exception ex = this.responseConsumer.getException();
+            if (result != null) {
+                this.future.completed(result);
+            } else {
+                this.future.failed(ex);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public void inputTerminated() {
+        failed(new ConnectionClosedException("Connection closed"));
+    }
+
+    @Override
+    public void failed(final Exception ex) {
+        try {
+            this.requestProducer.failed(ex);
+            this.responseConsumer.failed(ex);
+        } finally {
+            try {
+                this.future.failed(ex);
+            } finally {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public boolean cancel() {
+        try {
+            final boolean cancelled = this.responseConsumer.cancel();
+            this.future.cancel();
+            return cancelled;
+        } finally {
+            close();
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        return this.future.isDone();
+    }
+
+    @Override
+    public void close() {
+        AbstractH2Connection.closeQuietly(this.requestProducer);
+        AbstractH2Connection.closeQuietly(this.responseConsumer);
+    }
+
+}
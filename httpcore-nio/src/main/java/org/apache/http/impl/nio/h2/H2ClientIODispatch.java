@@ -0,0 +1,121 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.reactor.AbstractIODispatch;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.util.Args;
+
+/**
+ * {@link org.apache.http.nio.reactor.IOEventDispatch} implementation that
+ * establishes HTTP/2 connections with prior knowledge over plain
+ * (non-encrypted) sessions.
+ * <p>
+ * If the attachment of a new session is a {@link FutureCallback}, it gets
+ * completed with the {@link H2ClientConnection} once the connection preface
+ * has been queued for sending, at which point the connection is ready to
+ * accept message exchanges.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE_CONDITIONAL)
+public class H2ClientIODispatch extends AbstractIODispatch<H2ClientConnection> {
+
+    private final HttpProcessor httpProcessor;
+    private final H2Config config;
+
+    public H2ClientIODispatch(final HttpProcessor httpProcessor, final H2Config config) {
+        super();
+        this.httpProcessor = Args.notNull(httpProcessor, "HTTP processor");
+        this.config = config != null ? config : H2Config.DEFAULT;
+    }
+
+    @Override
+    protected H2ClientConnection createConnection(final IOSession session) {
+        return new H2ClientConnection(session, this.config, this.httpProcessor);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void onConnected(final H2ClientConnection conn) {
+        try {
+            conn.onConnect();
+        } catch (final IOException ex) {
+            onException(conn, ex);
+            return;
+        }
+        final Object attachment = conn.getSession().getAttribute(IOSession.ATTACHMENT_KEY);
+        if (attachment instanceof FutureCallback) {
+            ((FutureCallback<H2ClientConnection>) attachment).completed(conn);
+        }
+    }
+
+    @Override
+    protected void onClosed(final H2ClientConnection conn) {
+        conn.onDisconnect();
+    }
+
+    @Override
+    protected void onException(final H2ClientConnection conn, final IOException ex) {
+        conn.onException(ex);
+    }
+
+    @Override
+    protected void onInputReady(final H2ClientConnection conn) {
+        try {
+            conn.onInput();
+        } catch (final IOException ex) {
+            onException(conn, ex);
+        }
+    }
+
+    @Override
+    protected void onOutputReady(final H2ClientConnection conn) {
+        try {
+            conn.onOutput();
+        } catch (final IOException ex) {
+            onException(conn, ex);
+        }
+    }
+
+    @Override
+    protected void onTimeout(final H2ClientConnection conn) {
+        try {
+            conn.onTimeout();
+        } catch (final IOException ex) {
+            onException(conn, ex);
+        }
+    }
+
+}
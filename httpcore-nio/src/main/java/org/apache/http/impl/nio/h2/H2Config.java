@@ -0,0 +1,214 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.util.Args;
+
+/**
+ * HTTP/2 connection configuration. Values of this configuration are announced
+ * to the opposite endpoint in the initial {@code SETTINGS} frame and define
+ * limits the local endpoint enforces.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public class H2Config {
+
+    public static final int INITIAL_HEADER_TABLE_SIZE = 4096;
+    public static final int INITIAL_WINDOW_SIZE = 65535;
+    public static final int MIN_FRAME_SIZE = 16384;
+    public static final int MAX_FRAME_SIZE = 16777215;
+    public static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    public static final H2Config DEFAULT = new Builder().build();
+
+    private final int headerTableSize;
+    private final int maxConcurrentStreams;
+    private final int initialWindowSize;
+    private final int maxFrameSize;
+    private final int maxHeaderListSize;
+    private final boolean huffmanEnabled;
+
+    H2Config(
+            final int headerTableSize,
+            final int maxConcurrentStreams,
+            final int initialWindowSize,
+            final int maxFrameSize,
+            final int maxHeaderListSize,
+            final boolean huffmanEnabled) {
+        super();
+        this.headerTableSize = headerTableSize;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.initialWindowSize = initialWindowSize;
+        this.maxFrameSize = maxFrameSize;
+        this.maxHeaderListSize = maxHeaderListSize;
+        this.huffmanEnabled = huffmanEnabled;
+    }
+
+    /**
+     * Maximum size of the header compression table used to decode header blocks.
+     */
+    public int getHeaderTableSize() {
+        return headerTableSize;
+    }
+
+    /**
+     * Maximum number of concurrent streams the opposite endpoint is permitted
+     * to initiate.
+     */
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Initial flow-control window size of individual streams as well as
+     * of the connection as a whole.
+     */
+    public int getInitialWindowSize() {
+        return initialWindowSize;
+    }
+
+    /**
+     * Largest frame payload the local endpoint is willing to receive.
+     */
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * Maximum size of header list the local endpoint is prepared to accept
+     * or {@code -1} if unlimited.
+     */
+    public int getMaxHeaderListSize() {
+        return maxHeaderListSize;
+    }
+
+    /**
+     * Determines whether string literals of outgoing header blocks are to be
+     * Huffman encoded when doing so makes them shorter.
+     */
+    public boolean isHuffmanEnabled() {
+        return huffmanEnabled;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("[headerTableSize=").append(this.headerTableSize)
+                .append(", maxConcurrentStreams=").append(this.maxConcurrentStreams)
+                .append(", initialWindowSize=").append(this.initialWindowSize)
+                .append(", maxFrameSize=").append(this.maxFrameSize)
+                .append(", maxHeaderListSize=").append(this.maxHeaderListSize)
+                .append(", huffmanEnabled=").append(this.huffmanEnabled)
+                .append("]");
+        return builder.toString();
+    }
+
+    public static H2Config.Builder custom() {
+        return new Builder();
+    }
+
+    public static H2Config.Builder copy(final H2Config config) {
+        Args.notNull(config, "HTTP/2 config");
+        return new Builder()
+            .setHeaderTableSize(config.getHeaderTableSize())
+            .setMaxConcurrentStreams(config.getMaxConcurrentStreams())
+            .setInitialWindowSize(config.getInitialWindowSize())
+            .setMaxFrameSize(config.getMaxFrameSize())
+            .setMaxHeaderListSize(config.getMaxHeaderListSize())
+            .setHuffmanEnabled(config.isHuffmanEnabled());
+    }
+
+    public static class Builder {
+
+        private int headerTableSize;
+        private int maxConcurrentStreams;
+        private int initialWindowSize;
+        private int maxFrameSize;
+        private int maxHeaderListSize;
+        private boolean huffmanEnabled;
+
+        Builder() {
+            this.headerTableSize = INITIAL_HEADER_TABLE_SIZE;
+            this.maxConcurrentStreams = 100;
+            this.initialWindowSize = INITIAL_WINDOW_SIZE;
+            this.maxFrameSize = MIN_FRAME_SIZE;
+            this.maxHeaderListSize = -1;
+            this.huffmanEnabled = true;
+        }
+
+        public Builder setHeaderTableSize(final int headerTableSize) {
+            Args.notNegative(headerTableSize, "Header table size");
+            this.headerTableSize = headerTableSize;
+            return this;
+        }
+
+        public Builder setMaxConcurrentStreams(final int maxConcurrentStreams) {
+            Args.positive(maxConcurrentStreams, "Max concurrent streams");
+            this.maxConcurrentStreams = maxConcurrentStreams;
+            return this;
+        }
+
+        public Builder setInitialWindowSize(final int initialWindowSize) {
+            Args.positive(initialWindowSize, "Initial window size");
+            this.initialWindowSize = initialWindowSize;
+            return this;
+        }
+
+        public Builder setMaxFrameSize(final int maxFrameSize) {
+            Args.check(maxFrameSize >= MIN_FRAME_SIZE && maxFrameSize <= MAX_FRAME_SIZE,
+                    "Max frame size must be between 16384 and 16777215");
+            this.maxFrameSize = maxFrameSize;
+            return this;
+        }
+
+        public Builder setMaxHeaderListSize(final int maxHeaderListSize) {
+            this.maxHeaderListSize = maxHeaderListSize;
+            return this;
+        }
+
+        public Builder setHuffmanEnabled(final boolean huffmanEnabled) {
+            this.huffmanEnabled = huffmanEnabled;
+            return this;
+        }
+
+        public H2Config build() {
+            return new H2Config(
+                    headerTableSize,
+                    maxConcurrentStreams,
+                    initialWindowSize,
+                    maxFrameSize,
+                    maxHeaderListSize,
+                    huffmanEnabled);
+        }
+
+    }
+
+}
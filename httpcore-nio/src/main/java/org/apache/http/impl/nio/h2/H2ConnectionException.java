@@ -0,0 +1,53 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+
+/**
+ * Signals an HTTP/2 connection error that renders the entire connection
+ * unusable.
+ *
+ * @since 4.4.17
+ */
+public class H2ConnectionException extends IOException {
+
+    private static final long serialVersionUID = 2372553470423052542L;
+
+    private final H2Error error;
+
+    public H2ConnectionException(final H2Error error, final String message) {
+        super(message);
+        this.error = error != null ? error : H2Error.INTERNAL_ERROR;
+    }
+
+    public H2Error getError() {
+        return this.error;
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.nio.ByteBuffer;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * HTTP/2 frame.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class H2Frame {
+
+    public static final int HEADER_SIZE = 9;
+
+    private final int type;
+    private final int flags;
+    private final int streamId;
+    private final ByteBuffer payload;
+
+    public H2Frame(final int type, final int flags, final int streamId, final ByteBuffer payload) {
+        super();
+        this.type = type;
+        this.flags = flags;
+        this.streamId = streamId;
+        this.payload = payload;
+    }
+
+    public int getType() {
+        return this.type;
+    }
+
+    public int getFlags() {
+        return this.flags;
+    }
+
+    public boolean isFlagSet(final int flag) {
+        return (this.flags & flag) == flag;
+    }
+
+    public int getStreamId() {
+        return this.streamId;
+    }
+
+    /**
+     * Returns a read-only view of the frame payload or {@code null} if
+     * the frame has no payload.
+     */
+    public ByteBuffer getPayload() {
+        return this.payload != null ? this.payload.asReadOnlyBuffer() : null;
+    }
+
+    public int getLength() {
+        return this.payload != null ? this.payload.remaining() : 0;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[type=").append(FrameType.toString(this.type))
+                .append(", flags=").append(this.flags)
+                .append(", streamId=").append(this.streamId)
+                .append(", length=").append(getLength())
+                .append("]");
+        return buffer.toString();
+    }
+
+}
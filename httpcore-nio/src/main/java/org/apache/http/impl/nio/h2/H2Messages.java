@@ -0,0 +1,306 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpMessage;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolException;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+/**
+ * Conversion of HTTP messages to and from HTTP/2 header lists as defined
+ * by RFC 7540, section 8.1.2.
+ */
+final class H2Messages {
+
+    static final HttpVersion HTTP_2 = new HttpVersion(2, 0);
+
+    static final String METHOD = ":method";
+    static final String SCHEME = ":scheme";
+    static final String AUTHORITY = ":authority";
+    static final String PATH = ":path";
+    static final String STATUS = ":status";
+
+    private H2Messages() {
+    }
+
+    static boolean isConnectionSpecific(final String name) {
+        return name.equalsIgnoreCase(HttpHeaders.CONNECTION)
+                || name.equalsIgnoreCase("Keep-Alive")
+                || name.equalsIgnoreCase("Proxy-Connection")
+                || name.equalsIgnoreCase(HttpHeaders.TRANSFER_ENCODING)
+                || name.equalsIgnoreCase(HttpHeaders.UPGRADE);
+    }
+
+    private static void addHeaders(final List<Header> headers, final HttpMessage message) {
+        for (final Header header: message.getAllHeaders()) {
+            final String name = header.getName();
+            if (isConnectionSpecific(name) || name.equalsIgnoreCase(HttpHeaders.HOST)) {
+                continue;
+            }
+            if (name.equalsIgnoreCase(HttpHeaders.TE) && !"trailers".equalsIgnoreCase(header.getValue())) {
+                continue;
+            }
+            final String value = header.getValue();
+            headers.add(new BasicHeader(name.toLowerCase(Locale.ROOT), value != null ? value : ""));
+        }
+    }
+
+    private static void checkRegularHeader(final Header header) throws ProtocolException {
+        final String name = header.getName();
+        for (int i = 0; i < name.length(); i++) {
+            final char ch = name.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                throw new ProtocolException("Header name '" + name + "' is not lower case");
+            }
+        }
+        if (isConnectionSpecific(name)) {
+            throw new ProtocolException("Connection specific header '" + name + "' is not allowed");
+        }
+    }
+
+    private static void applyEntity(final HttpMessage message, final BasicHttpEntity entity) {
+        final Header contentLength = message.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+        long len = -1;
+        if (contentLength != null) {
+            try {
+                len = Long.parseLong(contentLength.getValue().trim());
+            } catch (final NumberFormatException ignore) {
+                len = -1;
+            }
+        }
+        entity.setContentLength(len);
+        entity.setContentType(message.getFirstHeader(HttpHeaders.CONTENT_TYPE));
+        entity.setContentEncoding(message.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    /**
+     * Converts a header list received on a stream into a request message.
+     */
+    static HttpRequest toRequest(final List<Header> headers, final boolean hasEntity) throws ProtocolException {
+        String method = null;
+        String scheme = null;
+        String authority = null;
+        String path = null;
+        final List<Header> regular = new ArrayList<Header>(headers.size());
+        StringBuilder cookie = null;
+        for (final Header header: headers) {
+            final String name = header.getName();
+            if (name.startsWith(":")) {
+                if (!regular.isEmpty()) {
+                    throw new ProtocolException("Pseudo header '" + name + "' follows regular headers");
+                }
+                final String value = header.getValue();
+                if (name.equals(METHOD) && method == null) {
+                    method = value;
+                } else if (name.equals(SCHEME) && scheme == null) {
+                    scheme = value;
+                } else if (name.equals(AUTHORITY) && authority == null) {
+                    authority = value;
+                } else if (name.equals(PATH) && path == null) {
+                    path = value;
+                } else {
+                    throw new ProtocolException("Unsupported or duplicate pseudo header '" + name + "'");
+                }
+            } else {
+                checkRegularHeader(header);
+                if (name.equals("cookie")) {
+                    if (cookie == null) {
+                        cookie = new StringBuilder(header.getValue());
+                    } else {
+                        cookie.append("; ").append(header.getValue());
+                    }
+                } else {
+                    regular.add(header);
+                }
+            }
+        }
+        if (method == null) {
+            throw new ProtocolException("Mandatory request header ':method' is missing");
+        }
+        if ("CONNECT".equals(method)) {
+            throw new ProtocolException("CONNECT method is not supported");
+        }
+        if (scheme == null || path == null || path.isEmpty()) {
+            throw new ProtocolException("Mandatory request header ':scheme' or ':path' is missing");
+        }
+        final HttpRequest request;
+        if (hasEntity) {
+            request = new BasicHttpEntityEnclosingRequest(method, path, HTTP_2);
+        } else {
+            request = new BasicHttpRequest(method, path, HTTP_2);
+        }
+        if (authority != null) {
+            request.addHeader(HttpHeaders.HOST, authority);
+        }
+        for (final Header header: regular) {
+            request.addHeader(header);
+        }
+        if (cookie != null) {
+            request.addHeader("cookie", cookie.toString());
+        }
+        if (hasEntity) {
+            final BasicHttpEntity entity = new BasicHttpEntity();
+            applyEntity(request, entity);
+            ((HttpEntityEnclosingRequest) request).setEntity(entity);
+        }
+        return request;
+    }
+
+    /**
+     * Converts a request message into a header list. The request authority is
+     * taken from the {@code Host} header, the absolute request URI or
+     * the target host, in that order.
+     */
+    static List<Header> fromRequest(final HttpRequest request, final HttpHost target) throws ProtocolException {
+        final String method = request.getRequestLine().getMethod();
+        if ("CONNECT".equalsIgnoreCase(method)) {
+            throw new ProtocolException("CONNECT method is not supported");
+        }
+        String scheme = target != null ? target.getSchemeName() : "http";
+        String authority = null;
+        String path = request.getRequestLine().getUri();
+        if (path.startsWith("http://") || path.startsWith("https://")) {
+            try {
+                final URI uri = new URI(path);
+                scheme = uri.getScheme();
+                authority = uri.getRawAuthority();
+                final String rawPath = uri.getRawPath();
+                final String query = uri.getRawQuery();
+                path = (rawPath != null && !rawPath.isEmpty() ? rawPath : "/") + (query != null ? "?" + query : "");
+            } catch (final URISyntaxException ex) {
+                throw new ProtocolException("Invalid request URI: " + path, ex);
+            }
+        }
+        final Header host = request.getFirstHeader(HttpHeaders.HOST);
+        if (host != null) {
+            authority = host.getValue();
+        } else if (authority == null && target != null) {
+            authority = target.toHostString();
+        }
+        final List<Header> headers = new ArrayList<Header>(request.getAllHeaders().length + 4);
+        headers.add(new BasicHeader(METHOD, method));
+        headers.add(new BasicHeader(SCHEME, scheme));
+        if (authority != null) {
+            headers.add(new BasicHeader(AUTHORITY, authority));
+        }
+        headers.add(new BasicHeader(PATH, path.isEmpty() ? "/" : path));
+        addHeaders(headers, request);
+        return headers;
+    }
+
+    /**
+     * Returns the status code of the response header list.
+     */
+    static int parseStatus(final List<Header> headers) throws ProtocolException {
+        if (headers.isEmpty() || !headers.get(0).getName().equals(STATUS)) {
+            throw new ProtocolException("Mandatory response header ':status' is missing");
+        }
+        final String value = headers.get(0).getValue();
+        try {
+            final int status = Integer.parseInt(value);
+            if (status < 100 || status > 999) {
+                throw new ProtocolException("Invalid response status: " + value);
+            }
+            return status;
+        } catch (final NumberFormatException ex) {
+            throw new ProtocolException("Invalid response status: " + value);
+        }
+    }
+
+    /**
+     * Converts a header list received on a stream into a response message.
+     */
+    static HttpResponse toResponse(final List<Header> headers, final boolean hasEntity) throws ProtocolException {
+        final int status = parseStatus(headers);
+        final HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HTTP_2, status,
+                EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH)));
+        for (int i = 1; i < headers.size(); i++) {
+            final Header header = headers.get(i);
+            if (header.getName().startsWith(":")) {
+                throw new ProtocolException("Unsupported pseudo header '" + header.getName() + "'");
+            }
+            checkRegularHeader(header);
+            response.addHeader(header);
+        }
+        if (hasEntity) {
+            final BasicHttpEntity entity = new BasicHttpEntity();
+            applyEntity(response, entity);
+            response.setEntity(entity);
+        }
+        return response;
+    }
+
+    /**
+     * Converts a response message into a header list.
+     */
+    static List<Header> fromResponse(final HttpResponse response) {
+        final List<Header> headers = new ArrayList<Header>(response.getAllHeaders().length + 1);
+        headers.add(new BasicHeader(STATUS, Integer.toString(response.getStatusLine().getStatusCode())));
+        addHeaders(headers, response);
+        return headers;
+    }
+
+    static boolean hasEntity(final HttpRequest request) {
+        return request instanceof HttpEntityEnclosingRequest
+                && ((HttpEntityEnclosingRequest) request).getEntity() != null;
+    }
+
+    static boolean canResponseHaveBody(final HttpRequest request, final HttpResponse response) {
+        if (request != null && "HEAD".equalsIgnoreCase(request.getRequestLine().getMethod())) {
+            return false;
+        }
+        final int status = response.getStatusLine().getStatusCode();
+        final HttpEntity entity = response.getEntity();
+        return entity != null
+                && status >= 200
+                && status != 204
+                && status != 304
+                && status != 205;
+    }
+
+}
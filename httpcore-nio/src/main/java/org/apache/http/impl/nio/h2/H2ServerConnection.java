@@ -0,0 +1,396 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.http.ExceptionLogger;
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseFactory;
+import org.apache.http.HttpStatus;
+import org.apache.http.MethodNotSupportedException;
+import org.apache.http.ProtocolException;
+import org.apache.http.UnsupportedHttpVersionException;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.DefaultHttpResponseFactory;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.protocol.BasicAsyncResponseProducer;
+import org.apache.http.nio.protocol.HttpAsyncExchange;
+import org.apache.http.nio.protocol.HttpAsyncRequestConsumer;
+import org.apache.http.nio.protocol.HttpAsyncRequestHandler;
+import org.apache.http.nio.protocol.HttpAsyncRequestHandlerMapper;
+import org.apache.http.nio.protocol.HttpAsyncResponseProducer;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.util.Args;
+
+/**
+ * Server side HTTP/2 connection. Every stream initiated by the client is
+ * processed by the {@link HttpAsyncRequestHandler} registered for the request
+ * in the same way {@link org.apache.http.nio.protocol.HttpAsyncService} does
+ * for HTTP/1.1 connections: the request is passed through the protocol
+ * processor, its content is consumed by the request consumer and the result
+ * is handed over to the handler, which submits a response producer using
+ * the {@link HttpAsyncExchange} from any thread. Requests for which there is
+ * no handler are answered with status {@code 501 Not Implemented}.
+ * <p>
+ * Connection-specific headers of responses such as {@code Connection} or
+ * {@code Transfer-Encoding} are not transmitted, as HTTP/2 does not permit
+ * them.
+ *
+ * @since 4.4.17
+ */
+public class H2ServerConnection extends AbstractH2Connection {
+
+    private final HttpProcessor httpProcessor;
+    private final HttpAsyncRequestHandlerMapper handlerMapper;
+    private final HttpResponseFactory responseFactory;
+    private final ExceptionLogger exceptionLogger;
+
+    public H2ServerConnection(
+            final IOSession session,
+            final H2Config config,
+            final HttpProcessor httpProcessor,
+            final HttpAsyncRequestHandlerMapper handlerMapper,
+            final HttpResponseFactory responseFactory,
+            final ExceptionLogger exceptionLogger) {
+        super(session, config, false);
+        this.httpProcessor = Args.notNull(httpProcessor, "HTTP processor");
+        this.handlerMapper = handlerMapper;
+        this.responseFactory = responseFactory != null ? responseFactory : DefaultHttpResponseFactory.INSTANCE;
+        this.exceptionLogger = exceptionLogger != null ? exceptionLogger : ExceptionLogger.NO_OP;
+    }
+
+    public H2ServerConnection(
+            final IOSession session,
+            final H2Config config,
+            final HttpProcessor httpProcessor,
+            final HttpAsyncRequestHandlerMapper handlerMapper) {
+        this(session, config, httpProcessor, handlerMapper, null, null);
+    }
+
+    @Override
+    H2StreamHandler createRemoteStreamHandler(final H2Stream stream) {
+        return new ServerStreamHandler(stream);
+    }
+
+    @Override
+    void processPendingCommands() {
+    }
+
+    @Override
+    boolean hasPendingCommands() {
+        return false;
+    }
+
+    @Override
+    void failPendingCommands(final Exception cause) {
+    }
+
+    private void log(final Exception ex) {
+        this.exceptionLogger.log(ex);
+    }
+
+    /**
+     * Creates a response producer for the given exception thrown while
+     * processing a request.
+     */
+    protected HttpAsyncResponseProducer handleException(final Exception ex, final HttpContext context) {
+        String message = ex.getMessage();
+        if (message == null) {
+            message = ex.toString();
+        }
+        final int code;
+        if (ex instanceof MethodNotSupportedException) {
+            code = HttpStatus.SC_NOT_IMPLEMENTED;
+        } else if (ex instanceof UnsupportedHttpVersionException) {
+            code = HttpStatus.SC_HTTP_VERSION_NOT_SUPPORTED;
+        } else if (ex instanceof ProtocolException) {
+            code = HttpStatus.SC_BAD_REQUEST;
+        } else {
+            code = HttpStatus.SC_INTERNAL_SERVER_ERROR;
+        }
+        final HttpResponse response = this.responseFactory.newHttpResponse(H2Messages.HTTP_2, code, context);
+        response.setEntity(new NStringEntity(message, ContentType.DEFAULT_TEXT));
+        return new BasicAsyncResponseProducer(response);
+    }
+
+    class ServerStreamHandler implements H2StreamHandler {
+
+        private final H2Stream stream;
+        private final HttpContext localContext;
+        private final Exchange exchange;
+
+        private HttpRequest request;
+        private HttpAsyncRequestHandler<Object> requestHandler;
+        private HttpAsyncRequestConsumer<Object> requestConsumer;
+        private ByteBuffer discardBuffer;
+
+        private volatile HttpAsyncResponseProducer responseProducer;
+        private volatile Cancellable cancellable;
+
+        ServerStreamHandler(final H2Stream stream) {
+            super();
+            this.stream = stream;
+            this.localContext = new BasicHttpContext(getContext());
+            this.exchange = new Exchange();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void consumeHeaders(
+                final List<Header> headers, final boolean endStream) throws HttpException, IOException {
+            if (this.request != null) {
+                // trailers
+                if (!endStream) {
+                    throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, "Unexpected header block");
+                }
+                return;
+            }
+            incrementRequestCount();
+            try {
+                this.request = H2Messages.toRequest(headers, !endStream);
+            } catch (final ProtocolException ex) {
+                throw new H2StreamResetException(H2Error.PROTOCOL_ERROR, ex.getMessage());
+            }
+            this.localContext.setAttribute(HttpCoreContext.HTTP_REQUEST, this.request);
+            try {
+                httpProcessor.process(this.request, this.localContext);
+                HttpAsyncRequestHandler<Object> handler = null;
+                if (handlerMapper != null) {
+                    handler = (HttpAsyncRequestHandler<Object>) handlerMapper.lookup(this.request);
+                }
+                if (handler != null) {
+                    this.requestHandler = handler;
+                    this.requestConsumer = handler.processRequest(this.request, this.localContext);
+                    this.requestConsumer.requestReceived(this.request);
+                } else {
+                    final HttpResponse response = responseFactory.newHttpResponse(
+                            H2Messages.HTTP_2, HttpStatus.SC_NOT_IMPLEMENTED, this.localContext);
+                    response.setEntity(new NStringEntity("Service not implemented", ContentType.TEXT_PLAIN));
+                    this.responseProducer = new BasicAsyncResponseProducer(response);
+                }
+            } catch (final HttpException ex) {
+                submitError(ex);
+            }
+            if (endStream) {
+                this.stream.setInputTerminated();
+                completeRequest();
+            }
+        }
+
+        private void submitError(final Exception ex) {
+            if (this.requestConsumer != null) {
+                this.requestConsumer.failed(ex);
+                closeQuietly(this.requestConsumer);
+                this.requestConsumer = null;
+            }
+            this.requestHandler = null;
+            if (this.responseProducer == null) {
+                this.responseProducer = handleException(ex, this.localContext);
+            }
+        }
+
+        @Override
+        public void consumeData() throws HttpException, IOException {
+            final ContentDecoder decoder = this.stream.getContentDecoder();
+            if (this.requestConsumer != null) {
+                this.requestConsumer.consumeContent(decoder, this.stream.getIOControl());
+            } else {
+                if (this.discardBuffer == null) {
+                    this.discardBuffer = ByteBuffer.allocate(2048);
+                }
+                int n;
+                do {
+                    this.discardBuffer.clear();
+                    n = decoder.read(this.discardBuffer);
+                } while (n > 0);
+            }
+            if (decoder.isCompleted()) {
+                completeRequest();
+            }
+        }
+
+        private void completeRequest() {
+            final HttpAsyncRequestConsumer<Object> consumer = this.requestConsumer;
+            if (consumer == null) {
+                return;
+            }
+            consumer.requestCompleted(this.localContext);
+            final Exception ex = consumer.getException();
+            if (ex != null) {
+                submitError(ex);
+                return;
+            }
+            final Object result = consumer.getResult();
+            try {
+                this.requestHandler.handle(result, this.exchange, this.localContext);
+            } catch (final HttpException hex) {
+                if (this.responseProducer == null) {
+                    submitError(hex);
+                } else {
+                    log(hex);
+                }
+            } catch (final IOException ioex) {
+                if (this.responseProducer == null) {
+                    submitError(ioex);
+                } else {
+                    log(ioex);
+                }
+            }
+        }
+
+        @Override
+        public boolean isOutputReady() {
+            return this.responseProducer != null;
+        }
+
+        @Override
+        public void produceOutput() throws HttpException, IOException {
+            final HttpAsyncResponseProducer producer = this.responseProducer;
+            if (!this.stream.isHeadersSent()) {
+                final HttpResponse response = producer.generateResponse();
+                this.localContext.setAttribute(HttpCoreContext.HTTP_RESPONSE, response);
+                httpProcessor.process(response, this.localContext);
+                final boolean hasBody = H2Messages.canResponseHaveBody(this.request, response);
+                this.stream.submitHeaders(H2Messages.fromResponse(response), !hasBody);
+                incrementResponseCount();
+                if (!hasBody) {
+                    producer.responseCompleted(this.localContext);
+                }
+            } else {
+                producer.produceContent(this.stream.getContentEncoder(), this.stream.getIOControl());
+                if (this.stream.getContentEncoder().isCompleted()) {
+                    producer.responseCompleted(this.localContext);
+                }
+            }
+        }
+
+        @Override
+        public void failed(final Exception cause) {
+            if (this.requestConsumer != null) {
+                this.requestConsumer.failed(cause);
+            }
+            final HttpAsyncResponseProducer producer = this.responseProducer;
+            if (producer != null) {
+                producer.failed(cause);
+            }
+            final Cancellable callback = this.cancellable;
+            if (callback != null) {
+                callback.cancel();
+            }
+            if (!(cause instanceof H2StreamResetException)) {
+                log(cause);
+            }
+        }
+
+        @Override
+        public void releaseResources() {
+            closeQuietly(this.requestConsumer);
+            closeQuietly(this.responseProducer);
+        }
+
+        class Exchange implements HttpAsyncExchange {
+
+            private HttpResponse response;
+
+            @Override
+            public HttpRequest getRequest() {
+                return request;
+            }
+
+            @Override
+            public synchronized HttpResponse getResponse() {
+                if (this.response == null) {
+                    this.response = responseFactory.newHttpResponse(H2Messages.HTTP_2, HttpStatus.SC_OK, localContext);
+                }
+                return this.response;
+            }
+
+            @Override
+            public void submitResponse() {
+                submitResponse(new BasicAsyncResponseProducer(getResponse()));
+            }
+
+            @Override
+            public synchronized void submitResponse(final HttpAsyncResponseProducer producer) {
+                Args.notNull(producer, "Response producer");
+                if (responseProducer != null) {
+                    throw new IllegalStateException("Response already submitted");
+                }
+                responseProducer = producer;
+                requestSessionOutput();
+            }
+
+            @Override
+            public boolean isCompleted() {
+                return responseProducer != null;
+            }
+
+            @Override
+            public synchronized void setCallback(final Cancellable cancellable) {
+                if (responseProducer != null) {
+                    throw new IllegalStateException("Response already submitted");
+                }
+                ServerStreamHandler.this.cancellable = cancellable;
+            }
+
+            /**
+             * Sets the socket timeout of the underlying connection shared by
+             * all concurrent streams.
+             */
+            @Override
+            public void setTimeout(final int timeout) {
+                setSocketTimeout(timeout);
+            }
+
+            @Override
+            public int getTimeout() {
+                return getSocketTimeout();
+            }
+
+            @Override
+            public String toString() {
+                return "[stream " + stream.getId() + "] " + request.getRequestLine();
+            }
+
+        }
+
+    }
+
+}
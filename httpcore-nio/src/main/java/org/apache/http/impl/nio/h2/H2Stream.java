@@ -0,0 +1,342 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.util.Asserts;
+
+/**
+ * HTTP/2 stream state. Flow-control windows, buffered input and stream half
+ * closure are managed by the I/O dispatch thread only; input and output
+ * interest can be changed from any thread through the {@link IOControl}
+ * of the stream.
+ */
+final class H2Stream {
+
+    private final AbstractH2Connection connection;
+    private final int id;
+    private final LinkedList<ByteBuffer> inbound;
+
+    private H2StreamHandler handler;
+
+    private int inputWindow;
+    private int outputWindow;
+    private int inputCredit;
+    private int bufferedInput;
+    private boolean headersSent;
+    private boolean localEndStream;
+    private boolean remoteEndStream;
+    private boolean inputTerminated;
+
+    private volatile boolean inputSuspended;
+    private volatile boolean outputRequested;
+    private volatile boolean cancelled;
+
+    private final ContentDecoder contentDecoder;
+    private final ContentEncoder contentEncoder;
+    private final IOControl ioControl;
+
+    H2Stream(final AbstractH2Connection connection, final int id, final int inputWindow, final int outputWindow) {
+        super();
+        this.connection = connection;
+        this.id = id;
+        this.inbound = new LinkedList<ByteBuffer>();
+        this.inputWindow = inputWindow;
+        this.outputWindow = outputWindow;
+        this.contentDecoder = new StreamContentDecoder();
+        this.contentEncoder = new StreamContentEncoder();
+        this.ioControl = new StreamIOControl();
+        this.outputRequested = true;
+    }
+
+    int getId() {
+        return this.id;
+    }
+
+    H2StreamHandler getHandler() {
+        return this.handler;
+    }
+
+    void setHandler(final H2StreamHandler handler) {
+        this.handler = handler;
+    }
+
+    ContentDecoder getContentDecoder() {
+        return this.contentDecoder;
+    }
+
+    ContentEncoder getContentEncoder() {
+        return this.contentEncoder;
+    }
+
+    IOControl getIOControl() {
+        return this.ioControl;
+    }
+
+    int getInputWindow() {
+        return this.inputWindow;
+    }
+
+    int getOutputWindow() {
+        return this.outputWindow;
+    }
+
+    void updateOutputWindow(final int delta) throws H2StreamResetException {
+        final long newWindow = (long) this.outputWindow + delta;
+        if (newWindow > H2Config.MAX_WINDOW_SIZE) {
+            throw new H2StreamResetException(H2Error.FLOW_CONTROL_ERROR, "Stream window overflow");
+        }
+        this.outputWindow = (int) newWindow;
+    }
+
+    void consumeOutputWindow(final int n) {
+        this.outputWindow -= n;
+    }
+
+    /**
+     * Returns accumulated input credit and resets it to zero.
+     */
+    int takeInputCredit() {
+        final int credit = this.inputCredit;
+        this.inputCredit = 0;
+        this.inputWindow += credit;
+        return credit;
+    }
+
+    int getInputCredit() {
+        return this.inputCredit;
+    }
+
+    /**
+     * Buffers the content of a {@code DATA} frame.
+     *
+     * @return {@code false} if the frame exceeded the input window of the stream.
+     */
+    boolean appendInput(final ByteBuffer data, final int frameLength) {
+        this.inputWindow -= frameLength;
+        final int len = data != null ? data.remaining() : 0;
+        // padding is never seen by the decoder and is credited back at once
+        this.inputCredit += frameLength - len;
+        if (len > 0) {
+            this.inbound.add(data);
+            this.bufferedInput += len;
+        }
+        return this.inputWindow >= 0;
+    }
+
+    boolean hasBufferedInput() {
+        return this.bufferedInput > 0;
+    }
+
+    boolean isHeadersSent() {
+        return this.headersSent;
+    }
+
+    boolean isLocalEndStream() {
+        return this.localEndStream;
+    }
+
+    void setLocalEndStream() {
+        this.localEndStream = true;
+    }
+
+    boolean isRemoteEndStream() {
+        return this.remoteEndStream;
+    }
+
+    void setRemoteEndStream() {
+        this.remoteEndStream = true;
+    }
+
+    /**
+     * Determines whether all input has been received and consumed.
+     */
+    boolean isInputCompleted() {
+        return this.remoteEndStream && this.bufferedInput == 0;
+    }
+
+    boolean isInputTerminated() {
+        return this.inputTerminated;
+    }
+
+    void setInputTerminated() {
+        this.inputTerminated = true;
+    }
+
+    boolean isClosed() {
+        return this.localEndStream && this.inputTerminated;
+    }
+
+    boolean isInputSuspended() {
+        return this.inputSuspended;
+    }
+
+    boolean isOutputRequested() {
+        return this.outputRequested;
+    }
+
+    boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    void submitHeaders(final List<Header> headers, final boolean endStream) throws IOException {
+        Asserts.check(!this.headersSent, "Message head already sent");
+        Asserts.check(!this.localEndStream, "Stream already half-closed");
+        this.connection.writeHeaders(this, headers, endStream);
+        this.headersSent = true;
+        if (endStream) {
+            this.localEndStream = true;
+        }
+    }
+
+    class StreamContentDecoder implements ContentDecoder {
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            if (inbound.isEmpty()) {
+                return isInputCompleted() ? -1 : 0;
+            }
+            int total = 0;
+            while (dst.hasRemaining() && !inbound.isEmpty()) {
+                final ByteBuffer chunk = inbound.getFirst();
+                final int n = Math.min(dst.remaining(), chunk.remaining());
+                if (n == chunk.remaining()) {
+                    dst.put(chunk);
+                    inbound.removeFirst();
+                } else {
+                    final int limit = chunk.limit();
+                    chunk.limit(chunk.position() + n);
+                    dst.put(chunk);
+                    chunk.limit(limit);
+                }
+                total += n;
+            }
+            bufferedInput -= total;
+            inputCredit += total;
+            return total;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return isInputCompleted();
+        }
+
+        @Override
+        public String toString() {
+            return "[stream " + id + " input; buffered: " + bufferedInput
+                    + "; completed: " + isInputCompleted() + "]";
+        }
+
+    }
+
+    class StreamContentEncoder implements ContentEncoder {
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            Asserts.check(!localEndStream, "Stream output already completed");
+            if (src == null) {
+                return 0;
+            }
+            return connection.writeData(H2Stream.this, src);
+        }
+
+        @Override
+        public void complete() throws IOException {
+            if (localEndStream) {
+                return;
+            }
+            connection.writeEndStream(H2Stream.this);
+            localEndStream = true;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return localEndStream;
+        }
+
+        @Override
+        public String toString() {
+            return "[stream " + id + " output; window: " + outputWindow
+                    + "; completed: " + localEndStream + "]";
+        }
+
+    }
+
+    class StreamIOControl implements IOControl {
+
+        @Override
+        public void requestInput() {
+            inputSuspended = false;
+            connection.requestSessionOutput();
+        }
+
+        @Override
+        public void suspendInput() {
+            inputSuspended = true;
+        }
+
+        @Override
+        public void requestOutput() {
+            outputRequested = true;
+            connection.requestSessionOutput();
+        }
+
+        @Override
+        public void suspendOutput() {
+            outputRequested = false;
+        }
+
+        @Override
+        public void shutdown() throws IOException {
+            cancelled = true;
+            connection.requestSessionOutput();
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[id=").append(this.id)
+                .append(", inputWindow=").append(this.inputWindow)
+                .append(", outputWindow=").append(this.outputWindow)
+                .append(", localEndStream=").append(this.localEndStream)
+                .append(", remoteEndStream=").append(this.remoteEndStream)
+                .append("]");
+        return buffer.toString();
+    }
+
+}
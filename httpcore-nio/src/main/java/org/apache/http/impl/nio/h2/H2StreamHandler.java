@@ -0,0 +1,76 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+
+/**
+ * Message exchange logic bound to an individual HTTP/2 stream. All methods
+ * are invoked by the I/O dispatch thread.
+ */
+interface H2StreamHandler {
+
+    /**
+     * Invoked upon receipt of a complete header block.
+     */
+    void consumeHeaders(List<Header> headers, boolean endStream) throws HttpException, IOException;
+
+    /**
+     * Invoked when the stream has buffered input or its input has been
+     * terminated by the opposite endpoint. Content is to be read from
+     * {@link H2Stream#getContentDecoder()}.
+     */
+    void consumeData() throws HttpException, IOException;
+
+    /**
+     * Determines whether the handler has a message head ready to be sent.
+     * Content output is controlled with {@link H2Stream#getIOControl()}.
+     */
+    boolean isOutputReady();
+
+    /**
+     * Invoked when the stream is able to send a message head or content.
+     * Content is to be written to {@link H2Stream#getContentEncoder()}.
+     */
+    void produceOutput() throws HttpException, IOException;
+
+    /**
+     * Invoked when the stream has been terminated abnormally.
+     */
+    void failed(Exception cause);
+
+    /**
+     * Invoked when the stream has been closed.
+     */
+    void releaseResources();
+
+}
@@ -0,0 +1,63 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.io.IOException;
+
+/**
+ * Signals termination of an individual HTTP/2 stream either by the opposite
+ * endpoint or locally. Requests on streams refused by the opposite endpoint
+ * ({@link H2Error#REFUSED_STREAM}) or not processed prior to connection
+ * shutdown are safe to retry.
+ *
+ * @since 4.4.17
+ */
+public class H2StreamResetException extends IOException {
+
+    private static final long serialVersionUID = -2617693431735541298L;
+
+    private final H2Error error;
+
+    public H2StreamResetException(final H2Error error, final String message) {
+        super(message);
+        this.error = error != null ? error : H2Error.INTERNAL_ERROR;
+    }
+
+    public H2Error getError() {
+        return this.error;
+    }
+
+    /**
+     * Determines whether or not the request was not processed by the opposite
+     * endpoint and therefore can be safely retried.
+     */
+    public boolean isRetriable() {
+        return this.error == H2Error.REFUSED_STREAM;
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * HPACK header block decoder as defined by RFC 7541. Any malformed input
+ * results in {@link H2ConnectionException} with
+ * {@link H2Error#COMPRESSION_ERROR}.
+ */
+final class HPackDecoder {
+
+    private final HPackDynamicTable dynamicTable;
+    private final StringBuilder stringBuilder;
+
+    private int maxTableSize;
+
+    HPackDecoder(final int maxTableSize) {
+        this.dynamicTable = new HPackDynamicTable(maxTableSize);
+        this.stringBuilder = new StringBuilder();
+        this.maxTableSize = maxTableSize;
+    }
+
+    HPackDynamicTable getDynamicTable() {
+        return this.dynamicTable;
+    }
+
+    /**
+     * Sets the upper limit for dynamic table size updates permitted
+     * to the encoder of the opposite endpoint.
+     */
+    void setMaxTableSize(final int maxTableSize) {
+        this.maxTableSize = maxTableSize;
+        if (this.dynamicTable.getMaxSize() > maxTableSize) {
+            this.dynamicTable.setMaxSize(maxTableSize);
+        }
+    }
+
+    static int decodeInt(final ByteBuffer src, final int prefixBits) throws H2ConnectionException {
+        final int mask = (1 << prefixBits) - 1;
+        int value = src.get() & mask;
+        if (value < mask) {
+            return value;
+        }
+        int shift = 0;
+        int b;
+        do {
+            b = src.get() & 0xff;
+            if (shift > 28 || (shift == 28 && (b & 0x7f) > 0x07)) {
+                throw new H2ConnectionException(H2Error.COMPRESSION_ERROR, "Integer overflow");
+            }
+            value += (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (value < 0) {
+            throw new H2ConnectionException(H2Error.COMPRESSION_ERROR, "Integer overflow");
+        }
+        return value;
+    }
+
+    String decodeString(final ByteBuffer src) throws H2ConnectionException {
+        final boolean huffman = (src.get(src.position()) & 0x80) != 0;
+        final int len = decodeInt(src, 7);
+        if (len > src.remaining()) {
+            throw new H2ConnectionException(H2Error.COMPRESSION_ERROR, "String literal exceeds header block");
+        }
+        this.stringBuilder.setLength(0);
+        if (huffman) {
+            if (src.hasArray()) {
+                Huffman.decode(src.array(), src.arrayOffset() + src.position(), len, this.stringBuilder);
+                src.position(src.position() + len);
+            } else {
+                final byte[] tmp = new byte[len];
+                src.get(tmp);
+                Huffman.decode(tmp, 0, len, this.stringBuilder);
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                this.stringBuilder.append((char) (src.get() & 0xff));
+            }
+        }
+        return this.stringBuilder.toString();
+    }
+
+    private Header getIndexed(final int index) throws H2ConnectionException {
+        final int staticSize = HPackStaticTable.size();
+        final Header header;
+        if (index >= 1 && index <= staticSize) {
+            header = HPackStaticTable.get(index);
+        } else {
+            header = this.dynamicTable.get(index - staticSize);
+        }
+        if (header == null) {
+            throw new H2ConnectionException(H2Error.COMPRESSION_ERROR, "Invalid header index: " + index);
+        }
+        return header;
+    }
+
+    private Header decodeLiteral(final ByteBuffer src, final int prefixBits) throws H2ConnectionException {
+        final int nameIndex = decodeInt(src, prefixBits);
+        final String name = nameIndex > 0 ? getIndexed(nameIndex).getName() : decodeString(src);
+        final String value = decodeString(src);
+        return new BasicHeader(name, value);
+    }
+
+    /**
+     * Decodes a complete header block.
+     */
+    List<Header> decodeHeaders(final ByteBuffer src) throws H2ConnectionException {
+        final List<Header> headers = new ArrayList<Header>();
+        try {
+            while (src.hasRemaining()) {
+                final int b = src.get(src.position()) & 0xff;
+                if ((b & 0x80) != 0) {
+                    final int index = decodeInt(src, 7);
+                    if (index == 0) {
+                        throw new H2ConnectionException(H2Error.COMPRESSION_ERROR, "Invalid header index: 0");
+                    }
+                    headers.add(getIndexed(index));
+                } else if ((b & 0x40) != 0) {
+                    final Header header = decodeLiteral(src, 6);
+                    this.dynamicTable.add(header);
+                    headers.add(header);
+                } else if ((b & 0x20) != 0) {
+                    if (!headers.isEmpty()) {
+                        throw new H2ConnectionException(H2Error.COMPRESSION_ERROR,
+                                "Dynamic table size update after header field");
+                    }
+                    final int size = decodeInt(src, 5);
+                    if (size > this.maxTableSize) {
+                        throw new H2ConnectionException(H2Error.COMPRESSION_ERROR,
+                                "Dynamic table size update exceeds limit: " + size);
+                    }
+                    this.dynamicTable.setMaxSize(size);
+                } else {
+                    headers.add(decodeLiteral(src, 4));
+                }
+            }
+        } catch (final BufferUnderflowException ex) {
+            throw new H2ConnectionException(H2Error.COMPRESSION_ERROR, "Truncated header block");
+        }
+        return headers;
+    }
+
+}
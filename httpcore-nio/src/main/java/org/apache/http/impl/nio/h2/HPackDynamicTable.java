@@ -0,0 +1,151 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import org.apache.http.Header;
+
+/**
+ * HPACK dynamic table as defined by RFC 7541, section 2.3.2. Entries are kept
+ * in a circular array with the most recently inserted entry having the lowest
+ * index. Size of every entry is calculated as the sum of its name and value
+ * lengths in octets plus 32.
+ */
+final class HPackDynamicTable {
+
+    static final int ENTRY_OVERHEAD = 32;
+
+    private Header[] entries;
+    private int head;
+    private int count;
+    private int currentSize;
+    private int maxSize;
+
+    HPackDynamicTable(final int maxSize) {
+        this.entries = new Header[16];
+        this.maxSize = maxSize;
+    }
+
+    static int sizeOf(final Header header) {
+        return header.getName().length() + header.getValue().length() + ENTRY_OVERHEAD;
+    }
+
+    int count() {
+        return this.count;
+    }
+
+    int getCurrentSize() {
+        return this.currentSize;
+    }
+
+    int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @param index one-based index relative to the start of the dynamic table.
+     */
+    Header get(final int index) {
+        if (index < 1 || index > this.count) {
+            return null;
+        }
+        return this.entries[(this.head - index + 1 + this.entries.length) % this.entries.length];
+    }
+
+    void add(final Header header) {
+        final int size = sizeOf(header);
+        if (size > this.maxSize) {
+            clear();
+            return;
+        }
+        evict(this.maxSize - size);
+        if (this.count == this.entries.length) {
+            final Header[] newEntries = new Header[this.entries.length * 2];
+            for (int i = 0; i < this.count; i++) {
+                newEntries[this.count - 1 - i] = get(i + 1);
+            }
+            this.entries = newEntries;
+            this.head = this.count - 1;
+        }
+        this.head = (this.head + 1) % this.entries.length;
+        this.entries[this.head] = header;
+        this.count++;
+        this.currentSize += size;
+    }
+
+    void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+    void clear() {
+        for (int i = 0; i < this.entries.length; i++) {
+            this.entries[i] = null;
+        }
+        this.head = 0;
+        this.count = 0;
+        this.currentSize = 0;
+    }
+
+    private void evict(final int targetSize) {
+        while (this.currentSize > targetSize && this.count > 0) {
+            final int tail = (this.head - this.count + 1 + this.entries.length) % this.entries.length;
+            final Header header = this.entries[tail];
+            this.entries[tail] = null;
+            this.currentSize -= sizeOf(header);
+            this.count--;
+        }
+    }
+
+    /**
+     * Returns one-based index of the entry with the given name and value
+     * or {@code 0} if not found.
+     */
+    int findField(final String name, final String value) {
+        for (int i = 1; i <= this.count; i++) {
+            final Header header = get(i);
+            if (header.getName().equals(name) && header.getValue().equals(value)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns one-based index of the most recent entry with the given name
+     * or {@code 0} if not found.
+     */
+    int findName(final String name) {
+        for (int i = 1; i <= this.count; i++) {
+            if (get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+}
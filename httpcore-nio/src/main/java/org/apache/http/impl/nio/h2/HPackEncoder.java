@@ -0,0 +1,190 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.ByteArrayBuffer;
+
+/**
+ * HPACK header block encoder as defined by RFC 7541.
+ * <p>
+ * Fields found in the static or dynamic tables are emitted as indexed
+ * representations; all other fields are emitted as literals with incremental
+ * indexing unless they carry credentials or are too large to be worth
+ * indexing. String literals are Huffman coded whenever that makes them
+ * shorter.
+ */
+final class HPackEncoder {
+
+    private final HPackDynamicTable dynamicTable;
+
+    private int pendingMinSize;
+    private boolean sizeUpdatePending;
+
+    HPackEncoder(final int maxTableSize) {
+        this.dynamicTable = new HPackDynamicTable(maxTableSize);
+        this.pendingMinSize = -1;
+    }
+
+    int getMaxTableSize() {
+        return this.dynamicTable.getMaxSize();
+    }
+
+    HPackDynamicTable getDynamicTable() {
+        return this.dynamicTable;
+    }
+
+    /**
+     * Updates the maximum size of the dynamic table in response to
+     * the {@code SETTINGS_HEADER_TABLE_SIZE} setting of the opposite endpoint.
+     * The change is signaled at the start of the next header block.
+     */
+    void setMaxTableSize(final int maxTableSize) {
+        if (maxTableSize == this.dynamicTable.getMaxSize() && !this.sizeUpdatePending) {
+            return;
+        }
+        if (this.pendingMinSize < 0 || maxTableSize < this.pendingMinSize) {
+            this.pendingMinSize = maxTableSize;
+        }
+        this.sizeUpdatePending = true;
+        this.dynamicTable.setMaxSize(maxTableSize);
+    }
+
+    static void encodeInt(final ByteArrayBuffer dst, final int prefixBits, final int flags, final int value) {
+        final int mask = (1 << prefixBits) - 1;
+        if (value < mask) {
+            dst.append(flags | value);
+            return;
+        }
+        dst.append(flags | mask);
+        int remaining = value - mask;
+        while (remaining >= 0x80) {
+            dst.append((remaining & 0x7f) | 0x80);
+            remaining >>>= 7;
+        }
+        dst.append(remaining);
+    }
+
+    static void encodeString(final ByteArrayBuffer dst, final String s, final boolean huffman) {
+        final int len = s.length();
+        if (huffman) {
+            final int encodedLen = Huffman.encodedLength(s);
+            if (encodedLen < len) {
+                encodeInt(dst, 7, 0x80, encodedLen);
+                Huffman.encode(s, dst);
+                return;
+            }
+        }
+        encodeInt(dst, 7, 0x00, len);
+        final int off = dst.length();
+        dst.ensureCapacity(len);
+        final byte[] b = dst.buffer();
+        for (int i = 0; i < len; i++) {
+            b[off + i] = (byte) s.charAt(i);
+        }
+        dst.setLength(off + len);
+    }
+
+    private static boolean isSensitive(final String name) {
+        return name.equals("authorization") || name.equals("proxy-authorization");
+    }
+
+    void encodeHeader(final ByteArrayBuffer dst, final String name, final String value, final boolean huffman) {
+        final int staticSize = HPackStaticTable.size();
+        if (isSensitive(name)) {
+            final int nameIndex = findName(name);
+            if (nameIndex > 0) {
+                encodeInt(dst, 4, 0x10, nameIndex);
+            } else {
+                dst.append(0x10);
+                encodeString(dst, name, huffman);
+            }
+            encodeString(dst, value, huffman);
+            return;
+        }
+        int index = HPackStaticTable.findField(name, value);
+        if (index == 0) {
+            final int dynamicIndex = this.dynamicTable.findField(name, value);
+            if (dynamicIndex > 0) {
+                index = staticSize + dynamicIndex;
+            }
+        }
+        if (index > 0) {
+            encodeInt(dst, 7, 0x80, index);
+            return;
+        }
+        final int nameIndex = findName(name);
+        final int entrySize = name.length() + value.length() + HPackDynamicTable.ENTRY_OVERHEAD;
+        final boolean indexing = entrySize <= this.dynamicTable.getMaxSize() / 2;
+        if (indexing) {
+            encodeInt(dst, 6, 0x40, nameIndex);
+        } else {
+            encodeInt(dst, 4, 0x00, nameIndex);
+        }
+        if (nameIndex == 0) {
+            encodeString(dst, name, huffman);
+        }
+        encodeString(dst, value, huffman);
+        if (indexing) {
+            this.dynamicTable.add(new BasicHeader(name, value));
+        }
+    }
+
+    private int findName(final String name) {
+        final int index = HPackStaticTable.findName(name);
+        if (index > 0) {
+            return index;
+        }
+        final int dynamicIndex = this.dynamicTable.findName(name);
+        return dynamicIndex > 0 ? HPackStaticTable.size() + dynamicIndex : 0;
+    }
+
+    /**
+     * Encodes a complete header block. Header names are expected to be
+     * in lower case.
+     */
+    void encodeHeaders(final ByteArrayBuffer dst, final List<? extends Header> headers, final boolean huffman) {
+        if (this.sizeUpdatePending) {
+            if (this.pendingMinSize < this.dynamicTable.getMaxSize()) {
+                encodeInt(dst, 5, 0x20, this.pendingMinSize);
+            }
+            encodeInt(dst, 5, 0x20, this.dynamicTable.getMaxSize());
+            this.sizeUpdatePending = false;
+            this.pendingMinSize = -1;
+        }
+        for (int i = 0; i < headers.size(); i++) {
+            final Header header = headers.get(i);
+            final String value = header.getValue();
+            encodeHeader(dst, header.getName(), value != null ? value : "", huffman);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+
+/**
+ * HPACK static table as defined by RFC 7541, appendix A.
+ */
+final class HPackStaticTable {
+
+    static final Header[] ENTRIES = {
+        new BasicHeader(":authority", ""),
+        new BasicHeader(":method", "GET"),
+        new BasicHeader(":method", "POST"),
+        new BasicHeader(":path", "/"),
+        new BasicHeader(":path", "/index.html"),
+        new BasicHeader(":scheme", "http"),
+        new BasicHeader(":scheme", "https"),
+        new BasicHeader(":status", "200"),
+        new BasicHeader(":status", "204"),
+        new BasicHeader(":status", "206"),
+        new BasicHeader(":status", "304"),
+        new BasicHeader(":status", "400"),
+        new BasicHeader(":status", "404"),
+        new BasicHeader(":status", "500"),
+        new BasicHeader("accept-charset", ""),
+        new BasicHeader("accept-encoding", "gzip, deflate"),
+        new BasicHeader("accept-language", ""),
+        new BasicHeader("accept-ranges", ""),
+        new BasicHeader("accept", ""),
+        new BasicHeader("access-control-allow-origin", ""),
+        new BasicHeader("age", ""),
+        new BasicHeader("allow", ""),
+        new BasicHeader("authorization", ""),
+        new BasicHeader("cache-control", ""),
+        new BasicHeader("content-disposition", ""),
+        new BasicHeader("content-encoding", ""),
+        new BasicHeader("content-language", ""),
+        new BasicHeader("content-length", ""),
+        new BasicHeader("content-location", ""),
+        new BasicHeader("content-range", ""),
+        new BasicHeader("content-type", ""),
+        new BasicHeader("cookie", ""),
+        new BasicHeader("date", ""),
+        new BasicHeader("etag", ""),
+        new BasicHeader("expect", ""),
+        new BasicHeader("expires", ""),
+        new BasicHeader("from", ""),
+        new BasicHeader("host", ""),
+        new BasicHeader("if-match", ""),
+        new BasicHeader("if-modified-since", ""),
+        new BasicHeader("if-none-match", ""),
+        new BasicHeader("if-range", ""),
+        new BasicHeader("if-unmodified-since", ""),
+        new BasicHeader("last-modified", ""),
+        new BasicHeader("link", ""),
+        new BasicHeader("location", ""),
+        new BasicHeader("max-forwards", ""),
+        new BasicHeader("proxy-authenticate", ""),
+        new BasicHeader("proxy-authorization", ""),
+        new BasicHeader("range", ""),
+        new BasicHeader("referer", ""),
+        new BasicHeader("refresh", ""),
+        new BasicHeader("retry-after", ""),
+        new BasicHeader("server", ""),
+        new BasicHeader("set-cookie", ""),
+        new BasicHeader("strict-transport-security", ""),
+        new BasicHeader("transfer-encoding", ""),
+        new BasicHeader("user-agent", ""),
+        new BasicHeader("vary", ""),
+        new BasicHeader("via", ""),
+        new BasicHeader("www-authenticate", "")
+    };
+
+    private static final Map<String, Integer> NAME_INDEX;
+    private static final Map<String, Integer> FIELD_INDEX;
+
+    static {
+        NAME_INDEX = new HashMap<String, Integer>(ENTRIES.length * 2);
+        FIELD_INDEX = new HashMap<String, Integer>(ENTRIES.length * 2);
+        for (int i = ENTRIES.length - 1; i >= 0; i--) {
+            final Header entry = ENTRIES[i];
+            NAME_INDEX.put(entry.getName(), Integer.valueOf(i + 1));
+            if (!entry.getValue().isEmpty()) {
+                FIELD_INDEX.put(entry.getName() + '\0' + entry.getValue(), Integer.valueOf(i + 1));
+            }
+        }
+    }
+
+    private HPackStaticTable() {
+    }
+
+    static int size() {
+        return ENTRIES.length;
+    }
+
+    /**
+     * @param index one-based index.
+     */
+    static Header get(final int index) {
+        return ENTRIES[index - 1];
+    }
+
+    /**
+     * Returns one-based index of the entry with the given name and value
+     * or {@code 0} if not found.
+     */
+    static int findField(final String name, final String value) {
+        final Integer index = FIELD_INDEX.get(name + '\0' + value);
+        return index != null ? index.intValue() : 0;
+    }
+
+    /**
+     * Returns one-based index of the first entry with the given name
+     * or {@code 0} if not found.
+     */
+    static int findName(final String name) {
+        final Integer index = NAME_INDEX.get(name);
+        return index != null ? index.intValue() : 0;
+    }
+
+}
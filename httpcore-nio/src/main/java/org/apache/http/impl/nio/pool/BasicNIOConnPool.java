@@ -42,8 +42,10 @@
 import org.apache.http.nio.pool.NIOConnFactory;
 import org.apache.http.nio.pool.SocketAddressResolver;
 import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorAffinity;
 import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.Args;
 
 /**
@@ -170,9 +172,21 @@ protected BasicNIOPoolEntry createEntry(final HttpHost host, final NHttpClientCo
         final BasicNIOPoolEntry entry = new BasicNIOPoolEntry(
                 Long.toString(COUNTER.getAndIncrement()), host, conn);
         entry.setSocketTimeout(conn.getSocketTimeout());
+        final HttpContext context = conn.getContext();
+        if (context != null) {
+            entry.setDispatcher(context.getAttribute(IOReactorAffinity.DISPATCHER_KEY));
+        }
         return entry;
     }
 
+    /**
+     * @since 4.4.17
+     */
+    @Override
+    protected Object getDispatcher(final BasicNIOPoolEntry entry) {
+        return entry.getDispatcher();
+    }
+
     @Override
     public Future<BasicNIOPoolEntry> lease(
             final HttpHost route,
@@ -46,6 +46,7 @@
 public class BasicNIOPoolEntry extends PoolEntry<HttpHost, NHttpClientConnection> {
 
     private volatile int socketTimeout;
+    private volatile Object dispatcher;
 
     public BasicNIOPoolEntry(final String id, final HttpHost route, final NHttpClientConnection conn) {
         super(id, route, conn);
@@ -81,4 +82,12 @@ void setSocketTimeout(final int socketTimeout) {
         this.socketTimeout = socketTimeout;
     }
 
+    Object getDispatcher() {
+        return dispatcher;
+    }
+
+    void setDispatcher(final Object dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
 }
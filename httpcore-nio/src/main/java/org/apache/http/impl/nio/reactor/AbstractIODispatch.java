@@ -29,6 +29,8 @@
 
 import java.io.IOException;
 
+import org.apache.http.instrument.HttpInstrumentation;
+import org.apache.http.instrument.InstrumentationSupport;
 import org.apache.http.nio.reactor.IOEventDispatch;
 import org.apache.http.nio.reactor.IOSession;
 import org.apache.http.nio.reactor.ssl.SSLIOSession;
@@ -43,6 +45,8 @@
  */
 public abstract class AbstractIODispatch<T> implements IOEventDispatch {
 
+    private static final HttpInstrumentation INSTRUMENTATION = InstrumentationSupport.getInstrumentation();
+
     protected abstract T createConnection(IOSession session);
 
     protected abstract void onConnected(T conn);
@@ -97,7 +101,11 @@ public void disconnected(final IOSession session) {
         final
         T conn = (T) session.getAttribute(IOEventDispatch.CONNECTION_KEY);
         if (conn != null) {
-            onClosed(conn);
+            try {
+                onClosed(conn);
+            } finally {
+                INSTRUMENTATION.connectionClosed(conn);
+            }
         }
     }
 
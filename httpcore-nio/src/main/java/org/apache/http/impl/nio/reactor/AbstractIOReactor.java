@@ -40,8 +40,12 @@
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.instrument.HttpInstrumentation;
+import org.apache.http.instrument.InstrumentationSupport;
 import org.apache.http.nio.reactor.IOReactor;
+import org.apache.http.nio.reactor.IOReactorAffinity;
 import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.nio.reactor.IOReactorStatus;
 import org.apache.http.nio.reactor.IOSession;
@@ -57,6 +61,11 @@
  */
 public abstract class AbstractIOReactor implements IOReactor {
 
+    private static final HttpInstrumentation INSTRUMENTATION = InstrumentationSupport.getInstrumentation();
+
+    // queue sizes are O(n) to compute, so they are sampled at most once per interval
+    private static final long QUEUE_SAMPLE_INTERVAL = 1000000000L;
+
     private volatile IOReactorStatus status;
 
     private final Object statusMutex;
@@ -68,6 +77,11 @@ public abstract class AbstractIOReactor implements IOReactor {
     private final Queue<IOSession> closedSessions;
     private final Queue<ChannelEntry> newChannels;
 
+    private volatile long busyPollTime;
+    private volatile Thread thread;
+    private volatile boolean spinning;
+    private volatile boolean wakeupPending;
+
     /**
      * Creates new AbstractIOReactor instance.
      *
@@ -201,6 +215,75 @@ public IOReactorStatus getStatus() {
         return this.status;
     }
 
+    /**
+     * Returns the time in microseconds this I/O reactor spins on non-blocking
+     * selects before blocking.
+     *
+     * @since 4.4.17
+     */
+    public long getBusyPollTime() {
+        return TimeUnit.NANOSECONDS.toMicros(this.busyPollTime);
+    }
+
+    /**
+     * Sets the time in microseconds this I/O reactor spins on non-blocking
+     * selects before blocking. {@code 0} disables busy polling.
+     *
+     * @see IOReactorConfig#getBusyPollTime()
+     * @since 4.4.17
+     */
+    public void setBusyPollTime(final long busyPollTime) {
+        this.busyPollTime = TimeUnit.MICROSECONDS.toNanos(Args.notNegative(busyPollTime, "Busy poll time"));
+    }
+
+    /**
+     * Wakes up the selector unless called from the I/O reactor thread, which
+     * picks up changes before its next select anyway, or while the I/O reactor
+     * is busy polling.
+     */
+    void wakeup() {
+        if (Thread.currentThread() == this.thread) {
+            return;
+        }
+        this.wakeupPending = true;
+        if (!this.spinning) {
+            this.selector.wakeup();
+        }
+    }
+
+    private int select() throws IOException {
+        final long spinTime = this.busyPollTime;
+        if (spinTime > 0) {
+            final long spinStart = System.nanoTime();
+            int readyCount = 0;
+            this.spinning = true;
+            try {
+                do {
+                    readyCount = this.selector.selectNow();
+                    if (readyCount > 0 || this.wakeupPending || hasPendingWork()) {
+                        break;
+                    }
+                } while (System.nanoTime() - spinStart < spinTime);
+            } finally {
+                this.spinning = false;
+            }
+            // re-check after leaving the spinning state as wakeups requested
+            // while spinning do not wake up the selector
+            final boolean parked = readyCount == 0 && !this.wakeupPending && !hasPendingWork();
+            if (INSTRUMENTATION.isEnabled()) {
+                INSTRUMENTATION.ioReactorBusyPollCompleted(this, System.nanoTime() - spinStart, parked);
+            }
+            if (!parked) {
+                return readyCount > 0 ? readyCount : this.selector.selectNow();
+            }
+        }
+        return this.selector.select(this.selectTimeout);
+    }
+
+    private boolean hasPendingWork() {
+        return !this.newChannels.isEmpty() || !this.interestOpsQueue.isEmpty();
+    }
+
     /**
      * Returns {@code true} if interest Ops queueing is enabled, {@code false} otherwise.
      *
@@ -219,7 +302,7 @@ public boolean getInterestOpsQueueing() {
     public void addChannel(final ChannelEntry channelEntry) {
         Args.notNull(channelEntry, "Channel entry");
         this.newChannels.add(channelEntry);
-        this.selector.wakeup();
+        wakeup();
     }
 
     /**
@@ -247,12 +330,17 @@ public void addChannel(final ChannelEntry channelEntry) {
     protected void execute() throws InterruptedIOException, IOReactorException {
         this.status = IOReactorStatus.ACTIVE;
 
+        final Object previousDispatcher = IOReactorAffinity.bind(this);
+        this.thread = Thread.currentThread();
+        final boolean instrumented = INSTRUMENTATION.isEnabled();
+        long lastQueueSample = instrumented ? System.nanoTime() - QUEUE_SAMPLE_INTERVAL : 0;
         try {
             for (;;) {
 
+                final long selectStart = instrumented ? System.nanoTime() : 0;
                 final int readyCount;
                 try {
-                    readyCount = this.selector.select(this.selectTimeout);
+                    readyCount = select();
                 } catch (final InterruptedIOException ex) {
                     throw ex;
                 } catch (final IOException ex) {
@@ -264,6 +352,8 @@ protected void execute() throws InterruptedIOException, IOReactorException {
                     break;
                 }
 
+                final long processStart = instrumented ? System.nanoTime() : 0;
+
                 if (this.status == IOReactorStatus.SHUTTING_DOWN) {
                     // Graceful shutdown in process
                     // Try to close things out nicely
@@ -279,6 +369,10 @@ protected void execute() throws InterruptedIOException, IOReactorException {
                 // Validate active channels
                 validate(this.selector.keys());
 
+                // Wakeups requested from now on may concern work queued after
+                // the queues below have been drained
+                this.wakeupPending = false;
+
                 // Process closed sessions
                 processClosedSessions();
 
@@ -298,10 +392,30 @@ protected void execute() throws InterruptedIOException, IOReactorException {
                     processPendingInterestOps();
                 }
 
+                if (instrumented) {
+                    final long now = System.nanoTime();
+                    INSTRUMENTATION.ioReactorLoopCompleted(
+                            this, readyCount, processStart - selectStart, now - processStart);
+                    if (now - lastQueueSample >= QUEUE_SAMPLE_INTERVAL) {
+                        lastQueueSample = now;
+                        INSTRUMENTATION.ioReactorQueueDepth(
+                                this,
+                                this.newChannels.size(),
+                                this.closedSessions.size(),
+                                this.interestOpsQueue.size(),
+                                this.sessions.size());
+                    }
+                }
+
             }
 
         } catch (final ClosedSelectorException ignore) {
         } finally {
+            IOReactorAffinity.bind(previousDispatcher);
+            this.thread = null;
+            if (instrumented) {
+                INSTRUMENTATION.ioReactorTerminated(this);
+            }
             hardShutdown();
             synchronized (this.statusMutex) {
                 this.statusMutex.notifyAll();
@@ -400,9 +514,10 @@ public void addInterestOps(final InterestOpEntry entry) {
                 };
             }
 
-            final IOSession session;
+            final IOSessionImpl session;
             try {
                 session = new IOSessionImpl(key, interestOpsCallback, sessionClosedCallback);
+                session.setDispatcher(this);
                 int timeout = 0;
                 try {
                     timeout = channel.socket().getSoTimeout();
@@ -413,6 +528,7 @@ public void addInterestOps(final InterestOpEntry entry) {
                 }
 
                 session.setAttribute(IOSession.ATTACHMENT_KEY, entry.getAttachment());
+                session.setAttribute(IOReactorAffinity.DISPATCHER_KEY, this);
                 session.setSocketTimeout(timeout);
             } catch (final CancelledKeyException ex) {
                 continue;
@@ -323,6 +323,8 @@ public void execute(
             for (int i = 0; i < this.dispatchers.length; i++) {
                 final BaseIOReactor dispatcher = new BaseIOReactor(this.selectTimeout, this.interestOpsQueueing);
                 dispatcher.setExceptionHandler(exceptionHandler);
+                dispatcher.setBusyPollTime(this.config.getBusyPollTime());
+                dispatcher.setSessionIOBudget(this.config.getSessionIOBudget());
                 this.dispatchers[i] = dispatcher;
             }
             for (int i = 0; i < this.workerCount; i++) {
@@ -477,6 +479,17 @@ protected void doShutdown() throws InterruptedIOException {
      * @param entry the channel entry.
      */
     protected void addChannel(final ChannelEntry entry) {
+        // Keep channels requested from a dispatcher thread on that dispatcher
+        final SessionRequestImpl sessionRequest = entry.getSessionRequest();
+        final Object dispatcher = sessionRequest != null ? sessionRequest.getDispatcher() : null;
+        if (dispatcher != null) {
+            for (final BaseIOReactor candidate : this.dispatchers) {
+                if (candidate == dispatcher) {
+                    candidate.addChannel(entry);
+                    return;
+                }
+            }
+        }
         // Distribute new channels among the workers
         final int i = Math.abs(this.currentWorker++ % this.workerCount);
         this.dispatchers[i].addChannel(entry);
@@ -30,10 +30,14 @@
 import java.io.InterruptedIOException;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpConnectionMetrics;
 import org.apache.http.nio.reactor.EventMask;
 import org.apache.http.nio.reactor.IOEventDispatch;
 import org.apache.http.nio.reactor.IOReactorException;
@@ -47,6 +51,14 @@
  * implementations. This class adds support for the I/O event dispatching
  * using {@link IOEventDispatch}, management of buffering sessions, and
  * session timeout handling.
+ * <p>
+ * Optionally the I/O reactor can share its I/O capacity fairly between sessions
+ * by means of a per session I/O budget (see {@link #setSessionIOBudget(int)}).
+ * Sessions that have transferred more bytes than their budget allows are deferred:
+ * their I/O events remain pending and get dispatched in subsequent select cycles
+ * once the budget has been replenished, while events of other sessions get
+ * dispatched without delay.
+ * </p>
  *
  * @since 4.0
  */
@@ -54,8 +66,13 @@ public class BaseIOReactor extends AbstractIOReactor {
 
     private final long timeoutCheckInterval;
     private final Set<IOSession> bufferingSessions;
+    private final Map<IOSession, Long> ioDebts;
 
     private long lastTimeoutCheck;
+    private volatile int sessionIOBudget;
+    private volatile long deferredCount;
+    private boolean dispatchedInCycle;
+    private long minDeferredDebt;
 
     private IOReactorExceptionHandler exceptionHandler = null;
     private IOEventDispatch eventDispatch = null;
@@ -84,8 +101,10 @@ public BaseIOReactor(
             final long selectTimeout, final boolean interestOpsQueueing) throws IOReactorException {
         super(selectTimeout, interestOpsQueueing);
         this.bufferingSessions = new HashSet<IOSession>();
+        this.ioDebts = new HashMap<IOSession, Long>();
         this.timeoutCheckInterval = selectTimeout;
         this.lastTimeoutCheck = System.currentTimeMillis();
+        this.minDeferredDebt = -1;
     }
 
     /**
@@ -113,6 +132,47 @@ public void setExceptionHandler(final IOReactorExceptionHandler exceptionHandler
         this.exceptionHandler = exceptionHandler;
     }
 
+    /**
+     * Returns the number of bytes a session may transfer per select cycle
+     * before its I/O events get deferred in favor of other sessions or
+     * {@code 0} if sessions are not budgeted.
+     *
+     * @since 4.4.17
+     */
+    public int getSessionIOBudget() {
+        return this.sessionIOBudget;
+    }
+
+    /**
+     * Sets the number of bytes a session may transfer per select cycle
+     * before its I/O events get deferred in favor of other sessions.
+     * <p>
+     * Budgets are replenished once per select cycle in a deficit round-robin
+     * fashion, so a session that has transferred a large chunk of data in one
+     * go will be deferred for as many cycles as it takes to pay it off. Bytes
+     * are accounted using the {@link HttpConnectionMetrics} of the connection
+     * bound to the session. Sessions without such a connection are not budgeted.
+     * </p>
+     *
+     * @param sessionIOBudget the budget in bytes or {@code 0} to disable budgeting.
+     *
+     * @see IOReactorConfig#getSessionIOBudget()
+     * @since 4.4.17
+     */
+    public void setSessionIOBudget(final int sessionIOBudget) {
+        this.sessionIOBudget = Args.notNegative(sessionIOBudget, "Session I/O budget");
+    }
+
+    /**
+     * Returns the total number of I/O events deferred because the session
+     * had exhausted its I/O budget.
+     *
+     * @since 4.4.17
+     */
+    public long getDeferredCount() {
+        return this.deferredCount;
+    }
+
     /**
      * Handles the given {@link RuntimeException}. This method delegates
      * handling of the exception to the {@link IOReactorExceptionHandler},
@@ -154,6 +214,11 @@ protected void connectable(final SelectionKey key) {
     @Override
     protected void readable(final SelectionKey key) {
         final IOSession session = getSession(key);
+        final int budget = this.sessionIOBudget;
+        final long startBytes = budget > 0 ? getTransferredBytes(session) : -1;
+        if (startBytes >= 0 && deferred(session, budget)) {
+            return;
+        }
         try {
             // Try to gently feed more data to the event dispatcher
             // if the session input buffer has not been fully exhausted
@@ -164,6 +229,10 @@ protected void readable(final SelectionKey key) {
                         || (session.getEventMask() & SelectionKey.OP_READ) == 0) {
                     break;
                 }
+                if (startBytes >= 0
+                        && getDebt(session) + getTransferredBytes(session) - startBytes >= budget) {
+                    break;
+                }
             }
             if (session.hasBufferedInput()) {
                 this.bufferingSessions.add(session);
@@ -172,6 +241,10 @@ protected void readable(final SelectionKey key) {
             throw ex;
         } catch (final RuntimeException ex) {
             handleRuntimeException(ex);
+        } finally {
+            if (startBytes >= 0) {
+                charge(session, startBytes);
+            }
         }
     }
 
@@ -183,15 +256,83 @@ protected void readable(final SelectionKey key) {
     @Override
     protected void writable(final SelectionKey key) {
         final IOSession session = getSession(key);
+        final int budget = this.sessionIOBudget;
+        final long startBytes = budget > 0 ? getTransferredBytes(session) : -1;
+        if (startBytes >= 0 && deferred(session, budget)) {
+            return;
+        }
         try {
             this.eventDispatch.outputReady(session);
         } catch (final CancelledKeyException ex) {
             throw ex;
         } catch (final RuntimeException ex) {
             handleRuntimeException(ex);
+        } finally {
+            if (startBytes >= 0) {
+                charge(session, startBytes);
+            }
         }
     }
 
+    private static long getTransferredBytes(final IOSession session) {
+        final Object conn = session.getAttribute(IOEventDispatch.CONNECTION_KEY);
+        if (conn instanceof HttpConnection) {
+            final HttpConnectionMetrics metrics = ((HttpConnection) conn).getMetrics();
+            if (metrics != null) {
+                return metrics.getReceivedBytesCount() + metrics.getSentBytesCount();
+            }
+        }
+        return -1;
+    }
+
+    private long getDebt(final IOSession session) {
+        final Long debt = this.ioDebts.get(session);
+        return debt != null ? debt.longValue() : 0L;
+    }
+
+    private boolean deferred(final IOSession session, final int budget) {
+        final long debt = getDebt(session);
+        if (debt < budget) {
+            return false;
+        }
+        this.deferredCount++;
+        if (this.minDeferredDebt < 0 || debt < this.minDeferredDebt) {
+            this.minDeferredDebt = debt;
+        }
+        return true;
+    }
+
+    private void charge(final IOSession session, final long startBytes) {
+        this.dispatchedInCycle = true;
+        final long endBytes = getTransferredBytes(session);
+        if (endBytes > startBytes) {
+            this.ioDebts.put(session, Long.valueOf(getDebt(session) + endBytes - startBytes));
+        }
+    }
+
+    private void replenishBudgets() {
+        final int budget = this.sessionIOBudget;
+        if (!this.ioDebts.isEmpty()) {
+            long quantum = budget;
+            if (!this.dispatchedInCycle && this.minDeferredDebt >= 0 && budget > 0) {
+                // No session was served in this cycle: skip the rounds it would take
+                // for the least indebted deferred session to become eligible again
+                quantum = Math.max(1, this.minDeferredDebt / budget) * (long) budget;
+            }
+            for (final Iterator<Map.Entry<IOSession, Long>> it = this.ioDebts.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<IOSession, Long> entry = it.next();
+                final long debt = entry.getValue().longValue() - quantum;
+                if (budget == 0 || debt <= 0 || entry.getKey().isClosed()) {
+                    it.remove();
+                } else {
+                    entry.setValue(Long.valueOf(debt));
+                }
+            }
+        }
+        this.dispatchedInCycle = false;
+        this.minDeferredDebt = -1;
+    }
+
     /**
      * Verifies whether any of the sessions associated with the given selection
      * keys timed out by invoking the {@link #timeoutCheck(SelectionKey, long)}
@@ -219,6 +360,11 @@ protected void validate(final Set<SelectionKey> keys) {
                     it.remove();
                     continue;
                 }
+                final int budget = this.sessionIOBudget;
+                final long startBytes = budget > 0 ? getTransferredBytes(session) : -1;
+                if (startBytes >= 0 && deferred(session, budget)) {
+                    continue;
+                }
                 try {
                     if ((session.getEventMask() & EventMask.READ) > 0) {
                         this.eventDispatch.inputReady(session);
@@ -231,9 +377,14 @@ protected void validate(final Set<SelectionKey> keys) {
                     session.close();
                 } catch (final RuntimeException ex) {
                     handleRuntimeException(ex);
+                } finally {
+                    if (startBytes >= 0) {
+                        charge(session, startBytes);
+                    }
                 }
             }
         }
+        replenishBudgets();
     }
 
     /**
@@ -273,6 +424,7 @@ protected void sessionTimedOut(final IOSession session) {
      */
     @Override
     protected void sessionClosed(final IOSession session) {
+        this.ioDebts.remove(session);
         try {
             this.eventDispatch.disconnected(session);
         } catch (final CancelledKeyException ex) {
@@ -44,6 +44,7 @@
 import java.util.concurrent.ThreadFactory;
 
 import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorAffinity;
 import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.nio.reactor.IOReactorStatus;
 import org.apache.http.nio.reactor.SessionRequest;
@@ -229,6 +230,7 @@ public SessionRequest connect(
         final SessionRequestImpl sessionRequest = new SessionRequestImpl(
                 remoteAddress, localAddress, attachment, callback);
         sessionRequest.setConnectTimeout(this.config.getConnectTimeout());
+        sessionRequest.setDispatcher(IOReactorAffinity.current());
 
         this.requestQueue.add(sessionRequest);
         this.selector.wakeup();
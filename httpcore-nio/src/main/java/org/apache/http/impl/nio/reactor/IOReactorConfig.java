@@ -52,6 +52,8 @@ public final class IOReactorConfig implements Cloneable {
     private int sndBufSize;
     private int rcvBufSize;
     private final int backlogSize;
+    private final long busyPollTime;
+    private final int sessionIOBudget;
 
     /**
      * @deprecated Use {@link Builder}.
@@ -72,6 +74,8 @@ public IOReactorConfig() {
         this.sndBufSize = 0;
         this.rcvBufSize = 0;
         this.backlogSize = 0;
+        this.busyPollTime = 0;
+        this.sessionIOBudget = 0;
     }
 
     IOReactorConfig(
@@ -87,7 +91,9 @@ public IOReactorConfig() {
             final int connectTimeout,
             final int sndBufSize,
             final int rcvBufSize,
-            final int backlogSize) {
+            final int backlogSize,
+            final long busyPollTime,
+            final int sessionIOBudget) {
         super();
         this.selectInterval = selectInterval;
         this.shutdownGracePeriod = shutdownGracePeriod;
@@ -102,6 +108,8 @@ public IOReactorConfig() {
         this.sndBufSize = sndBufSize;
         this.rcvBufSize = rcvBufSize;
         this.backlogSize = backlogSize;
+        this.busyPollTime = busyPollTime;
+        this.sessionIOBudget = sessionIOBudget;
     }
 
     /**
@@ -355,6 +363,37 @@ protected IOReactorConfig clone() throws CloneNotSupportedException {
         return (IOReactorConfig) super.clone();
     }
 
+    /**
+     * Determines the time in microseconds an I/O dispatcher spins on non-blocking
+     * selects before it falls back to a blocking select. While a dispatcher spins,
+     * other threads handing work to it do not need to wake up its selector.
+     * Busy polling trades CPU time for lower latency and should only be enabled
+     * with no more I/O dispatchers than there are spare CPU cores.
+     * <p>
+     * Default: {@code 0} (disabled)
+     *
+     * @since 4.4.17
+     */
+    public long getBusyPollTime() {
+        return this.busyPollTime;
+    }
+
+    /**
+     * Determines the number of bytes a session may transfer per select cycle
+     * before its I/O events get deferred in favor of other sessions served by
+     * the same I/O dispatcher. A budget prevents a few sessions streaming large
+     * entities from monopolizing an I/O dispatcher at the expense of latency of
+     * other sessions. Sessions exceeding their budget in one go are deferred for
+     * as many select cycles as it takes to replenish it.
+     * <p>
+     * Default: {@code 0} (disabled)
+     *
+     * @since 4.4.17
+     */
+    public int getSessionIOBudget() {
+        return this.sessionIOBudget;
+    }
+
     public static Builder custom() {
         return new Builder();
     }
@@ -374,7 +413,9 @@ public static Builder copy(final IOReactorConfig config) {
             .setConnectTimeout(config.getConnectTimeout())
             .setSndBufSize(config.getSndBufSize())
             .setRcvBufSize(config.getRcvBufSize())
-            .setBacklogSize(config.getBacklogSize());
+            .setBacklogSize(config.getBacklogSize())
+            .setBusyPollTime(config.getBusyPollTime())
+            .setSessionIOBudget(config.getSessionIOBudget());
     }
 
     public static class Builder {
@@ -419,6 +460,8 @@ public static void setDefaultMaxIoThreadCount(final int defaultMaxIoThreadCount)
         private int sndBufSize;
         private int rcvBufSize;
         private int backlogSize;
+        private long busyPollTime;
+        private int sessionIOBudget;
 
         Builder() {
             this.selectInterval = 1000;
@@ -434,6 +477,8 @@ public static void setDefaultMaxIoThreadCount(final int defaultMaxIoThreadCount)
             this.sndBufSize = 0;
             this.rcvBufSize = 0;
             this.backlogSize = 0;
+            this.busyPollTime = 0;
+            this.sessionIOBudget = 0;
         }
 
         public Builder setSelectInterval(final long selectInterval) {
@@ -501,11 +546,28 @@ public Builder setBacklogSize(final int backlogSize) {
             return this;
         }
 
+        /**
+         * @since 4.4.17
+         */
+        public Builder setBusyPollTime(final long busyPollTime) {
+            this.busyPollTime = busyPollTime;
+            return this;
+        }
+
+        /**
+         * @since 4.4.17
+         */
+        public Builder setSessionIOBudget(final int sessionIOBudget) {
+            this.sessionIOBudget = sessionIOBudget;
+            return this;
+        }
+
         public IOReactorConfig build() {
             return new IOReactorConfig(
                     selectInterval, shutdownGracePeriod, interestOpQueued, ioThreadCount,
                     soTimeout, soReuseAddress, soLinger, soKeepAlive, tcpNoDelay,
-                    connectTimeout, sndBufSize, rcvBufSize, backlogSize);
+                    connectTimeout, sndBufSize, rcvBufSize, backlogSize, busyPollTime,
+                    sessionIOBudget);
         }
 
     }
@@ -526,6 +588,8 @@ public String toString() {
                 .append(", sndBufSize=").append(this.sndBufSize)
                 .append(", rcvBufSize=").append(this.rcvBufSize)
                 .append(", backlogSize=").append(this.backlogSize)
+                .append(", busyPollTime=").append(this.busyPollTime)
+                .append(", sessionIOBudget=").append(this.sessionIOBudget)
                 .append("]");
         return builder.toString();
     }
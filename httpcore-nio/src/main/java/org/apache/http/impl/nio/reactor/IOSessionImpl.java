@@ -70,6 +70,8 @@ public class IOSessionImpl implements IOSession, SocketAccessor {
     private volatile long lastWriteTime;
     private volatile long lastAccessTime;
 
+    private volatile AbstractIOReactor dispatcher;
+
     /**
      * Creates new instance of IOSessionImpl.
      *
@@ -112,6 +114,24 @@ public IOSessionImpl(
         this(key, null, sessionClosedCallback);
     }
 
+    /**
+     * Sets the I/O dispatcher that runs the event loop of this session.
+     * The dispatcher decides whether event mask changes require its selector
+     * to be woken up.
+     */
+    void setDispatcher(final AbstractIOReactor dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    private void wakeupSelector() {
+        final AbstractIOReactor currentDispatcher = this.dispatcher;
+        if (currentDispatcher != null) {
+            currentDispatcher.wakeup();
+        } else {
+            this.key.selector().wakeup();
+        }
+    }
+
     @Override
     public ByteChannel channel() {
         return this.channel;
@@ -153,7 +173,7 @@ public synchronized void setEventMask(final int ops) {
         } else {
             this.key.interestOps(ops);
         }
-        this.key.selector().wakeup();
+        wakeupSelector();
     }
 
     @Override
@@ -174,7 +194,7 @@ public synchronized void setEvent(final int op) {
             final int ops = this.key.interestOps();
             this.key.interestOps(ops | op);
         }
-        this.key.selector().wakeup();
+        wakeupSelector();
     }
 
     @Override
@@ -195,7 +215,7 @@ public synchronized void clearEvent(final int op) {
             final int ops = this.key.interestOps();
             this.key.interestOps(ops & ~op);
         }
-        this.key.selector().wakeup();
+        wakeupSelector();
     }
 
     @Override
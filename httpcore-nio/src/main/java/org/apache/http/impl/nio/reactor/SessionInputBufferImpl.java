@@ -417,4 +417,14 @@ public void clear() {
         super.clear();
     }
 
+    /**
+     * Returns the maximum line length enforced by
+     * {@link #readLine(CharArrayBuffer, boolean)}.
+     *
+     * @since 4.4.17
+     */
+    public int getMaxLineLength() {
+        return this.constraints.getMaxLineLength();
+    }
+
 }
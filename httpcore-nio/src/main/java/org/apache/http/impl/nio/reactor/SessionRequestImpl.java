@@ -67,6 +67,7 @@ enum SessionRequestState {
     private volatile int connectTimeout;
     private volatile IOSession session = null;
     private volatile IOException exception = null;
+    private volatile Object dispatcher;
 
     public SessionRequestImpl(
             final SocketAddress remoteAddress,
@@ -201,6 +202,18 @@ public void timeout() {
         }
     }
 
+    /**
+     * Returns the I/O dispatcher the new session should preferably be
+     * bound to or {@code null} if there is no preference.
+     */
+    Object getDispatcher() {
+        return this.dispatcher;
+    }
+
+    void setDispatcher(final Object dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
     @Override
     public int getConnectTimeout() {
         return this.connectTimeout;
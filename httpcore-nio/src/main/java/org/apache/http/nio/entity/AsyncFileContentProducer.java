@@ -0,0 +1,105 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.entity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.Executor;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.nio.util.ByteBufferAllocator;
+import org.apache.http.nio.util.DirectByteBufferAllocator;
+import org.apache.http.util.Args;
+
+/**
+ * {@link HttpAsyncContentProducer} that streams out content of a file.
+ * Unlike {@link NFileEntity} this producer never touches the file on
+ * an I/O dispatch thread. The file is opened and read ahead by a worker
+ * thread of the given {@link Executor} into a ring of (by default direct)
+ * buffers, which makes this class particularly suitable for TLS sessions
+ * where zero-copy file transfer is not available, and for files on slow
+ * or cold storage.
+ * <p>
+ * {@link #getEntity()} returns a {@link FileEntity} that can be used
+ * to describe the content in the outgoing message:
+ * <pre>
+ * AsyncFileContentProducer producer = new AsyncFileContentProducer(file, contentType, executor);
+ * response.setEntity(producer.getEntity());
+ * HttpAsyncResponseProducer responseProducer = new BasicAsyncResponseProducer(response, producer) {};
+ * </pre>
+ *
+ * @since 4.4.17
+ */
+public class AsyncFileContentProducer extends ReadAheadAsyncContentProducer {
+
+    private final File file;
+
+    /**
+     * Creates new instance of AsyncFileContentProducer.
+     *
+     * @param file the source file.
+     * @param contentType the content type of the file.
+     * @param executor the executor used to run file reads.
+     * @param bufferCount the number of read-ahead buffers.
+     * @param bufferSize the size of a read-ahead buffer.
+     * @param allocator memory allocator.
+     *   If {@code null} {@link DirectByteBufferAllocator#INSTANCE} will be used.
+     */
+    public AsyncFileContentProducer(
+            final File file,
+            final ContentType contentType,
+            final Executor executor,
+            final int bufferCount,
+            final int bufferSize,
+            final ByteBufferAllocator allocator) {
+        super(new FileEntity(Args.notNull(file, "File"), contentType),
+                executor, bufferCount, bufferSize,
+                allocator != null ? allocator : DirectByteBufferAllocator.INSTANCE);
+        this.file = file;
+    }
+
+    public AsyncFileContentProducer(
+            final File file,
+            final ContentType contentType,
+            final Executor executor) {
+        this(file, contentType, executor, 4, 32 * 1024, null);
+    }
+
+    @Override
+    protected ReadableByteChannel openChannel() throws IOException {
+        return new RandomAccessFile(this.file, "r").getChannel();
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+}
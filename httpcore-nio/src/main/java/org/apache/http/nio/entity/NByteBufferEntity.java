@@ -0,0 +1,147 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.util.Args;
+
+/**
+ * A self contained, repeatable non-blocking entity that retrieves its content
+ * from the remaining content of a {@link ByteBuffer}, for instance a memory
+ * mapped file. The position and limit of the source buffer are left intact.
+ *
+ * @since 4.4.17
+ */
+public class NByteBufferEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+
+    private final ByteBuffer content;
+    private final ByteBuffer buf;
+
+    public NByteBufferEntity(final ByteBuffer content, final ContentType contentType) {
+        super();
+        Args.notNull(content, "Source byte buffer");
+        this.content = content.slice();
+        this.buf = this.content.duplicate();
+        if (contentType != null) {
+            setContentType(contentType.toString());
+        }
+    }
+
+    public NByteBufferEntity(final ByteBuffer content) {
+        this(content, null);
+    }
+
+    @Override
+    public void close() {
+        this.buf.clear();
+    }
+
+    @Override
+    public void produceContent(final ContentEncoder encoder, final IOControl ioControl) throws IOException {
+        encoder.write(this.buf);
+        if (!this.buf.hasRemaining()) {
+            encoder.complete();
+        }
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.content.remaining();
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public InputStream getContent() {
+        return new ByteBufferInputStream(this.content.duplicate());
+    }
+
+    @Override
+    public void writeTo(final OutputStream outStream) throws IOException {
+        Args.notNull(outStream, "Output stream");
+        final ByteBuffer src = this.content.duplicate();
+        final byte[] tmp = new byte[Math.min(OUTPUT_BUFFER_SIZE, Math.max(src.remaining(), 1))];
+        while (src.hasRemaining()) {
+            final int l = Math.min(tmp.length, src.remaining());
+            src.get(tmp, 0, l);
+            outStream.write(tmp, 0, l);
+        }
+        outStream.flush();
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer src;
+
+        ByteBufferInputStream(final ByteBuffer src) {
+            super();
+            this.src = src;
+        }
+
+        @Override
+        public int read() {
+            return this.src.hasRemaining() ? this.src.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.src.hasRemaining()) {
+                return -1;
+            }
+            final int l = Math.min(len, this.src.remaining());
+            this.src.get(b, off, l);
+            return l;
+        }
+
+        @Override
+        public int available() {
+            return this.src.remaining();
+        }
+
+    }
+
+}
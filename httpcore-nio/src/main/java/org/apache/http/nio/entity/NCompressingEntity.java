@@ -0,0 +1,109 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.entity;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.CompressingEntity;
+import org.apache.http.impl.nio.codecs.CompressingEncoder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.util.Args;
+
+/**
+ * Non-blocking version of {@link CompressingEntity}. Content of the wrapped
+ * entity is produced through its own {@link HttpAsyncContentProducer}
+ * implementation if available, or through {@link EntityAsyncContentProducer}
+ * otherwise, and compressed on the fly by a {@link CompressingEncoder}.
+ *
+ * @since 4.4.17
+ */
+public class NCompressingEntity extends CompressingEntity implements HttpAsyncContentProducer {
+
+    private final String encoding;
+    private final int level;
+    private final int bufferSize;
+
+    private HttpAsyncContentProducer producer;
+    private ContentEncoder encoder;
+    private CompressingEncoder compressingEncoder;
+
+    public NCompressingEntity(
+            final HttpEntity entity, final String encoding, final int level, final int bufferSize) {
+        super(entity, encoding, level, bufferSize);
+        this.encoding = encoding;
+        this.level = level;
+        this.bufferSize = bufferSize;
+    }
+
+    public NCompressingEntity(final HttpEntity entity, final String encoding) {
+        this(entity, encoding, Deflater.DEFAULT_COMPRESSION, 8192);
+    }
+
+    @Override
+    public void produceContent(
+            final ContentEncoder encoder, final IOControl ioControl) throws IOException {
+        Args.notNull(encoder, "Content encoder");
+        if (this.compressingEncoder == null || this.encoder != encoder) {
+            if (this.compressingEncoder != null) {
+                this.compressingEncoder.release();
+            }
+            this.encoder = encoder;
+            this.compressingEncoder = new CompressingEncoder(
+                    encoder, this.encoding, this.level, this.bufferSize);
+        }
+        if (this.compressingEncoder.isCompleting()) {
+            // the wrapped producer is done; only pending compressed output remains
+            this.compressingEncoder.complete();
+            return;
+        }
+        if (this.producer == null) {
+            this.producer = this.wrappedEntity instanceof HttpAsyncContentProducer
+                    ? (HttpAsyncContentProducer) this.wrappedEntity
+                    : new EntityAsyncContentProducer(this.wrappedEntity);
+        }
+        this.producer.produceContent(this.compressingEncoder, ioControl);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.compressingEncoder != null) {
+            this.compressingEncoder.release();
+            this.compressingEncoder = null;
+            this.encoder = null;
+        }
+        final HttpAsyncContentProducer p = this.producer;
+        this.producer = null;
+        if (p != null) {
+            p.close();
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.entity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileRegionEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.ContentEncoderChannel;
+import org.apache.http.nio.FileContentEncoder;
+import org.apache.http.nio.IOControl;
+
+/**
+ * A self contained, repeatable non-blocking entity that retrieves its content
+ * from a region of a file. The content is streamed directly from the file
+ * channel by means of {@link FileContentEncoder} whenever the encoder
+ * supports it.
+ *
+ * @since 4.4.17
+ */
+public class NFileRegionEntity extends FileRegionEntity implements HttpAsyncContentProducer {
+
+    private RandomAccessFile accessfile;
+    private FileChannel fileChannel;
+    private long idx = -1;
+
+    public NFileRegionEntity(
+            final File file,
+            final long position,
+            final long count,
+            final ContentType contentType) {
+        super(file, position, count, contentType);
+    }
+
+    public NFileRegionEntity(final File file, final long position, final long count) {
+        this(file, position, count, null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.accessfile != null) {
+            this.accessfile.close();
+        }
+        this.accessfile = null;
+        this.fileChannel = null;
+    }
+
+    @Override
+    public void produceContent(final ContentEncoder encoder, final IOControl ioControl) throws IOException {
+        if (this.accessfile == null) {
+            this.accessfile = new RandomAccessFile(this.file, "r");
+        }
+        if (this.fileChannel == null) {
+            this.fileChannel = this.accessfile.getChannel();
+            this.idx = this.position;
+        }
+        final long end = this.position + this.count;
+        final long remaining = end - this.idx;
+        final long transferred;
+        if (remaining <= 0) {
+            transferred = 0;
+        } else if (encoder instanceof FileContentEncoder) {
+            transferred = ((FileContentEncoder) encoder).transfer(this.fileChannel, this.idx, remaining);
+        } else {
+            transferred = this.fileChannel.transferTo(this.idx, remaining, new ContentEncoderChannel(encoder));
+        }
+        if (transferred > 0) {
+            this.idx += transferred;
+        }
+        if (this.idx >= end) {
+            encoder.complete();
+            close();
+        } else if (transferred <= 0 && this.idx >= this.fileChannel.size()) {
+            close();
+            throw new IOException("Premature end of file region; expected "
+                    + this.count + " bytes, got " + (this.idx - this.position));
+        }
+    }
+
+}
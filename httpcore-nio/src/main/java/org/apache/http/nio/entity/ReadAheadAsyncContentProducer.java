@@ -0,0 +1,386 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.entity;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.util.ByteBufferAllocator;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.util.Args;
+
+/**
+ * Implementation of {@link HttpAsyncContentProducer} that reads content of
+ * an arbitrary {@link HttpEntity} ahead of time on a worker thread of the given
+ * {@link Executor} into a small ring of buffers. Blocking reads from the entity
+ * content stream never take place on an I/O dispatch thread. The I/O dispatch
+ * thread merely writes out content that has already been made available and
+ * suspends output event notifications when the ring runs empty. The worker
+ * requests output as soon as more content has been read.
+ * <p>
+ * At most one read-ahead task per producer is active at any point of time.
+ * The task gets re-submitted to the executor whenever a buffer has been
+ * drained by the I/O dispatch thread. It is recommended to use an executor
+ * with a bounded number of threads. Should the executor reject the task
+ * the content production fails with an {@link IOException}.
+ * <p>
+ * This producer can be used to stream out content of a slow
+ * {@link java.io.InputStream} or a file residing on a slow disk:
+ * <pre>
+ * HttpAsyncResponseProducer responseProducer = new BasicAsyncResponseProducer(
+ *     response, new ReadAheadAsyncContentProducer(entity, executor)) {};
+ * </pre>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
+public class ReadAheadAsyncContentProducer implements HttpAsyncContentProducer {
+
+    private final HttpEntity entity;
+    private final Executor executor;
+    private final int bufferCount;
+    private final int bufferSize;
+    private final ByteBufferAllocator allocator;
+
+    private volatile ReadAhead readAhead;
+
+    /**
+     * Creates new instance of ReadAheadAsyncContentProducer.
+     *
+     * @param entity the entity whose content is to be produced.
+     * @param executor the executor used to run read-ahead tasks.
+     * @param bufferCount the number of buffers in the ring.
+     * @param bufferSize the size of a buffer.
+     * @param allocator memory allocator.
+     *   If {@code null} {@link HeapByteBufferAllocator#INSTANCE} will be used.
+     */
+    public ReadAheadAsyncContentProducer(
+            final HttpEntity entity,
+            final Executor executor,
+            final int bufferCount,
+            final int bufferSize,
+            final ByteBufferAllocator allocator) {
+        super();
+        this.entity = Args.notNull(entity, "HTTP entity");
+        this.executor = Args.notNull(executor, "Executor");
+        this.bufferCount = Args.positive(bufferCount, "Buffer count");
+        this.bufferSize = Args.positive(bufferSize, "Buffer size");
+        this.allocator = allocator != null ? allocator : HeapByteBufferAllocator.INSTANCE;
+    }
+
+    public ReadAheadAsyncContentProducer(final HttpEntity entity, final Executor executor) {
+        this(entity, executor, 4, 8 * 1024, null);
+    }
+
+    /**
+     * Opens the channel content is to be read from. This method is executed
+     * by a worker thread of the executor.
+     * <p>
+     * This implementation uses the {@link java.nio.channels.FileChannel} of file input streams
+     * and wraps all other streams with {@link Channels#newChannel(InputStream)}.
+     *
+     * @return the content channel or {@code null} if the entity has no content.
+     * @throws IOException in case of an I/O error.
+     */
+    protected ReadableByteChannel openChannel() throws IOException {
+        final InputStream inStream = this.entity.getContent();
+        if (inStream == null) {
+            return null;
+        }
+        if (inStream instanceof FileInputStream) {
+            return ((FileInputStream) inStream).getChannel();
+        }
+        return Channels.newChannel(inStream);
+    }
+
+    /**
+     * Returns the entity whose content is being produced.
+     */
+    public HttpEntity getEntity() {
+        return this.entity;
+    }
+
+    @Override
+    public void produceContent(
+            final ContentEncoder encoder, final IOControl ioControl) throws IOException {
+        ReadAhead local = this.readAhead;
+        if (local == null) {
+            local = new ReadAhead(ioControl);
+            this.readAhead = local;
+            local.start();
+        }
+        if (local.produceContent(encoder, ioControl)) {
+            encoder.complete();
+            close();
+        }
+    }
+
+    /**
+     * Returns the number of bytes read ahead and not yet written out.
+     */
+    public int getBuffered() {
+        final ReadAhead local = this.readAhead;
+        return local != null ? local.getBuffered() : 0;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return this.entity.isRepeatable();
+    }
+
+    @Override
+    public void close() throws IOException {
+        final ReadAhead local = this.readAhead;
+        this.readAhead = null;
+        if (local != null) {
+            local.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.entity.toString();
+    }
+
+    class ReadAhead implements Runnable {
+
+        private final IOControl ioControl;
+        private final ReentrantLock lock;
+        private final LinkedList<ByteBuffer> free;
+        private final LinkedList<ByteBuffer> filled;
+
+        private ReadableByteChannel channel;
+        private boolean reading;
+        private boolean endOfStream;
+        private boolean closed;
+        private IOException exception;
+
+        ReadAhead(final IOControl ioControl) {
+            super();
+            this.ioControl = ioControl;
+            this.lock = new ReentrantLock();
+            this.free = new LinkedList<ByteBuffer>();
+            this.filled = new LinkedList<ByteBuffer>();
+            for (int i = 0; i < bufferCount; i++) {
+                this.free.add(allocator.allocate(bufferSize));
+            }
+        }
+
+        void start() {
+            this.lock.lock();
+            try {
+                this.reading = true;
+            } finally {
+                this.lock.unlock();
+            }
+            submit();
+        }
+
+        private void submit() {
+            try {
+                executor.execute(this);
+            } catch (final RejectedExecutionException ex) {
+                this.lock.lock();
+                try {
+                    this.reading = false;
+                    this.exception = new IOException("Read-ahead task rejected by executor", ex);
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (this.channel == null) {
+                    this.channel = openChannel();
+                }
+                if (this.channel == null) {
+                    this.lock.lock();
+                    try {
+                        this.endOfStream = true;
+                        this.reading = false;
+                    } finally {
+                        this.lock.unlock();
+                    }
+                    if (this.ioControl != null) {
+                        this.ioControl.requestOutput();
+                    }
+                    return;
+                }
+                for (;;) {
+                    final ByteBuffer buffer;
+                    this.lock.lock();
+                    try {
+                        if (this.closed || this.free.isEmpty()) {
+                            this.reading = false;
+                            break;
+                        }
+                        buffer = this.free.removeFirst();
+                    } finally {
+                        this.lock.unlock();
+                    }
+                    final int bytesRead = this.channel.read(buffer);
+                    this.lock.lock();
+                    try {
+                        if (bytesRead == -1) {
+                            this.free.addFirst(buffer);
+                            this.endOfStream = true;
+                            this.reading = false;
+                        } else {
+                            buffer.flip();
+                            this.filled.add(buffer);
+                        }
+                    } finally {
+                        this.lock.unlock();
+                    }
+                    if (this.ioControl != null) {
+                        this.ioControl.requestOutput();
+                    }
+                    if (bytesRead == -1) {
+                        break;
+                    }
+                }
+            } catch (final Exception ex) {
+                this.lock.lock();
+                try {
+                    this.exception = ex instanceof IOException ? (IOException) ex : new IOException(ex);
+                    this.reading = false;
+                } finally {
+                    this.lock.unlock();
+                }
+                if (this.ioControl != null) {
+                    this.ioControl.requestOutput();
+                }
+            }
+            closeChannelIfDone();
+        }
+
+        boolean produceContent(final ContentEncoder encoder, final IOControl ioctrl) throws IOException {
+            for (;;) {
+                final ByteBuffer buffer;
+                this.lock.lock();
+                try {
+                    if (this.exception != null) {
+                        throw this.exception;
+                    }
+                    buffer = this.filled.peek();
+                    if (buffer == null) {
+                        if (this.endOfStream) {
+                            return true;
+                        }
+                        ioctrl.suspendOutput();
+                        return false;
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+                encoder.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+                final boolean resubmit;
+                this.lock.lock();
+                try {
+                    this.filled.removeFirst();
+                    buffer.clear();
+                    this.free.add(buffer);
+                    resubmit = !this.reading && !this.endOfStream && !this.closed;
+                    if (resubmit) {
+                        this.reading = true;
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+                if (resubmit) {
+                    submit();
+                }
+            }
+        }
+
+        int getBuffered() {
+            this.lock.lock();
+            try {
+                int total = 0;
+                for (final ByteBuffer buffer: this.filled) {
+                    total += buffer.remaining();
+                }
+                return total;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        void close() {
+            this.lock.lock();
+            try {
+                this.closed = true;
+                this.filled.clear();
+            } finally {
+                this.lock.unlock();
+            }
+            closeChannelIfDone();
+        }
+
+        private void closeChannelIfDone() {
+            final ReadableByteChannel local;
+            this.lock.lock();
+            try {
+                if (this.reading || !(this.closed || this.endOfStream || this.exception != null)) {
+                    return;
+                }
+                local = this.channel;
+                this.channel = null;
+            } finally {
+                this.lock.unlock();
+            }
+            if (local != null) {
+                try {
+                    local.close();
+                } catch (final IOException ignore) {
+                }
+            }
+        }
+
+    }
+
+}
@@ -28,14 +28,19 @@
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -48,15 +53,23 @@
 import org.apache.http.annotation.ThreadingBehavior;
 import org.apache.http.concurrent.BasicFuture;
 import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.instrument.HttpInstrumentation;
+import org.apache.http.instrument.InstrumentationSupport;
 import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorAffinity;
 import org.apache.http.nio.reactor.IOReactorStatus;
 import org.apache.http.nio.reactor.IOSession;
 import org.apache.http.nio.reactor.SessionRequest;
 import org.apache.http.nio.reactor.SessionRequestCallback;
 import org.apache.http.pool.ConnPool;
 import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.ConnPoolMetricsControl;
 import org.apache.http.pool.PoolEntry;
 import org.apache.http.pool.PoolEntryCallback;
+import org.apache.http.pool.PoolMaintainer;
+import org.apache.http.pool.PoolMetrics;
+import org.apache.http.pool.PoolMetricsCollector;
+import org.apache.http.pool.PoolReusePolicy;
 import org.apache.http.pool.PoolStats;
 import org.apache.http.util.Args;
 import org.apache.http.util.Asserts;
@@ -64,6 +77,13 @@
 
 /**
  * Abstract non-blocking connection pool.
+ * <p>
+ * Connections can be opened ahead of demand with {@link #prewarm(Object, int)}.
+ * If a minimum number of idle connections is configured for a route,
+ * {@link #startMaintainer(long, TimeUnit)} starts a single background thread that
+ * periodically evicts expired connections and requests new ones from the I/O
+ * reactor to top the idle connections up again.
+ * </p>
  *
  * @param <T> route
  * @param <C> connection object
@@ -73,7 +93,23 @@
  */
 @Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
 public abstract class AbstractNIOConnPool<T, C, E extends PoolEntry<T, C>>
-                                                  implements ConnPool<T, E>, ConnPoolControl<T> {
+                                                  implements ConnPool<T, E>, ConnPoolControl<T>, ConnPoolMetricsControl<T> {
+
+    private static final HttpInstrumentation INSTRUMENTATION = InstrumentationSupport.getInstrumentation();
+
+    /**
+     * Maximum number of available connections examined per acquisition of the
+     * pool lock by {@link #evict(long, TimeUnit)}.
+     */
+    public static final int EVICTION_BATCH_SIZE = 16;
+
+    /**
+     * Default maximum number of routes without pooled connections whose
+     * metrics are retained.
+     *
+     * @since 4.4.17
+     */
+    public static final int DEFAULT_MAX_IDLE_ROUTE_METRICS = 1000;
 
     private final ConnectingIOReactor ioReactor;
     private final NIOConnFactory<T, C> connFactory;
@@ -82,15 +118,26 @@
     private final Map<T, RouteSpecificPool<T, C, E>> routeToPool;
     private final LinkedList<LeaseRequest<T, C, E>> leasingRequests;
     private final Set<SessionRequest> pending;
+    private final Map<SessionRequest, LeaseRequest<T, C, E>> pendingLeases;
     private final Set<E> leased;
     private final LinkedList<E> available;
     private final ConcurrentLinkedQueue<LeaseRequest<T, C, E>> completedRequests;
     private final Map<T, Integer> maxPerRoute;
+    private final Map<T, Integer> minIdlePerRoute;
+    private final PoolMetricsCollector totalMetrics;
+    private final ConcurrentMap<T, PoolMetricsCollector> routeToMetrics;
+    // routes with metrics but without a route pool, in the order they lost their pool
+    private final LinkedHashMap<T, Boolean> idleMetricsRoutes;
     private final Lock lock;
     private final AtomicBoolean isShutDown;
 
+    private volatile int maxIdleRouteMetrics;
     private volatile int defaultMaxPerRoute;
     private volatile int maxTotal;
+    private volatile int defaultMinIdlePerRoute;
+    private volatile PoolMaintainer maintainer;
+    private volatile PoolMaintainer evictor;
+    private volatile PoolReusePolicy reusePolicy;
 
     /**
      * @deprecated use {@link AbstractNIOConnPool#AbstractNIOConnPool(ConnectingIOReactor,
@@ -126,10 +173,17 @@ public SocketAddress resolveRemoteAddress(final T route) throws IOException {
         this.routeToPool = new HashMap<T, RouteSpecificPool<T, C, E>>();
         this.leasingRequests = new LinkedList<LeaseRequest<T, C, E>>();
         this.pending = new HashSet<SessionRequest>();
+        this.pendingLeases = new HashMap<SessionRequest, LeaseRequest<T, C, E>>();
         this.leased = new HashSet<E>();
         this.available = new LinkedList<E>();
         this.maxPerRoute = new HashMap<T, Integer>();
         this.completedRequests = new ConcurrentLinkedQueue<LeaseRequest<T, C, E>>();
+        this.minIdlePerRoute = new HashMap<T, Integer>();
+        this.reusePolicy = PoolReusePolicy.LIFO;
+        this.totalMetrics = new PoolMetricsCollector();
+        this.routeToMetrics = new ConcurrentHashMap<T, PoolMetricsCollector>();
+        this.idleMetricsRoutes = new LinkedHashMap<T, Boolean>();
+        this.maxIdleRouteMetrics = DEFAULT_MAX_IDLE_ROUTE_METRICS;
         this.lock = new ReentrantLock();
         this.isShutDown = new AtomicBoolean(false);
         this.defaultMaxPerRoute = defaultMaxPerRoute;
@@ -158,10 +212,17 @@ public AbstractNIOConnPool(
         this.routeToPool = new HashMap<T, RouteSpecificPool<T, C, E>>();
         this.leasingRequests = new LinkedList<LeaseRequest<T, C, E>>();
         this.pending = new HashSet<SessionRequest>();
+        this.pendingLeases = new HashMap<SessionRequest, LeaseRequest<T, C, E>>();
         this.leased = new HashSet<E>();
         this.available = new LinkedList<E>();
         this.completedRequests = new ConcurrentLinkedQueue<LeaseRequest<T, C, E>>();
         this.maxPerRoute = new HashMap<T, Integer>();
+        this.minIdlePerRoute = new HashMap<T, Integer>();
+        this.reusePolicy = PoolReusePolicy.LIFO;
+        this.totalMetrics = new PoolMetricsCollector();
+        this.routeToMetrics = new ConcurrentHashMap<T, PoolMetricsCollector>();
+        this.idleMetricsRoutes = new LinkedHashMap<T, Boolean>();
+        this.maxIdleRouteMetrics = DEFAULT_MAX_IDLE_ROUTE_METRICS;
         this.lock = new ReentrantLock();
         this.isShutDown = new AtomicBoolean(false);
         this.defaultMaxPerRoute = defaultMaxPerRoute;
@@ -210,6 +271,14 @@ public boolean isShutdown() {
 
     public void shutdown(final long waitMs) throws IOException {
         if (this.isShutDown.compareAndSet(false, true)) {
+            final PoolMaintainer currentMaintainer = this.maintainer;
+            if (currentMaintainer != null) {
+                currentMaintainer.close();
+            }
+            final PoolMaintainer currentEvictor = this.evictor;
+            if (currentEvictor != null) {
+                currentEvictor.close();
+            }
             fireCallbacks();
             this.lock.lock();
             try {
@@ -226,8 +295,11 @@ public void shutdown(final long waitMs) throws IOException {
                     pool.shutdown();
                 }
                 this.routeToPool.clear();
+                this.routeToMetrics.clear();
+                this.idleMetricsRoutes.clear();
                 this.leased.clear();
                 this.pending.clear();
+                this.pendingLeases.clear();
                 this.available.clear();
                 this.leasingRequests.clear();
                 this.ioReactor.shutdown(waitMs);
@@ -247,12 +319,58 @@ protected E createEntry(final T route, final C conn) {
                     return AbstractNIOConnPool.this.createEntry(route, conn);
                 }
 
+                @Override
+                protected Object getDispatcher(final E entry) {
+                    return AbstractNIOConnPool.this.getDispatcher(entry);
+                }
+
             };
             this.routeToPool.put(route, pool);
+            this.idleMetricsRoutes.remove(route);
         }
         return pool;
     }
 
+    /**
+     * Returns the I/O dispatcher that owns the connection of the given entry.
+     * Leases issued from an I/O dispatcher thread prefer idle connections
+     * owned by the same dispatcher.
+     * <p>
+     * The default implementation supports entries whose connection is an
+     * {@link IOSession}. Pools of other connection types should override
+     * this method to enable dispatcher affinity.
+     * </p>
+     *
+     * @param entry the pool entry.
+     * @return the I/O dispatcher or {@code null} if unknown.
+     *
+     * @since 4.4.17
+     */
+    protected Object getDispatcher(final E entry) {
+        final C conn = entry.getConnection();
+        return conn instanceof IOSession ? IOReactorAffinity.getDispatcher((IOSession) conn) : null;
+    }
+
+    private PoolMetricsCollector getMetrics(final T route) {
+        PoolMetricsCollector metrics = this.routeToMetrics.get(route);
+        if (metrics == null) {
+            metrics = new PoolMetricsCollector(this.totalMetrics);
+            final PoolMetricsCollector existing = this.routeToMetrics.putIfAbsent(route, metrics);
+            if (existing != null) {
+                metrics = existing;
+            } else {
+                routeMetricsAdded(route);
+            }
+        }
+        return metrics;
+    }
+
+    private void updateCapacity(final RouteSpecificPool<T, C, E> pool) {
+        final T route = pool.getRoute();
+        getMetrics(route).updateCapacity(pool.getAllocatedCount() >= getMax(route));
+        this.totalMetrics.updateCapacity(this.pending.size() + this.leased.size() >= this.maxTotal);
+    }
+
     public Future<E> lease(
             final T route, final Object state,
             final long connectTimeout, final TimeUnit timeUnit,
@@ -352,6 +470,7 @@ public void release(final E entry, final boolean reusable) {
                 } else {
                     entry.close();
                 }
+                updateCapacity(pool);
                 processNextPendingRequest();
             }
         } finally {
@@ -413,16 +532,21 @@ private boolean processPendingRequest(final LeaseRequest<T, C, E> request) {
         }
 
         final RouteSpecificPool<T, C, E> pool = getPool(route);
+        final PoolMetricsCollector metrics = getMetrics(route);
         E entry;
         for (;;) {
-            entry = pool.getFree(state);
+            entry = pool.getFree(state, this.reusePolicy == PoolReusePolicy.LIFO, request.getDispatcher());
             if (entry == null) {
                 break;
             }
-            if (entry.isClosed() || entry.isExpired(System.currentTimeMillis())) {
+            if (entry.isClosed()) {
+                this.available.remove(entry);
+                pool.free(entry, false);
+            } else if (entry.isExpired(System.currentTimeMillis())) {
                 entry.close();
                 this.available.remove(entry);
                 pool.free(entry, false);
+                metrics.connectionExpired();
             } else {
                 break;
             }
@@ -433,6 +557,8 @@ private boolean processPendingRequest(final LeaseRequest<T, C, E> request) {
             request.completed(entry);
             onReuse(entry);
             onLease(entry);
+            metrics.connectionReused();
+            updateCapacity(pool);
             return true;
         }
 
@@ -456,6 +582,10 @@ private boolean processPendingRequest(final LeaseRequest<T, C, E> request) {
             final int totalUsed = this.pending.size() + this.leased.size();
             final int freeCapacity = Math.max(this.maxTotal - totalUsed, 0);
             if (freeCapacity == 0) {
+                if (request.markSaturated()) {
+                    metrics.leaseSaturated();
+                }
+                updateCapacity(pool);
                 return false;
             }
             final int totalAvailable = this.available.size();
@@ -464,6 +594,7 @@ private boolean processPendingRequest(final LeaseRequest<T, C, E> request) {
                 lastUsed.close();
                 final RouteSpecificPool<T, C, E> otherpool = getPool(lastUsed.getRoute());
                 otherpool.remove(lastUsed);
+                updateCapacity(otherpool);
             }
 
             final SocketAddress localAddress;
@@ -476,17 +607,30 @@ private boolean processPendingRequest(final LeaseRequest<T, C, E> request) {
                 return false;
             }
 
-            final SessionRequest sessionRequest = this.ioReactor.connect(
-                    remoteAddress, localAddress, route, this.sessionRequestCallback);
+            // place the new session on the dispatcher of the requesting thread
+            final Object previousDispatcher = IOReactorAffinity.bind(request.getDispatcher());
+            final SessionRequest sessionRequest;
+            try {
+                sessionRequest = this.ioReactor.connect(
+                        remoteAddress, localAddress, route, this.sessionRequestCallback);
+            } finally {
+                IOReactorAffinity.bind(previousDispatcher);
+            }
             request.attachSessionRequest(sessionRequest);
             final long connectTimeout = request.getConnectTimeout();
             if (connectTimeout >= 0) {
                 sessionRequest.setConnectTimeout(connectTimeout < Integer.MAX_VALUE ? (int) connectTimeout : Integer.MAX_VALUE);
             }
             this.pending.add(sessionRequest);
+            this.pendingLeases.put(sessionRequest, request);
             pool.addPending(sessionRequest, request.getFuture());
+            updateCapacity(pool);
             return true;
         }
+        if (request.markSaturated()) {
+            metrics.leaseSaturated();
+        }
+        updateCapacity(pool);
         return false;
     }
 
@@ -509,6 +653,28 @@ private void fireCallbacks() {
             if (!successfullyCompleted) {
                 release(result, true);
             }
+            if (successfullyCompleted || ex != null) {
+                leaseCompleted(request, successfullyCompleted);
+            }
+        }
+    }
+
+    private void leaseCompleted(final LeaseRequest<T, C, E> request, final boolean success) {
+        if (request == null) {
+            return;
+        }
+        final T route = request.getRoute();
+        final long waitTime = System.nanoTime() - request.getStartTime();
+        if (success) {
+            getMetrics(route).leaseCompleted(TimeUnit.NANOSECONDS.toMicros(waitTime));
+            if (INSTRUMENTATION.isEnabled()) {
+                INSTRUMENTATION.leaseCompleted(route, waitTime);
+            }
+        } else {
+            getMetrics(route).leaseFailed();
+            if (INSTRUMENTATION.isEnabled()) {
+                INSTRUMENTATION.leaseFailed(route, waitTime);
+            }
         }
     }
 
@@ -553,23 +719,30 @@ protected void requestCompleted(final SessionRequest request) {
         this.lock.lock();
         try {
             this.pending.remove(request);
+            final LeaseRequest<T, C, E> leaseRequest = this.pendingLeases.remove(request);
             final RouteSpecificPool<T, C, E> pool = getPool(route);
             final IOSession session = request.getSession();
             try {
                 final C conn = this.connFactory.create(route, session);
                 final E entry = pool.createEntry(request, conn);
+                getMetrics(route).connectionCreated();
                 if (pool.completed(request, entry)) {
                     this.leased.add(entry);
                     onLease(entry);
+                    leaseCompleted(leaseRequest, true);
                 } else {
-                    this.available.add(entry);
+                    // prewarmed or no longer wanted by its lease request
+                    pool.free(entry, true);
+                    this.available.addFirst(entry);
                     if (this.ioReactor.getStatus().compareTo(IOReactorStatus.ACTIVE) <= 0) {
                         processNextPendingRequest();
                     }
                 }
             } catch (final IOException ex) {
                 pool.failed(request, ex);
+                leaseCompleted(leaseRequest, false);
             }
+            updateCapacity(pool);
         } finally {
             this.lock.unlock();
         }
@@ -586,8 +759,10 @@ protected void requestCancelled(final SessionRequest request) {
         this.lock.lock();
         try {
             this.pending.remove(request);
+            this.pendingLeases.remove(request);
             final RouteSpecificPool<T, C, E> pool = getPool(route);
             pool.cancelled(request);
+            updateCapacity(pool);
             if (this.ioReactor.getStatus().compareTo(IOReactorStatus.ACTIVE) <= 0) {
                 processNextPendingRequest();
             }
@@ -607,8 +782,10 @@ protected void requestFailed(final SessionRequest request) {
         this.lock.lock();
         try {
             this.pending.remove(request);
+            leaseCompleted(this.pendingLeases.remove(request), false);
             final RouteSpecificPool<T, C, E> pool = getPool(route);
             pool.failed(request, request.getException());
+            updateCapacity(pool);
             processNextPendingRequest();
         } finally {
             this.lock.unlock();
@@ -626,8 +803,10 @@ protected void requestTimeout(final SessionRequest request) {
         this.lock.lock();
         try {
             this.pending.remove(request);
+            leaseCompleted(this.pendingLeases.remove(request), false);
             final RouteSpecificPool<T, C, E> pool = getPool(route);
             pool.timeout(request);
+            updateCapacity(pool);
             processNextPendingRequest();
         } finally {
             this.lock.unlock();
@@ -708,6 +887,296 @@ public int getMaxPerRoute(final T route) {
         }
     }
 
+    private int getMinIdle(final T route) {
+        final Integer v = this.minIdlePerRoute.get(route);
+        return v != null ? v.intValue() : this.defaultMinIdlePerRoute;
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public void setDefaultMinIdlePerRoute(final int min) {
+        Args.notNegative(min, "Min idle per route value");
+        this.lock.lock();
+        try {
+            this.defaultMinIdlePerRoute = min;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public int getDefaultMinIdlePerRoute() {
+        this.lock.lock();
+        try {
+            return this.defaultMinIdlePerRoute;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the number of idle connections the maintainer keeps open for the
+     * given route. A negative value reverts the route to the default.
+     *
+     * @since 4.4.17
+     */
+    public void setMinIdlePerRoute(final T route, final int min) {
+        Args.notNull(route, "Route");
+        this.lock.lock();
+        try {
+            if (min > -1) {
+                this.minIdlePerRoute.put(route, Integer.valueOf(min));
+            } else {
+                this.minIdlePerRoute.remove(route);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public int getMinIdlePerRoute(final T route) {
+        Args.notNull(route, "Route");
+        this.lock.lock();
+        try {
+            return getMinIdle(route);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Requests up to the given number of new connections for the given route
+     * from the I/O reactor. Connections are added to the pool as available
+     * connections once established. Unlike a lease, prewarming never evicts
+     * idle connections of other routes to make room, so fewer connections than
+     * requested are opened once the route or the pool reaches its limit.
+     *
+     * @param route the route.
+     * @param count the number of connections to open.
+     * @return the number of connection requests issued.
+     * @throws IOException if the address of the route could not be resolved.
+     *
+     * @since 4.4.17
+     */
+    public int prewarm(final T route, final int count) throws IOException {
+        Args.notNull(route, "Route");
+        Args.notNegative(count, "Connection count");
+        this.lock.lock();
+        try {
+            if (this.isShutDown.get() || count == 0) {
+                return 0;
+            }
+            final RouteSpecificPool<T, C, E> pool = getPool(route);
+            final int maxPerRoute = getMax(route);
+            final SocketAddress remoteAddress = this.addressResolver.resolveRemoteAddress(route);
+            final SocketAddress localAddress = this.addressResolver.resolveLocalAddress(route);
+            int requested = 0;
+            while (requested < count
+                    && pool.getAllocatedCount() < maxPerRoute
+                    && this.pending.size() + this.leased.size() + this.available.size() < this.maxTotal) {
+                final SessionRequest sessionRequest = this.ioReactor.connect(
+                        remoteAddress, localAddress, route, this.sessionRequestCallback);
+                this.pending.add(sessionRequest);
+                pool.addPending(sessionRequest, null);
+                requested++;
+            }
+            updateCapacity(pool);
+            return requested;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Performs a single maintenance pass: closes expired connections, fails
+     * timed out lease requests and then requests connections for every route
+     * with fewer idle or connecting connections than its configured minimum.
+     *
+     * @since 4.4.17
+     */
+    public void maintain() {
+        if (this.isShutDown.get()) {
+            return;
+        }
+        closeExpired();
+        validatePendingRequests();
+        final Map<T, Integer> deficits = new HashMap<T, Integer>();
+        this.lock.lock();
+        try {
+            final Set<T> routes = new HashSet<T>(this.routeToPool.keySet());
+            routes.addAll(this.minIdlePerRoute.keySet());
+            for (final T route: routes) {
+                final RouteSpecificPool<T, C, E> pool = this.routeToPool.get(route);
+                final int idle = pool != null ? pool.getAvailableCount() + pool.getPendingCount() : 0;
+                final int deficit = getMinIdle(route) - idle;
+                if (deficit > 0) {
+                    deficits.put(route, Integer.valueOf(deficit));
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        for (final Map.Entry<T, Integer> deficit: deficits.entrySet()) {
+            try {
+                prewarm(deficit.getKey(), deficit.getValue().intValue());
+            } catch (final IOException ignore) {
+                // the route is retried on the next pass
+            }
+        }
+    }
+
+    /**
+     * Starts a background thread that calls {@link #maintain()} with the given
+     * delay between passes. The thread is stopped when the pool is shut down.
+     *
+     * @since 4.4.17
+     */
+    public void startMaintainer(final long interval, final TimeUnit timeUnit) {
+        this.lock.lock();
+        try {
+            Asserts.check(!this.isShutDown.get(), "Connection pool shut down");
+            Asserts.check(this.maintainer == null, "Pool maintainer already started");
+            this.maintainer = new PoolMaintainer("pool-maintainer", new Runnable() {
+
+                @Override
+                public void run() {
+                    maintain();
+                }
+
+            }, interval, timeUnit);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public PoolReusePolicy getReusePolicy() {
+        return this.reusePolicy;
+    }
+
+    /**
+     * Sets the order in which idle persistent connections are reused.
+     * The default is {@link PoolReusePolicy#LIFO}.
+     *
+     * @since 4.4.17
+     */
+    public void setReusePolicy(final PoolReusePolicy reusePolicy) {
+        this.reusePolicy = Args.notNull(reusePolicy, "Reuse policy");
+    }
+
+    /**
+     * Closes and evicts expired connections and connections that have been idle
+     * longer than the given period of time.
+     * <p>
+     * Unlike {@link #closeIdle(long, TimeUnit)} and {@link #closeExpired()} this
+     * method does not scan all available connections while holding the pool lock.
+     * The scan starts with the longest idle connection and examines at most
+     * {@value #EVICTION_BATCH_SIZE} connections per acquisition of the lock,
+     * releasing it between batches, until all available connections have been
+     * examined. Connections are closed outside the lock. Connections leased
+     * while the lock is released may cause some connections to be skipped by
+     * this pass; they are left to a later pass or discarded when next leased.
+     * </p>
+     *
+     * @param maxIdleTime maximum idle time. A non-positive value evicts
+     *   expired connections only.
+     * @param timeUnit time unit.
+     *
+     * @since 4.4.17
+     */
+    public void evict(final long maxIdleTime, final TimeUnit timeUnit) {
+        Args.notNull(timeUnit, "Time unit");
+        final List<E> evicted = new ArrayList<E>(EVICTION_BATCH_SIZE);
+        // connections kept by earlier batches, counted from the longest idle one
+        int kept = 0;
+        boolean done = false;
+        while (!done) {
+            final long now = System.currentTimeMillis();
+            final long idleDeadline = maxIdleTime > 0 ? now - timeUnit.toMillis(maxIdleTime) : Long.MIN_VALUE;
+            this.lock.lock();
+            try {
+                if (this.isShutDown.get()) {
+                    return;
+                }
+                done = true;
+                int scanned = 0;
+                final Iterator<E> it = this.available.descendingIterator();
+                // released connections are added at the head, so kept ones keep their position
+                for (int i = 0; i < kept && it.hasNext(); i++) {
+                    it.next();
+                }
+                while (it.hasNext()) {
+                    if (scanned++ == EVICTION_BATCH_SIZE) {
+                        done = false;
+                        break;
+                    }
+                    final E entry = it.next();
+                    final boolean expired = entry.isExpired(now);
+                    if (!expired && !entry.isClosed() && entry.getUpdated() > idleDeadline) {
+                        kept++;
+                        continue;
+                    }
+                    it.remove();
+                    final RouteSpecificPool<T, C, E> pool = getPool(entry.getRoute());
+                    pool.remove(entry);
+                    if (expired) {
+                        getMetrics(entry.getRoute()).connectionExpired();
+                    }
+                    updateCapacity(pool);
+                    evicted.add(entry);
+                }
+                if (!evicted.isEmpty()) {
+                    processPendingRequests();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            for (final E entry: evicted) {
+                entry.close();
+            }
+            evicted.clear();
+            fireCallbacks();
+        }
+    }
+
+    /**
+     * Starts a background thread that calls {@link #evict(long, TimeUnit)} with
+     * the given delay between passes. The thread is stopped when the pool is
+     * shut down.
+     *
+     * @param interval delay between eviction passes.
+     * @param maxIdleTime maximum idle time. A non-positive value evicts
+     *   expired connections only.
+     * @param timeUnit time unit of both the interval and the maximum idle time.
+     *
+     * @since 4.4.17
+     */
+    public void startEvictor(final long interval, final long maxIdleTime, final TimeUnit timeUnit) {
+        this.lock.lock();
+        try {
+            Asserts.check(!this.isShutDown.get(), "Connection pool shut down");
+            Asserts.check(this.evictor == null, "Pool evictor already started");
+            this.evictor = new PoolMaintainer("pool-evictor", new Runnable() {
+
+                @Override
+                public void run() {
+                    evict(maxIdleTime, timeUnit);
+                }
+
+            }, interval, timeUnit);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
     @Override
     public PoolStats getTotalStats() {
         this.lock.lock();
@@ -744,6 +1213,60 @@ public PoolStats getStats(final T route) {
         }
     }
 
+    /**
+     * Sets the maximum number of routes without pooled connections whose
+     * metrics are retained. Once exceeded, metrics of the routes that have
+     * been without connections the longest are discarded.
+     *
+     * @since 4.4.17
+     */
+    public void setMaxIdleRouteMetrics(final int max) {
+        Args.notNegative(max, "Max idle route metrics");
+        this.lock.lock();
+        try {
+            this.maxIdleRouteMetrics = max;
+            trimRouteMetrics();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public int getMaxIdleRouteMetrics() {
+        return this.maxIdleRouteMetrics;
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    @Override
+    public PoolMetrics getTotalMetrics() {
+        return this.totalMetrics.getMetrics();
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    @Override
+    public PoolMetrics getRouteMetrics(final T route) {
+        Args.notNull(route, "Route");
+        final PoolMetricsCollector metrics = this.routeToMetrics.get(route);
+        return metrics != null ? metrics.getMetrics() : new PoolMetricsCollector().getMetrics();
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    @Override
+    public void resetMetrics() {
+        this.totalMetrics.reset();
+        for (final PoolMetricsCollector metrics: this.routeToMetrics.values()) {
+            metrics.reset();
+        }
+    }
+
     /**
      * Returns snapshot of all knows routes
      *
@@ -774,6 +1297,7 @@ protected void enumAvailable(final PoolEntryCallback<T, C> callback) {
                     final RouteSpecificPool<T, C, E> pool = getPool(entry.getRoute());
                     pool.remove(entry);
                     it.remove();
+                    updateCapacity(pool);
                 }
             }
             processPendingRequests();
@@ -824,7 +1348,31 @@ private void purgePoolMap() {
             final RouteSpecificPool<T, C, E> pool = entry.getValue();
             if (pool.getAllocatedCount() == 0) {
                 it.remove();
+                if (this.routeToMetrics.containsKey(entry.getKey())) {
+                    this.idleMetricsRoutes.put(entry.getKey(), Boolean.TRUE);
+                }
+            }
+        }
+        trimRouteMetrics();
+    }
+
+    private void routeMetricsAdded(final T route) {
+        this.lock.lock();
+        try {
+            if (!this.routeToPool.containsKey(route)) {
+                this.idleMetricsRoutes.put(route, Boolean.TRUE);
+                trimRouteMetrics();
             }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void trimRouteMetrics() {
+        final Iterator<T> it = this.idleMetricsRoutes.keySet().iterator();
+        while (this.idleMetricsRoutes.size() > this.maxIdleRouteMetrics && it.hasNext()) {
+            this.routeToMetrics.remove(it.next());
+            it.remove();
         }
     }
 
@@ -855,6 +1403,7 @@ public void closeExpired() {
             public void process(final PoolEntry<T, C> entry) {
                 if (entry.isExpired(now)) {
                     entry.close();
+                    getMetrics(entry.getRoute()).connectionExpired();
                 }
             }
 
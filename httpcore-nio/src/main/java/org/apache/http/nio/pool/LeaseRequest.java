@@ -31,6 +31,7 @@
 
 import org.apache.http.concurrent.BasicFuture;
 import org.apache.http.concurrent.Cancellable;
+import org.apache.http.nio.reactor.IOReactorAffinity;
 import org.apache.http.nio.reactor.SessionRequest;
 import org.apache.http.pool.PoolEntry;
 import org.apache.http.util.Asserts;
@@ -41,11 +42,14 @@
     private final Object state;
     private final long connectTimeout;
     private final long deadline;
+    private final long startTime;
+    private final Object dispatcher;
     private final BasicFuture<E> future;
     private final AtomicReference<SessionRequest> sessionRequestRef;
     private final AtomicBoolean completed;
     private volatile E result;
     private volatile Exception ex;
+    private boolean saturated;
 
     /**
      * Contructor
@@ -66,6 +70,8 @@ public LeaseRequest(
         this.state = state;
         this.connectTimeout = connectTimeout;
         this.deadline = leaseTimeout > 0 ? System.currentTimeMillis() + leaseTimeout : Long.MAX_VALUE;
+        this.startTime = System.nanoTime();
+        this.dispatcher = IOReactorAffinity.current();
         this.future = future;
         this.sessionRequestRef = new AtomicReference<SessionRequest>(null);
         this.completed = new AtomicBoolean(false);
@@ -87,10 +93,35 @@ public long getDeadline() {
         return this.deadline;
     }
 
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Returns the I/O dispatcher of the thread that issued this request
+     * or {@code null} if it was not issued from a dispatcher thread.
+     */
+    public Object getDispatcher() {
+        return this.dispatcher;
+    }
+
     public boolean isDone() {
         return this.completed.get();
     }
 
+    /**
+     * Marks this request as having found the pool at capacity.
+     *
+     * @return {@code true} if the request had not been marked before.
+     */
+    public boolean markSaturated() {
+        if (this.saturated) {
+            return false;
+        }
+        this.saturated = true;
+        return true;
+    }
+
     public void attachSessionRequest(final SessionRequest sessionRequest) {
         Asserts.check(this.sessionRequestRef.compareAndSet(null, sessionRequest), "Session request has already been set");
     }
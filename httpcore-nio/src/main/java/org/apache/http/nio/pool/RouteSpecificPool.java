@@ -78,9 +78,17 @@ public int getAllocatedCount() {
     }
 
     public E getFree(final Object state) {
+        return getFree(state, true);
+    }
+
+    /**
+     * Leases an available entry, preferring the most recently released entry
+     * if {@code lifo} is {@code true} or the least recently released one otherwise.
+     */
+    public E getFree(final Object state, final boolean lifo) {
         if (!this.available.isEmpty()) {
             if (state != null) {
-                final Iterator<E> it = this.available.iterator();
+                final Iterator<E> it = lifo ? this.available.iterator() : this.available.descendingIterator();
                 while (it.hasNext()) {
                     final E entry = it.next();
                     if (state.equals(entry.getState())) {
@@ -90,7 +98,7 @@ public E getFree(final Object state) {
                     }
                 }
             }
-            final Iterator<E> it = this.available.iterator();
+            final Iterator<E> it = lifo ? this.available.iterator() : this.available.descendingIterator();
             while (it.hasNext()) {
                 final E entry = it.next();
                 if (entry.getState() == null) {
@@ -103,6 +111,48 @@ public E getFree(final Object state) {
         return null;
     }
 
+    /**
+     * Leases an available entry, preferring entries owned by the given
+     * I/O dispatcher. Falls back to {@link #getFree(Object, boolean)} if the
+     * dispatcher owns no suitable entry.
+     */
+    public E getFree(final Object state, final boolean lifo, final Object dispatcher) {
+        if (dispatcher != null && !this.available.isEmpty()) {
+            E candidate = null;
+            final Iterator<E> it = lifo ? this.available.iterator() : this.available.descendingIterator();
+            while (it.hasNext()) {
+                final E entry = it.next();
+                if (getDispatcher(entry) != dispatcher) {
+                    continue;
+                }
+                if (state != null && state.equals(entry.getState())) {
+                    candidate = entry;
+                    break;
+                }
+                if (candidate == null && entry.getState() == null) {
+                    candidate = entry;
+                    if (state == null) {
+                        break;
+                    }
+                }
+            }
+            if (candidate != null) {
+                this.available.remove(candidate);
+                this.leased.add(candidate);
+                return candidate;
+            }
+        }
+        return getFree(state, lifo);
+    }
+
+    /**
+     * Returns the I/O dispatcher that owns the given entry or {@code null}
+     * if unknown.
+     */
+    protected Object getDispatcher(final E entry) {
+        return null;
+    }
+
     public E getLastUsed() {
         return this.available.isEmpty() ? null : this.available.getLast();
     }
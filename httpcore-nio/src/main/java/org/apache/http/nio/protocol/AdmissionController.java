@@ -0,0 +1,401 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.protocol;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Consts;
+import org.apache.http.ExceptionLogger;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.reactor.IOReactorAffinity;
+import org.apache.http.nio.reactor.ListeningIOReactor;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.Args;
+
+/**
+ * Admission control for {@link HttpAsyncService}. Protects the latency of
+ * admitted requests by shedding excess load with cheap {@code 503 Service Unavailable}
+ * responses instead of letting requests queue without limit.
+ * <p>
+ * The controller employs three mechanisms:
+ * </p>
+ * <ul>
+ * <li>The number of exchanges in flight on each I/O dispatcher can be limited.
+ *  Requests received in excess of that limit are not passed on to their
+ *  request handler.</li>
+ * <li>The queueing delay of each exchange, that is the time from the receipt
+ *  of its complete request message until its request handler is about to be
+ *  invoked, is monitored in a CoDel fashion. If even the shortest queueing delay
+ *  observed over an interval exceeds the target delay, the service is
+ *  considered overloaded for the next interval and requests queued for more
+ *  than twice the target delay are shed.</li>
+ * <li>If a {@link ListeningIOReactor} is given, it is paused once the total number
+ *  of exchanges in flight reaches the pause threshold and resumed once that number
+ *  has dropped to the resume threshold.</li>
+ * </ul>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
+public class AdmissionController {
+
+    private static final String ADMISSION = "http.nio.admission";
+
+    private static final Object DEFAULT_DISPATCHER = new Object();
+
+    private static final byte[] SHED_CONTENT = "Service unavailable".getBytes(Consts.ASCII);
+
+    private final long targetDelay;
+    private final long interval;
+    private final int maxInFlightPerDispatcher;
+    private final ListeningIOReactor ioReactor;
+    private final int pauseThreshold;
+    private final int resumeThreshold;
+    private final ExceptionLogger exceptionLogger;
+    private final ConcurrentMap<Object, AtomicInteger> inFlightMap;
+    private final AtomicInteger inFlight;
+    private final AtomicLong shedCount;
+
+    private long intervalEnd;
+    private long minDelay;
+    private boolean overloaded;
+    private volatile boolean paused;
+
+    AdmissionController(
+            final long targetDelay,
+            final long interval,
+            final int maxInFlightPerDispatcher,
+            final ListeningIOReactor ioReactor,
+            final int pauseThreshold,
+            final int resumeThreshold,
+            final ExceptionLogger exceptionLogger) {
+        super();
+        this.targetDelay = TimeUnit.MILLISECONDS.toNanos(targetDelay);
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+        this.maxInFlightPerDispatcher = maxInFlightPerDispatcher;
+        this.ioReactor = ioReactor;
+        this.pauseThreshold = pauseThreshold;
+        this.resumeThreshold = resumeThreshold;
+        this.exceptionLogger = exceptionLogger != null ? exceptionLogger : ExceptionLogger.NO_OP;
+        this.inFlightMap = new ConcurrentHashMap<Object, AtomicInteger>();
+        this.inFlight = new AtomicInteger(0);
+        this.shedCount = new AtomicLong(0);
+        this.minDelay = Long.MAX_VALUE;
+        this.intervalEnd = System.nanoTime() + this.interval;
+    }
+
+    /**
+     * Attempts to admit a new exchange. This method is expected to be called
+     * by the I/O dispatch thread upon receipt of a request head.
+     *
+     * @param context the exchange context.
+     * @return {@code true} if the exchange has been admitted and must be
+     *   {@link #release(HttpContext) released} once it ends, {@code false}
+     *   if it is to be shed.
+     */
+    public boolean admit(final HttpContext context) {
+        Object dispatcher = IOReactorAffinity.current();
+        if (dispatcher == null) {
+            dispatcher = DEFAULT_DISPATCHER;
+        }
+        final AtomicInteger count = getInFlightCount(dispatcher);
+        final int n = count.incrementAndGet();
+        if (this.maxInFlightPerDispatcher > 0 && n > this.maxInFlightPerDispatcher) {
+            count.decrementAndGet();
+            this.shedCount.incrementAndGet();
+            return false;
+        }
+        context.setAttribute(ADMISSION, new Admission(dispatcher, System.nanoTime()));
+        if (this.inFlight.incrementAndGet() >= this.pauseThreshold && !this.paused && this.ioReactor != null) {
+            updateListener();
+        }
+        return true;
+    }
+
+    /**
+     * Marks the end of the request message of an admitted exchange. The
+     * queueing delay of the exchange is measured from this point on, so that
+     * the time taken to receive request content does not count as queueing
+     * delay. This method is expected to be called by the I/O dispatch thread.
+     *
+     * @param context the exchange context.
+     */
+    public void requestCompleted(final HttpContext context) {
+        final Admission admission = (Admission) context.getAttribute(ADMISSION);
+        if (admission != null) {
+            admission.time = System.nanoTime();
+        }
+    }
+
+    /**
+     * Determines whether the exchange is to be shed instead of being passed on
+     * to its request handler. This method is expected to be called immediately
+     * before the request handler would be invoked.
+     *
+     * @param context the exchange context.
+     * @return {@code true} if the exchange is to be responded to with
+     *   {@link #generateShedResponse()}.
+     */
+    public boolean shed(final HttpContext context) {
+        final Admission admission = (Admission) context.getAttribute(ADMISSION);
+        if (admission == null) {
+            return true;
+        }
+        final long now = System.nanoTime();
+        final long delay = now - admission.time;
+        final boolean overload;
+        synchronized (this) {
+            if (now - this.intervalEnd >= 0) {
+                this.overloaded = this.minDelay > this.targetDelay;
+                this.minDelay = delay;
+                this.intervalEnd = now + this.interval;
+            } else if (delay < this.minDelay) {
+                this.minDelay = delay;
+            }
+            overload = this.overloaded;
+        }
+        if (overload && delay > 2 * this.targetDelay) {
+            this.shedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Releases an exchange previously admitted with {@link #admit(HttpContext)}.
+     * Releasing an exchange more than once has no effect.
+     *
+     * @param context the exchange context.
+     */
+    public void release(final HttpContext context) {
+        final Admission admission = (Admission) context.removeAttribute(ADMISSION);
+        if (admission == null) {
+            return;
+        }
+        getInFlightCount(admission.dispatcher).decrementAndGet();
+        if (this.inFlight.decrementAndGet() <= this.resumeThreshold && this.paused && this.ioReactor != null) {
+            updateListener();
+        }
+    }
+
+    /**
+     * Generates a response for a shed exchange.
+     */
+    public HttpAsyncResponseProducer generateShedResponse() {
+        final HttpResponse response = new BasicHttpResponse(
+                HttpVersion.HTTP_1_1, HttpStatus.SC_SERVICE_UNAVAILABLE, "Service Unavailable");
+        return new ErrorResponseProducer(
+                response, new NByteArrayEntity(SHED_CONTENT, ContentType.DEFAULT_TEXT), true);
+    }
+
+    private AtomicInteger getInFlightCount(final Object dispatcher) {
+        AtomicInteger count = this.inFlightMap.get(dispatcher);
+        if (count == null) {
+            count = new AtomicInteger(0);
+            final AtomicInteger existing = this.inFlightMap.putIfAbsent(dispatcher, count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        return count;
+    }
+
+    private synchronized void updateListener() {
+        try {
+            // the count is re-read after each change of the paused flag, as
+            // admit and release check the flag without holding the lock
+            for (;;) {
+                final int n = this.inFlight.get();
+                if (!this.paused && n >= this.pauseThreshold) {
+                    this.paused = true;
+                    this.ioReactor.pause();
+                } else if (this.paused && n <= this.resumeThreshold) {
+                    this.paused = false;
+                    this.ioReactor.resume();
+                } else {
+                    return;
+                }
+            }
+        } catch (final IOException ex) {
+            this.exceptionLogger.log(ex);
+        }
+    }
+
+    /**
+     * Returns the total number of admitted exchanges in flight.
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Returns the number of shed exchanges.
+     */
+    public long getShedCount() {
+        return this.shedCount.get();
+    }
+
+    /**
+     * Determines whether the service was considered overloaded at the end of
+     * the last full interval.
+     */
+    public synchronized boolean isOverloaded() {
+        return this.overloaded;
+    }
+
+    /**
+     * Determines whether the listening I/O reactor has been paused by this
+     * controller.
+     */
+    public boolean isListenerPaused() {
+        return this.paused;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("[in flight: ").append(getInFlight())
+            .append("; shed: ").append(getShedCount())
+            .append("; overloaded: ").append(isOverloaded())
+            .append("; listener paused: ").append(isListenerPaused())
+            .append("]");
+        return buf.toString();
+    }
+
+    public static Builder custom() {
+        return new Builder();
+    }
+
+    static class Admission {
+
+        final Object dispatcher;
+        volatile long time;
+
+        Admission(final Object dispatcher, final long time) {
+            this.dispatcher = dispatcher;
+            this.time = time;
+        }
+
+    }
+
+    public static class Builder {
+
+        private long targetDelay;
+        private long interval;
+        private int maxInFlightPerDispatcher;
+        private ListeningIOReactor ioReactor;
+        private int pauseThreshold;
+        private int resumeThreshold;
+        private ExceptionLogger exceptionLogger;
+
+        Builder() {
+            this.targetDelay = 50;
+            this.interval = 500;
+            this.maxInFlightPerDispatcher = 0;
+            this.pauseThreshold = Integer.MAX_VALUE;
+            this.resumeThreshold = Integer.MAX_VALUE;
+        }
+
+        /**
+         * Sets the target queueing delay in milliseconds. Default is 50.
+         */
+        public Builder setTargetDelay(final long targetDelay) {
+            this.targetDelay = targetDelay;
+            return this;
+        }
+
+        /**
+         * Sets the interval in milliseconds the minimum queueing delay is
+         * evaluated over. Default is 500.
+         */
+        public Builder setInterval(final long interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of exchanges in flight per I/O dispatcher.
+         * Default is 0 (unlimited).
+         */
+        public Builder setMaxInFlightPerDispatcher(final int maxInFlightPerDispatcher) {
+            this.maxInFlightPerDispatcher = maxInFlightPerDispatcher;
+            return this;
+        }
+
+        /**
+         * Sets the listening I/O reactor to pause once the total number of
+         * exchanges in flight reaches {@code pauseThreshold} and to resume
+         * once it has dropped to {@code resumeThreshold}.
+         */
+        public Builder setListener(
+                final ListeningIOReactor ioReactor, final int pauseThreshold, final int resumeThreshold) {
+            this.ioReactor = ioReactor;
+            this.pauseThreshold = pauseThreshold;
+            this.resumeThreshold = resumeThreshold;
+            return this;
+        }
+
+        public Builder setExceptionLogger(final ExceptionLogger exceptionLogger) {
+            this.exceptionLogger = exceptionLogger;
+            return this;
+        }
+
+        public AdmissionController build() {
+            Args.positive(this.targetDelay, "Target delay");
+            Args.positive(this.interval, "Interval");
+            Args.notNegative(this.maxInFlightPerDispatcher, "Max in flight per dispatcher");
+            if (this.ioReactor != null) {
+                Args.positive(this.pauseThreshold, "Pause threshold");
+                Args.notNegative(this.resumeThreshold, "Resume threshold");
+                Args.check(this.resumeThreshold < this.pauseThreshold,
+                        "Resume threshold must be less than pause threshold");
+            }
+            return new AdmissionController(
+                    this.targetDelay,
+                    this.interval,
+                    this.maxInFlightPerDispatcher,
+                    this.ioReactor,
+                    this.pauseThreshold,
+                    this.resumeThreshold,
+                    this.exceptionLogger);
+        }
+
+    }
+
+}
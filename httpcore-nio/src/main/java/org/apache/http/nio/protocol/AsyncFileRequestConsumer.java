@@ -0,0 +1,368 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.util.ByteBufferAllocator;
+import org.apache.http.nio.util.DirectByteBufferAllocator;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.Args;
+
+/**
+ * {@link HttpAsyncRequestConsumer} implementation that stores request content
+ * in a file without ever writing to disk on an I/O dispatch thread. Content
+ * is read from the {@link ContentDecoder} into a ring of (by default direct)
+ * buffers and written behind to the file by a worker thread of the given
+ * {@link Executor}. Input event notifications get suspended when all buffers
+ * are awaiting to be written out and resumed by the worker as soon as
+ * a buffer becomes available.
+ * <p>
+ * As the last buffers may still be pending when the request message has been
+ * fully received, the result of this consumer is a {@link Future} that gets
+ * completed once all content has been written to the file. The optional
+ * {@link FutureCallback} can be used to get notified of the outcome.
+ *
+ * @since 4.4.17
+ */
+public class AsyncFileRequestConsumer extends AbstractAsyncRequestConsumer<Future<File>> {
+
+    private final File file;
+    private final Executor executor;
+    private final int bufferCount;
+    private final int bufferSize;
+    private final ByteBufferAllocator allocator;
+    private final BasicFuture<File> future;
+    private final ReentrantLock lock;
+    private final LinkedList<ByteBuffer> free;
+    private final LinkedList<ByteBuffer> pending;
+
+    private volatile HttpRequest request;
+
+    private IOControl ioControl;
+    private FileChannel fileChannel;
+    private long position;
+    private int allocated;
+    private boolean writing;
+    private boolean inputSuspended;
+    private boolean endOfStream;
+    private boolean aborted;
+    private IOException exception;
+
+    /**
+     * Creates new instance of AsyncFileRequestConsumer.
+     *
+     * @param file the destination file.
+     * @param executor the executor used to run file writes.
+     * @param bufferCount the number of write-behind buffers.
+     * @param bufferSize the size of a write-behind buffer.
+     * @param allocator memory allocator.
+     *   If {@code null} {@link DirectByteBufferAllocator#INSTANCE} will be used.
+     * @param callback the callback to be notified once the content has been
+     *   written to the file. May be {@code null}.
+     */
+    public AsyncFileRequestConsumer(
+            final File file,
+            final Executor executor,
+            final int bufferCount,
+            final int bufferSize,
+            final ByteBufferAllocator allocator,
+            final FutureCallback<File> callback) {
+        super();
+        this.file = Args.notNull(file, "File");
+        this.executor = Args.notNull(executor, "Executor");
+        this.bufferCount = Args.positive(bufferCount, "Buffer count");
+        this.bufferSize = Args.positive(bufferSize, "Buffer size");
+        this.allocator = allocator != null ? allocator : DirectByteBufferAllocator.INSTANCE;
+        this.future = new BasicFuture<File>(callback);
+        this.lock = new ReentrantLock();
+        this.free = new LinkedList<ByteBuffer>();
+        this.pending = new LinkedList<ByteBuffer>();
+    }
+
+    public AsyncFileRequestConsumer(
+            final File file,
+            final Executor executor,
+            final FutureCallback<File> callback) {
+        this(file, executor, 4, 32 * 1024, null, callback);
+    }
+
+    /**
+     * Returns the request message being consumed or {@code null} if the
+     * request head has not been received yet.
+     */
+    public HttpRequest getRequest() {
+        return this.request;
+    }
+
+    @Override
+    protected void onRequestReceived(final HttpRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    protected void onEntityEnclosed(
+            final HttpEntity entity, final ContentType contentType) {
+    }
+
+    private ByteBuffer takeFreeBuffer() {
+        if (!this.free.isEmpty()) {
+            return this.free.removeFirst();
+        }
+        if (this.allocated < this.bufferCount) {
+            this.allocated++;
+            return this.allocator.allocate(this.bufferSize);
+        }
+        return null;
+    }
+
+    @Override
+    protected void onContentReceived(
+            final ContentDecoder decoder, final IOControl ioControl) throws IOException {
+        for (;;) {
+            final ByteBuffer buffer;
+            this.lock.lock();
+            try {
+                if (this.exception != null) {
+                    throw this.exception;
+                }
+                this.ioControl = ioControl;
+                buffer = takeFreeBuffer();
+                if (buffer == null) {
+                    this.inputSuspended = true;
+                    ioControl.suspendInput();
+                    return;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            final int bytesRead = decoder.read(buffer);
+            final boolean completed = decoder.isCompleted();
+            final boolean submit;
+            this.lock.lock();
+            try {
+                if (buffer.position() > 0) {
+                    buffer.flip();
+                    this.pending.add(buffer);
+                } else {
+                    this.free.addFirst(buffer);
+                }
+                if (completed) {
+                    this.endOfStream = true;
+                }
+                submit = !this.writing && (!this.pending.isEmpty() || this.endOfStream);
+                if (submit) {
+                    this.writing = true;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            if (submit) {
+                submit();
+            }
+            if (completed || bytesRead <= 0 || buffer.hasRemaining()) {
+                return;
+            }
+        }
+    }
+
+    private void submit() throws IOException {
+        try {
+            this.executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    writeBehind();
+                }
+
+            });
+        } catch (final RejectedExecutionException ex) {
+            final IOException cause = new IOException("Write-behind task rejected by executor", ex);
+            this.lock.lock();
+            try {
+                this.writing = false;
+                this.exception = cause;
+            } finally {
+                this.lock.unlock();
+            }
+            closeChannel();
+            this.future.failed(cause);
+            throw cause;
+        }
+    }
+
+    private void writeBehind() {
+        try {
+            for (;;) {
+                final ByteBuffer buffer;
+                final boolean done;
+                this.lock.lock();
+                try {
+                    if (this.aborted) {
+                        this.writing = false;
+                        break;
+                    }
+                    buffer = this.pending.isEmpty() ? null : this.pending.removeFirst();
+                    done = buffer == null && this.endOfStream;
+                    if (buffer == null && !done) {
+                        this.writing = false;
+                        break;
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+                if (this.fileChannel == null) {
+                    final RandomAccessFile accessFile = new RandomAccessFile(this.file, "rw");
+                    accessFile.setLength(0);
+                    this.fileChannel = accessFile.getChannel();
+                }
+                if (done) {
+                    closeChannel();
+                    this.lock.lock();
+                    try {
+                        this.writing = false;
+                    } finally {
+                        this.lock.unlock();
+                    }
+                    this.future.completed(this.file);
+                    return;
+                }
+                while (buffer.hasRemaining()) {
+                    this.position += this.fileChannel.write(buffer, this.position);
+                }
+                buffer.clear();
+                final IOControl resume;
+                this.lock.lock();
+                try {
+                    this.free.add(buffer);
+                    resume = this.inputSuspended ? this.ioControl : null;
+                    this.inputSuspended = false;
+                } finally {
+                    this.lock.unlock();
+                }
+                if (resume != null) {
+                    resume.requestInput();
+                }
+            }
+        } catch (final IOException ex) {
+            final IOControl ioctrl;
+            this.lock.lock();
+            try {
+                this.exception = ex;
+                this.writing = false;
+                ioctrl = this.ioControl;
+            } finally {
+                this.lock.unlock();
+            }
+            this.future.failed(ex);
+            if (ioctrl != null) {
+                // Let the I/O dispatch thread pick up the exception
+                ioctrl.requestInput();
+            }
+        }
+        closeChannelIfAborted();
+    }
+
+    private void closeChannelIfAborted() {
+        final boolean close;
+        this.lock.lock();
+        try {
+            close = !this.writing && (this.aborted || this.exception != null);
+        } finally {
+            this.lock.unlock();
+        }
+        if (close) {
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        final FileChannel local = this.fileChannel;
+        this.fileChannel = null;
+        if (local != null) {
+            try {
+                local.close();
+            } catch (final IOException ignore) {
+            }
+        }
+    }
+
+    @Override
+    protected Future<File> buildResult(final HttpContext context) throws IOException {
+        final boolean submit;
+        this.lock.lock();
+        try {
+            // Request without content: the writer still needs to create an empty file
+            submit = !this.endOfStream && !this.writing;
+            this.endOfStream = true;
+            if (submit) {
+                this.writing = true;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        if (submit) {
+            submit();
+        }
+        return this.future;
+    }
+
+    @Override
+    protected void releaseResources() {
+        this.lock.lock();
+        try {
+            if (this.endOfStream && this.exception == null) {
+                // Let pending content be written out
+                return;
+            }
+            this.aborted = true;
+            this.pending.clear();
+        } finally {
+            this.lock.unlock();
+        }
+        this.future.cancel();
+        closeChannelIfAborted();
+    }
+
+}
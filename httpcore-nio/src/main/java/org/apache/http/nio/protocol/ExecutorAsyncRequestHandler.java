@@ -0,0 +1,278 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.protocol;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.MethodNotSupportedException;
+import org.apache.http.ProtocolException;
+import org.apache.http.UnsupportedHttpVersionException;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.util.Args;
+
+/**
+ * Implementation of {@link HttpAsyncRequestHandler} that delegates the process
+ * of request handling to a blocking {@link HttpRequestHandler} executed by
+ * the given {@link Executor} instead of the I/O dispatch thread. This makes it
+ * possible to run slow blocking handlers on a non-blocking server without
+ * stalling other connections served by the same I/O dispatcher.
+ * <p>
+ * The number of requests waiting for execution is limited by the maximum
+ * queue size. Requests exceeding that limit or rejected by the executor are
+ * responded to immediately with {@code 503 Service Unavailable}. Please note
+ * that this handler buffers request content in memory and should be used for
+ * relatively small request messages.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class ExecutorAsyncRequestHandler implements HttpAsyncRequestHandler<HttpRequest> {
+
+    private final HttpRequestHandler handler;
+    private final Executor executor;
+    private final int maxQueueSize;
+    private final AtomicInteger queueDepth;
+    private final AtomicLong executedCount;
+    private final AtomicLong rejectedCount;
+    private final AtomicLong totalQueueTime;
+    private final AtomicLong maxQueueTime;
+
+    /**
+     * @param handler the blocking request handler.
+     * @param executor the executor to run the request handler.
+     * @param maxQueueSize the maximum number of requests waiting for
+     *   execution. Must be positive.
+     */
+    public ExecutorAsyncRequestHandler(
+            final HttpRequestHandler handler,
+            final Executor executor,
+            final int maxQueueSize) {
+        super();
+        this.handler = Args.notNull(handler, "Request handler");
+        this.executor = Args.notNull(executor, "Executor");
+        this.maxQueueSize = Args.positive(maxQueueSize, "Max queue size");
+        this.queueDepth = new AtomicInteger(0);
+        this.executedCount = new AtomicLong(0);
+        this.rejectedCount = new AtomicLong(0);
+        this.totalQueueTime = new AtomicLong(0);
+        this.maxQueueTime = new AtomicLong(0);
+    }
+
+    @Override
+    public HttpAsyncRequestConsumer<HttpRequest> processRequest(final HttpRequest request,
+            final HttpContext context) {
+        return new BasicAsyncRequestConsumer();
+    }
+
+    @Override
+    public void handle(
+            final HttpRequest request,
+            final HttpAsyncExchange httpexchange,
+            final HttpContext context) throws HttpException, IOException {
+        if (this.queueDepth.incrementAndGet() > this.maxQueueSize) {
+            this.queueDepth.decrementAndGet();
+            reject(httpexchange, context);
+            return;
+        }
+        final Task task = new Task(request, httpexchange, context);
+        httpexchange.setCallback(task);
+        try {
+            this.executor.execute(task);
+        } catch (final RejectedExecutionException ex) {
+            this.queueDepth.decrementAndGet();
+            reject(httpexchange, context);
+        }
+    }
+
+    private void reject(final HttpAsyncExchange httpexchange, final HttpContext context) {
+        this.rejectedCount.incrementAndGet();
+        final HttpResponse response = createHttpResponse(HttpStatus.SC_SERVICE_UNAVAILABLE, context);
+        httpexchange.submitResponse(new ErrorResponseProducer(
+                response, new NStringEntity("Service unavailable", ContentType.DEFAULT_TEXT), true));
+    }
+
+    private void recordQueueTime(final long queueTime) {
+        this.executedCount.incrementAndGet();
+        this.totalQueueTime.addAndGet(queueTime);
+        for (;;) {
+            final long max = this.maxQueueTime.get();
+            if (queueTime <= max || this.maxQueueTime.compareAndSet(max, queueTime)) {
+                break;
+            }
+        }
+    }
+
+    protected HttpResponse createHttpResponse(final int status, final HttpContext context) {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null);
+    }
+
+    protected HttpAsyncResponseProducer handleException(
+            final Exception ex, final HttpContext context) {
+        String message = ex.getMessage();
+        if (message == null) {
+            message = ex.toString();
+        }
+        final HttpResponse response = createHttpResponse(toStatusCode(ex, context), context);
+        return new ErrorResponseProducer(response, new NStringEntity(message, ContentType.DEFAULT_TEXT), false);
+    }
+
+    protected int toStatusCode(final Exception ex, final HttpContext context) {
+        final int code;
+        if (ex instanceof MethodNotSupportedException) {
+            code = HttpStatus.SC_NOT_IMPLEMENTED;
+        } else if (ex instanceof UnsupportedHttpVersionException) {
+            code = HttpStatus.SC_HTTP_VERSION_NOT_SUPPORTED;
+        } else if (ex instanceof ProtocolException) {
+            code = HttpStatus.SC_BAD_REQUEST;
+        } else {
+            code = HttpStatus.SC_INTERNAL_SERVER_ERROR;
+        }
+        return code;
+    }
+
+    /**
+     * Returns the number of requests currently waiting for execution.
+     */
+    public int getQueueDepth() {
+        return this.queueDepth.get();
+    }
+
+    /**
+     * Returns the maximum number of requests waiting for execution.
+     */
+    public int getMaxQueueSize() {
+        return this.maxQueueSize;
+    }
+
+    /**
+     * Returns the number of requests passed on to the request handler.
+     */
+    public long getExecutedCount() {
+        return this.executedCount.get();
+    }
+
+    /**
+     * Returns the number of requests rejected with {@code 503 Service Unavailable}.
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    /**
+     * Returns the total time in milliseconds executed requests spent waiting for execution.
+     */
+    public long getTotalQueueTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.totalQueueTime.get());
+    }
+
+    /**
+     * Returns the maximum time in milliseconds an executed request spent waiting for execution.
+     */
+    public long getMaxQueueTime() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxQueueTime.get());
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("[queue depth: ").append(getQueueDepth())
+            .append("; executed: ").append(getExecutedCount())
+            .append("; rejected: ").append(getRejectedCount())
+            .append("; max queue time: ").append(getMaxQueueTime())
+            .append("]");
+        return buf.toString();
+    }
+
+    class Task implements Runnable, Cancellable {
+
+        private final HttpRequest request;
+        private final HttpAsyncExchange httpexchange;
+        private final HttpContext context;
+        private final long enqueued;
+        private final AtomicBoolean cancelled;
+
+        Task(final HttpRequest request, final HttpAsyncExchange httpexchange, final HttpContext context) {
+            super();
+            this.request = request;
+            this.httpexchange = httpexchange;
+            this.context = context;
+            this.enqueued = System.nanoTime();
+            this.cancelled = new AtomicBoolean(false);
+        }
+
+        @Override
+        public boolean cancel() {
+            return this.cancelled.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            queueDepth.decrementAndGet();
+            if (this.cancelled.get()) {
+                return;
+            }
+            recordQueueTime(System.nanoTime() - this.enqueued);
+            try {
+                handler.handle(this.request, this.httpexchange.getResponse(), this.context);
+                this.httpexchange.submitResponse();
+            } catch (final HttpException ex) {
+                failed(ex);
+            } catch (final IOException ex) {
+                failed(ex);
+            } catch (final RuntimeException ex) {
+                failed(ex);
+            }
+        }
+
+        private void failed(final Exception ex) {
+            if (!this.httpexchange.isCompleted()) {
+                this.httpexchange.submitResponse(handleException(ex, this.context));
+            }
+        }
+
+    }
+
+}
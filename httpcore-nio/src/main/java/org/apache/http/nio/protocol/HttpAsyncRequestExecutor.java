@@ -45,6 +45,9 @@
 import org.apache.http.ProtocolVersion;
 import org.apache.http.annotation.Contract;
 import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.instrument.ExchangeType;
+import org.apache.http.instrument.HttpInstrumentation;
+import org.apache.http.instrument.InstrumentationSupport;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.ContentEncoder;
 import org.apache.http.nio.NHttpClientConnection;
@@ -86,6 +89,8 @@ public class HttpAsyncRequestExecutor implements NHttpClientEventHandler {
     public static final int DEFAULT_WAIT_FOR_CONTINUE = 3000;
     public static final String HTTP_HANDLER = "http.nio.exchange-handler";
 
+    private static final HttpInstrumentation INSTRUMENTATION = InstrumentationSupport.getInstrumentation();
+
     private final int waitForContinue;
     private final ExceptionLogger exceptionLogger;
 
@@ -142,6 +147,7 @@ public void closed(final NHttpClientConnection conn) {
         }
         final State state = getState(conn);
         if (state != null) {
+            exchangeFailed(state);
             if (state.getRequestState() != MessageState.READY || state.getResponseState() != MessageState.READY) {
                 handler.failed(new ConnectionClosedException("Connection closed unexpectedly"));
             }
@@ -158,6 +164,10 @@ public void closed(final NHttpClientConnection conn) {
     public void exception(
             final NHttpClientConnection conn, final Exception cause) {
         shutdownConnection(conn);
+        final State state = getState(conn);
+        if (state != null) {
+            exchangeFailed(state);
+        }
         final HttpAsyncClientExchangeHandler handler = getHandler(conn);
         if (handler != null) {
             handler.failed(cause);
@@ -202,6 +212,8 @@ public void requestReady(
         state.setRequest(request);
         if (pipelined) {
             state.getRequestQueue().add(request);
+        } else if (INSTRUMENTATION.isEnabled()) {
+            state.setExchangeStart(System.nanoTime());
         }
         if (request instanceof HttpEntityEnclosingRequest) {
             final boolean expectContinue = ((HttpEntityEnclosingRequest) request).expectContinue();
@@ -296,6 +308,9 @@ public void responseReceived(
             return;
         }
         state.setResponse(response);
+        if (state.getExchangeStart() != 0) {
+            state.setExchangeHead(System.nanoTime());
+        }
         if (state.getRequestState() == MessageState.ACK_EXPECTED) {
             final int timeout = state.getTimeout();
             conn.setSocketTimeout(timeout);
@@ -353,6 +368,7 @@ public void endOfInput(final NHttpClientConnection conn) throws IOException {
                     if (state.isValid()) {
                         handler.inputTerminated();
                     } else {
+                        exchangeFailed(state);
                         handler.failed(new ConnectionClosedException());
                     }
                 }
@@ -382,6 +398,7 @@ public void timeout(
                 return;
             }
             state.invalidate();
+            exchangeFailed(state);
             final HttpAsyncClientExchangeHandler handler = getHandler(conn);
             if (handler != null) {
                 handler.failed(new SocketTimeoutException(
@@ -446,6 +463,15 @@ private void processResponse(
             conn.close();
         }
         handler.responseCompleted();
+        final long startTime = state.getExchangeStart();
+        if (startTime != 0) {
+            final long endTime = System.nanoTime();
+            final long headTime = state.getExchangeHead();
+            state.setExchangeStart(0);
+            state.setExchangeHead(0);
+            INSTRUMENTATION.exchangeCompleted(ExchangeType.CLIENT, startTime,
+                    headTime != 0 ? headTime : endTime, endTime);
+        }
 
         if (!pipelining(handler)) {
             state.setRequestState(MessageState.READY);
@@ -458,6 +484,15 @@ private void processResponse(
         }
     }
 
+    private static void exchangeFailed(final State state) {
+        final long startTime = state.getExchangeStart();
+        if (startTime != 0) {
+            state.setExchangeStart(0);
+            state.setExchangeHead(0);
+            INSTRUMENTATION.exchangeFailed(ExchangeType.CLIENT, startTime, System.nanoTime());
+        }
+    }
+
     private boolean canResponseHaveBody(final HttpRequest request, final HttpResponse response) {
 
         final String method = request.getRequestLine().getMethod();
@@ -486,6 +521,8 @@ static class State {
         private volatile HttpResponse response;
         private volatile boolean valid;
         private volatile int timeout;
+        private volatile long exchangeStart;
+        private volatile long exchangeHead;
 
         State() {
             super();
@@ -539,6 +576,22 @@ public void setTimeout(final int timeout) {
             this.timeout = timeout;
         }
 
+        public long getExchangeStart() {
+            return this.exchangeStart;
+        }
+
+        public void setExchangeStart(final long exchangeStart) {
+            this.exchangeStart = exchangeStart;
+        }
+
+        public long getExchangeHead() {
+            return this.exchangeHead;
+        }
+
+        public void setExchangeHead(final long exchangeHead) {
+            this.exchangeHead = exchangeHead;
+        }
+
         public boolean isValid() {
             return this.valid;
         }
@@ -53,6 +53,9 @@
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.impl.DefaultHttpResponseFactory;
+import org.apache.http.instrument.ExchangeType;
+import org.apache.http.instrument.HttpInstrumentation;
+import org.apache.http.instrument.InstrumentationSupport;
 import org.apache.http.nio.ContentDecoder;
 import org.apache.http.nio.ContentEncoder;
 import org.apache.http.nio.NHttpConnection;
@@ -104,6 +107,10 @@
 public class HttpAsyncService implements NHttpServerEventHandler {
 
     static final String HTTP_EXCHANGE_STATE = "http.nio.http-exchange-state";
+    static final String HTTP_EXCHANGE_START = "http.nio.http-exchange-start";
+    static final String HTTP_EXCHANGE_HEAD = "http.nio.http-exchange-head";
+
+    private static final HttpInstrumentation INSTRUMENTATION = InstrumentationSupport.getInstrumentation();
 
     private final HttpProcessor httpProcessor;
     private final ConnectionReuseStrategy connectionStrategy;
@@ -111,6 +118,7 @@ public class HttpAsyncService implements NHttpServerEventHandler {
     private final HttpAsyncRequestHandlerMapper handlerMapper;
     private final HttpAsyncExpectationVerifier expectationVerifier;
     private final ExceptionLogger exceptionLogger;
+    private final AdmissionController admissionController;
 
     /**
      * Creates new instance of {@code HttpAsyncServerProtocolHandler}.
@@ -212,6 +220,36 @@ public HttpAsyncService(
             final HttpAsyncRequestHandlerMapper handlerMapper,
             final HttpAsyncExpectationVerifier expectationVerifier,
             final ExceptionLogger exceptionLogger) {
+        this(httpProcessor, connStrategy, responseFactory, handlerMapper, expectationVerifier,
+                exceptionLogger, null);
+    }
+
+    /**
+     * Creates new instance of {@code HttpAsyncServerProtocolHandler}.
+     *
+     * @param httpProcessor HTTP protocol processor.
+     * @param connStrategy Connection re-use strategy. If {@code null}
+     *   {@link DefaultConnectionReuseStrategy#INSTANCE} will be used.
+     * @param responseFactory HTTP response factory. If {@code null}
+     *   {@link DefaultHttpResponseFactory#INSTANCE} will be used.
+     * @param handlerMapper Request handler mapper.
+     * @param expectationVerifier Request expectation verifier. May be {@code null}.
+     * @param exceptionLogger Exception logger. If {@code null}
+     *   {@link ExceptionLogger#NO_OP} will be used. Please note that the exception
+     *   logger will be only used to log I/O exception thrown while closing
+     *   {@link java.io.Closeable} objects (such as {@link org.apache.http.HttpConnection}).
+     * @param admissionController Admission controller used to shed load. May be {@code null}.
+     *
+     * @since 4.4.17
+     */
+    public HttpAsyncService(
+            final HttpProcessor httpProcessor,
+            final ConnectionReuseStrategy connStrategy,
+            final HttpResponseFactory responseFactory,
+            final HttpAsyncRequestHandlerMapper handlerMapper,
+            final HttpAsyncExpectationVerifier expectationVerifier,
+            final ExceptionLogger exceptionLogger,
+            final AdmissionController admissionController) {
         super();
         this.httpProcessor = Args.notNull(httpProcessor, "HTTP processor");
         this.connectionStrategy = connStrategy != null ? connStrategy :
@@ -221,6 +259,7 @@ public HttpAsyncService(
         this.handlerMapper = handlerMapper;
         this.expectationVerifier = expectationVerifier;
         this.exceptionLogger = exceptionLogger != null ? exceptionLogger : ExceptionLogger.NO_OP;
+        this.admissionController = admissionController;
     }
 
     /**
@@ -357,14 +396,33 @@ public void requestReceived(
 
         final HttpRequest request = conn.getHttpRequest();
         final HttpContext context = new BasicHttpContext();
+        if (INSTRUMENTATION.isEnabled()) {
+            context.setAttribute(HTTP_EXCHANGE_START, Long.valueOf(System.nanoTime()));
+        }
 
         context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
         context.setAttribute(HttpCoreContext.HTTP_CONNECTION, conn);
         this.httpProcessor.process(request, context);
 
-        final HttpAsyncRequestHandler<Object> requestHandler = getRequestHandler(request);
-        final HttpAsyncRequestConsumer<Object> consumer = requestHandler.processRequest(request, context);
-        consumer.requestReceived(request);
+        final HttpAsyncRequestHandler<Object> requestHandler;
+        if (this.admissionController != null && !this.admissionController.admit(context)) {
+            // request content is discarded and the request shed before it reaches its handler
+            requestHandler = NullRequestHandler.INSTANCE;
+        } else {
+            requestHandler = getRequestHandler(request);
+        }
+        final HttpAsyncRequestConsumer<Object> consumer;
+        boolean accepted = false;
+        try {
+            consumer = requestHandler.processRequest(request, context);
+            consumer.requestReceived(request);
+            accepted = true;
+        } finally {
+            if (!accepted) {
+                // the exchange never gets as far as the connection state
+                releaseAdmission(context);
+            }
+        }
 
         final Incoming incoming = new Incoming(request, requestHandler, consumer, context);
         state.setIncoming(incoming);
@@ -473,7 +531,10 @@ public void responseReady(
                 final HttpResponse response = createHttpResponse(HttpStatus.SC_OK, context);
                 final HttpAsyncExchangeImpl httpExchange = new HttpAsyncExchangeImpl(
                         request, response, state, conn, context);
-                if (result != null) {
+                if (result != null && this.admissionController != null
+                        && this.admissionController.shed(context)) {
+                    httpExchange.submitResponse(this.admissionController.generateShedResponse());
+                } else if (result != null) {
                     final HttpAsyncRequestHandler<Object> handler = pipelineEntry.getHandler();
                     conn.suspendOutput();
                     try {
@@ -592,6 +653,7 @@ private void shutdownConnection(final NHttpConnection conn) {
     }
 
     private void closeHandlers(final State state, final Exception ex) {
+        exchangesFailed(state);
         final HttpAsyncRequestConsumer<Object> consumer =
                 state.getIncoming() != null ? state.getIncoming().getConsumer() : null;
         if (consumer != null) {
@@ -621,6 +683,7 @@ private void closeHandlers(final State state, final Exception ex) {
     }
 
     private void closeHandlers(final State state) {
+        exchangesFailed(state);
         final HttpAsyncRequestConsumer<Object> consumer =
                 state.getIncoming() != null ? state.getIncoming().getConsumer() : null;
         if (consumer != null) {
@@ -641,6 +704,46 @@ private void closeHandlers(final State state) {
         }
     }
 
+    private void exchangesFailed(final State state) {
+        final Incoming incoming = state.getIncoming();
+        if (incoming != null) {
+            exchangeEnded(incoming.getContext(), false);
+            releaseAdmission(incoming.getContext());
+        }
+        final Outgoing outgoing = state.getOutgoing();
+        if (outgoing != null) {
+            exchangeEnded(outgoing.getContext(), false);
+            releaseAdmission(outgoing.getContext());
+        }
+        if (this.admissionController != null) {
+            for (final PipelineEntry pipelineEntry: state.getPipeline()) {
+                releaseAdmission(pipelineEntry.getContext());
+            }
+        }
+    }
+
+    private void releaseAdmission(final HttpContext context) {
+        if (this.admissionController != null) {
+            this.admissionController.release(context);
+        }
+    }
+
+    private static void exchangeEnded(final HttpContext context, final boolean completed) {
+        // the start time is removed so that an exchange is only ever reported once
+        final Long startTime = (Long) context.removeAttribute(HTTP_EXCHANGE_START);
+        if (startTime == null) {
+            return;
+        }
+        final long endTime = System.nanoTime();
+        if (completed) {
+            final Long headTime = (Long) context.removeAttribute(HTTP_EXCHANGE_HEAD);
+            INSTRUMENTATION.exchangeCompleted(ExchangeType.SERVER, startTime.longValue(),
+                    headTime != null ? headTime.longValue() : endTime, endTime);
+        } else {
+            INSTRUMENTATION.exchangeFailed(ExchangeType.SERVER, startTime.longValue(), endTime);
+        }
+    }
+
     protected HttpAsyncResponseProducer handleException(
             final Exception ex, final HttpContext context) {
         String message = ex.getMessage();
@@ -715,6 +818,9 @@ private void completeRequest(
         final HttpAsyncRequestConsumer<?> consumer = incoming.getConsumer();
         try {
             final HttpContext context = incoming.getContext();
+            if (this.admissionController != null) {
+                this.admissionController.requestCompleted(context);
+            }
             consumer.requestCompleted(context);
             pipelineEntry = new PipelineEntry(
                     incoming.getRequest(),
@@ -751,6 +857,9 @@ private void commitFinalResponse(
         }
 
         conn.submitResponse(response);
+        if (context.getAttribute(HTTP_EXCHANGE_START) != null) {
+            context.setAttribute(HTTP_EXCHANGE_HEAD, Long.valueOf(System.nanoTime()));
+        }
 
         if (entity == null) {
             completeResponse(outgoing, conn, state);
@@ -774,6 +883,8 @@ private void completeResponse(
         } finally {
             responseProducer.close();
         }
+        exchangeEnded(context, true);
+        releaseAdmission(context);
         if (!this.connectionStrategy.keepAlive(response, context)) {
             conn.close();
         } else {
@@ -0,0 +1,735 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.protocol;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpMessage;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.RequestLine;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.impl.nio.pool.BasicNIOConnPool;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.util.Args;
+
+/**
+ * Fully streaming reverse proxy {@link HttpAsyncRequestHandler} that relays
+ * requests received by {@link HttpAsyncService} to an origin server by means of
+ * {@link HttpAsyncRequester} over persistent connections leased from
+ * a {@link BasicNIOConnPool}.
+ * <p>
+ * Message content is never buffered in full. Each direction of an exchange
+ * is served by a single fixed size buffer that the content decoder of one
+ * connection reads into and the content encoder of the other connection
+ * writes out of. Back pressure is propagated across the connection pair:
+ * input of the producing connection is suspended as soon as the buffer
+ * gets full and resumed once the peer connection has written some of its
+ * content out.
+ * <p>
+ * Hop-by-hop headers are not relayed. {@code Content-Length} and
+ * {@code Transfer-Encoding} of relayed messages are re-generated by
+ * the protocol processors of the respective connection, so both the inbound
+ * and the outbound protocol processor are expected to include
+ * {@link org.apache.http.protocol.ResponseContent} and
+ * {@link org.apache.http.protocol.RequestContent} respectively.
+ * <p>
+ * Failures to execute the outbound request are reported to the client with
+ * {@code 502 Bad Gateway} or, in case of a timeout, {@code 504 Gateway Timeout}
+ * responses, unless the response head has already been relayed, in which case
+ * the inbound connection gets shut down.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE_CONDITIONAL)
+public class ReverseProxyAsyncRequestHandler implements HttpAsyncRequestHandler<ReverseProxyExchange> {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<String>(Arrays.asList(
+            "connection",
+            "keep-alive",
+            "proxy-authenticate",
+            "proxy-authorization",
+            "proxy-connection",
+            "te",
+            "trailer",
+            "transfer-encoding",
+            "upgrade",
+            "content-length"));
+
+    private final HttpHost target;
+    private final HttpAsyncRequester requester;
+    private final BasicNIOConnPool connPool;
+    private final int bufferSize;
+
+    /**
+     * Creates new instance of ReverseProxyAsyncRequestHandler.
+     *
+     * @param target the origin server.
+     * @param requester the requester used to execute outbound requests.
+     * @param connPool the pool of outbound connections.
+     * @param bufferSize the size of the buffer used to relay message content
+     *   in either direction.
+     */
+    public ReverseProxyAsyncRequestHandler(
+            final HttpHost target,
+            final HttpAsyncRequester requester,
+            final BasicNIOConnPool connPool,
+            final int bufferSize) {
+        super();
+        this.target = Args.notNull(target, "Target host");
+        this.requester = Args.notNull(requester, "HTTP requester");
+        this.connPool = Args.notNull(connPool, "Connection pool");
+        this.bufferSize = Args.positive(bufferSize, "Buffer size");
+    }
+
+    public ReverseProxyAsyncRequestHandler(
+            final HttpHost target,
+            final HttpAsyncRequester requester,
+            final BasicNIOConnPool connPool) {
+        this(target, requester, connPool, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Determines the origin server the request is to be relayed to. This method
+     * can be overridden in order to route requests to different origin servers.
+     *
+     * @param request the request received from the client.
+     * @param context the execution context of the inbound request.
+     * @return the origin server.
+     */
+    protected HttpHost determineTarget(final HttpRequest request, final HttpContext context) {
+        return this.target;
+    }
+
+    @Override
+    public HttpAsyncRequestConsumer<ReverseProxyExchange> processRequest(
+            final HttpRequest request,
+            final HttpContext context) throws HttpException, IOException {
+        final Object conn = context.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+        final ReverseProxyExchange exchange = new ReverseProxyExchange(
+                determineTarget(request, context),
+                new BasicHttpContext(),
+                conn instanceof IOControl ? (IOControl) conn : null,
+                this.bufferSize);
+        return new ProxyRequestConsumer(exchange, this.requester, this.connPool);
+    }
+
+    @Override
+    public void handle(
+            final ReverseProxyExchange exchange,
+            final HttpAsyncExchange httpExchange,
+            final HttpContext context) throws HttpException, IOException {
+        exchange.lock.lock();
+        try {
+            exchange.responseTrigger = httpExchange;
+            if (exchange.exception != null) {
+                submitError(exchange);
+            } else if (exchange.response != null) {
+                submitResponse(exchange);
+            } else {
+                httpExchange.setCallback(new Cancellable() {
+
+                    @Override
+                    public boolean cancel() {
+                        exchange.lock.lock();
+                        try {
+                            exchange.abort();
+                            return true;
+                        } finally {
+                            exchange.lock.unlock();
+                        }
+                    }
+
+                });
+            }
+        } finally {
+            exchange.lock.unlock();
+        }
+    }
+
+    static void submitResponse(final ReverseProxyExchange exchange) {
+        exchange.responseSubmitted = true;
+        exchange.responseTrigger.submitResponse(new ProxyResponseProducer(exchange));
+    }
+
+    static void submitError(final ReverseProxyExchange exchange) {
+        final Exception ex = exchange.exception;
+        final int status = ex instanceof SocketTimeoutException || ex instanceof TimeoutException
+                ? HttpStatus.SC_GATEWAY_TIMEOUT : HttpStatus.SC_BAD_GATEWAY;
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status,
+                EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.US));
+        final String message = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getName();
+        exchange.responseSubmitted = true;
+        exchange.responseTrigger.submitResponse(new ErrorResponseProducer(response,
+                new NStringEntity(message, ContentType.DEFAULT_TEXT), true));
+    }
+
+    static Set<String> connectionTokens(final HttpMessage message) {
+        final Header[] headers = message.getHeaders(HttpHeaders.CONNECTION);
+        if (headers.length == 0) {
+            return null;
+        }
+        final Set<String> tokens = new HashSet<String>();
+        for (final Header header: headers) {
+            for (final HeaderElement element: header.getElements()) {
+                tokens.add(element.getName().toLowerCase(Locale.ROOT));
+            }
+        }
+        return tokens;
+    }
+
+    static void copyHeaders(final HttpMessage src, final HttpMessage dst, final String... excluded) {
+        final Set<String> tokens = connectionTokens(src);
+        for (final Header header: src.getAllHeaders()) {
+            final String name = header.getName().toLowerCase(Locale.ROOT);
+            if (HOP_BY_HOP_HEADERS.contains(name) || (tokens != null && tokens.contains(name))) {
+                continue;
+            }
+            boolean skip = false;
+            for (final String s: excluded) {
+                if (s.equalsIgnoreCase(name)) {
+                    skip = true;
+                    break;
+                }
+            }
+            if (!skip) {
+                dst.addHeader(header);
+            }
+        }
+    }
+
+    static String rewriteUri(final String uri) {
+        if (uri.startsWith("/") || uri.equals("*")) {
+            return uri;
+        }
+        final int i = uri.indexOf("://");
+        if (i == -1) {
+            return uri;
+        }
+        final int pathStart = uri.indexOf('/', i + 3);
+        return pathStart != -1 ? uri.substring(pathStart) : "/";
+    }
+
+    static class ProxyRequestConsumer implements HttpAsyncRequestConsumer<ReverseProxyExchange> {
+
+        private final ReverseProxyExchange exchange;
+        private final HttpAsyncRequester requester;
+        private final BasicNIOConnPool connPool;
+
+        private volatile boolean completed;
+        private volatile Exception exception;
+
+        ProxyRequestConsumer(
+                final ReverseProxyExchange exchange,
+                final HttpAsyncRequester requester,
+                final BasicNIOConnPool connPool) {
+            super();
+            this.exchange = exchange;
+            this.requester = requester;
+            this.connPool = connPool;
+        }
+
+        @Override
+        public void requestReceived(final HttpRequest request) throws HttpException, IOException {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                exchange.request = request;
+                if (request instanceof HttpEntityEnclosingRequest
+                        && ((HttpEntityEnclosingRequest) request).getEntity() != null) {
+                    exchange.requestBuffer = ByteBuffer.allocate(exchange.bufferSize);
+                } else {
+                    exchange.requestComplete = true;
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+            final Future<ReverseProxyExchange> future = this.requester.execute(
+                    new ProxyRequestProducer(exchange),
+                    new ProxyResponseConsumer(exchange),
+                    this.connPool,
+                    exchange.outboundContext);
+            exchange.lock.lock();
+            try {
+                exchange.future = future;
+                if (exchange.aborted) {
+                    future.cancel(true);
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void consumeContent(final ContentDecoder decoder, final IOControl ioControl) throws IOException {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                exchange.clientIOControl = ioControl;
+                if (exchange.requestBuffer == null) {
+                    exchange.requestBuffer = ByteBuffer.allocate(exchange.bufferSize);
+                }
+                final ByteBuffer buf = exchange.requestBuffer;
+                if (exchange.exception != null || exchange.aborted) {
+                    // The request can no longer be relayed. Discard its content
+                    // so that the client gets the error response.
+                    while (decoder.read(buf) > 0) {
+                        buf.clear();
+                    }
+                    buf.clear();
+                    if (decoder.isCompleted()) {
+                        exchange.requestComplete = true;
+                    }
+                    return;
+                }
+                decoder.read(buf);
+                if (decoder.isCompleted()) {
+                    exchange.requestComplete = true;
+                } else if (!buf.hasRemaining()) {
+                    ioControl.suspendInput();
+                }
+                if ((buf.position() > 0 || exchange.requestComplete) && exchange.originIOControl != null) {
+                    exchange.originIOControl.requestOutput();
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void requestCompleted(final HttpContext context) {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                this.completed = true;
+                exchange.requestComplete = true;
+                if (exchange.originIOControl != null) {
+                    exchange.originIOControl.requestOutput();
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                this.exception = ex;
+                this.completed = true;
+                exchange.abort();
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public Exception getException() {
+            return this.exception;
+        }
+
+        @Override
+        public ReverseProxyExchange getResult() {
+            return this.exchange;
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.completed;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+    }
+
+    static class ProxyRequestProducer implements HttpAsyncRequestProducer {
+
+        private final ReverseProxyExchange exchange;
+
+        ProxyRequestProducer(final ReverseProxyExchange exchange) {
+            super();
+            this.exchange = exchange;
+        }
+
+        @Override
+        public HttpHost getTarget() {
+            return this.exchange.target;
+        }
+
+        @Override
+        public HttpRequest generateRequest() throws IOException, HttpException {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                final HttpRequest request = exchange.request;
+                final RequestLine requestLine = request.getRequestLine();
+                final String method = requestLine.getMethod();
+                final String uri = rewriteUri(requestLine.getUri());
+                final HttpRequest outgoing;
+                if (exchange.requestBuffer != null) {
+                    final BasicHttpEntityEnclosingRequest r = new BasicHttpEntityEnclosingRequest(
+                            method, uri, HttpVersion.HTTP_1_1);
+                    r.setEntity(((HttpEntityEnclosingRequest) request).getEntity());
+                    outgoing = r;
+                } else {
+                    outgoing = new BasicHttpRequest(method, uri, HttpVersion.HTTP_1_1);
+                }
+                copyHeaders(request, outgoing, HttpHeaders.HOST, HttpHeaders.EXPECT);
+                return outgoing;
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void produceContent(final ContentEncoder encoder, final IOControl ioControl) throws IOException {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                exchange.originIOControl = ioControl;
+                final ByteBuffer buf = exchange.requestBuffer;
+                if (buf == null) {
+                    encoder.complete();
+                    return;
+                }
+                buf.flip();
+                encoder.write(buf);
+                buf.compact();
+                if (buf.hasRemaining() && !exchange.requestComplete && exchange.clientIOControl != null) {
+                    exchange.clientIOControl.requestInput();
+                }
+                if (buf.position() == 0) {
+                    if (exchange.requestComplete) {
+                        encoder.complete();
+                    } else {
+                        ioControl.suspendOutput();
+                    }
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void requestCompleted(final HttpContext context) {
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public void resetRequest() throws IOException {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+    }
+
+    static class ProxyResponseConsumer implements HttpAsyncResponseConsumer<ReverseProxyExchange> {
+
+        private final ReverseProxyExchange exchange;
+
+        private volatile boolean completed;
+
+        ProxyResponseConsumer(final ReverseProxyExchange exchange) {
+            super();
+            this.exchange = exchange;
+        }
+
+        @Override
+        public void responseReceived(final HttpResponse response) throws IOException, HttpException {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                final Object conn = exchange.outboundContext.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+                if (exchange.originIOControl == null && conn instanceof IOControl) {
+                    exchange.originIOControl = (IOControl) conn;
+                }
+                if (exchange.aborted) {
+                    if (exchange.originIOControl != null) {
+                        exchange.originIOControl.shutdown();
+                    }
+                    return;
+                }
+                exchange.response = response;
+                if (response.getEntity() != null) {
+                    exchange.responseBuffer = ByteBuffer.allocate(exchange.bufferSize);
+                } else {
+                    exchange.responseComplete = true;
+                }
+                if (exchange.responseTrigger != null && !exchange.responseSubmitted) {
+                    submitResponse(exchange);
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void consumeContent(final ContentDecoder decoder, final IOControl ioControl) throws IOException {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                exchange.originIOControl = ioControl;
+                if (exchange.aborted) {
+                    ioControl.shutdown();
+                    return;
+                }
+                if (exchange.responseBuffer == null) {
+                    exchange.responseBuffer = ByteBuffer.allocate(exchange.bufferSize);
+                }
+                final ByteBuffer buf = exchange.responseBuffer;
+                decoder.read(buf);
+                if (decoder.isCompleted()) {
+                    exchange.responseComplete = true;
+                } else if (!buf.hasRemaining()) {
+                    ioControl.suspendInput();
+                }
+                if ((buf.position() > 0 || exchange.responseComplete)
+                        && exchange.responseSubmitted && exchange.clientIOControl != null) {
+                    exchange.clientIOControl.requestOutput();
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void responseCompleted(final HttpContext context) {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                this.completed = true;
+                exchange.responseComplete = true;
+                if (exchange.responseSubmitted && exchange.clientIOControl != null) {
+                    exchange.clientIOControl.requestOutput();
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                if (this.completed) {
+                    return;
+                }
+                this.completed = true;
+                exchange.exception = ex;
+                if (exchange.aborted) {
+                    return;
+                }
+                if (exchange.responseSubmitted) {
+                    // The response head has already been relayed to the client
+                    // and the response can no longer be completed
+                    if (exchange.clientIOControl != null) {
+                        try {
+                            exchange.clientIOControl.shutdown();
+                        } catch (final IOException ignore) {
+                        }
+                    }
+                } else if (exchange.responseTrigger != null) {
+                    submitError(exchange);
+                } else if (!exchange.requestComplete) {
+                    // Resume and discard request content still being received
+                    if (exchange.requestBuffer != null) {
+                        exchange.requestBuffer.clear();
+                    }
+                    if (exchange.clientIOControl != null) {
+                        exchange.clientIOControl.requestInput();
+                    }
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                if (this.completed) {
+                    return false;
+                }
+                failed(new InterruptedIOException("Cancelled"));
+                return true;
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public Exception getException() {
+            return this.exchange.getException();
+        }
+
+        @Override
+        public ReverseProxyExchange getResult() {
+            return this.exchange;
+        }
+
+        @Override
+        public boolean isDone() {
+            return this.completed;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+    }
+
+    static class ProxyResponseProducer implements HttpAsyncResponseProducer {
+
+        private final ReverseProxyExchange exchange;
+
+        ProxyResponseProducer(final ReverseProxyExchange exchange) {
+            super();
+            this.exchange = exchange;
+        }
+
+        @Override
+        public HttpResponse generateResponse() {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                final HttpResponse response = exchange.response;
+                final BasicHttpResponse outgoing = new BasicHttpResponse(
+                        HttpVersion.HTTP_1_1,
+                        response.getStatusLine().getStatusCode(),
+                        response.getStatusLine().getReasonPhrase());
+                copyHeaders(response, outgoing);
+                final HttpEntity entity = response.getEntity();
+                outgoing.setEntity(entity);
+                return outgoing;
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void produceContent(final ContentEncoder encoder, final IOControl ioControl) throws IOException {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                exchange.clientIOControl = ioControl;
+                final ByteBuffer buf = exchange.responseBuffer;
+                if (buf == null) {
+                    encoder.complete();
+                    return;
+                }
+                buf.flip();
+                encoder.write(buf);
+                buf.compact();
+                if (buf.hasRemaining() && !exchange.responseComplete && exchange.originIOControl != null) {
+                    exchange.originIOControl.requestInput();
+                }
+                if (buf.position() == 0) {
+                    if (exchange.responseComplete) {
+                        encoder.complete();
+                    } else {
+                        ioControl.suspendOutput();
+                    }
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void responseCompleted(final HttpContext context) {
+        }
+
+        @Override
+        public void failed(final Exception ex) {
+            final ReverseProxyExchange exchange = this.exchange;
+            exchange.lock.lock();
+            try {
+                if (!exchange.responseComplete) {
+                    exchange.abort();
+                }
+            } finally {
+                exchange.lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+    }
+
+}
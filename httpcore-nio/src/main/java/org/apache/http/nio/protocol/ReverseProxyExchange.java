@@ -0,0 +1,175 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.nio.IOControl;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * State of a single message exchange relayed by
+ * {@link ReverseProxyAsyncRequestHandler}. The exchange is shared by the
+ * inbound (client facing) and the outbound (origin facing) connection, which
+ * may be served by different I/O dispatch threads. All state is guarded
+ * by the exchange lock.
+ * <p>
+ * Message content is relayed through a single buffer per direction: content
+ * decoders of one connection read directly into the buffer, content encoders
+ * of the other connection write directly out of it. Whenever a buffer gets
+ * full input of the producing connection gets suspended, whenever it gets
+ * empty output of the consuming connection gets suspended; either side
+ * re-activates its peer as soon as there is free space or new content.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class ReverseProxyExchange {
+
+    final ReentrantLock lock;
+    final HttpHost target;
+    final HttpContext outboundContext;
+    final int bufferSize;
+
+    HttpRequest request;
+    ByteBuffer requestBuffer;
+    boolean requestComplete;
+    IOControl clientIOControl;
+
+    HttpResponse response;
+    ByteBuffer responseBuffer;
+    boolean responseComplete;
+    IOControl originIOControl;
+
+    HttpAsyncExchange responseTrigger;
+    boolean responseSubmitted;
+    Future<ReverseProxyExchange> future;
+    Exception exception;
+    boolean aborted;
+
+    ReverseProxyExchange(
+            final HttpHost target,
+            final HttpContext outboundContext,
+            final IOControl clientIOControl,
+            final int bufferSize) {
+        super();
+        this.lock = new ReentrantLock();
+        this.target = target;
+        this.outboundContext = outboundContext;
+        this.clientIOControl = clientIOControl;
+        this.bufferSize = bufferSize;
+    }
+
+    public HttpHost getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Returns the request received from the client.
+     */
+    public HttpRequest getRequest() {
+        this.lock.lock();
+        try {
+            return this.request;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the response received from the origin server or {@code null}
+     * if no response has been received yet.
+     */
+    public HttpResponse getResponse() {
+        this.lock.lock();
+        try {
+            return this.response;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cause of the exchange failure or {@code null} if
+     * the exchange has not failed.
+     */
+    public Exception getException() {
+        this.lock.lock();
+        try {
+            return this.exception;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Aborts the exchange shutting down the outbound connection, unless
+     * the response has already been fully received, and cancelling execution
+     * of the outbound request.
+     * Must be called with the lock held.
+     */
+    void abort() {
+        if (this.aborted) {
+            return;
+        }
+        this.aborted = true;
+        if (this.originIOControl != null && !this.responseComplete) {
+            try {
+                this.originIOControl.shutdown();
+            } catch (final IOException ignore) {
+            }
+        }
+        if (this.future != null) {
+            this.future.cancel(true);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        this.lock.lock();
+        try {
+            buffer.append("[target: ").append(this.target);
+            buffer.append("; request: ").append(this.request != null ? this.request.getRequestLine() : null);
+            buffer.append("; response: ").append(this.response != null ? this.response.getStatusLine() : null);
+            buffer.append("]");
+        } finally {
+            this.lock.unlock();
+        }
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.MethodNotSupportedException;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.entity.NByteBufferEntity;
+import org.apache.http.nio.entity.NFileRegionEntity;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.StaticFileCache;
+import org.apache.http.protocol.StaticFileResource;
+import org.apache.http.protocol.StaticFileSupport;
+import org.apache.http.util.Args;
+
+/**
+ * {@link HttpAsyncRequestHandler} that serves static files from a document root
+ * directory. Depending on the tier of the {@link StaticFileCache} entry,
+ * file content is written out from a heap byte array, from a memory mapped
+ * buffer or transferred directly from the file channel to the session channel
+ * (zero-copy) by means of {@link org.apache.http.nio.FileContentEncoder}.
+ * Conditional requests ({@code If-None-Match}, {@code If-Modified-Since})
+ * as well as single byte range requests are supported.
+ * <p>
+ * Only {@code GET} and {@code HEAD} methods are supported.
+ * <p>
+ * Looking up a file and loading or mapping its content may block, so requests
+ * are served by an {@link Executor} rather than the I/O dispatch thread, and
+ * the response is submitted from the executor thread. Requests rejected by
+ * the executor are responded to with {@code 503 Service Unavailable}.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class StaticFileAsyncRequestHandler implements HttpAsyncRequestHandler<HttpRequest> {
+
+    private final File docRoot;
+    private final StaticFileCache cache;
+    private final Executor executor;
+
+    /**
+     * @param docRoot the document root.
+     * @param cache the static file cache.
+     * @param executor the executor resolving files and submitting responses.
+     */
+    public StaticFileAsyncRequestHandler(final File docRoot, final StaticFileCache cache, final Executor executor) {
+        super();
+        this.docRoot = Args.notNull(docRoot, "Document root");
+        this.cache = Args.notNull(cache, "Static file cache");
+        this.executor = Args.notNull(executor, "Executor");
+    }
+
+    /**
+     * Creates a handler that serves requests by a pool of daemon threads shared
+     * by all handlers created without an explicit executor.
+     */
+    public StaticFileAsyncRequestHandler(final File docRoot, final StaticFileCache cache) {
+        this(docRoot, cache, SharedExecutor.INSTANCE);
+    }
+
+    public StaticFileAsyncRequestHandler(final File docRoot) {
+        this(docRoot, new StaticFileCache());
+    }
+
+    public StaticFileCache getCache() {
+        return this.cache;
+    }
+
+    @Override
+    public HttpAsyncRequestConsumer<HttpRequest> processRequest(
+            final HttpRequest request,
+            final HttpContext context) throws HttpException, IOException {
+        return new BasicAsyncRequestConsumer();
+    }
+
+    @Override
+    public void handle(
+            final HttpRequest request,
+            final HttpAsyncExchange httpexchange,
+            final HttpContext context) throws HttpException, IOException {
+        final String method = request.getRequestLine().getMethod().toUpperCase(Locale.ROOT);
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            throw new MethodNotSupportedException(method + " method not supported");
+        }
+        final Task task = new Task(request, httpexchange);
+        httpexchange.setCallback(task);
+        try {
+            this.executor.execute(task);
+        } catch (final RejectedExecutionException ex) {
+            httpexchange.getResponse().setStatusCode(HttpStatus.SC_SERVICE_UNAVAILABLE);
+            httpexchange.submitResponse();
+        }
+    }
+
+    private void prepareResponse(final HttpRequest request, final HttpResponse response) throws IOException {
+        final File file = StaticFileSupport.resolveFile(this.docRoot, request);
+        StaticFileResource resource = file != null ? this.cache.resolve(file) : null;
+        if (resource != null && resource.getMappedContent() != null && file.length() != resource.getLength()) {
+            // the file has changed since it was mapped; accessing the mapping
+            // past the end of a truncated file raises SIGBUS
+            this.cache.invalidate(file);
+            resource = this.cache.resolve(file);
+        }
+        if (resource == null) {
+            response.setStatusCode(file != null && file.isDirectory()
+                    ? HttpStatus.SC_FORBIDDEN : HttpStatus.SC_NOT_FOUND);
+        } else {
+            final StaticFileSupport.ByteRange range = StaticFileSupport.prepareResponse(request, response, resource);
+            if (range != null) {
+                response.setEntity(createEntity(resource, range));
+            }
+        }
+    }
+
+    /**
+     * Creates a non-blocking entity enclosing the given range of the resource
+     * content.
+     * <p>
+     * The entity is not expected to carry the {@code Content-Type} header
+     * as the pre-rendered one is added to the response by the handler.
+     */
+    protected HttpEntity createEntity(
+            final StaticFileResource resource, final StaticFileSupport.ByteRange range) {
+        final byte[] content = resource.getContent();
+        if (content != null) {
+            return new NByteArrayEntity(content, (int) range.getFirst(), (int) range.getLength());
+        }
+        final ByteBuffer mappedContent = resource.getMappedContent();
+        if (mappedContent != null) {
+            mappedContent.position((int) range.getFirst());
+            mappedContent.limit((int) (range.getLast() + 1));
+            return new NByteBufferEntity(mappedContent);
+        }
+        return new NFileRegionEntity(resource.getFile(), range.getFirst(), range.getLength());
+    }
+
+    class Task implements Runnable, Cancellable {
+
+        private final HttpRequest request;
+        private final HttpAsyncExchange httpexchange;
+        private final AtomicBoolean cancelled;
+
+        Task(final HttpRequest request, final HttpAsyncExchange httpexchange) {
+            super();
+            this.request = request;
+            this.httpexchange = httpexchange;
+            this.cancelled = new AtomicBoolean(false);
+        }
+
+        @Override
+        public boolean cancel() {
+            return this.cancelled.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (this.cancelled.get()) {
+                return;
+            }
+            final HttpResponse response = this.httpexchange.getResponse();
+            try {
+                prepareResponse(this.request, response);
+            } catch (final IOException ex) {
+                response.setStatusCode(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+                response.setEntity(null);
+            } catch (final RuntimeException ex) {
+                response.setStatusCode(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+                response.setEntity(null);
+            }
+            if (!this.httpexchange.isCompleted()) {
+                this.httpexchange.submitResponse();
+            }
+        }
+
+    }
+
+    static class SharedExecutor {
+
+        static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()),
+                new ThreadFactory() {
+
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread thread = new Thread(r, "http-static-file-" + this.count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+
+                });
+
+    }
+
+}
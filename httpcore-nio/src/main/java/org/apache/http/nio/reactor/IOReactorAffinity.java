@@ -0,0 +1,89 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.reactor;
+
+/**
+ * Tracks which I/O dispatcher the current thread and individual
+ * {@link IOSession}s belong to.
+ * <p>
+ * I/O dispatchers bind themselves to their worker thread for the duration of
+ * their event loop and tag every session they create with the
+ * {@link #DISPATCHER_KEY} attribute. Connection pools and I/O reactors can use
+ * this information to keep related work on the same dispatcher thread and
+ * avoid cross-thread hand-offs.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+public final class IOReactorAffinity {
+
+    /**
+     * Name of the session attribute holding the I/O dispatcher that owns
+     * the session.
+     */
+    public static final String DISPATCHER_KEY = "http.session.dispatcher";
+
+    private static final ThreadLocal<Object> CURRENT = new ThreadLocal<Object>();
+
+    private IOReactorAffinity() {
+        // Do not allow utility class to be instantiated.
+    }
+
+    /**
+     * Returns the I/O dispatcher whose event loop runs on the current thread
+     * or {@code null} if the current thread is not an I/O dispatcher thread.
+     */
+    public static Object current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the given I/O dispatcher to the current thread.
+     *
+     * @param dispatcher the I/O dispatcher or {@code null} to unbind.
+     * @return the I/O dispatcher previously bound to the current thread.
+     */
+    public static Object bind(final Object dispatcher) {
+        final Object previous = CURRENT.get();
+        if (dispatcher != null) {
+            CURRENT.set(dispatcher);
+        } else {
+            CURRENT.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the I/O dispatcher that owns the given session or {@code null}
+     * if unknown.
+     */
+    public static Object getDispatcher(final IOSession session) {
+        return session != null ? session.getAttribute(DISPATCHER_KEY) : null;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.reactor.ssl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * Collects statistics about TLS/SSL handshakes completed by {@link SSLIOSession}s
+ * that share this instance, such as the ratio of abbreviated (resumed) handshakes
+ * and the CPU time spent on handshaking.
+ * <p>
+ * A handshake is considered to have resumed a session if the negotiated
+ * {@link javax.net.ssl.SSLSession} was created before the handshake began.
+ * The size and lifetime of the session cache used for resumption can be configured
+ * with {@link org.apache.http.ssl.SSLContextBuilder}.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class SSLHandshakeMetrics {
+
+    private final AtomicLong handshakeCount;
+    private final AtomicLong resumedCount;
+    private final AtomicLong failedCount;
+    private final AtomicLong handshakeCpuTime;
+
+    public SSLHandshakeMetrics() {
+        super();
+        this.handshakeCount = new AtomicLong();
+        this.resumedCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.handshakeCpuTime = new AtomicLong();
+    }
+
+    /**
+     * Records a successfully completed handshake.
+     *
+     * @param resumed {@code true} if the handshake resumed an existing session.
+     * @param cpuTime CPU time in nanoseconds spent on the handshake or {@code -1}
+     *   if not known.
+     */
+    public void handshakeCompleted(final boolean resumed, final long cpuTime) {
+        this.handshakeCount.incrementAndGet();
+        if (resumed) {
+            this.resumedCount.incrementAndGet();
+        }
+        if (cpuTime > 0) {
+            this.handshakeCpuTime.addAndGet(cpuTime);
+        }
+    }
+
+    /**
+     * Records a failed handshake.
+     *
+     * @param cpuTime CPU time in nanoseconds spent on the handshake or {@code -1}
+     *   if not known.
+     */
+    public void handshakeFailed(final long cpuTime) {
+        this.failedCount.incrementAndGet();
+        if (cpuTime > 0) {
+            this.handshakeCpuTime.addAndGet(cpuTime);
+        }
+    }
+
+    /**
+     * Returns the number of successfully completed handshakes.
+     */
+    public long getHandshakeCount() {
+        return this.handshakeCount.get();
+    }
+
+    /**
+     * Returns the number of completed handshakes that resumed an existing session.
+     */
+    public long getResumedCount() {
+        return this.resumedCount.get();
+    }
+
+    /**
+     * Returns the number of failed handshakes.
+     */
+    public long getFailedCount() {
+        return this.failedCount.get();
+    }
+
+    /**
+     * Returns the ratio of resumed handshakes to all completed handshakes
+     * in the range {@code [0, 1]}.
+     */
+    public double getResumptionRate() {
+        final long total = this.handshakeCount.get();
+        return total > 0 ? (double) this.resumedCount.get() / total : 0.0d;
+    }
+
+    /**
+     * Returns the total CPU time in nanoseconds spent on handshakes, both
+     * completed and failed. Always {@code 0} if the JVM does not support
+     * measurement of thread CPU time.
+     */
+    public long getHandshakeCpuTime() {
+        return this.handshakeCpuTime.get();
+    }
+
+    /**
+     * Returns the average CPU time in nanoseconds spent on a handshake.
+     */
+    public long getAverageHandshakeCpuTime() {
+        final long total = this.handshakeCount.get() + this.failedCount.get();
+        return total > 0 ? this.handshakeCpuTime.get() / total : 0L;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[handshakes=").append(this.handshakeCount.get());
+        buffer.append(", resumed=").append(this.resumedCount.get());
+        buffer.append(", failed=").append(this.failedCount.get());
+        buffer.append(", cpu time=").append(this.handshakeCpuTime.get());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
@@ -28,6 +28,9 @@
 package org.apache.http.nio.reactor.ssl;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
@@ -91,6 +94,7 @@ public class SSLIOSession implements IOSession, SessionBufferStatus, SocketAcces
     private final InternalByteChannel channel;
     private final SSLSetupHandler handler;
     private final AtomicInteger outboundClosedCount;
+    private final SSLHandshakeMetrics handshakeMetrics;
 
     private int appEventMask;
     private SessionBufferStatus appBufferStatus;
@@ -101,6 +105,10 @@ public class SSLIOSession implements IOSession, SessionBufferStatus, SocketAcces
     private volatile boolean initialized;
     private volatile boolean terminated;
 
+    private long handshakeStartTime;
+    private long handshakeCpuTime;
+    private boolean handshakeRecorded;
+
     /**
      * Creates new instance of {@code SSLIOSession} class. The instances created uses a
      * {@link PermanentSSLBufferManagementStrategy} to manage its buffers.
@@ -139,6 +147,37 @@ public SSLIOSession(
             final SSLContext sslContext,
             final SSLSetupHandler handler,
             final SSLBufferManagementStrategy bufferManagementStrategy) {
+        this(session, sslMode, host, sslContext, handler, bufferManagementStrategy, null);
+    }
+
+    /**
+     * Creates new instance of {@code SSLIOSession} class.
+     * <p>
+     * In client mode the {@link SSLEngine} is always created for the peer host and port
+     * so that the client session cache of the SSL context can resume sessions
+     * established by earlier connections to the same peer. If {@code host} is not given
+     * the remote address of the I/O session is used instead.
+     * </p>
+     *
+     * @param session I/O session to be decorated with the TLS/SSL capabilities.
+     * @param sslMode SSL mode (client or server)
+     * @param host original host (applicable in client mode only)
+     * @param sslContext SSL context to use for this I/O session.
+     * @param handler optional SSL setup handler. May be {@code null}.
+     * @param bufferManagementStrategy buffer management strategy
+     * @param handshakeMetrics optional handshake metrics to report the initial
+     *   handshake to. May be {@code null}.
+     *
+     * @since 4.4.17
+     */
+    public SSLIOSession(
+            final IOSession session,
+            final SSLMode sslMode,
+            final HttpHost host,
+            final SSLContext sslContext,
+            final SSLSetupHandler handler,
+            final SSLBufferManagementStrategy bufferManagementStrategy,
+            final SSLHandshakeMetrics handshakeMetrics) {
         super();
         Args.notNull(session, "IO session");
         Args.notNull(sslContext, "SSL context");
@@ -148,12 +187,20 @@ public SSLIOSession(
         this.appEventMask = session.getEventMask();
         this.channel = new InternalByteChannel();
         this.handler = handler;
+        this.handshakeMetrics = handshakeMetrics;
 
         // Override the status buffer interface
         this.session.setBufferStatus(this);
 
+        final SocketAddress remoteAddress = session.getRemoteAddress();
         if (this.sslMode == SSLMode.CLIENT && host != null) {
             this.sslEngine = sslContext.createSSLEngine(host.getHostName(), host.getPort());
+        } else if (this.sslMode == SSLMode.CLIENT && remoteAddress instanceof InetSocketAddress) {
+            final InetSocketAddress address = (InetSocketAddress) remoteAddress;
+            // Avoid reverse name lookups: key resolved peers by their literal address
+            final String peerHost = address.getAddress() != null
+                            ? address.getAddress().getHostAddress() : address.getHostName();
+            this.sslEngine = sslContext.createSSLEngine(peerHost, address.getPort());
         } else {
             this.sslEngine = sslContext.createSSLEngine();
         }
@@ -240,6 +287,7 @@ public synchronized void initialize() throws SSLException {
             }
         }
         this.initialized = true;
+        this.handshakeStartTime = System.currentTimeMillis();
         this.sslEngine.beginHandshake();
 
         this.inEncrypted.release();
@@ -294,6 +342,48 @@ private void doRunTask() throws SSLException {
     }
 
     private void doHandshake() throws SSLException {
+        if (this.handshakeMetrics == null || this.handshakeRecorded) {
+            performHandshake();
+            return;
+        }
+        final long startCpuTime = currentThreadCpuTime();
+        final boolean finished;
+        try {
+            finished = performHandshake();
+        } catch (final SSLException ex) {
+            this.handshakeRecorded = true;
+            this.handshakeMetrics.handshakeFailed(accumulateCpuTime(startCpuTime));
+            throw ex;
+        }
+        final long cpuTime = accumulateCpuTime(startCpuTime);
+        if (finished) {
+            this.handshakeRecorded = true;
+            // Resumed sessions retain the creation time of the original handshake
+            final boolean resumed = this.sslEngine.getSession().getCreationTime() < this.handshakeStartTime;
+            this.handshakeMetrics.handshakeCompleted(resumed, cpuTime);
+        }
+    }
+
+    private long accumulateCpuTime(final long startCpuTime) {
+        if (startCpuTime >= 0) {
+            final long endCpuTime = currentThreadCpuTime();
+            if (endCpuTime >= startCpuTime) {
+                this.handshakeCpuTime += endCpuTime - startCpuTime;
+            }
+            return this.handshakeCpuTime;
+        }
+        return -1;
+    }
+
+    private static long currentThreadCpuTime() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled()) {
+            return threadMXBean.getCurrentThreadCpuTime();
+        }
+        return -1;
+    }
+
+    private boolean performHandshake() throws SSLException {
         boolean handshaking = true;
 
         SSLEngineResult result = null;
@@ -377,7 +467,9 @@ private void doHandshake() throws SSLException {
                     throw convert(ex);
                 }
             }
+            return true;
         }
+        return false;
     }
 
     private void updateEventMask() {
@@ -0,0 +1,401 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.nio.reactor.EventMask;
+import org.apache.http.nio.reactor.IOReactorAffinity;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.util.Args;
+
+/**
+ * Process wide budget for buffer memory. Every allocation made through
+ * the governor or one of its {@link Account}s is charged against the budget
+ * and credited back once the buffer has been released.
+ * <p>
+ * Once total usage reaches the high watermark the governor suspends input
+ * on the sessions of the accounts with the largest usage until the suspended
+ * usage covers the excess over the low watermark. While the governor is
+ * throttling, sessions whose buffers grow get their input suspended as well.
+ * Once total usage has dropped to the low watermark, input is resumed on
+ * those suspended sessions that had input enabled when the governor suspended
+ * them and whose input has not been suspended by other means since, see
+ * {@link Account#inputSuspended()}. Please note that suspended sessions may
+ * still be resumed by their protocol handler.
+ * </p>
+ * <p>
+ * The governor can be passed as {@link ByteBufferAllocator} to NIO connection
+ * factories, in which case each connection charges its session buffers to
+ * its own account, as well as to {@link SharedInputBuffer} and
+ * {@link SharedOutputBuffer}, which release their buffers on shutdown.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class BufferMemoryGovernor implements ManagedByteBufferAllocator {
+
+    private final ByteBufferAllocator allocator;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final AtomicLong usage;
+    private final Set<Account> accounts;
+    private final List<Account> throttled;
+
+    private volatile boolean throttling;
+
+    /**
+     * @param highWatermark total usage in bytes at which input gets throttled.
+     * @param lowWatermark total usage in bytes at which throttled input gets resumed.
+     * @param allocator the allocator buffers are obtained from. If {@code null}
+     *   {@link HeapByteBufferAllocator#INSTANCE} will be used.
+     */
+    public BufferMemoryGovernor(
+            final long highWatermark, final long lowWatermark, final ByteBufferAllocator allocator) {
+        super();
+        this.highWatermark = Args.positive(highWatermark, "High watermark");
+        this.lowWatermark = Args.notNegative(lowWatermark, "Low watermark");
+        Args.check(lowWatermark < highWatermark, "Low watermark must be less than high watermark");
+        this.allocator = allocator != null ? allocator : HeapByteBufferAllocator.INSTANCE;
+        this.usage = new AtomicLong(0);
+        this.accounts = Collections.newSetFromMap(new ConcurrentHashMap<Account, Boolean>());
+        this.throttled = new ArrayList<Account>();
+    }
+
+    public BufferMemoryGovernor(final long highWatermark, final long lowWatermark) {
+        this(highWatermark, lowWatermark, null);
+    }
+
+    /**
+     * Allocates a buffer not attributed to any session.
+     */
+    @Override
+    public ByteBuffer allocate(final int size) {
+        final ByteBuffer buffer = this.allocator.allocate(size);
+        charge(buffer.capacity(), null);
+        return buffer;
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer) {
+        if (buffer != null) {
+            credit(buffer.capacity());
+        }
+    }
+
+    /**
+     * Opens a new account for buffers of the given session.
+     */
+    public Account register(final IOSession session) {
+        Args.notNull(session, "I/O session");
+        final Account account = new Account(session, IOReactorAffinity.getDispatcher(session));
+        this.accounts.add(account);
+        return account;
+    }
+
+    private void charge(final long n, final Account account) {
+        if (this.usage.addAndGet(n) >= this.highWatermark) {
+            if (!this.throttling && reclaim() && this.usage.get() < this.highWatermark) {
+                return;
+            }
+            throttle(account);
+        } else if (this.throttling && account != null) {
+            throttle(account);
+        }
+    }
+
+    /**
+     * Closes accounts of sessions that have been closed without their
+     * connection having released its buffers.
+     */
+    private boolean reclaim() {
+        boolean reclaimed = false;
+        for (final Account account: this.accounts) {
+            if (account.session.isClosed()) {
+                account.close();
+                reclaimed = true;
+            }
+        }
+        return reclaimed;
+    }
+
+    private void credit(final long n) {
+        if (this.usage.addAndGet(-n) <= this.lowWatermark && this.throttling) {
+            unthrottle();
+        }
+    }
+
+    private void throttle(final Account account) {
+        final List<Account> suspended = new ArrayList<Account>();
+        synchronized (this.throttled) {
+            if (!this.throttling) {
+                this.throttling = true;
+                final List<Account> candidates = new ArrayList<Account>(this.accounts.size());
+                for (final Account candidate: this.accounts) {
+                    candidate.snapshot = candidate.getUsage();
+                    candidates.add(candidate);
+                }
+                Collections.sort(candidates, new Comparator<Account>() {
+
+                    @Override
+                    public int compare(final Account a1, final Account a2) {
+                        return a1.snapshot < a2.snapshot ? 1 : (a1.snapshot > a2.snapshot ? -1 : 0);
+                    }
+
+                });
+                long excess = this.usage.get() - this.lowWatermark;
+                for (final Account candidate: candidates) {
+                    if (excess <= 0) {
+                        break;
+                    }
+                    suspended.add(candidate);
+                    excess -= candidate.snapshot;
+                }
+            } else if (account != null && !account.suspended) {
+                suspended.add(account);
+            }
+            for (final Account candidate: suspended) {
+                candidate.suspended = true;
+                this.throttled.add(candidate);
+            }
+        }
+        // session events are updated outside the lock as sessions may be
+        // locked by threads allocating buffers
+        for (final Account candidate: suspended) {
+            candidate.suspendInput();
+        }
+    }
+
+    private void unthrottle() {
+        final List<Account> resumed;
+        synchronized (this.throttled) {
+            if (!this.throttling) {
+                return;
+            }
+            this.throttling = false;
+            resumed = new ArrayList<Account>(this.throttled);
+            this.throttled.clear();
+            for (final Account account: resumed) {
+                account.suspended = false;
+            }
+        }
+        for (final Account account: resumed) {
+            account.resumeInput();
+        }
+    }
+
+    /**
+     * Returns total buffer memory usage in bytes.
+     */
+    public long getUsage() {
+        return this.usage.get();
+    }
+
+    /**
+     * Returns buffer memory usage in bytes of sessions served by the given
+     * I/O dispatcher.
+     *
+     * @see IOReactorAffinity#getDispatcher(IOSession)
+     */
+    public long getUsage(final Object dispatcher) {
+        long total = 0;
+        for (final Account account: this.accounts) {
+            if (account.dispatcher == dispatcher) {
+                total += account.getUsage();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of open accounts.
+     */
+    public int getAccountCount() {
+        return this.accounts.size();
+    }
+
+    /**
+     * Determines whether input is currently being throttled.
+     */
+    public boolean isThrottling() {
+        return this.throttling;
+    }
+
+    /**
+     * Returns the number of accounts whose input is currently suspended.
+     */
+    public int getThrottledCount() {
+        synchronized (this.throttled) {
+            return this.throttled.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        buf.append("[usage: ").append(getUsage())
+            .append("; accounts: ").append(getAccountCount())
+            .append("; throttled: ").append(getThrottledCount())
+            .append("]");
+        return buf.toString();
+    }
+
+    /**
+     * Buffer memory account of an individual session.
+     */
+    public class Account implements ManagedByteBufferAllocator {
+
+        private final Object dispatcher;
+        private final AtomicLong usage;
+
+        private volatile IOSession session;
+        private volatile boolean closed;
+        private boolean suspended;
+        private long snapshot;
+        // guarded by the session; set if the governor has cleared READ and is to restore it
+        private boolean readSuspended;
+
+        Account(final IOSession session, final Object dispatcher) {
+            super();
+            this.session = session;
+            this.dispatcher = dispatcher;
+            this.usage = new AtomicLong(0);
+        }
+
+        @Override
+        public ByteBuffer allocate(final int size) {
+            final ByteBuffer buffer = allocator.allocate(size);
+            if (!this.closed) {
+                this.usage.addAndGet(buffer.capacity());
+                charge(buffer.capacity(), this);
+            }
+            return buffer;
+        }
+
+        @Override
+        public void release(final ByteBuffer buffer) {
+            if (buffer != null && !this.closed) {
+                this.usage.addAndGet(-buffer.capacity());
+                credit(buffer.capacity());
+            }
+        }
+
+        /**
+         * Binds the account to a different session. This may be necessary
+         * when the session gets upgraded with SSL/TLS encryption.
+         */
+        public void bind(final IOSession session) {
+            this.session = Args.notNull(session, "I/O session");
+        }
+
+        /**
+         * Notifies the account that input of its session has been suspended by
+         * other means than the governor, usually by its protocol handler. Input
+         * currently suspended by the governor will then not be resumed by it.
+         * <p>
+         * This method must be called while holding the lock of the session
+         * in order not to race with the governor.
+         * </p>
+         */
+        public void inputSuspended() {
+            this.readSuspended = false;
+        }
+
+        private void suspendInput() {
+            final IOSession current = this.session;
+            synchronized (current) {
+                this.readSuspended = (current.getEventMask() & EventMask.READ) != 0;
+                current.clearEvent(EventMask.READ);
+            }
+        }
+
+        private void resumeInput() {
+            final IOSession current = this.session;
+            synchronized (current) {
+                if (this.readSuspended) {
+                    this.readSuspended = false;
+                    if (!current.isClosed()) {
+                        current.setEvent(EventMask.READ);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the I/O dispatcher the session of this account belongs to.
+         */
+        public Object getDispatcher() {
+            return this.dispatcher;
+        }
+
+        /**
+         * Returns buffer memory usage of this account in bytes.
+         */
+        public long getUsage() {
+            return this.usage.get();
+        }
+
+        public boolean isClosed() {
+            return this.closed;
+        }
+
+        /**
+         * Closes the account crediting back all its buffers.
+         */
+        public void close() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            accounts.remove(this);
+            synchronized (throttled) {
+                if (this.suspended) {
+                    this.suspended = false;
+                    throttled.remove(this);
+                }
+            }
+            credit(this.usage.getAndSet(0));
+        }
+
+        @Override
+        public String toString() {
+            return "[usage: " + getUsage() + "; closed: " + this.closed + "]";
+        }
+
+    }
+
+}
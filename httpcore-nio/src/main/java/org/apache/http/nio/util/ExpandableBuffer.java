@@ -109,6 +109,25 @@ private void expandCapacity(final int capacity) {
         this.buffer = allocator.allocate(capacity);
         oldbuffer.flip();
         this.buffer.put(oldbuffer);
+        if (this.allocator instanceof ManagedByteBufferAllocator) {
+            ((ManagedByteBufferAllocator) this.allocator).release(oldbuffer);
+        }
+    }
+
+    /**
+     * Releases the underlying {@link ByteBuffer} to the allocator if it is
+     * a {@link ManagedByteBufferAllocator}, leaving this buffer empty and with
+     * no capacity. The buffer expands again on demand.
+     *
+     * @since 4.4.17
+     */
+    protected void releaseBuffer() {
+        if (this.allocator instanceof ManagedByteBufferAllocator) {
+            final ByteBuffer oldbuffer = this.buffer;
+            this.buffer = ByteBuffer.allocate(0);
+            this.mode = INPUT_MODE;
+            ((ManagedByteBufferAllocator) this.allocator).release(oldbuffer);
+        }
     }
 
     /**
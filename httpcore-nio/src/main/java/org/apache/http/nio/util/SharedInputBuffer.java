@@ -230,6 +230,7 @@ public void shutdown() {
         this.shutdown = true;
         this.lock.lock();
         try {
+            releaseBuffer();
             this.condition.signalAll();
         } finally {
             this.lock.unlock();
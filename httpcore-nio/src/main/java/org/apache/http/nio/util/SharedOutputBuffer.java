@@ -206,6 +206,7 @@ public void shutdown() {
         this.shutdown = true;
         this.lock.lock();
         try {
+            releaseBuffer();
             this.condition.signalAll();
         } finally {
             this.lock.unlock();
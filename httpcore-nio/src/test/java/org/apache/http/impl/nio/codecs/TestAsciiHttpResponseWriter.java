@@ -0,0 +1,95 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.codecs;
+
+import java.nio.charset.Charset;
+
+import org.apache.http.Consts;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.WritableByteChannelMock;
+import org.apache.http.impl.nio.reactor.SessionOutputBufferImpl;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.NHttpMessageWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AsciiHttpResponseWriter}.
+ */
+public class TestAsciiHttpResponseWriter {
+
+    private static String write(
+            final NHttpMessageWriter<HttpResponse> writer,
+            final SessionOutputBufferImpl outbuf,
+            final HttpResponse response) throws Exception {
+        writer.write(response);
+        final WritableByteChannelMock channel = new WritableByteChannelMock(1024);
+        outbuf.flush(channel);
+        channel.flush();
+        return channel.dump(Consts.ISO_8859_1);
+    }
+
+    private static void assertSameOutput(final HttpResponse response, final Charset charset) throws Exception {
+        final SessionOutputBufferImpl outbuf1 = new SessionOutputBufferImpl(16, 16, charset);
+        final String expected = write(new DefaultHttpResponseWriter(outbuf1), outbuf1, response);
+        final SessionOutputBufferImpl outbuf2 = new SessionOutputBufferImpl(16, 16, charset);
+        final String actual = write(AsciiHttpResponseWriterFactory.INSTANCE.create(outbuf2), outbuf2, response);
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testBasicResponseHead() throws Exception {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("Server", "test");
+        response.addHeader("Content-Length", "10");
+        response.addHeader("X-Custom", "stuff");
+
+        final SessionOutputBufferImpl outbuf = new SessionOutputBufferImpl(16, 16);
+        final NHttpMessageWriter<HttpResponse> writer = new AsciiHttpResponseWriter(outbuf);
+        Assert.assertEquals(
+                "HTTP/1.1 200 OK\r\n" +
+                "Server: test\r\n" +
+                "Content-Length: 10\r\n" +
+                "X-Custom: stuff\r\n" +
+                "\r\n", write(writer, outbuf, response));
+    }
+
+    @Test
+    public void testNonAsciiFallback() throws Exception {
+        final String s = "Grüezi_zämä";
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("Server", "test");
+        response.addHeader("X-Name", s);
+        response.addHeader("Connection", "close");
+        assertSameOutput(response, Consts.UTF_8);
+        assertSameOutput(response, null);
+        assertSameOutput(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, s), Consts.UTF_8);
+    }
+
+}
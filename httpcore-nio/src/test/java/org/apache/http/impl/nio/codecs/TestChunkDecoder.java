@@ -74,6 +74,22 @@ public void testBasicDecoding() throws Exception {
         Assert.assertEquals("[chunk-coded; completed: true]", decoder.toString());
     }
 
+    @Test
+    public void testChunkHeadsSplitAcrossReads() throws Exception {
+        final String[] chunks = new String[] {
+                "5", "\r", "\n01234\r", "\n", "5 ;ext", "=1\r\n56789", "\r\n6\r\nabc", "def\r\n0", "\r\n\r\n" };
+        final ReadableByteChannel channel = new ReadableByteChannelMock(chunks, Consts.ASCII);
+        final SessionInputBuffer inbuf = new SessionInputBufferImpl(1024, 256, Consts.ASCII);
+        final HttpTransportMetricsImpl metrics = new HttpTransportMetricsImpl();
+        final ChunkDecoder decoder = new ChunkDecoder(channel, inbuf, metrics);
+
+        final ByteBuffer dst = ByteBuffer.allocate(1024);
+        while (!decoder.isCompleted()) {
+            decoder.read(dst);
+        }
+        Assert.assertEquals("0123456789abcdef", CodecTestUtils.convert(dst));
+    }
+
     @Test
     public void testComplexDecoding() throws Exception {
         final String s = "10;key=\"value\"\r\n1234567890123456\r\n" +
@@ -0,0 +1,234 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.codecs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentEncoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompressingEncoder} and {@link InflatingDecoder}.
+ */
+public class TestCompressionCodecs {
+
+    static class ThrottledEncoder implements ContentEncoder {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int capacity;
+        boolean completed;
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            final int n = Math.min(src.remaining(), this.capacity);
+            for (int i = 0; i < n; i++) {
+                this.out.write(src.get());
+            }
+            this.capacity -= n;
+            return n;
+        }
+
+        @Override
+        public void complete() throws IOException {
+            this.completed = true;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return this.completed;
+        }
+
+    }
+
+    static class ThrottledDecoder implements ContentDecoder {
+
+        final byte[] content;
+        final int chunk;
+        int pos;
+
+        ThrottledDecoder(final byte[] content, final int chunk) {
+            this.content = content;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) throws IOException {
+            if (this.pos == this.content.length) {
+                return -1;
+            }
+            final int n = Math.min(Math.min(this.chunk, dst.remaining()), this.content.length - this.pos);
+            dst.put(this.content, this.pos, n);
+            this.pos += n;
+            return n;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return this.pos == this.content.length;
+        }
+
+    }
+
+    private static byte[] createContent(final int len) {
+        final Random random = new Random(42);
+        final byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return b;
+    }
+
+    private static byte[] gunzip(final byte[] b) throws IOException {
+        final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(b));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] tmp = new byte[1024];
+        int l;
+        while ((l = in.read(tmp)) != -1) {
+            out.write(tmp, 0, l);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(final byte[] b) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(b);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testCompressWithBackpressure() throws Exception {
+        final byte[] content = createContent(100000);
+        final ThrottledEncoder target = new ThrottledEncoder();
+        final CompressingEncoder encoder = new CompressingEncoder(
+                target, "gzip", Deflater.DEFAULT_COMPRESSION, 256);
+        final ByteBuffer src = ByteBuffer.wrap(content);
+        int rounds = 0;
+        while (src.hasRemaining()) {
+            target.capacity = 100;
+            encoder.write(src);
+            rounds++;
+        }
+        while (!encoder.isCompleted()) {
+            target.capacity = 100;
+            encoder.complete();
+            rounds++;
+        }
+        Assert.assertTrue(rounds > 1);
+        Assert.assertTrue(target.isCompleted());
+        Assert.assertArrayEquals(content, gunzip(target.out.toByteArray()));
+    }
+
+    @Test
+    public void testCompressDirectBuffer() throws Exception {
+        final byte[] content = createContent(20000);
+        final ThrottledEncoder target = new ThrottledEncoder();
+        target.capacity = Integer.MAX_VALUE;
+        final CompressingEncoder encoder = new CompressingEncoder(target, "gzip");
+        final ByteBuffer src = ByteBuffer.allocateDirect(content.length);
+        src.put(content);
+        src.flip();
+        while (src.hasRemaining()) {
+            encoder.write(src);
+        }
+        encoder.complete();
+        Assert.assertTrue(encoder.isCompleted());
+        Assert.assertArrayEquals(content, gunzip(target.out.toByteArray()));
+    }
+
+    @Test
+    public void testDecompressGzip() throws Exception {
+        final byte[] content = createContent(50000);
+        final InflatingDecoder decoder = new InflatingDecoder(
+                new ThrottledDecoder(gzip(content), 7), "gzip", 64);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteBuffer dst = ByteBuffer.allocate(333);
+        int l;
+        while ((l = decoder.read(dst)) != -1) {
+            if (l > 0) {
+                dst.flip();
+                out.write(dst.array(), 0, dst.limit());
+                dst.clear();
+            }
+        }
+        Assert.assertTrue(decoder.isCompleted());
+        Assert.assertArrayEquals(content, out.toByteArray());
+    }
+
+    @Test
+    public void testRoundTripDeflate() throws Exception {
+        final byte[] content = createContent(30000);
+        final ThrottledEncoder target = new ThrottledEncoder();
+        target.capacity = Integer.MAX_VALUE;
+        final CompressingEncoder encoder = new CompressingEncoder(target, "deflate");
+        encoder.write(ByteBuffer.wrap(content));
+        encoder.complete();
+
+        final InflatingDecoder decoder = new InflatingDecoder(
+                new ThrottledDecoder(target.out.toByteArray(), 1000), "deflate");
+        final ByteBuffer dst = ByteBuffer.allocateDirect(content.length + 1);
+        while (decoder.read(dst) != -1) {
+        }
+        Assert.assertTrue(decoder.isCompleted());
+        dst.flip();
+        final byte[] b = new byte[dst.remaining()];
+        dst.get(b);
+        Assert.assertArrayEquals(content, b);
+    }
+
+    @Test(expected = ZipException.class)
+    public void testDecompressCorruptTrailer() throws Exception {
+        final byte[] compressed = gzip(createContent(1000));
+        compressed[compressed.length - 1]++;
+        final InflatingDecoder decoder = new InflatingDecoder(
+                new ThrottledDecoder(compressed, 100), "gzip");
+        final ByteBuffer dst = ByteBuffer.allocate(2048);
+        while (decoder.read(dst) != -1) {
+        }
+    }
+
+    @Test
+    public void testDecompressEmpty() throws Exception {
+        final InflatingDecoder decoder = new InflatingDecoder(
+                new ThrottledDecoder(new byte[0], 100), "gzip");
+        Assert.assertEquals(-1, decoder.read(ByteBuffer.allocate(16)));
+        Assert.assertTrue(decoder.isCompleted());
+    }
+
+}
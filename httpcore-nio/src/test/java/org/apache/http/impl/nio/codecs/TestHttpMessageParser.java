@@ -34,6 +34,8 @@
 import java.nio.charset.Charset;
 
 import org.apache.http.Consts;
+import org.apache.http.FormattedHeader;
+import org.apache.http.Header;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
@@ -69,6 +71,34 @@ public void testSimpleParsing() throws Exception {
         Assert.assertEquals(1, request.getAllHeaders().length);
     }
 
+    @Test
+    public void testBufferRecycling() throws Exception {
+        final SessionInputBuffer inbuf = new SessionInputBufferImpl(1024, 128, Consts.ASCII);
+        final NHttpMessageParser<HttpRequest> requestParser = new DefaultHttpRequestParser(inbuf, null, null,
+                MessageConstraints.custom().setBufferRecycling(true).build());
+        requestParser.fillBuffer(newChannel(
+                "GET /one HTTP/1.1\r\nHost: localhost\r\nUser-Agent: whatever\r\n\r\n" +
+                "GET /two HTTP/1.1\r\nHost: otherhost\r\nAccept: */*\r\n\r\n"));
+        final HttpRequest request1 = requestParser.parse();
+        Assert.assertNotNull(request1);
+        final Header[] headers1 = request1.getAllHeaders();
+        Assert.assertEquals(2, headers1.length);
+        Assert.assertEquals("whatever", headers1[1].getValue());
+        requestParser.reset();
+
+        final HttpRequest request2 = requestParser.parse();
+        Assert.assertNotNull(request2);
+        Assert.assertEquals("/two", request2.getRequestLine().getUri());
+        final Header[] headers2 = request2.getAllHeaders();
+        Assert.assertEquals(2, headers2.length);
+        Assert.assertEquals("otherhost", headers2[0].getValue());
+        Assert.assertEquals("*/*", headers2[1].getValue());
+        // headers of the first message are detached from the recycled line buffers
+        Assert.assertFalse(headers1[1] instanceof FormattedHeader);
+        Assert.assertEquals("localhost", headers1[0].getValue());
+        Assert.assertEquals("whatever", headers1[1].getValue());
+    }
+
     @Test
     public void testParsingChunkedMessages() throws Exception {
         final SessionInputBuffer inbuf = new SessionInputBufferImpl(1024, 128, Consts.ASCII);
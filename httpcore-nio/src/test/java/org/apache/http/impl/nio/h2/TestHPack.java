@@ -0,0 +1,289 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.h2;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.ByteArrayBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * HPACK tests based on the examples of RFC 7541, appendix C.
+ */
+public class TestHPack {
+
+    private static byte[] decodeHex(final String s) {
+        final String hex = s.replace(" ", "");
+        final byte[] b = new byte[hex.length() / 2];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return b;
+    }
+
+    private static String encodeHex(final ByteArrayBuffer buffer) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < buffer.length(); i++) {
+            sb.append(String.format("%02x", Integer.valueOf(buffer.byteAt(i) & 0xff)));
+        }
+        return sb.toString();
+    }
+
+    private static List<Header> headers(final String... nameValues) {
+        final Header[] headers = new Header[nameValues.length / 2];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = new BasicHeader(nameValues[i * 2], nameValues[i * 2 + 1]);
+        }
+        return Arrays.asList(headers);
+    }
+
+    private static void assertHeaders(final List<Header> expected, final List<Header> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            Assert.assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+        }
+    }
+
+    private static void assertBlock(
+            final HPackEncoder encoder, final HPackDecoder decoder,
+            final List<Header> headers, final boolean huffman, final String hex) throws Exception {
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(64);
+        encoder.encodeHeaders(buffer, headers, huffman);
+        Assert.assertEquals(hex.replace(" ", ""), encodeHex(buffer));
+        assertHeaders(headers, decoder.decodeHeaders(ByteBuffer.wrap(decodeHex(hex))));
+    }
+
+    @Test
+    public void testIntegerRepresentation() throws Exception {
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(8);
+        HPackEncoder.encodeInt(buffer, 5, 0, 10);
+        Assert.assertEquals("0a", encodeHex(buffer));
+        buffer.clear();
+        HPackEncoder.encodeInt(buffer, 5, 0, 1337);
+        Assert.assertEquals("1f9a0a", encodeHex(buffer));
+        buffer.clear();
+        HPackEncoder.encodeInt(buffer, 8, 0, 42);
+        Assert.assertEquals("2a", encodeHex(buffer));
+
+        Assert.assertEquals(10, HPackDecoder.decodeInt(ByteBuffer.wrap(decodeHex("0a")), 5));
+        Assert.assertEquals(1337, HPackDecoder.decodeInt(ByteBuffer.wrap(decodeHex("1f9a0a")), 5));
+        Assert.assertEquals(42, HPackDecoder.decodeInt(ByteBuffer.wrap(decodeHex("2a")), 8));
+    }
+
+    @Test(expected = H2ConnectionException.class)
+    public void testIntegerOverflow() throws Exception {
+        HPackDecoder.decodeInt(ByteBuffer.wrap(decodeHex("1fffffffff0f")), 5);
+    }
+
+    @Test
+    public void testHuffmanCoding() throws Exception {
+        final String[][] vectors = {
+            {"www.example.com", "f1e3c2e5f23a6ba0ab90f4ff"},
+            {"no-cache", "a8eb10649cbf"},
+            {"custom-key", "25a849e95ba97d7f"},
+            {"custom-value", "25a849e95bb8e8b4bf"}
+        };
+        for (final String[] vector: vectors) {
+            final ByteArrayBuffer buffer = new ByteArrayBuffer(32);
+            Huffman.encode(vector[0], buffer);
+            Assert.assertEquals(vector[1], encodeHex(buffer));
+            Assert.assertEquals(buffer.length(), Huffman.encodedLength(vector[0]));
+            final StringBuilder sb = new StringBuilder();
+            final byte[] b = decodeHex(vector[1]);
+            Huffman.decode(b, 0, b.length, sb);
+            Assert.assertEquals(vector[0], sb.toString());
+        }
+    }
+
+    @Test
+    public void testHuffmanRoundTripAllOctets() throws Exception {
+        final StringBuilder s = new StringBuilder();
+        for (int i = 0; i < 256; i++) {
+            s.append((char) i);
+        }
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(512);
+        Huffman.encode(s, buffer);
+        final StringBuilder sb = new StringBuilder();
+        Huffman.decode(buffer.buffer(), 0, buffer.length(), sb);
+        Assert.assertEquals(s.toString(), sb.toString());
+    }
+
+    @Test(expected = H2ConnectionException.class)
+    public void testHuffmanInvalidPadding() throws Exception {
+        // 'a' (00011) followed by zero padding
+        final byte[] b = new byte[] {0x18};
+        Huffman.decode(b, 0, b.length, new StringBuilder());
+    }
+
+    @Test(expected = H2ConnectionException.class)
+    public void testHuffmanPaddingTooLong() throws Exception {
+        // 'a' (00011) followed by a padding of 11 bits
+        final byte[] b = new byte[] {0x1f, (byte) 0xff};
+        Huffman.decode(b, 0, b.length, new StringBuilder());
+    }
+
+    @Test
+    public void testRequestsWithoutHuffmanCoding() throws Exception {
+        final HPackEncoder encoder = new HPackEncoder(4096);
+        final HPackDecoder decoder = new HPackDecoder(4096);
+        assertBlock(encoder, decoder, headers(
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com"),
+                false, "828684410f7777772e6578616d706c652e636f6d");
+        Assert.assertEquals(57, decoder.getDynamicTable().getCurrentSize());
+        assertBlock(encoder, decoder, headers(
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com",
+                "cache-control", "no-cache"),
+                false, "828684be58086e6f2d6361636865");
+        Assert.assertEquals(110, decoder.getDynamicTable().getCurrentSize());
+        assertBlock(encoder, decoder, headers(
+                ":method", "GET", ":scheme", "https", ":path", "/index.html", ":authority", "www.example.com",
+                "custom-key", "custom-value"),
+                false, "828785bf400a637573746f6d2d6b65790c637573746f6d2d76616c7565");
+        Assert.assertEquals(164, decoder.getDynamicTable().getCurrentSize());
+        Assert.assertEquals(164, encoder.getDynamicTable().getCurrentSize());
+        Assert.assertEquals(3, decoder.getDynamicTable().count());
+        Assert.assertEquals("custom-key", decoder.getDynamicTable().get(1).getName());
+    }
+
+    @Test
+    public void testRequestsWithHuffmanCoding() throws Exception {
+        final HPackEncoder encoder = new HPackEncoder(4096);
+        final HPackDecoder decoder = new HPackDecoder(4096);
+        assertBlock(encoder, decoder, headers(
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com"),
+                true, "828684418cf1e3c2e5f23a6ba0ab90f4ff");
+        assertBlock(encoder, decoder, headers(
+                ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com",
+                "cache-control", "no-cache"),
+                true, "828684be5886a8eb10649cbf");
+        assertBlock(encoder, decoder, headers(
+                ":method", "GET", ":scheme", "https", ":path", "/index.html", ":authority", "www.example.com",
+                "custom-key", "custom-value"),
+                true, "828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf");
+        Assert.assertEquals(164, decoder.getDynamicTable().getCurrentSize());
+    }
+
+    @Test
+    public void testResponsesWithEviction() throws Exception {
+        final HPackEncoder encoder = new HPackEncoder(256);
+        final HPackDecoder decoder = new HPackDecoder(256);
+        assertBlock(encoder, decoder, headers(
+                ":status", "302", "cache-control", "private", "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+                "location", "https://www.example.com"),
+                false, "4803333032580770726976617465611d4d6f6e2c203231204f637420323031332032303a31333a323120474d54"
+                        + "6e1768747470733a2f2f7777772e6578616d706c652e636f6d");
+        Assert.assertEquals(222, decoder.getDynamicTable().getCurrentSize());
+        assertBlock(encoder, decoder, headers(
+                ":status", "307", "cache-control", "private", "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+                "location", "https://www.example.com"),
+                false, "4803333037c1c0bf");
+        Assert.assertEquals(222, decoder.getDynamicTable().getCurrentSize());
+        Assert.assertEquals(4, decoder.getDynamicTable().count());
+        Assert.assertEquals("307", decoder.getDynamicTable().get(1).getValue());
+    }
+
+    @Test
+    public void testDynamicTableSizeUpdate() throws Exception {
+        final HPackEncoder encoder = new HPackEncoder(4096);
+        final HPackDecoder decoder = new HPackDecoder(4096);
+        final List<Header> headers = headers("custom-key", "custom-value");
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(64);
+        encoder.encodeHeaders(buffer, headers, true);
+        decoder.decodeHeaders(ByteBuffer.wrap(buffer.toByteArray()));
+        Assert.assertEquals(1, decoder.getDynamicTable().count());
+
+        encoder.setMaxTableSize(0);
+        encoder.setMaxTableSize(100);
+        buffer.clear();
+        encoder.encodeHeaders(buffer, headers, true);
+        // size update to 0 followed by size update to 100
+        Assert.assertEquals(0x20, buffer.byteAt(0) & 0xff);
+        Assert.assertEquals(0x3f, buffer.byteAt(1) & 0xff);
+        assertHeaders(headers, decoder.decodeHeaders(ByteBuffer.wrap(buffer.toByteArray())));
+        Assert.assertEquals(100, decoder.getDynamicTable().getMaxSize());
+        // the table has been flushed and the field is too large to be worth indexing
+        Assert.assertEquals(0, decoder.getDynamicTable().count());
+        Assert.assertEquals(encoder.getDynamicTable().getCurrentSize(), decoder.getDynamicTable().getCurrentSize());
+    }
+
+    @Test(expected = H2ConnectionException.class)
+    public void testDynamicTableSizeUpdateAboveLimit() throws Exception {
+        final HPackDecoder decoder = new HPackDecoder(4096);
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(8);
+        HPackEncoder.encodeInt(buffer, 5, 0x20, 8192);
+        decoder.decodeHeaders(ByteBuffer.wrap(buffer.toByteArray()));
+    }
+
+    @Test(expected = H2ConnectionException.class)
+    public void testInvalidIndex() throws Exception {
+        final HPackDecoder decoder = new HPackDecoder(4096);
+        decoder.decodeHeaders(ByteBuffer.wrap(decodeHex("be")));
+    }
+
+    @Test(expected = H2ConnectionException.class)
+    public void testTruncatedBlock() throws Exception {
+        final HPackDecoder decoder = new HPackDecoder(4096);
+        decoder.decodeHeaders(ByteBuffer.wrap(decodeHex("410f7777772e")));
+    }
+
+    @Test
+    public void testSensitiveHeadersNeverIndexed() throws Exception {
+        final HPackEncoder encoder = new HPackEncoder(4096);
+        final HPackDecoder decoder = new HPackDecoder(4096);
+        final List<Header> headers = headers("authorization", "Basic dXNlcjpwYXNz");
+        final ByteArrayBuffer buffer = new ByteArrayBuffer(64);
+        encoder.encodeHeaders(buffer, headers, true);
+        Assert.assertEquals(0x10, buffer.byteAt(0) & 0xf0);
+        assertHeaders(headers, decoder.decodeHeaders(ByteBuffer.wrap(buffer.toByteArray())));
+        Assert.assertEquals(0, encoder.getDynamicTable().count());
+        Assert.assertEquals(0, decoder.getDynamicTable().count());
+    }
+
+    @Test
+    public void testDynamicTableGrowth() throws Exception {
+        final HPackDynamicTable table = new HPackDynamicTable(Integer.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            table.add(new BasicHeader("name-" + i, "value-" + i));
+        }
+        Assert.assertEquals(100, table.count());
+        Assert.assertEquals("name-99", table.get(1).getName());
+        Assert.assertEquals("name-0", table.get(100).getName());
+        Assert.assertNull(table.get(101));
+        Assert.assertEquals(100, table.findField("name-0", "value-0"));
+        table.setMaxSize(HPackDynamicTable.sizeOf(new BasicHeader("name-99", "value-99")) * 2);
+        Assert.assertEquals(2, table.count());
+        Assert.assertEquals("name-98", table.get(2).getName());
+    }
+
+}
@@ -0,0 +1,345 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.nio.reactor;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpConnection;
+import org.apache.http.impl.HttpConnectionMetricsImpl;
+import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.nio.reactor.IOEventDispatch;
+import org.apache.http.nio.reactor.IOReactorAffinity;
+import org.apache.http.nio.reactor.IOSession;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Basic tests for {@link BaseIOReactor}.
+ */
+public class TestBaseIOReactor {
+
+    static class LatchIOEventDispatch implements IOEventDispatch {
+
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch inputReady = new CountDownLatch(1);
+        volatile IOSession session;
+        volatile Object dispatcher;
+
+        @Override
+        public void connected(final IOSession session) {
+            this.session = session;
+            this.dispatcher = IOReactorAffinity.current();
+            this.connected.countDown();
+        }
+
+        @Override
+        public void inputReady(final IOSession session) {
+            final ByteBuffer dst = ByteBuffer.allocate(16);
+            try {
+                session.channel().read(dst);
+            } catch (final IOException ex) {
+                session.close();
+            }
+            this.inputReady.countDown();
+        }
+
+        @Override
+        public void outputReady(final IOSession session) {
+        }
+
+        @Override
+        public void timeout(final IOSession session) {
+        }
+
+        @Override
+        public void disconnected(final IOSession session) {
+        }
+
+    }
+
+    private void testChannelHandoff(final long busyPollTime) throws Exception {
+        // long select timeout: a lost wakeup would stall the reactor
+        final BaseIOReactor ioReactor = new BaseIOReactor(60000);
+        ioReactor.setBusyPollTime(busyPollTime);
+        Assert.assertEquals(busyPollTime, ioReactor.getBusyPollTime());
+        final LatchIOEventDispatch eventDispatch = new LatchIOEventDispatch();
+
+        final Thread t = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    ioReactor.execute(eventDispatch);
+                } catch (final IOException ex) {
+                }
+            }
+
+        });
+        t.start();
+
+        final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        final SocketChannel client = SocketChannel.open();
+        try {
+            serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+            client.connect(serverChannel.socket().getLocalSocketAddress());
+            final SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+
+            // let the reactor settle in a blocking select
+            Thread.sleep(50);
+            ioReactor.addChannel(new ChannelEntry(channel));
+            Assert.assertTrue(eventDispatch.connected.await(5, TimeUnit.SECONDS));
+            Assert.assertSame(ioReactor, eventDispatch.dispatcher);
+            Assert.assertSame(ioReactor, IOReactorAffinity.getDispatcher(eventDispatch.session));
+
+            Thread.sleep(50);
+            eventDispatch.session.setEvent(SelectionKey.OP_READ);
+            client.write(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+            Assert.assertTrue(eventDispatch.inputReady.await(5, TimeUnit.SECONDS));
+        } finally {
+            client.close();
+            serverChannel.close();
+            ioReactor.hardShutdown();
+            t.join(5000);
+        }
+    }
+
+    @Test
+    public void testChannelHandoff() throws Exception {
+        testChannelHandoff(0);
+    }
+
+    @Test
+    public void testChannelHandoffBusyPoll() throws Exception {
+        testChannelHandoff(200);
+    }
+
+    @Test
+    public void testChannelQueuedBeforeBusyPoll() throws Exception {
+        // long select timeout: a lost wakeup would stall the reactor
+        final BaseIOReactor ioReactor = new BaseIOReactor(60000);
+        ioReactor.setBusyPollTime(200);
+        final LatchIOEventDispatch eventDispatch = new LatchIOEventDispatch();
+
+        final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        final SocketChannel client = SocketChannel.open();
+        final Thread t = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    ioReactor.execute(eventDispatch);
+                } catch (final IOException ex) {
+                }
+            }
+
+        });
+        try {
+            serverChannel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+            client.connect(serverChannel.socket().getLocalSocketAddress());
+            final SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+
+            // the channel and its wakeup are queued before the reactor starts spinning
+            ioReactor.addChannel(new ChannelEntry(channel));
+            t.start();
+            Assert.assertTrue(eventDispatch.connected.await(5, TimeUnit.SECONDS));
+        } finally {
+            client.close();
+            serverChannel.close();
+            ioReactor.hardShutdown();
+            t.join(5000);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidBusyPollTime() throws Exception {
+        final BaseIOReactor ioReactor = new BaseIOReactor(1000);
+        ioReactor.setBusyPollTime(-1);
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        final IOReactorConfig config = IOReactorConfig.custom().setBusyPollTime(50).build();
+        Assert.assertEquals(50, config.getBusyPollTime());
+        Assert.assertEquals(50, IOReactorConfig.copy(config).build().getBusyPollTime());
+        Assert.assertEquals(0, IOReactorConfig.DEFAULT.getBusyPollTime());
+    }
+
+    static class CountingIOEventDispatch implements IOEventDispatch {
+
+        final HttpTransportMetricsImpl bigOutMetrics = new HttpTransportMetricsImpl();
+        final HttpTransportMetricsImpl smallOutMetrics = new HttpTransportMetricsImpl();
+        final IOSession bigSession = createSession(bigOutMetrics);
+        final IOSession smallSession = createSession(smallOutMetrics);
+        int bigCount;
+        int smallCount;
+
+        static IOSession createSession(final HttpTransportMetricsImpl outMetrics) {
+            final HttpConnection conn = Mockito.mock(HttpConnection.class);
+            Mockito.when(conn.getMetrics()).thenReturn(
+                    new HttpConnectionMetricsImpl(new HttpTransportMetricsImpl(), outMetrics));
+            final IOSession session = Mockito.mock(IOSession.class);
+            Mockito.when(session.getAttribute(IOEventDispatch.CONNECTION_KEY)).thenReturn(conn);
+            return session;
+        }
+
+        @Override
+        public void connected(final IOSession session) {
+        }
+
+        @Override
+        public void inputReady(final IOSession session) {
+        }
+
+        @Override
+        public void outputReady(final IOSession session) {
+            if (session == this.bigSession) {
+                this.bigOutMetrics.incrementBytesTransferred(5000);
+                this.bigCount++;
+            } else {
+                this.smallOutMetrics.incrementBytesTransferred(100);
+                this.smallCount++;
+            }
+        }
+
+        @Override
+        public void timeout(final IOSession session) {
+        }
+
+        @Override
+        public void disconnected(final IOSession session) {
+        }
+
+    }
+
+    static class SessionKeyIOReactor extends BaseIOReactor {
+
+        final SelectionKey bigKey = Mockito.mock(SelectionKey.class);
+        final SelectionKey smallKey = Mockito.mock(SelectionKey.class);
+        final CountingIOEventDispatch eventDispatch;
+
+        SessionKeyIOReactor(final CountingIOEventDispatch eventDispatch) throws IOException {
+            super(1000);
+            this.eventDispatch = eventDispatch;
+            execute(eventDispatch);
+        }
+
+        @Override
+        protected void execute() {
+            // event dispatch only; no select loop
+        }
+
+        @Override
+        protected IOSession getSession(final SelectionKey key) {
+            return key == this.bigKey ? this.eventDispatch.bigSession : this.eventDispatch.smallSession;
+        }
+
+    }
+
+    @Test
+    public void testSessionIOBudget() throws Exception {
+        final CountingIOEventDispatch eventDispatch = new CountingIOEventDispatch();
+        final SessionKeyIOReactor ioReactor = new SessionKeyIOReactor(eventDispatch);
+        ioReactor.setSessionIOBudget(1000);
+        Assert.assertEquals(1000, ioReactor.getSessionIOBudget());
+        try {
+            for (int i = 0; i < 10; i++) {
+                ioReactor.writable(ioReactor.bigKey);
+                ioReactor.writable(ioReactor.smallKey);
+                ioReactor.validate(null);
+            }
+            // 5000 bytes per write pay off in 5 cycles of 1000 bytes
+            Assert.assertEquals(2, eventDispatch.bigCount);
+            Assert.assertEquals(10, eventDispatch.smallCount);
+            Assert.assertEquals(8, ioReactor.getDeferredCount());
+        } finally {
+            ioReactor.hardShutdown();
+        }
+    }
+
+    @Test
+    public void testSessionIOBudgetWorkConserving() throws Exception {
+        final CountingIOEventDispatch eventDispatch = new CountingIOEventDispatch();
+        final SessionKeyIOReactor ioReactor = new SessionKeyIOReactor(eventDispatch);
+        ioReactor.setSessionIOBudget(1000);
+        try {
+            for (int i = 0; i < 10; i++) {
+                ioReactor.writable(ioReactor.bigKey);
+                ioReactor.validate(null);
+            }
+            // no other session competes: deferred at most one cycle
+            Assert.assertEquals(5, eventDispatch.bigCount);
+            Assert.assertEquals(5, ioReactor.getDeferredCount());
+        } finally {
+            ioReactor.hardShutdown();
+        }
+    }
+
+    @Test
+    public void testNoSessionIOBudget() throws Exception {
+        final CountingIOEventDispatch eventDispatch = new CountingIOEventDispatch();
+        final SessionKeyIOReactor ioReactor = new SessionKeyIOReactor(eventDispatch);
+        try {
+            for (int i = 0; i < 10; i++) {
+                ioReactor.writable(ioReactor.bigKey);
+                ioReactor.writable(ioReactor.smallKey);
+                ioReactor.validate(null);
+            }
+            Assert.assertEquals(10, eventDispatch.bigCount);
+            Assert.assertEquals(10, eventDispatch.smallCount);
+            Assert.assertEquals(0, ioReactor.getDeferredCount());
+        } finally {
+            ioReactor.hardShutdown();
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidSessionIOBudget() throws Exception {
+        final BaseIOReactor ioReactor = new BaseIOReactor(1000);
+        ioReactor.setSessionIOBudget(-1);
+    }
+
+    @Test
+    public void testSessionIOBudgetConfig() throws Exception {
+        final IOReactorConfig config = IOReactorConfig.custom().setSessionIOBudget(65536).build();
+        Assert.assertEquals(65536, config.getSessionIOBudget());
+        Assert.assertEquals(65536, IOReactorConfig.copy(config).build().getSessionIOBudget());
+        Assert.assertEquals(0, IOReactorConfig.DEFAULT.getSessionIOBudget());
+    }
+
+}
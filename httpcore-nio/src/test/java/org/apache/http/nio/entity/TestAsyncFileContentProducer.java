@@ -0,0 +1,100 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.entity;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.http.Consts;
+import org.apache.http.WritableByteChannelMock;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.impl.nio.reactor.SessionOutputBufferImpl;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.util.ContentEncoderMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class TestAsyncFileContentProducer {
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testProduceFileContent() throws Exception {
+        final StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            buffer.append((char) ('0' + (i % 10)));
+        }
+        final String s = buffer.toString();
+        final File file = this.tempFolder.newFile("content.txt");
+        final FileOutputStream outStream = new FileOutputStream(file);
+        try {
+            outStream.write(s.getBytes(Consts.ASCII));
+        } finally {
+            outStream.close();
+        }
+
+        final AsyncFileContentProducer producer = new AsyncFileContentProducer(
+                file, ContentType.TEXT_PLAIN, this.executor, 2, 1024, null);
+        Assert.assertEquals(s.length(), producer.getEntity().getContentLength());
+        Assert.assertEquals(ContentType.TEXT_PLAIN.toString(), producer.getEntity().getContentType().getValue());
+
+        final WritableByteChannelMock channel = new WritableByteChannelMock(1024);
+        final ContentEncoderMock encoder = new ContentEncoderMock(
+                channel, new SessionOutputBufferImpl(1024, 128), new HttpTransportMetricsImpl());
+        final IOControl ioControl = Mockito.mock(IOControl.class);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!encoder.isCompleted()) {
+            Assert.assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            producer.produceContent(encoder, ioControl);
+        }
+        producer.close();
+        Assert.assertEquals(s, channel.dump(Consts.ASCII));
+    }
+
+}
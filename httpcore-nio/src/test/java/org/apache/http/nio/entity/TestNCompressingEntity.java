@@ -0,0 +1,129 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests for {@link NCompressingEntity}.
+ */
+public class TestNCompressingEntity {
+
+    static class ThrottledEncoder implements ContentEncoder {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int capacity;
+        boolean completed;
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            final int n = Math.min(src.remaining(), this.capacity);
+            for (int i = 0; i < n; i++) {
+                this.out.write(src.get());
+            }
+            this.capacity -= n;
+            return n;
+        }
+
+        @Override
+        public void complete() throws IOException {
+            this.completed = true;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return this.completed;
+        }
+
+    }
+
+    private static String createString(final int len) {
+        final StringBuilder buffer = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            buffer.append(Integer.toHexString(i));
+        }
+        return buffer.toString();
+    }
+
+    private static String gunzip(final byte[] b) throws IOException {
+        final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(b));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] tmp = new byte[1024];
+        int l;
+        while ((l = in.read(tmp)) != -1) {
+            out.write(tmp, 0, l);
+        }
+        return new String(out.toByteArray(), "US-ASCII");
+    }
+
+    @Test
+    public void testProduceFromAsyncProducer() throws Exception {
+        final String content = createString(20000);
+        final NCompressingEntity entity = new NCompressingEntity(
+                new NStringEntity(content, ContentType.TEXT_PLAIN), "gzip");
+        final ThrottledEncoder encoder = new ThrottledEncoder();
+        final IOControl ioControl = Mockito.mock(IOControl.class);
+        int rounds = 0;
+        while (!encoder.isCompleted()) {
+            encoder.capacity = 50;
+            entity.produceContent(encoder, ioControl);
+            rounds++;
+        }
+        entity.close();
+        Assert.assertTrue(rounds > 1);
+        Assert.assertEquals(content, gunzip(encoder.out.toByteArray()));
+    }
+
+    @Test
+    public void testProduceFromBlockingEntity() throws Exception {
+        final String content = createString(20000);
+        final NCompressingEntity entity = new NCompressingEntity(
+                new InputStreamEntity(new ByteArrayInputStream(content.getBytes("US-ASCII"))), "gzip");
+        final ThrottledEncoder encoder = new ThrottledEncoder();
+        final IOControl ioControl = Mockito.mock(IOControl.class);
+        while (!encoder.isCompleted()) {
+            encoder.capacity = 1000;
+            entity.produceContent(encoder, ioControl);
+        }
+        entity.close();
+        Assert.assertEquals(content, gunzip(encoder.out.toByteArray()));
+    }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Consts;
+import org.apache.http.WritableByteChannelMock;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.impl.nio.reactor.SessionOutputBufferImpl;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.util.ContentEncoderMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestReadAheadAsyncContentProducer {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.executor.shutdownNow();
+    }
+
+    private static String createContent(final int len) {
+        final StringBuilder buffer = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            buffer.append((char) ('a' + (i % 26)));
+        }
+        return buffer.toString();
+    }
+
+    private static void produceAll(
+            final HttpAsyncContentProducer producer,
+            final ContentEncoderMock encoder,
+            final IOControl ioControl) throws Exception {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!encoder.isCompleted()) {
+            Assert.assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            producer.produceContent(encoder, ioControl);
+            if (!encoder.isCompleted()) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Test
+    public void testProduceContent() throws Exception {
+        final String s = createContent(100000);
+        final ReadAheadAsyncContentProducer producer = new ReadAheadAsyncContentProducer(
+                new StringEntity(s, Consts.ASCII), this.executor, 3, 1024, null);
+        final WritableByteChannelMock channel = new WritableByteChannelMock(1024);
+        final ContentEncoderMock encoder = new ContentEncoderMock(
+                channel, new SessionOutputBufferImpl(1024, 128), new HttpTransportMetricsImpl());
+        final IOControl ioControl = Mockito.mock(IOControl.class);
+
+        produceAll(producer, encoder, ioControl);
+
+        Assert.assertEquals(s, channel.dump(Consts.ASCII));
+        Assert.assertEquals(0, producer.getBuffered());
+        Mockito.verify(ioControl, Mockito.atLeastOnce()).requestOutput();
+        producer.close();
+    }
+
+    @Test
+    public void testProduceContentRepeatable() throws Exception {
+        final String s = createContent(5000);
+        final ReadAheadAsyncContentProducer producer = new ReadAheadAsyncContentProducer(
+                new StringEntity(s, Consts.ASCII), this.executor, 2, 512, null);
+        Assert.assertTrue(producer.isRepeatable());
+        final IOControl ioControl = Mockito.mock(IOControl.class);
+        for (int i = 0; i < 2; i++) {
+            final WritableByteChannelMock channel = new WritableByteChannelMock(1024);
+            final ContentEncoderMock encoder = new ContentEncoderMock(
+                    channel, new SessionOutputBufferImpl(1024, 128), new HttpTransportMetricsImpl());
+            produceAll(producer, encoder, ioControl);
+            Assert.assertEquals(s, channel.dump(Consts.ASCII));
+        }
+    }
+
+    @Test
+    public void testSlowContentSuspendsOutput() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final InputStream inStream = new ByteArrayInputStream("stuff".getBytes(Consts.ASCII)) {
+
+            @Override
+            public synchronized int read(final byte[] b, final int off, final int len) {
+                try {
+                    latch.await();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.read(b, off, len);
+            }
+
+        };
+        final ReadAheadAsyncContentProducer producer = new ReadAheadAsyncContentProducer(
+                new InputStreamEntity(inStream, 5), this.executor, 2, 1024, null);
+        final WritableByteChannelMock channel = new WritableByteChannelMock(1024);
+        final ContentEncoderMock encoder = new ContentEncoderMock(
+                channel, new SessionOutputBufferImpl(1024, 128), new HttpTransportMetricsImpl());
+        final IOControl ioControl = Mockito.mock(IOControl.class);
+
+        producer.produceContent(encoder, ioControl);
+        Assert.assertFalse(encoder.isCompleted());
+        Mockito.verify(ioControl).suspendOutput();
+
+        latch.countDown();
+        Mockito.verify(ioControl, Mockito.timeout(5000).atLeastOnce()).requestOutput();
+        produceAll(producer, encoder, ioControl);
+        Assert.assertEquals("stuff", channel.dump(Consts.ASCII));
+    }
+
+    @Test
+    public void testContentReadFailure() throws Exception {
+        final InputStream inStream = new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Oppsie");
+            }
+
+        };
+        final ReadAheadAsyncContentProducer producer = new ReadAheadAsyncContentProducer(
+                new InputStreamEntity(inStream), this.executor);
+        final WritableByteChannelMock channel = new WritableByteChannelMock(1024);
+        final ContentEncoderMock encoder = new ContentEncoderMock(
+                channel, new SessionOutputBufferImpl(1024, 128), new HttpTransportMetricsImpl());
+        final IOControl ioControl = Mockito.mock(IOControl.class);
+        try {
+            produceAll(producer, encoder, ioControl);
+            Assert.fail("IOException should have been thrown");
+        } catch (final IOException expected) {
+            Assert.assertEquals("Oppsie", expected.getMessage());
+        }
+        producer.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testExecutorRejection() throws Exception {
+        this.executor.shutdown();
+        Assert.assertTrue(this.executor.awaitTermination(5, TimeUnit.SECONDS));
+        final ReadAheadAsyncContentProducer producer = new ReadAheadAsyncContentProducer(
+                new StringEntity("stuff"), this.executor);
+        final WritableByteChannelMock channel = new WritableByteChannelMock(1024);
+        final ContentEncoderMock encoder = new ContentEncoderMock(
+                channel, new SessionOutputBufferImpl(1024, 128), new HttpTransportMetricsImpl());
+        producer.produceContent(encoder, Mockito.mock(IOControl.class));
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.integration;
+
+import java.net.InetSocketAddress;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.DefaultNHttpClientConnection;
+import org.apache.http.impl.nio.DefaultNHttpClientConnectionFactory;
+import org.apache.http.impl.nio.DefaultNHttpServerConnection;
+import org.apache.http.impl.nio.DefaultNHttpServerConnectionFactory;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.nio.NHttpServerEventHandler;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.protocol.BasicAsyncRequestHandler;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.ListenerEndpoint;
+import org.apache.http.nio.testserver.HttpCoreNIOTestBase;
+import org.apache.http.nio.testserver.LoggingNHttpServerConnection;
+import org.apache.http.nio.testserver.ServerConnectionFactory;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * HttpCore NIO integration tests for eager flush of output produced
+ * during the input pass.
+ */
+public class TestEagerFlush extends HttpCoreNIOTestBase {
+
+    private final static long RESULT_TIMEOUT_SEC = 30;
+    private final static int REQ_NUM = 25;
+
+    private final AtomicInteger eagerPasses = new AtomicInteger();
+
+    @Override
+    protected ServerConnectionFactory createServerConnectionFactory() throws Exception {
+        return new ServerConnectionFactory() {
+
+            @Override
+            public DefaultNHttpServerConnection createConnection(final IOSession ioSession) {
+                final DefaultNHttpServerConnection conn = new LoggingNHttpServerConnection(ioSession) {
+
+                    private boolean consuming;
+
+                    @Override
+                    public void consumeInput(final NHttpServerEventHandler handler) {
+                        this.consuming = true;
+                        try {
+                            super.consumeInput(handler);
+                        } finally {
+                            this.consuming = false;
+                        }
+                    }
+
+                    @Override
+                    public void produceOutput(final NHttpServerEventHandler handler) {
+                        if (this.consuming) {
+                            eagerPasses.incrementAndGet();
+                        }
+                        super.produceOutput(handler);
+                    }
+
+                };
+                conn.setEagerFlush(true);
+                return conn;
+            }
+
+        };
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        initServer();
+        initClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        shutDownClient();
+        shutDownServer();
+    }
+
+    private HttpHost start() throws Exception {
+        this.server.start();
+        this.client.start();
+
+        final ListenerEndpoint endpoint = this.server.getListenerEndpoint();
+        endpoint.waitFor();
+
+        final InetSocketAddress address = (InetSocketAddress) endpoint.getAddress();
+        return new HttpHost("localhost", address.getPort(), getScheme().name());
+    }
+
+    @Test
+    public void testDefaultsToOff() throws Exception {
+        final DefaultNHttpServerConnection conn = new DefaultNHttpServerConnection(
+                Mockito.mock(IOSession.class), 1024);
+        Assert.assertFalse(conn.isEagerFlush());
+        Assert.assertFalse(ConnectionConfig.DEFAULT.isEagerFlush());
+    }
+
+    @Test
+    public void testConnectionFactoriesApplyConfig() throws Exception {
+        final ConnectionConfig config = ConnectionConfig.custom().setEagerFlush(true).build();
+        Assert.assertTrue(ConnectionConfig.copy(config).build().isEagerFlush());
+
+        final IOSession session = Mockito.mock(IOSession.class);
+        final DefaultNHttpServerConnection serverConn = new DefaultNHttpServerConnectionFactory(config)
+                .createConnection(session);
+        Assert.assertTrue(serverConn.isEagerFlush());
+        final DefaultNHttpClientConnection clientConn = new DefaultNHttpClientConnectionFactory(config)
+                .createConnection(session);
+        Assert.assertTrue(clientConn.isEagerFlush());
+
+        Assert.assertFalse(new DefaultNHttpServerConnectionFactory(ConnectionConfig.DEFAULT)
+                .createConnection(session).isEagerFlush());
+        Assert.assertFalse(new DefaultNHttpClientConnectionFactory(ConnectionConfig.DEFAULT)
+                .createConnection(session).isEagerFlush());
+    }
+
+    @Test
+    public void testHttpGetsAndPosts() throws Exception {
+        this.server.registerHandler("*", new BasicAsyncRequestHandler(new SimpleRequestHandler()));
+        final HttpHost target = start();
+
+        this.client.setMaxPerRoute(3);
+        this.client.setMaxTotal(3);
+
+        final String pattern = RndTestPatternGenerator.generateText();
+        final int count = RndTestPatternGenerator.generateCount(1000);
+        final StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            buffer.append(pattern);
+        }
+        final String expectedPattern = buffer.toString();
+
+        final Queue<Future<HttpResponse>> queue = new ConcurrentLinkedQueue<Future<HttpResponse>>();
+        for (int i = 0; i < REQ_NUM; i++) {
+            if (i % 2 == 0) {
+                queue.add(this.client.execute(target, new BasicHttpRequest("GET", pattern + "x" + count)));
+            } else {
+                final BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest(
+                        "POST", pattern + "x" + count);
+                request.setEntity(new NStringEntity(expectedPattern, ContentType.DEFAULT_TEXT));
+                queue.add(this.client.execute(target, request));
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            final Future<HttpResponse> future = queue.remove();
+            final HttpResponse response = future.get(RESULT_TIMEOUT_SEC, TimeUnit.SECONDS);
+            Assert.assertNotNull(response);
+            Assert.assertEquals(expectedPattern, EntityUtils.toString(response.getEntity()));
+        }
+        Assert.assertTrue(this.eagerPasses.get() > 0);
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.integration;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.h2.H2ClientConnection;
+import org.apache.http.impl.nio.h2.H2ClientIODispatch;
+import org.apache.http.impl.nio.h2.H2Config;
+import org.apache.http.impl.nio.h2.H2ServerIODispatch;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.protocol.BasicAsyncRequestHandler;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.nio.protocol.BasicAsyncResponseConsumer;
+import org.apache.http.nio.protocol.UriHttpAsyncRequestHandlerMapper;
+import org.apache.http.nio.reactor.IOReactorStatus;
+import org.apache.http.nio.reactor.ListenerEndpoint;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.HttpProcessorBuilder;
+import org.apache.http.protocol.RequestConnControl;
+import org.apache.http.protocol.RequestContent;
+import org.apache.http.protocol.RequestTargetHost;
+import org.apache.http.protocol.RequestUserAgent;
+import org.apache.http.protocol.ResponseConnControl;
+import org.apache.http.protocol.ResponseContent;
+import org.apache.http.protocol.ResponseDate;
+import org.apache.http.protocol.ResponseServer;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * HTTP/2 end to end tests exchanging messages over a single connection
+ * between a local server and client.
+ */
+public class TestH2Integration {
+
+    private DefaultListeningIOReactor server;
+    private DefaultConnectingIOReactor client;
+    private final Queue<Throwable> reactorFailures = new ConcurrentLinkedQueue<Throwable>();
+    private HttpHost target;
+
+    private void startReactor(final Runnable runnable, final String name) {
+        final Thread thread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (final Throwable ex) {
+                    reactorFailures.add(ex);
+                }
+            }
+
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        final IOReactorConfig reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(1)
+                .setSoTimeout(15000)
+                .build();
+        final UriHttpAsyncRequestHandlerMapper mapper = new UriHttpAsyncRequestHandlerMapper();
+        mapper.register("/pattern*", new BasicAsyncRequestHandler(new SimpleRequestHandler()));
+        final HttpProcessor serverProcessor = HttpProcessorBuilder.create()
+                .add(new ResponseDate())
+                .add(new ResponseServer("TEST-SERVER/1.1"))
+                .add(new ResponseContent())
+                .add(new ResponseConnControl())
+                .build();
+        final HttpProcessor clientProcessor = HttpProcessorBuilder.create()
+                .add(new RequestContent())
+                .add(new RequestTargetHost())
+                .add(new RequestConnControl())
+                .add(new RequestUserAgent("TEST-CLIENT/1.1"))
+                .build();
+        final H2Config serverConfig = H2Config.custom().setMaxConcurrentStreams(50).build();
+
+        this.server = new DefaultListeningIOReactor(reactorConfig);
+        final ListenerEndpoint endpoint = this.server.listen(new InetSocketAddress("localhost", 0));
+        final H2ServerIODispatch serverDispatch = new H2ServerIODispatch(serverProcessor, mapper, serverConfig);
+        startReactor(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    server.execute(serverDispatch);
+                } catch (final Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+        }, "h2-server");
+        endpoint.waitFor();
+        final InetSocketAddress address = (InetSocketAddress) endpoint.getAddress();
+        this.target = new HttpHost("localhost", address.getPort());
+
+        this.client = new DefaultConnectingIOReactor(reactorConfig);
+        final H2ClientIODispatch clientDispatch = new H2ClientIODispatch(clientProcessor, H2Config.DEFAULT);
+        startReactor(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    client.execute(clientDispatch);
+                } catch (final Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+        }, "h2-client");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.client != null) {
+            this.client.shutdown(1000);
+        }
+        if (this.server != null) {
+            this.server.shutdown(1000);
+        }
+        Assert.assertTrue(this.reactorFailures.toString(), this.reactorFailures.isEmpty());
+    }
+
+    private H2ClientConnection connect() throws Exception {
+        final BasicFuture<H2ClientConnection> future = new BasicFuture<H2ClientConnection>(null);
+        this.client.connect(
+                new InetSocketAddress(this.target.getHostName(), this.target.getPort()), null,
+                new FutureCallback<H2ClientConnection>() {
+
+                    @Override
+                    public void completed(final H2ClientConnection conn) {
+                        future.completed(conn);
+                    }
+
+                    @Override
+                    public void failed(final Exception ex) {
+                        future.failed(ex);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        future.cancel();
+                    }
+
+                }, null);
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private Future<HttpResponse> execute(final H2ClientConnection conn, final HttpRequest request) {
+        return conn.execute(
+                new BasicAsyncRequestProducer(this.target, request),
+                new BasicAsyncResponseConsumer(), null);
+    }
+
+    private static String repeat(final String pattern, final int count) {
+        final StringBuilder buffer = new StringBuilder(pattern.length() * count);
+        for (int i = 0; i < count; i++) {
+            buffer.append(pattern);
+        }
+        return buffer.toString();
+    }
+
+    @Test
+    public void testConcurrentRequestsOverSingleConnection() throws Exception {
+        final H2ClientConnection conn = connect();
+        final int reqCount = 200;
+        final List<Future<HttpResponse>> futures = new ArrayList<Future<HttpResponse>>(reqCount);
+        final List<String> expected = new ArrayList<String>(reqCount);
+        for (int i = 0; i < reqCount; i++) {
+            final String pattern = RndTestPatternGenerator.generateText();
+            final int count = RndTestPatternGenerator.generateCount(1000);
+            futures.add(execute(conn, new BasicHttpRequest("GET", "/pattern" + pattern + "x" + count)));
+            expected.add(repeat("/pattern" + pattern, count));
+        }
+        for (int i = 0; i < reqCount; i++) {
+            final HttpResponse response = futures.get(i).get(30, TimeUnit.SECONDS);
+            Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+            Assert.assertEquals(expected.get(i), EntityUtils.toString(response.getEntity()));
+            Assert.assertNull(response.getFirstHeader("Connection"));
+            Assert.assertNotNull(response.getFirstHeader("date"));
+        }
+        Assert.assertTrue(conn.isOpen());
+        Assert.assertEquals(reqCount, conn.getMetrics().getRequestCount());
+        Assert.assertEquals(reqCount, conn.getMetrics().getResponseCount());
+    }
+
+    @Test
+    public void testLargeEntitiesExceedingFlowControlWindow() throws Exception {
+        final H2ClientConnection conn = connect();
+        final int reqCount = 10;
+        final List<Future<HttpResponse>> futures = new ArrayList<Future<HttpResponse>>(reqCount);
+        final List<String> expected = new ArrayList<String>(reqCount);
+        for (int i = 0; i < reqCount; i++) {
+            final String content = repeat("0123456789abcdef" + i, 20000);
+            final BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest(
+                    "POST", "/patternx1");
+            final NStringEntity entity = new NStringEntity(content, ContentType.DEFAULT_TEXT);
+            entity.setChunked(i % 2 == 0);
+            request.setEntity(entity);
+            futures.add(execute(conn, request));
+            expected.add(content);
+        }
+        for (int i = 0; i < reqCount; i++) {
+            final HttpResponse response = futures.get(i).get(30, TimeUnit.SECONDS);
+            Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+            Assert.assertEquals(expected.get(i), EntityUtils.toString(response.getEntity()));
+        }
+        Assert.assertTrue(conn.isOpen());
+    }
+
+    @Test
+    public void testRequestWithoutHandler() throws Exception {
+        final H2ClientConnection conn = connect();
+        final HttpResponse response1 = execute(conn, new BasicHttpRequest("GET", "/no-such-thing"))
+                .get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(HttpStatus.SC_NOT_IMPLEMENTED, response1.getStatusLine().getStatusCode());
+        EntityUtils.consume(response1.getEntity());
+        final HttpResponse response2 = execute(conn, new BasicHttpRequest("HEAD", "/patternx10"))
+                .get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(HttpStatus.SC_OK, response2.getStatusLine().getStatusCode());
+        Assert.assertNull(response2.getEntity());
+    }
+
+    @Test
+    public void testGracefulClose() throws Exception {
+        final H2ClientConnection conn = connect();
+        final Future<HttpResponse> future = execute(conn, new BasicHttpRequest("GET", "/patternx100"));
+        final HttpResponse response = future.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        conn.close();
+        Assert.assertFalse(conn.isOpen());
+        try {
+            execute(conn, new BasicHttpRequest("GET", "/patternx100")).get(5, TimeUnit.SECONDS);
+            Assert.fail("ExecutionException expected");
+        } catch (final ExecutionException expected) {
+        }
+        Assert.assertEquals(IOReactorStatus.ACTIVE, this.client.getStatus());
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.integration;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.protocol.BasicAsyncRequestHandler;
+import org.apache.http.nio.protocol.ReverseProxyAsyncRequestHandler;
+import org.apache.http.nio.reactor.ListenerEndpoint;
+import org.apache.http.nio.testserver.HttpClientNio;
+import org.apache.http.nio.testserver.HttpCoreNIOTestBase;
+import org.apache.http.nio.testserver.HttpServerNio;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Load test of {@link ReverseProxyAsyncRequestHandler} relaying requests
+ * to a local stub backend.
+ */
+public class TestReverseProxyAsyncRequestHandler extends HttpCoreNIOTestBase {
+
+    private final static long RESULT_TIMEOUT_SEC = 60;
+    private final static int REQ_NUM = 200;
+    private final static int CONCURRENCY = 20;
+    private final static int UPSTREAM_CONNECTIONS = 5;
+    private final static int BUFFER_SIZE = 1024;
+
+    private HttpServerNio proxy;
+    private HttpClientNio upstream;
+
+    @Before
+    public void setUp() throws Exception {
+        initServer();
+        initClient();
+        this.proxy = new HttpServerNio();
+        this.proxy.setConnectionFactory(createServerConnectionFactory());
+        this.proxy.setTimeout(5000);
+        this.upstream = new HttpClientNio(createClientConnectionFactory());
+        this.upstream.setTimeout(5000);
+        this.upstream.setMaxPerRoute(UPSTREAM_CONNECTIONS);
+        this.upstream.setMaxTotal(UPSTREAM_CONNECTIONS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        shutDownClient();
+        if (this.proxy != null) {
+            this.proxy.shutdown();
+        }
+        if (this.upstream != null) {
+            this.upstream.shutdown();
+        }
+        shutDownServer();
+    }
+
+    private static HttpHost getTarget(final HttpServerNio server) throws InterruptedException {
+        final ListenerEndpoint endpoint = server.getListenerEndpoint();
+        endpoint.waitFor();
+        final InetSocketAddress address = (InetSocketAddress) endpoint.getAddress();
+        return new HttpHost("localhost", address.getPort(), "http");
+    }
+
+    private HttpHost startProxy(final HttpHost backend) throws Exception {
+        this.upstream.start();
+        this.proxy.registerHandler("*", new ReverseProxyAsyncRequestHandler(
+                backend, this.upstream.getRequester(), this.upstream.getConnPool(), BUFFER_SIZE));
+        this.proxy.start();
+        this.client.setMaxPerRoute(CONCURRENCY);
+        this.client.setMaxTotal(CONCURRENCY);
+        this.client.start();
+        return getTarget(this.proxy);
+    }
+
+    private static String createExpectedString(final String pattern, final int count) {
+        final StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            buffer.append(pattern);
+        }
+        return buffer.toString();
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        this.server.registerHandler("*", new BasicAsyncRequestHandler(new SimpleRequestHandler()));
+        this.server.start();
+        final HttpHost target = startProxy(getTarget(this.server));
+
+        final List<Future<HttpResponse>> futures = new ArrayList<Future<HttpResponse>>(REQ_NUM);
+        final List<String> expected = new ArrayList<String>(REQ_NUM);
+        for (int i = 0; i < REQ_NUM; i++) {
+            final String pattern = "/pattern" + i + ";";
+            final int count = 1 + (i * 97) % 5000;
+            final String uri = pattern + "x" + count;
+            final String content = createExpectedString(pattern, count);
+            final HttpRequest request;
+            if (i % 2 == 0) {
+                request = new BasicHttpRequest("GET", uri);
+            } else {
+                final BasicHttpEntityEnclosingRequest post = new BasicHttpEntityEnclosingRequest("POST", uri);
+                final NStringEntity entity = new NStringEntity(content, ContentType.DEFAULT_TEXT);
+                entity.setChunked(i % 4 == 1);
+                post.setEntity(entity);
+                request = post;
+            }
+            futures.add(this.client.execute(target, request));
+            expected.add(content);
+        }
+        for (int i = 0; i < REQ_NUM; i++) {
+            final HttpResponse response = futures.get(i).get(RESULT_TIMEOUT_SEC, TimeUnit.SECONDS);
+            Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+            Assert.assertEquals(expected.get(i), EntityUtils.toString(response.getEntity()));
+        }
+
+        final PoolStats stats = this.upstream.getConnPool().getTotalStats();
+        Assert.assertTrue(stats.getLeased() + stats.getAvailable() <= UPSTREAM_CONNECTIONS);
+        Assert.assertTrue(stats.getAvailable() > 0);
+    }
+
+    @Test
+    public void testHopByHopHeaders() throws Exception {
+        this.server.registerHandler("*", new BasicAsyncRequestHandler(new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final HttpRequest request,
+                    final HttpResponse response,
+                    final HttpContext context) throws HttpException {
+                response.addHeader("X-Seen-Custom", String.valueOf(request.containsHeader("X-Custom")));
+                response.addHeader("X-Seen-Hop", String.valueOf(request.containsHeader("X-Hop")));
+                response.addHeader("X-Seen-Proxy-Auth", String.valueOf(request.containsHeader("Proxy-Authorization")));
+                response.addHeader("Proxy-Authenticate", "Basic");
+                response.setEntity(new NStringEntity("stuff", ContentType.DEFAULT_TEXT));
+            }
+
+        }));
+        this.server.start();
+        final HttpHost target = startProxy(getTarget(this.server));
+
+        final HttpRequest request = new BasicHttpRequest("GET", "/stuff");
+        request.addHeader("X-Custom", "1");
+        request.addHeader("X-Hop", "1");
+        request.addHeader("Connection", "X-Hop");
+        request.addHeader("Proxy-Authorization", "Basic whatever");
+        final HttpResponse response = this.client.execute(target, request).get(RESULT_TIMEOUT_SEC, TimeUnit.SECONDS);
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("true", response.getFirstHeader("X-Seen-Custom").getValue());
+        Assert.assertEquals("false", response.getFirstHeader("X-Seen-Hop").getValue());
+        Assert.assertEquals("false", response.getFirstHeader("X-Seen-Proxy-Auth").getValue());
+        Assert.assertNull(response.getFirstHeader("Proxy-Authenticate"));
+        Assert.assertEquals("stuff", EntityUtils.toString(response.getEntity()));
+    }
+
+    @Test
+    public void testBackendUnavailable() throws Exception {
+        this.server.registerHandler("*", new BasicAsyncRequestHandler(new SimpleRequestHandler()));
+        this.server.start();
+        final HttpHost backend = getTarget(this.server);
+        this.server.shutdown();
+        this.server = null;
+        final HttpHost target = startProxy(backend);
+
+        for (int i = 0; i < 3; i++) {
+            final BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", "/stuffx1");
+            request.setEntity(new NStringEntity(createExpectedString("stuff", 1000), ContentType.DEFAULT_TEXT));
+            final HttpResponse response = this.client.execute(target, request).get(RESULT_TIMEOUT_SEC, TimeUnit.SECONDS);
+            Assert.assertEquals(HttpStatus.SC_BAD_GATEWAY, response.getStatusLine().getStatusCode());
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+
+}
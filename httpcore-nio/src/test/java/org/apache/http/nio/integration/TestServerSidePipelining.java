@@ -42,7 +42,10 @@
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.MessageConstraints;
 import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.DefaultNHttpServerConnectionFactory;
 import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.nio.protocol.BasicAsyncRequestHandler;
@@ -99,6 +102,18 @@ public void handle(
                 response.setHeader(HTTP.CONN_DIRECTIVE, HTTP.CONN_CLOSE);
             }
 
+        }));
+        this.server.registerHandler("/header", new BasicAsyncRequestHandler(new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final HttpRequest request,
+                    final HttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                final String content = request.getFirstHeader("X-Id").getValue();
+                response.setEntity(new NStringEntity(content, ContentType.DEFAULT_TEXT));
+            }
+
         }));
         this.server.registerHandler("/echo", new BasicAsyncRequestHandler(new HttpRequestHandler() {
 
@@ -347,4 +362,69 @@ public void testPostRequestPipeliningExpectContinue() throws Exception {
         }
     }
 
+    @Test
+    public void testPipeliningWithBufferRecycling() throws Exception {
+        this.server.setConnectionFactory(new DefaultNHttpServerConnectionFactory(ConnectionConfig.custom()
+                .setMessageConstraints(MessageConstraints.custom().setBufferRecycling(true).build())
+                .build()));
+        this.server.start();
+
+        final ListenerEndpoint endpoint = this.server.getListenerEndpoint();
+        endpoint.waitFor();
+
+        final InetSocketAddress address = (InetSocketAddress) endpoint.getAddress();
+        final Socket socket = new Socket("localhost", address.getPort());
+        try {
+            final OutputStream outStream = socket.getOutputStream();
+            final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outStream, "US-ASCII"));
+            writer.write("GET /header HTTP/1.1\r\n");
+            writer.write("Host: localhost\r\n");
+            writer.write("X-Id: first\r\n");
+            writer.write("\r\n");
+            writer.write("GET /header HTTP/1.1\r\n");
+            writer.write("X-Id: 2nd\r\n");
+            writer.write("Host: localhost\r\n");
+            writer.write("\r\n");
+            writer.write("GET /header HTTP/1.1\r\n");
+            writer.write("Host: localhost\r\n");
+            writer.write("Connection: close\r\n");
+            writer.write("X-Id: third\r\n");
+            writer.write("\r\n");
+            writer.flush();
+            final InputStream inStream = socket.getInputStream();
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(inStream, "US-ASCII"));
+            final StringBuilder buf = new StringBuilder();
+            final char[] tmp = new char[1024];
+            int l;
+            while ((l = reader.read(tmp)) != -1) {
+                buf.append(tmp, 0, l);
+            }
+            reader.close();
+            writer.close();
+            final String expected = "HTTP/1.1 200 OK\r\n" +
+                    "Server: TEST-SERVER/1.1\r\n" +
+                    "Content-Length: 5\r\n" +
+                    "Content-Type: text/plain; charset=ISO-8859-1\r\n" +
+                    "\r\n" +
+                    "first" +
+                    "HTTP/1.1 200 OK\r\n" +
+                    "Server: TEST-SERVER/1.1\r\n" +
+                    "Content-Length: 3\r\n" +
+                    "Content-Type: text/plain; charset=ISO-8859-1\r\n" +
+                    "\r\n" +
+                    "2nd" +
+                    "HTTP/1.1 200 OK\r\n" +
+                    "Server: TEST-SERVER/1.1\r\n" +
+                    "Content-Length: 5\r\n" +
+                    "Content-Type: text/plain; charset=ISO-8859-1\r\n" +
+                    "Connection: close\r\n" +
+                    "\r\n" +
+                    "third";
+            Assert.assertEquals(expected, buf.toString());
+
+        } finally {
+            socket.close();
+        }
+    }
+
 }
@@ -47,12 +47,16 @@
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.config.ConnectionConfig;
+import org.apache.http.impl.nio.DefaultNHttpClientConnectionFactory;
+import org.apache.http.impl.nio.SSLNHttpClientConnectionFactory;
+import org.apache.http.impl.nio.SSLNHttpServerConnectionFactory;
 import org.apache.http.impl.nio.pool.BasicNIOConnFactory;
 import org.apache.http.message.BasicHttpRequest;
 import org.apache.http.nio.NHttpConnection;
 import org.apache.http.nio.protocol.BasicAsyncRequestHandler;
 import org.apache.http.nio.reactor.IOSession;
 import org.apache.http.nio.reactor.ListenerEndpoint;
+import org.apache.http.nio.reactor.ssl.SSLHandshakeMetrics;
 import org.apache.http.nio.reactor.ssl.SSLSetupHandler;
 import org.apache.http.nio.testserver.ClientConnectionFactory;
 import org.apache.http.nio.testserver.HttpClientNio;
@@ -427,4 +431,46 @@ public void handle(
         Assert.assertEquals(200, response.getStatusLine().getStatusCode());
     }
 
+    @Test
+    public void testTLSSessionResumption() throws Exception {
+        final SSLHandshakeMetrics serverMetrics = new SSLHandshakeMetrics();
+        server = new HttpServerNio();
+        server.setConnectionFactory(new SSLNHttpServerConnectionFactory(
+                createServerSSLContext(), null, null, null, null, null, null, null, serverMetrics));
+        server.setTimeout(5000);
+        server.registerHandler("*", new BasicAsyncRequestHandler(new SimpleRequestHandler()));
+        server.start();
+
+        final SSLHandshakeMetrics clientMetrics = new SSLHandshakeMetrics();
+        final SSLNHttpClientConnectionFactory sslConnFactory = new SSLNHttpClientConnectionFactory(
+                createClientSSLContext(), null, null, null, null, null, null, null, clientMetrics);
+        this.client = new HttpClientNio(new BasicNIOConnFactory(
+                new DefaultNHttpClientConnectionFactory(ConnectionConfig.DEFAULT), sslConnFactory));
+        client.setTimeout(5000);
+        client.start();
+
+        final ListenerEndpoint endpoint = server.getListenerEndpoint();
+        endpoint.waitFor();
+
+        final InetSocketAddress address = (InetSocketAddress) endpoint.getAddress();
+        final HttpHost target = new HttpHost("localhost", address.getPort(), "https");
+
+        for (int i = 0; i < 2; i++) {
+            final BasicHttpRequest request = new BasicHttpRequest("GET", "BLAHx200");
+            request.addHeader("Connection", "close");
+            final Future<HttpResponse> future = client.execute(target, request);
+            final HttpResponse response = future.get(RESULT_TIMEOUT_SEC, TimeUnit.SECONDS);
+            Assert.assertThat(response, CoreMatchers.notNullValue());
+            Assert.assertThat(response.getStatusLine().getStatusCode(), CoreMatchers.equalTo(200));
+        }
+
+        Assert.assertSame(clientMetrics, sslConnFactory.getHandshakeMetrics());
+        Assert.assertEquals(2, clientMetrics.getHandshakeCount());
+        Assert.assertEquals(1, clientMetrics.getResumedCount());
+        Assert.assertEquals(0.5d, clientMetrics.getResumptionRate(), 0.001d);
+        Assert.assertEquals(0, clientMetrics.getFailedCount());
+        Assert.assertEquals(2, serverMetrics.getHandshakeCount());
+        Assert.assertEquals(1, serverMetrics.getResumedCount());
+    }
+
 }
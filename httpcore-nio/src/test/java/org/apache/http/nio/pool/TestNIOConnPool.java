@@ -40,11 +40,14 @@
 
 import org.apache.http.concurrent.BasicFuture;
 import org.apache.http.nio.reactor.ConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorAffinity;
 import org.apache.http.nio.reactor.IOReactorStatus;
 import org.apache.http.nio.reactor.IOSession;
 import org.apache.http.nio.reactor.SessionRequest;
 import org.apache.http.nio.reactor.SessionRequestCallback;
 import org.apache.http.pool.PoolEntry;
+import org.apache.http.pool.PoolMetrics;
+import org.apache.http.pool.PoolReusePolicy;
 import org.apache.http.pool.PoolStats;
 import org.junit.Assert;
 import org.junit.Test;
@@ -970,6 +973,288 @@ public void testLeaseRequestTimeout() throws Exception {
         Assert.assertTrue(future3.isDone());
     }
 
+    @Test
+    public void testMetrics() throws Exception {
+        final IOSession ioSession1 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest1 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest1.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest1.getSession()).thenReturn(ioSession1);
+
+        final ConnectingIOReactor ioReactor = Mockito.mock(ConnectingIOReactor.class);
+        Mockito.when(ioReactor.connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class))).
+                thenReturn(sessionRequest1);
+
+        final LocalSessionPool pool = new LocalSessionPool(ioReactor, 1, 1);
+
+        final Future<LocalPoolEntry> future1 = pool.lease("somehost", null, 0, TimeUnit.MILLISECONDS, null);
+        final Future<LocalPoolEntry> future2 = pool.lease("somehost", null, 10, TimeUnit.MILLISECONDS, null);
+        pool.requestCompleted(sessionRequest1);
+        final LocalPoolEntry entry1 = future1.get();
+        Assert.assertNotNull(entry1);
+
+        Thread.sleep(50);
+        pool.validatePendingRequests();
+        Assert.assertTrue(future2.isDone());
+
+        pool.release(entry1, true);
+        final Future<LocalPoolEntry> future3 = pool.lease("somehost", null);
+        Assert.assertSame(entry1, future3.get());
+
+        final PoolMetrics metrics = pool.getRouteMetrics("somehost");
+        Assert.assertEquals(1, metrics.getCreated());
+        Assert.assertEquals(1, metrics.getReused());
+        Assert.assertEquals(2, metrics.getLeases());
+        Assert.assertEquals(1, metrics.getLeaseFailures());
+        Assert.assertEquals(1, metrics.getSaturations());
+        Assert.assertTrue(metrics.getTimeAtCapacity() >= 50);
+
+        final PoolMetrics totals = pool.getTotalMetrics();
+        Assert.assertEquals(1, totals.getCreated());
+        Assert.assertEquals(2, totals.getLeases());
+        Assert.assertTrue(totals.getTimeAtCapacity() >= 50);
+
+        pool.resetMetrics();
+        Assert.assertEquals(0, pool.getTotalMetrics().getLeases());
+        Assert.assertEquals(0, pool.getRouteMetrics("somehost").getCreated());
+    }
+
+    @Test
+    public void testIdleRouteMetricsRetainedUpToLimit() throws Exception {
+        final IOSession ioSession1 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest1 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest1.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest1.getSession()).thenReturn(ioSession1);
+        final IOSession ioSession2 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest2 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest2.getAttachment()).thenReturn("otherhost");
+        Mockito.when(sessionRequest2.getSession()).thenReturn(ioSession2);
+
+        final ConnectingIOReactor ioReactor = Mockito.mock(ConnectingIOReactor.class);
+        Mockito.when(ioReactor.connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class))).
+                thenReturn(sessionRequest1, sessionRequest2);
+
+        final LocalSessionPool pool = new LocalSessionPool(ioReactor, 2, 10);
+        pool.setMaxIdleRouteMetrics(1);
+        final Future<LocalPoolEntry> future1 = pool.lease("somehost", null);
+        pool.requestCompleted(sessionRequest1);
+        pool.release(future1.get(), true);
+        Assert.assertEquals(1, pool.getRouteMetrics("somehost").getCreated());
+        Assert.assertEquals(0, pool.getRouteMetrics("otherhost").getCreated());
+
+        pool.closeIdle(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(pool.getRoutes().isEmpty());
+        Assert.assertEquals(1, pool.getRouteMetrics("somehost").getCreated());
+
+        // metrics of the route idle the longest are dropped beyond the limit
+        final Future<LocalPoolEntry> future2 = pool.lease("otherhost", null);
+        pool.requestCompleted(sessionRequest2);
+        pool.release(future2.get(), true);
+        pool.closeIdle(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(pool.getRoutes().isEmpty());
+        Assert.assertEquals(0, pool.getRouteMetrics("somehost").getCreated());
+        Assert.assertEquals(1, pool.getRouteMetrics("otherhost").getCreated());
+        Assert.assertEquals(2, pool.getTotalMetrics().getCreated());
+
+        // maintenance visits routes with a pool or a minimum, not routes with metrics only
+        pool.maintain();
+        Assert.assertTrue(pool.getRoutes().isEmpty());
+        Mockito.verify(ioReactor, Mockito.times(2)).connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class));
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+        final IOSession ioSession1 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest1 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest1.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest1.getSession()).thenReturn(ioSession1);
+        final IOSession ioSession2 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest2 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest2.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest2.getSession()).thenReturn(ioSession2);
+
+        final ConnectingIOReactor ioReactor = Mockito.mock(ConnectingIOReactor.class);
+        Mockito.when(ioReactor.getStatus()).thenReturn(IOReactorStatus.ACTIVE);
+        Mockito.when(ioReactor.connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class))).
+                thenReturn(sessionRequest1, sessionRequest2);
+
+        final LocalSessionPool pool = new LocalSessionPool(ioReactor, 2, 10);
+        Assert.assertEquals(2, pool.prewarm("somehost", 5));
+        Assert.assertEquals(0, pool.prewarm("somehost", 1));
+        Assert.assertEquals(2, pool.getTotalStats().getPending());
+
+        pool.requestCompleted(sessionRequest1);
+        pool.requestCompleted(sessionRequest2);
+
+        final PoolStats stats = pool.getStats("somehost");
+        Assert.assertEquals(2, stats.getAvailable());
+        Assert.assertEquals(0, stats.getLeased());
+        Assert.assertEquals(0, stats.getPending());
+
+        final Future<LocalPoolEntry> future = pool.lease("somehost", null);
+        Assert.assertTrue(future.isDone());
+        Assert.assertNotNull(future.get());
+        Mockito.verify(ioReactor, Mockito.times(2)).connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class));
+        Assert.assertEquals(1, pool.getStats("somehost").getLeased());
+    }
+
+    @Test
+    public void testMaintainMinIdle() throws Exception {
+        final IOSession ioSession1 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest1 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest1.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest1.getSession()).thenReturn(ioSession1);
+
+        final ConnectingIOReactor ioReactor = Mockito.mock(ConnectingIOReactor.class);
+        Mockito.when(ioReactor.getStatus()).thenReturn(IOReactorStatus.ACTIVE);
+        Mockito.when(ioReactor.connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class))).
+                thenReturn(sessionRequest1);
+
+        final LocalSessionPool pool = new LocalSessionPool(ioReactor, 2, 10);
+        pool.setDefaultMinIdlePerRoute(1);
+        pool.setMinIdlePerRoute("somehost", 1);
+
+        pool.maintain();
+        // the connect request in progress counts towards the minimum
+        pool.maintain();
+        Mockito.verify(ioReactor, Mockito.times(1)).connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class));
+
+        pool.requestCompleted(sessionRequest1);
+        final PoolStats stats = pool.getStats("somehost");
+        Assert.assertEquals(1, stats.getAvailable());
+        Assert.assertEquals(1, pool.getRouteMetrics("somehost").getCreated());
+    }
+
+    @Test
+    public void testReusePolicy() throws Exception {
+        final IOSession ioSession1 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest1 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest1.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest1.getSession()).thenReturn(ioSession1);
+        final IOSession ioSession2 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest2 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest2.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest2.getSession()).thenReturn(ioSession2);
+
+        final ConnectingIOReactor ioReactor = Mockito.mock(ConnectingIOReactor.class);
+        Mockito.when(ioReactor.getStatus()).thenReturn(IOReactorStatus.ACTIVE);
+        Mockito.when(ioReactor.connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class))).
+                thenReturn(sessionRequest1, sessionRequest2);
+
+        final LocalSessionPool pool = new LocalSessionPool(ioReactor, 2, 10);
+        Assert.assertEquals(PoolReusePolicy.LIFO, pool.getReusePolicy());
+        Assert.assertEquals(2, pool.prewarm("somehost", 2));
+        pool.requestCompleted(sessionRequest1);
+        pool.requestCompleted(sessionRequest2);
+
+        final LocalPoolEntry entry1 = pool.lease("somehost", null).get();
+        Assert.assertSame(ioSession2, entry1.getConnection());
+        pool.release(entry1, true);
+
+        pool.setReusePolicy(PoolReusePolicy.FIFO);
+        final LocalPoolEntry entry2 = pool.lease("somehost", null).get();
+        Assert.assertSame(ioSession1, entry2.getConnection());
+    }
+
+    @Test
+    public void testDispatcherAffinity() throws Exception {
+        final Object dispatcher1 = new Object();
+        final Object dispatcher2 = new Object();
+        final IOSession ioSession1 = Mockito.mock(IOSession.class);
+        Mockito.when(ioSession1.getAttribute(IOReactorAffinity.DISPATCHER_KEY)).thenReturn(dispatcher1);
+        final SessionRequest sessionRequest1 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest1.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest1.getSession()).thenReturn(ioSession1);
+        final IOSession ioSession2 = Mockito.mock(IOSession.class);
+        Mockito.when(ioSession2.getAttribute(IOReactorAffinity.DISPATCHER_KEY)).thenReturn(dispatcher2);
+        final SessionRequest sessionRequest2 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest2.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest2.getSession()).thenReturn(ioSession2);
+
+        final ConnectingIOReactor ioReactor = Mockito.mock(ConnectingIOReactor.class);
+        Mockito.when(ioReactor.getStatus()).thenReturn(IOReactorStatus.ACTIVE);
+        Mockito.when(ioReactor.connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class))).
+                thenReturn(sessionRequest1, sessionRequest2);
+
+        final LocalSessionPool pool = new LocalSessionPool(ioReactor, 2, 10);
+        Assert.assertEquals(2, pool.prewarm("somehost", 2));
+        pool.requestCompleted(sessionRequest1);
+        pool.requestCompleted(sessionRequest2);
+
+        final Object previous = IOReactorAffinity.bind(dispatcher1);
+        try {
+            final LocalPoolEntry entry1 = pool.lease("somehost", null).get();
+            Assert.assertSame(ioSession1, entry1.getConnection());
+            pool.release(entry1, true);
+        } finally {
+            IOReactorAffinity.bind(previous);
+        }
+        Assert.assertNull(IOReactorAffinity.current());
+
+        final LocalPoolEntry entry2 = pool.lease("somehost", null).get();
+        Assert.assertSame(ioSession1, entry2.getConnection());
+        pool.release(entry2, true);
+
+        IOReactorAffinity.bind(dispatcher2);
+        try {
+            final LocalPoolEntry entry3 = pool.lease("somehost", null).get();
+            Assert.assertSame(ioSession2, entry3.getConnection());
+        } finally {
+            IOReactorAffinity.bind(null);
+        }
+    }
+
+    @Test
+    public void testEvict() throws Exception {
+        final IOSession ioSession1 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest1 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest1.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest1.getSession()).thenReturn(ioSession1);
+        final IOSession ioSession2 = Mockito.mock(IOSession.class);
+        final SessionRequest sessionRequest2 = Mockito.mock(SessionRequest.class);
+        Mockito.when(sessionRequest2.getAttachment()).thenReturn("somehost");
+        Mockito.when(sessionRequest2.getSession()).thenReturn(ioSession2);
+
+        final ConnectingIOReactor ioReactor = Mockito.mock(ConnectingIOReactor.class);
+        Mockito.when(ioReactor.getStatus()).thenReturn(IOReactorStatus.ACTIVE);
+        Mockito.when(ioReactor.connect(
+                Matchers.any(SocketAddress.class), Matchers.any(SocketAddress.class),
+                Matchers.any(), Matchers.any(SessionRequestCallback.class))).
+                thenReturn(sessionRequest1, sessionRequest2);
+
+        final LocalSessionPool pool = new LocalSessionPool(ioReactor, 2, 10);
+        Assert.assertEquals(1, pool.prewarm("somehost", 1));
+        pool.requestCompleted(sessionRequest1);
+
+        Thread.sleep(200);
+
+        Assert.assertEquals(1, pool.prewarm("somehost", 1));
+        pool.requestCompleted(sessionRequest2);
+
+        pool.evict(100, TimeUnit.MILLISECONDS);
+        Mockito.verify(ioSession1).close();
+        Mockito.verify(ioSession2, Mockito.never()).close();
+        Assert.assertEquals(1, pool.getTotalStats().getAvailable());
+        Assert.assertEquals(1, pool.getStats("somehost").getAvailable());
+    }
+
     @Test(expected=IllegalArgumentException.class)
     public void testCloseIdleInvalid() throws Exception {
         final ConnectingIOReactor ioReactor = Mockito.mock(ConnectingIOReactor.class);
@@ -0,0 +1,169 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.protocol;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.nio.reactor.ListeningIOReactor;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestAdmissionController {
+
+    @Test
+    public void testInvalidConfiguration() throws Exception {
+        final ListeningIOReactor ioReactor = Mockito.mock(ListeningIOReactor.class);
+        try {
+            AdmissionController.custom().setTargetDelay(0).build();
+            Assert.fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException ex) {
+        }
+        try {
+            AdmissionController.custom().setListener(ioReactor, 10, 10).build();
+            Assert.fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testMaxInFlightPerDispatcher() throws Exception {
+        final AdmissionController admissionController = AdmissionController.custom()
+                .setMaxInFlightPerDispatcher(2)
+                .build();
+        final HttpContext context1 = new BasicHttpContext();
+        final HttpContext context2 = new BasicHttpContext();
+        final HttpContext context3 = new BasicHttpContext();
+        Assert.assertTrue(admissionController.admit(context1));
+        Assert.assertTrue(admissionController.admit(context2));
+        Assert.assertFalse(admissionController.admit(context3));
+        Assert.assertEquals(2, admissionController.getInFlight());
+        Assert.assertEquals(1, admissionController.getShedCount());
+        Assert.assertTrue(admissionController.shed(context3));
+
+        admissionController.release(context1);
+        admissionController.release(context1);
+        admissionController.release(context3);
+        Assert.assertEquals(1, admissionController.getInFlight());
+        Assert.assertTrue(admissionController.admit(context3));
+        Assert.assertEquals(2, admissionController.getInFlight());
+    }
+
+    @Test
+    public void testShedOnStandingQueue() throws Exception {
+        final AdmissionController admissionController = AdmissionController.custom()
+                .setTargetDelay(1)
+                .setInterval(20)
+                .build();
+        Assert.assertFalse(admissionController.isOverloaded());
+
+        // every exchange waits longer than twice the target delay for a whole interval
+        final long deadline = System.currentTimeMillis() + 200;
+        boolean shed = false;
+        while (!shed && System.currentTimeMillis() < deadline) {
+            final HttpContext context = new BasicHttpContext();
+            Assert.assertTrue(admissionController.admit(context));
+            Thread.sleep(5);
+            shed = admissionController.shed(context);
+            admissionController.release(context);
+        }
+        Assert.assertTrue(shed);
+        Assert.assertTrue(admissionController.isOverloaded());
+        Assert.assertTrue(admissionController.getShedCount() > 0);
+
+        // exchanges below the target delay bring the controller out of overload
+        final long deadline2 = System.currentTimeMillis() + 200;
+        while (admissionController.isOverloaded() && System.currentTimeMillis() < deadline2) {
+            final HttpContext context = new BasicHttpContext();
+            Assert.assertTrue(admissionController.admit(context));
+            Assert.assertFalse(admissionController.shed(context));
+            admissionController.release(context);
+            Thread.sleep(1);
+        }
+        Assert.assertFalse(admissionController.isOverloaded());
+        Assert.assertEquals(0, admissionController.getInFlight());
+    }
+
+    @Test
+    public void testQueueingDelayExcludesRequestContent() throws Exception {
+        final AdmissionController admissionController = AdmissionController.custom()
+                .setTargetDelay(1)
+                .setInterval(20)
+                .build();
+        // receiving request content takes longer than twice the target delay
+        final long deadline = System.currentTimeMillis() + 100;
+        while (System.currentTimeMillis() < deadline) {
+            final HttpContext context = new BasicHttpContext();
+            Assert.assertTrue(admissionController.admit(context));
+            Thread.sleep(5);
+            admissionController.requestCompleted(context);
+            Assert.assertFalse(admissionController.shed(context));
+            admissionController.release(context);
+        }
+        Assert.assertFalse(admissionController.isOverloaded());
+        Assert.assertEquals(0, admissionController.getShedCount());
+    }
+
+    @Test
+    public void testListenerPauseResume() throws Exception {
+        final ListeningIOReactor ioReactor = Mockito.mock(ListeningIOReactor.class);
+        final AdmissionController admissionController = AdmissionController.custom()
+                .setListener(ioReactor, 3, 1)
+                .build();
+        final HttpContext context1 = new BasicHttpContext();
+        final HttpContext context2 = new BasicHttpContext();
+        final HttpContext context3 = new BasicHttpContext();
+        admissionController.admit(context1);
+        admissionController.admit(context2);
+        Mockito.verify(ioReactor, Mockito.never()).pause();
+        admissionController.admit(context3);
+        Mockito.verify(ioReactor).pause();
+        Assert.assertTrue(admissionController.isListenerPaused());
+
+        admissionController.release(context3);
+        Mockito.verify(ioReactor, Mockito.never()).resume();
+        Assert.assertTrue(admissionController.isListenerPaused());
+        admissionController.release(context2);
+        Mockito.verify(ioReactor).resume();
+        Assert.assertFalse(admissionController.isListenerPaused());
+
+        admissionController.release(context1);
+        Mockito.verify(ioReactor, Mockito.times(1)).pause();
+        Mockito.verify(ioReactor, Mockito.times(1)).resume();
+    }
+
+    @Test
+    public void testShedResponse() throws Exception {
+        final AdmissionController admissionController = AdmissionController.custom().build();
+        final HttpResponse response = admissionController.generateShedResponse().generateResponse();
+        Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, response.getStatusLine().getStatusCode());
+        Assert.assertNotNull(response.getEntity());
+    }
+
+}
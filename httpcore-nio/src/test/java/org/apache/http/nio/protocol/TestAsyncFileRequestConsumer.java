@@ -0,0 +1,164 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Consts;
+import org.apache.http.HttpRequest;
+import org.apache.http.ReadableByteChannelMock;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.util.ContentDecoderMock;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class TestAsyncFileRequestConsumer {
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.executor.shutdownNow();
+    }
+
+    private static String[] createChunks(final int count) {
+        final String[] chunks = new String[count];
+        for (int i = 0; i < count; i++) {
+            final StringBuilder buffer = new StringBuilder();
+            for (int n = 0; n < 100; n++) {
+                buffer.append((char) ('a' + (i % 26)));
+            }
+            chunks[i] = buffer.toString();
+        }
+        return chunks;
+    }
+
+    @Test
+    public void testConsumeContent() throws Exception {
+        final File file = this.tempFolder.newFile("content.bin");
+        final AsyncFileRequestConsumer consumer = new AsyncFileRequestConsumer(
+                file, this.executor, 2, 128, null, null);
+        final BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", "/");
+        request.setEntity(new NStringEntity("stuff"));
+        consumer.requestReceived(request);
+        Assert.assertSame(request, consumer.getRequest());
+
+        final String[] chunks = createChunks(50);
+        final ContentDecoderMock decoder = new ContentDecoderMock(
+                new ReadableByteChannelMock(chunks, Consts.ASCII));
+        final IOControl ioControl = Mockito.mock(IOControl.class);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!decoder.isCompleted()) {
+            Assert.assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            consumer.consumeContent(decoder, ioControl);
+        }
+        consumer.requestCompleted(new BasicHttpContext());
+
+        final Future<File> future = consumer.getResult();
+        Assert.assertNotNull(future);
+        Assert.assertSame(file, future.get(5, TimeUnit.SECONDS));
+        final StringBuilder expected = new StringBuilder();
+        for (final String chunk: chunks) {
+            expected.append(chunk);
+        }
+        Assert.assertEquals(expected.toString(), EntityUtils.toString(new FileEntity(file), Consts.ASCII));
+    }
+
+    @Test
+    public void testRequestWithoutContent() throws Exception {
+        final File file = new File(this.tempFolder.getRoot(), "empty.bin");
+        Assert.assertFalse(file.exists());
+        final AsyncFileRequestConsumer consumer = new AsyncFileRequestConsumer(file, this.executor, null);
+        final HttpRequest request = new BasicHttpRequest("GET", "/");
+        consumer.requestReceived(request);
+        consumer.requestCompleted(new BasicHttpContext());
+
+        final Future<File> future = consumer.getResult();
+        Assert.assertSame(file, future.get(5, TimeUnit.SECONDS));
+        Assert.assertTrue(file.exists());
+        Assert.assertEquals(0, file.length());
+    }
+
+    @Test
+    public void testConsumerFailed() throws Exception {
+        final File file = this.tempFolder.newFile("content.bin");
+        final AsyncFileRequestConsumer consumer = new AsyncFileRequestConsumer(file, this.executor, null);
+        final BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", "/");
+        request.setEntity(new NStringEntity("stuff"));
+        consumer.requestReceived(request);
+        final ContentDecoderMock decoder = new ContentDecoderMock(
+                new ReadableByteChannelMock(new String[] {"stuff"}, Consts.ASCII));
+        consumer.consumeContent(decoder, Mockito.mock(IOControl.class));
+        consumer.failed(new IOException("Oppsie"));
+
+        Assert.assertNull(consumer.getResult());
+        Assert.assertTrue(consumer.isDone());
+    }
+
+    @Test
+    public void testExecutorRejection() throws Exception {
+        this.executor.shutdown();
+        final File file = this.tempFolder.newFile("content.bin");
+        final AsyncFileRequestConsumer consumer = new AsyncFileRequestConsumer(file, this.executor, null);
+        final BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", "/");
+        request.setEntity(new NStringEntity("stuff"));
+        consumer.requestReceived(request);
+        final ContentDecoderMock decoder = new ContentDecoderMock(
+                new ReadableByteChannelMock(new String[] {"stuff"}, Consts.ASCII));
+        try {
+            consumer.consumeContent(decoder, Mockito.mock(IOControl.class));
+            Assert.fail("IOException should have been thrown");
+        } catch (final IOException expected) {
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.MethodNotSupportedException;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+public class TestExecutorAsyncRequestHandler {
+
+    static class QueueingExecutor implements Executor {
+
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        @Override
+        public void execute(final Runnable command) {
+            this.tasks.add(command);
+        }
+
+        void runAll() {
+            for (final Runnable task: this.tasks) {
+                task.run();
+            }
+            this.tasks.clear();
+        }
+
+    }
+
+    private HttpRequestHandler requestHandler;
+    private QueueingExecutor executor;
+    private ExecutorAsyncRequestHandler asyncRequestHandler;
+    private HttpContext context;
+    private HttpRequest request;
+    private HttpResponse response;
+
+    @Before
+    public void setUp() throws Exception {
+        this.requestHandler = Mockito.mock(HttpRequestHandler.class);
+        this.executor = new QueueingExecutor();
+        this.asyncRequestHandler = new ExecutorAsyncRequestHandler(this.requestHandler, this.executor, 2);
+        this.context = new BasicHttpContext();
+        this.request = new BasicHttpRequest("GET", "/");
+        this.response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+    }
+
+    private HttpAsyncExchange createExchange() {
+        final HttpAsyncExchange httpexchange = Mockito.mock(HttpAsyncExchange.class);
+        Mockito.when(httpexchange.getRequest()).thenReturn(this.request);
+        Mockito.when(httpexchange.getResponse()).thenReturn(this.response);
+        return httpexchange;
+    }
+
+    private static HttpResponse submittedResponse(final HttpAsyncExchange httpexchange) {
+        final ArgumentCaptor<HttpAsyncResponseProducer> argCaptor = ArgumentCaptor.forClass(
+                HttpAsyncResponseProducer.class);
+        Mockito.verify(httpexchange).submitResponse(argCaptor.capture());
+        return argCaptor.getValue().generateResponse();
+    }
+
+    @Test
+    public void testInvalidConstruction() throws Exception {
+        try {
+            new ExecutorAsyncRequestHandler(null, this.executor, 1);
+            Assert.fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException ex) {
+        }
+        try {
+            new ExecutorAsyncRequestHandler(this.requestHandler, null, 1);
+            Assert.fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException ex) {
+        }
+        try {
+            new ExecutorAsyncRequestHandler(this.requestHandler, this.executor, 0);
+            Assert.fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException ex) {
+        }
+    }
+
+    @Test
+    public void testHandleDispatchedToExecutor() throws Exception {
+        final HttpAsyncExchange httpexchange = createExchange();
+        this.asyncRequestHandler.handle(this.request, httpexchange, this.context);
+
+        Mockito.verify(this.requestHandler, Mockito.never()).handle(
+                Matchers.any(HttpRequest.class), Matchers.any(HttpResponse.class),
+                Matchers.any(HttpContext.class));
+        Mockito.verify(httpexchange, Mockito.never()).submitResponse();
+        Assert.assertEquals(1, this.asyncRequestHandler.getQueueDepth());
+
+        this.executor.runAll();
+
+        Mockito.verify(this.requestHandler).handle(this.request, this.response, this.context);
+        Mockito.verify(httpexchange).submitResponse();
+        Assert.assertEquals(0, this.asyncRequestHandler.getQueueDepth());
+        Assert.assertEquals(1, this.asyncRequestHandler.getExecutedCount());
+        Assert.assertEquals(0, this.asyncRequestHandler.getRejectedCount());
+    }
+
+    @Test
+    public void testQueueFullRejected() throws Exception {
+        final HttpAsyncExchange httpexchange1 = createExchange();
+        final HttpAsyncExchange httpexchange2 = createExchange();
+        final HttpAsyncExchange httpexchange3 = createExchange();
+        this.asyncRequestHandler.handle(this.request, httpexchange1, this.context);
+        this.asyncRequestHandler.handle(this.request, httpexchange2, this.context);
+        this.asyncRequestHandler.handle(this.request, httpexchange3, this.context);
+
+        Assert.assertEquals(2, this.asyncRequestHandler.getQueueDepth());
+        Assert.assertEquals(1, this.asyncRequestHandler.getRejectedCount());
+        final HttpResponse rejected = submittedResponse(httpexchange3);
+        Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, rejected.getStatusLine().getStatusCode());
+
+        this.executor.runAll();
+
+        Mockito.verify(httpexchange1).submitResponse();
+        Mockito.verify(httpexchange2).submitResponse();
+        Mockito.verify(httpexchange3, Mockito.never()).submitResponse();
+        Assert.assertEquals(0, this.asyncRequestHandler.getQueueDepth());
+        Assert.assertEquals(2, this.asyncRequestHandler.getExecutedCount());
+    }
+
+    @Test
+    public void testExecutorRejected() throws Exception {
+        final Executor executor = Mockito.mock(Executor.class);
+        Mockito.doThrow(new RejectedExecutionException()).when(executor).execute(
+                Matchers.any(Runnable.class));
+        final ExecutorAsyncRequestHandler handler = new ExecutorAsyncRequestHandler(
+                this.requestHandler, executor, 2);
+        final HttpAsyncExchange httpexchange = createExchange();
+        handler.handle(this.request, httpexchange, this.context);
+
+        final HttpResponse rejected = submittedResponse(httpexchange);
+        Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, rejected.getStatusLine().getStatusCode());
+        Assert.assertEquals(0, handler.getQueueDepth());
+        Assert.assertEquals(1, handler.getRejectedCount());
+    }
+
+    @Test
+    public void testHandlerFailure() throws Exception {
+        Mockito.doThrow(new MethodNotSupportedException("Oppsie")).when(this.requestHandler).handle(
+                this.request, this.response, this.context);
+        final HttpAsyncExchange httpexchange = createExchange();
+        this.asyncRequestHandler.handle(this.request, httpexchange, this.context);
+        this.executor.runAll();
+
+        final HttpResponse failed = submittedResponse(httpexchange);
+        Assert.assertEquals(HttpStatus.SC_NOT_IMPLEMENTED, failed.getStatusLine().getStatusCode());
+        Mockito.verify(httpexchange, Mockito.never()).submitResponse();
+    }
+
+    @Test
+    public void testCancelledBeforeExecution() throws Exception {
+        final HttpAsyncExchange httpexchange = createExchange();
+        this.asyncRequestHandler.handle(this.request, httpexchange, this.context);
+
+        final ArgumentCaptor<Cancellable> argCaptor = ArgumentCaptor.forClass(Cancellable.class);
+        Mockito.verify(httpexchange).setCallback(argCaptor.capture());
+        Assert.assertTrue(argCaptor.getValue().cancel());
+
+        this.executor.runAll();
+
+        Mockito.verify(this.requestHandler, Mockito.never()).handle(
+                Matchers.any(HttpRequest.class), Matchers.any(HttpResponse.class),
+                Matchers.any(HttpContext.class));
+        Mockito.verify(httpexchange, Mockito.never()).submitResponse();
+        Assert.assertEquals(0, this.asyncRequestHandler.getQueueDepth());
+        Assert.assertEquals(0, this.asyncRequestHandler.getExecutedCount());
+    }
+
+}
@@ -331,6 +331,85 @@ public void testBasicRequest() throws Exception {
         Assert.assertNull(entry.getException());
     }
 
+    @Test
+    public void testRequestShedByAdmissionController() throws Exception {
+        final AdmissionController admissionController = AdmissionController.custom()
+                .setMaxInFlightPerDispatcher(1)
+                .build();
+        this.protocolHandler = new HttpAsyncService(
+                this.httpProcessor, this.reuseStrategy, this.responseFactory, this.handlerResolver,
+                null, null, admissionController);
+        final State state = new State();
+        this.connContext.setAttribute(HttpAsyncService.HTTP_EXCHANGE_STATE, state);
+
+        final HttpRequest request = new BasicHttpRequest("GET", "/", HttpVersion.HTTP_1_1);
+        Mockito.when(this.conn.getHttpRequest()).thenReturn(request);
+        Mockito.when(this.requestHandler.processRequest(
+                Matchers.eq(request), Matchers.any(HttpContext.class))).thenReturn(this.requestConsumer);
+        Mockito.when(this.requestConsumer.getResult()).thenReturn(new Object());
+
+        this.protocolHandler.requestReceived(this.conn);
+        this.protocolHandler.requestReceived(this.conn);
+
+        Assert.assertEquals(1, admissionController.getInFlight());
+        Assert.assertEquals(1, admissionController.getShedCount());
+        Assert.assertEquals(2, state.getPipeline().size());
+        final PipelineEntry admitted = state.getPipeline().poll();
+        Assert.assertSame(this.requestHandler, admitted.getHandler());
+
+        this.protocolHandler.responseReady(this.conn);
+
+        Mockito.verify(this.requestHandler, Mockito.never()).handle(
+                Matchers.any(), Matchers.any(HttpAsyncExchange.class), Matchers.any(HttpContext.class));
+        final ArgumentCaptor<HttpResponse> argumentCaptor = ArgumentCaptor.forClass(HttpResponse.class);
+        Mockito.verify(this.conn).submitResponse(argumentCaptor.capture());
+        Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE,
+                argumentCaptor.getValue().getStatusLine().getStatusCode());
+
+        this.protocolHandler.closed(this.conn);
+        Assert.assertEquals(1, admissionController.getInFlight());
+        admissionController.release(admitted.getContext());
+        Assert.assertEquals(0, admissionController.getInFlight());
+    }
+
+    @Test
+    public void testAdmissionReleasedIfRequestConsumerFails() throws Exception {
+        final AdmissionController admissionController = AdmissionController.custom()
+                .setMaxInFlightPerDispatcher(1)
+                .build();
+        this.protocolHandler = new HttpAsyncService(
+                this.httpProcessor, this.reuseStrategy, this.responseFactory, this.handlerResolver,
+                null, null, admissionController);
+        final State state = new State();
+        this.connContext.setAttribute(HttpAsyncService.HTTP_EXCHANGE_STATE, state);
+
+        final HttpRequest request = new BasicHttpRequest("GET", "/", HttpVersion.HTTP_1_1);
+        Mockito.when(this.conn.getHttpRequest()).thenReturn(request);
+        Mockito.when(this.requestHandler.processRequest(
+                Matchers.eq(request), Matchers.any(HttpContext.class))).thenReturn(this.requestConsumer);
+        final HttpException httpex = new HttpException();
+        Mockito.doThrow(httpex).when(this.requestConsumer).requestReceived(request);
+
+        try {
+            this.protocolHandler.requestReceived(this.conn);
+            Assert.fail("HttpException expected");
+        } catch (final HttpException expected) {
+            Assert.assertSame(httpex, expected);
+        }
+        Assert.assertEquals(0, admissionController.getInFlight());
+        Assert.assertNull(state.getIncoming());
+
+        Mockito.when(this.requestHandler.processRequest(
+                Matchers.eq(request), Matchers.any(HttpContext.class))).thenThrow(new IllegalStateException());
+        try {
+            this.protocolHandler.requestReceived(this.conn);
+            Assert.fail("IllegalStateException expected");
+        } catch (final IllegalStateException expected) {
+        }
+        Assert.assertEquals(0, admissionController.getInFlight());
+        Assert.assertEquals(0, admissionController.getShedCount());
+    }
+
     @Test
     public void testRequestPipelineIfResponseInitiated() throws Exception {
         final State state = new State();
@@ -0,0 +1,244 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.nio.protocol;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.impl.nio.codecs.LengthDelimitedEncoder;
+import org.apache.http.impl.nio.reactor.SessionOutputBufferImpl;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.entity.NByteBufferEntity;
+import org.apache.http.nio.entity.NFileRegionEntity;
+import org.apache.http.nio.reactor.SessionOutputBuffer;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.StaticFileCache;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class TestStaticFileAsyncRequestHandler {
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static final Executor SAME_THREAD = new Executor() {
+
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+
+    };
+
+    private File docRoot;
+    private StaticFileCache cache;
+    private StaticFileAsyncRequestHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        this.docRoot = this.tempFolder.getRoot();
+        this.cache = new StaticFileCache(10, 16, 1024, 64, 1024, 60000, null);
+        this.handler = new StaticFileAsyncRequestHandler(this.docRoot, this.cache, SAME_THREAD);
+    }
+
+    private void createFile(final String name, final int len) throws IOException {
+        final FileOutputStream outStream = new FileOutputStream(new File(this.docRoot, name));
+        try {
+            for (int i = 0; i < len; i++) {
+                outStream.write('a' + (i % 26));
+            }
+        } finally {
+            outStream.close();
+        }
+    }
+
+    private HttpResponse execute(final BasicHttpRequest request) throws Exception {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        final HttpAsyncExchange httpexchange = Mockito.mock(HttpAsyncExchange.class);
+        Mockito.when(httpexchange.getResponse()).thenReturn(response);
+        this.handler.handle(request, httpexchange, new BasicHttpContext());
+        Mockito.verify(httpexchange).submitResponse();
+        return response;
+    }
+
+    private String produce(final HttpEntity entity) throws IOException {
+        final HttpAsyncContentProducer producer = (HttpAsyncContentProducer) entity;
+        final File out = this.tempFolder.newFile();
+        final FileOutputStream outStream = new FileOutputStream(out);
+        try {
+            final WritableByteChannel channel = outStream.getChannel();
+            final SessionOutputBuffer outbuf = new SessionOutputBufferImpl(1024, 128);
+            final LengthDelimitedEncoder encoder = new LengthDelimitedEncoder(
+                    channel, outbuf, new HttpTransportMetricsImpl(), entity.getContentLength());
+            while (!encoder.isCompleted()) {
+                producer.produceContent(encoder, null);
+            }
+            outbuf.flush(channel);
+        } finally {
+            outStream.close();
+            producer.close();
+        }
+        final FileChannel inChannel = new FileInputStream(out).getChannel();
+        try {
+            final ByteBuffer dst = ByteBuffer.allocate((int) inChannel.size());
+            inChannel.read(dst);
+            return new String(dst.array(), "US-ASCII");
+        } finally {
+            inChannel.close();
+        }
+    }
+
+    @Test
+    public void testHeapTier() throws Exception {
+        createFile("small.txt", 10);
+        final HttpResponse response = execute(new BasicHttpRequest("GET", "/small.txt"));
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertTrue(response.getEntity() instanceof NByteArrayEntity);
+        Assert.assertEquals("abcdefghij", produce(response.getEntity()));
+    }
+
+    @Test
+    public void testMappedTier() throws Exception {
+        createFile("medium.txt", 40);
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/medium.txt");
+        request.addHeader("Range", "bytes=26-29");
+        final HttpResponse response = execute(request);
+        Assert.assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+        final HttpEntity entity = response.getEntity();
+        Assert.assertTrue(entity instanceof NByteBufferEntity);
+        Assert.assertEquals(4, entity.getContentLength());
+        Assert.assertEquals("abcd", produce(entity));
+        // repeatable
+        Assert.assertEquals("abcd", produce(entity));
+    }
+
+    @Test
+    public void testFileTier() throws Exception {
+        createFile("large.txt", 100);
+        final HttpResponse response = execute(new BasicHttpRequest("GET", "/large.txt"));
+        final HttpEntity entity = response.getEntity();
+        Assert.assertTrue(entity instanceof NFileRegionEntity);
+        Assert.assertEquals(100, entity.getContentLength());
+        final String content = produce(entity);
+        Assert.assertEquals(100, content.length());
+        Assert.assertTrue(content.startsWith("abcdefghijklmnopqrstuvwxyzabcd"));
+
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/large.txt");
+        request.addHeader("Range", "bytes=-4");
+        Assert.assertEquals("stuv", produce(execute(request).getEntity()));
+    }
+
+    @Test
+    public void testTruncatedMappedFile() throws Exception {
+        createFile("medium.txt", 40);
+        Assert.assertEquals(40, execute(new BasicHttpRequest("GET", "/medium.txt")).getEntity().getContentLength());
+
+        final RandomAccessFile file = new RandomAccessFile(new File(this.docRoot, "medium.txt"), "rw");
+        try {
+            file.setLength(30);
+        } finally {
+            file.close();
+        }
+        // the cache would not re-validate the entry for another minute
+        final HttpResponse response = execute(new BasicHttpRequest("GET", "/medium.txt"));
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals(30, response.getEntity().getContentLength());
+        Assert.assertEquals("abcdefghijklmnopqrstuvwxyzabcd", produce(response.getEntity()));
+    }
+
+    @Test
+    public void testServedByExecutor() throws Exception {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        this.handler = new StaticFileAsyncRequestHandler(this.docRoot, this.cache, new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                tasks.add(command);
+            }
+
+        });
+        createFile("small.txt", 10);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        final HttpAsyncExchange httpexchange = Mockito.mock(HttpAsyncExchange.class);
+        Mockito.when(httpexchange.getResponse()).thenReturn(response);
+        this.handler.handle(new BasicHttpRequest("GET", "/small.txt"), httpexchange, new BasicHttpContext());
+        Mockito.verify(httpexchange, Mockito.never()).submitResponse();
+        Assert.assertEquals(0, this.cache.getStats().getMisses());
+
+        Assert.assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        Mockito.verify(httpexchange).submitResponse();
+        Assert.assertEquals("abcdefghij", produce(response.getEntity()));
+    }
+
+    @Test
+    public void testRejectedByExecutor() throws Exception {
+        this.handler = new StaticFileAsyncRequestHandler(this.docRoot, this.cache, new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                throw new RejectedExecutionException();
+            }
+
+        });
+        createFile("small.txt", 10);
+        final HttpResponse response = execute(new BasicHttpRequest("GET", "/small.txt"));
+        Assert.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, response.getStatusLine().getStatusCode());
+        Assert.assertNull(response.getEntity());
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+        final HttpResponse response = execute(new BasicHttpRequest("GET", "/missing.txt"));
+        Assert.assertEquals(HttpStatus.SC_NOT_FOUND, response.getStatusLine().getStatusCode());
+        Assert.assertNull(response.getEntity());
+    }
+
+}
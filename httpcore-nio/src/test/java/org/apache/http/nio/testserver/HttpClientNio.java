@@ -213,7 +213,7 @@ public Future<List<HttpResponse>> executePipelined(
     }
 
     private void execute(final NHttpClientEventHandler clientHandler) throws IOException {
-        final IOEventDispatch ioEventDispatch = new DefaultHttpClientIODispatch(clientHandler,
+        final IOEventDispatch ioEventDispatch = new DefaultHttpClientIODispatch<NHttpClientEventHandler>(clientHandler,
             new DefaultNHttpClientConnectionFactory(ConnectionConfig.DEFAULT)) {
 
             @Override
@@ -239,6 +239,14 @@ public void start() {
         this.thread.start();
     }
 
+    public BasicNIOConnPool getConnPool() {
+        return this.connpool;
+    }
+
+    public HttpAsyncRequester getRequester() {
+        return this.executor;
+    }
+
     public ConnectingIOReactor getIoReactor() {
         return this.ioReactor;
     }
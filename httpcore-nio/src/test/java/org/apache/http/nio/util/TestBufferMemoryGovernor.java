@@ -0,0 +1,257 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.nio.util;
+
+import java.nio.ByteBuffer;
+
+import org.apache.http.impl.nio.DefaultNHttpServerConnection;
+import org.apache.http.nio.reactor.EventMask;
+import org.apache.http.nio.reactor.IOReactorAffinity;
+import org.apache.http.nio.reactor.IOSession;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestBufferMemoryGovernor {
+
+    static class TestBuffer extends ExpandableBuffer {
+
+        TestBuffer(final int bufferSize, final ByteBufferAllocator allocator) {
+            super(bufferSize, allocator);
+        }
+
+        void grow(final int capacity) {
+            ensureCapacity(capacity);
+        }
+
+        void release() {
+            releaseBuffer();
+        }
+
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidWatermarks() throws Exception {
+        new BufferMemoryGovernor(100, 100);
+    }
+
+    @Test
+    public void testAccounting() throws Exception {
+        final BufferMemoryGovernor governor = new BufferMemoryGovernor(10000, 5000);
+        final IOSession session = Mockito.mock(IOSession.class);
+        final BufferMemoryGovernor.Account account = governor.register(session);
+        Assert.assertEquals(1, governor.getAccountCount());
+
+        final TestBuffer buffer1 = new TestBuffer(100, account);
+        final TestBuffer buffer2 = new TestBuffer(200, governor);
+        Assert.assertEquals(100, account.getUsage());
+        Assert.assertEquals(300, governor.getUsage());
+
+        buffer1.grow(1000);
+        Assert.assertEquals(1000, account.getUsage());
+        Assert.assertEquals(1200, governor.getUsage());
+
+        buffer2.release();
+        Assert.assertEquals(0, buffer2.capacity());
+        Assert.assertEquals(1000, governor.getUsage());
+
+        account.close();
+        account.close();
+        Assert.assertTrue(account.isClosed());
+        Assert.assertEquals(0, account.getUsage());
+        Assert.assertEquals(0, governor.getUsage());
+        Assert.assertEquals(0, governor.getAccountCount());
+
+        // closed accounts are no longer charged
+        buffer1.grow(2000);
+        Assert.assertEquals(0, governor.getUsage());
+    }
+
+    @Test
+    public void testUsagePerDispatcher() throws Exception {
+        final Object dispatcher1 = new Object();
+        final Object dispatcher2 = new Object();
+        final IOSession session1 = Mockito.mock(IOSession.class);
+        Mockito.when(session1.getAttribute(IOReactorAffinity.DISPATCHER_KEY)).thenReturn(dispatcher1);
+        final IOSession session2 = Mockito.mock(IOSession.class);
+        Mockito.when(session2.getAttribute(IOReactorAffinity.DISPATCHER_KEY)).thenReturn(dispatcher2);
+
+        final BufferMemoryGovernor governor = new BufferMemoryGovernor(10000, 5000);
+        final BufferMemoryGovernor.Account account1 = governor.register(session1);
+        final BufferMemoryGovernor.Account account2 = governor.register(session2);
+        Assert.assertSame(dispatcher1, account1.getDispatcher());
+        new TestBuffer(100, account1);
+        new TestBuffer(200, account1);
+        new TestBuffer(400, account2);
+
+        Assert.assertEquals(300, governor.getUsage(dispatcher1));
+        Assert.assertEquals(400, governor.getUsage(dispatcher2));
+        Assert.assertEquals(700, governor.getUsage());
+    }
+
+    @Test
+    public void testThrottleBiggestConsumers() throws Exception {
+        final BufferMemoryGovernor governor = new BufferMemoryGovernor(1000, 500);
+        final IOSession session1 = Mockito.mock(IOSession.class);
+        final IOSession session2 = Mockito.mock(IOSession.class);
+        final IOSession session3 = Mockito.mock(IOSession.class);
+        Mockito.when(session2.getEventMask()).thenReturn(EventMask.READ);
+        final BufferMemoryGovernor.Account account1 = governor.register(session1);
+        final BufferMemoryGovernor.Account account2 = governor.register(session2);
+        final BufferMemoryGovernor.Account account3 = governor.register(session3);
+
+        final TestBuffer buffer1 = new TestBuffer(100, account1);
+        final TestBuffer buffer2 = new TestBuffer(400, account2);
+        new TestBuffer(300, account3);
+        Assert.assertFalse(governor.isThrottling());
+
+        // usage 1100, excess over the low watermark 600 is covered by the two biggest accounts
+        buffer1.grow(400);
+        Assert.assertTrue(governor.isThrottling());
+        Assert.assertEquals(2, governor.getThrottledCount());
+        Mockito.verify(session1).clearEvent(EventMask.READ);
+        Mockito.verify(session2).clearEvent(EventMask.READ);
+        Mockito.verify(session3, Mockito.never()).clearEvent(EventMask.READ);
+
+        // accounts growing while throttling get suspended as well
+        final BufferMemoryGovernor.Account account4 = governor.register(Mockito.mock(IOSession.class));
+        new TestBuffer(10, account4);
+        Assert.assertEquals(3, governor.getThrottledCount());
+
+        buffer2.release();
+        Assert.assertTrue(governor.isThrottling());
+        account1.close();
+        Assert.assertFalse(governor.isThrottling());
+        Assert.assertEquals(0, governor.getThrottledCount());
+        Mockito.verify(session1, Mockito.never()).setEvent(EventMask.READ);
+        Mockito.verify(session2).setEvent(EventMask.READ);
+        Mockito.verify(session3, Mockito.never()).setEvent(EventMask.READ);
+    }
+
+    @Test
+    public void testInputResumedOnlyIfSuspendedByGovernor() throws Exception {
+        final BufferMemoryGovernor governor = new BufferMemoryGovernor(1000, 100);
+        final IOSession session1 = Mockito.mock(IOSession.class);
+        final IOSession session2 = Mockito.mock(IOSession.class);
+        final IOSession session3 = Mockito.mock(IOSession.class);
+        Mockito.when(session1.getEventMask()).thenReturn(EventMask.READ);
+        Mockito.when(session2.getEventMask()).thenReturn(EventMask.WRITE);
+        Mockito.when(session3.getEventMask()).thenReturn(EventMask.READ);
+        final BufferMemoryGovernor.Account account1 = governor.register(session1);
+        final BufferMemoryGovernor.Account account2 = governor.register(session2);
+        final BufferMemoryGovernor.Account account3 = governor.register(session3);
+
+        final TestBuffer buffer1 = new TestBuffer(400, account1);
+        final TestBuffer buffer2 = new TestBuffer(400, account2);
+        final TestBuffer buffer3 = new TestBuffer(400, account3);
+        Assert.assertTrue(governor.isThrottling());
+        Assert.assertEquals(3, governor.getThrottledCount());
+
+        // input of the third session gets suspended by its protocol handler as well
+        account3.inputSuspended();
+
+        buffer1.release();
+        buffer2.release();
+        buffer3.release();
+        Assert.assertFalse(governor.isThrottling());
+        Mockito.verify(session1).setEvent(EventMask.READ);
+        Mockito.verify(session2, Mockito.never()).setEvent(EventMask.READ);
+        Mockito.verify(session3, Mockito.never()).setEvent(EventMask.READ);
+    }
+
+    @Test
+    public void testConnectionInputSuspendedWhileThrottled() throws Exception {
+        final BufferMemoryGovernor governor = new BufferMemoryGovernor(10000, 9000);
+        final IOSession session = Mockito.mock(IOSession.class);
+        Mockito.when(session.getEventMask()).thenReturn(EventMask.READ);
+        final DefaultNHttpServerConnection conn = new DefaultNHttpServerConnection(session, 4096, 4096,
+                governor, null, null, null, null, null, null, null);
+        final TestBuffer buffer = new TestBuffer(4096, conn.getBufferAccount());
+        Assert.assertTrue(governor.isThrottling());
+
+        conn.suspendInput();
+        buffer.release();
+        Assert.assertFalse(governor.isThrottling());
+        Mockito.verify(session, Mockito.never()).setEvent(EventMask.READ);
+    }
+
+    @Test
+    public void testClosedSessionsReclaimed() throws Exception {
+        final BufferMemoryGovernor governor = new BufferMemoryGovernor(1000, 500);
+        final IOSession session1 = Mockito.mock(IOSession.class);
+        Mockito.when(session1.isClosed()).thenReturn(true);
+        final IOSession session2 = Mockito.mock(IOSession.class);
+        final BufferMemoryGovernor.Account account1 = governor.register(session1);
+        final BufferMemoryGovernor.Account account2 = governor.register(session2);
+        new TestBuffer(600, account1);
+        new TestBuffer(600, account2);
+
+        Assert.assertTrue(account1.isClosed());
+        Assert.assertEquals(600, governor.getUsage());
+        Assert.assertFalse(governor.isThrottling());
+        Mockito.verify(session2, Mockito.never()).clearEvent(EventMask.READ);
+    }
+
+    @Test
+    public void testSharedBufferReleasedOnShutdown() throws Exception {
+        final BufferMemoryGovernor governor = new BufferMemoryGovernor(10000, 5000);
+        final SharedInputBuffer inbuf = new SharedInputBuffer(1024, governor);
+        final SharedOutputBuffer outbuf = new SharedOutputBuffer(2048, governor);
+        Assert.assertEquals(3072, governor.getUsage());
+        inbuf.shutdown();
+        outbuf.shutdown();
+        Assert.assertEquals(0, governor.getUsage());
+    }
+
+    @Test
+    public void testConnectionAccount() throws Exception {
+        final BufferMemoryGovernor governor = new BufferMemoryGovernor(100000, 50000);
+        final IOSession session = Mockito.mock(IOSession.class);
+        final DefaultNHttpServerConnection conn = new DefaultNHttpServerConnection(session, 4096, 4096,
+                governor, null, null, null, null, null, null, null);
+        Assert.assertNotNull(conn.getBufferAccount());
+        Assert.assertEquals(8192, conn.getBufferAccount().getUsage());
+        Assert.assertEquals(8192, conn.getBufferMemoryUsage());
+        Assert.assertEquals(8192, governor.getUsage());
+
+        conn.shutdown();
+        Assert.assertTrue(conn.getBufferAccount().isClosed());
+        Assert.assertEquals(0, governor.getUsage());
+    }
+
+    @Test
+    public void testAllocateCapacity() throws Exception {
+        final BufferMemoryGovernor governor = new BufferMemoryGovernor(
+                10000, 5000, DirectByteBufferAllocator.INSTANCE);
+        final ByteBuffer buffer = governor.allocate(128);
+        Assert.assertTrue(buffer.isDirect());
+        Assert.assertEquals(128, governor.getUsage());
+        governor.release(buffer);
+        Assert.assertEquals(0, governor.getUsage());
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.examples;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.http.Consts;
+import org.apache.http.HttpRequest;
+import org.apache.http.config.MessageConstraints;
+import org.apache.http.impl.io.DefaultHttpRequestParser;
+import org.apache.http.impl.io.HttpTransportMetricsImpl;
+import org.apache.http.impl.io.SessionInputBufferImpl;
+
+/**
+ * Measures the heap allocation rate of parsing keep-alive request heads
+ * with and without header line buffer recycling.
+ * <p>
+ * Allocated bytes are obtained from {@code com.sun.management.ThreadMXBean}
+ * and therefore require a HotSpot based JVM.
+ * </p>
+ */
+public class ParserAllocationBenchmark {
+
+    private static final String REQUEST =
+            "GET /index.html?q=stuff HTTP/1.1\r\n" +
+            "Host: www.example.com\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:60.0) Gecko/20100101 Firefox/60.0\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+            "Accept-Language: en-US,en;q=0.5\r\n" +
+            "Accept-Encoding: gzip, deflate\r\n" +
+            "Cookie: session=0123456789abcdef; theme=dark\r\n" +
+            "Connection: keep-alive\r\n" +
+            "\r\n";
+
+    public static void main(final String[] args) throws Exception {
+        final int requests = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < requests; i++) {
+            buf.append(REQUEST);
+        }
+        final byte[] content = buf.toString().getBytes(Consts.ASCII);
+
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            System.err.println("Allocated bytes are not supported by this JVM");
+            return;
+        }
+        final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        final long threadId = Thread.currentThread().getId();
+
+        for (final boolean recycling: new boolean[] {false, true, false, true}) {
+            final MessageConstraints constraints = MessageConstraints.custom()
+                    .setBufferRecycling(recycling)
+                    .build();
+            final SessionInputBufferImpl inBuffer = new SessionInputBufferImpl(
+                    new HttpTransportMetricsImpl(), 8192);
+            final DefaultHttpRequestParser parser = new DefaultHttpRequestParser(
+                    inBuffer, null, null, constraints);
+
+            long checksum = 0;
+            final long startBytes = allocationBean.getThreadAllocatedBytes(threadId);
+            final long startTime = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                inBuffer.bind(new ByteArrayInputStream(content));
+                for (int i = 0; i < requests; i++) {
+                    final HttpRequest request = parser.parse();
+                    checksum += request.getAllHeaders().length;
+                }
+            }
+            final long elapsed = System.nanoTime() - startTime;
+            final long allocated = allocationBean.getThreadAllocatedBytes(threadId) - startBytes;
+            final long total = (long) requests * rounds;
+
+            System.out.println((recycling ? "recycling:    " : "no recycling: ")
+                    + (allocated / total) + " bytes/request, "
+                    + (allocated * 1000L / elapsed) + " MB/s allocated, "
+                    + (total * 1000000000L / elapsed) + " requests/s"
+                    + " (checksum " + checksum + ")");
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.examples;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.CoalescingResponseFlushStrategy;
+import org.apache.http.impl.DefaultBHttpClientConnection;
+import org.apache.http.impl.DefaultBHttpServerConnection;
+import org.apache.http.impl.DefaultResponseFlushStrategy;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.protocol.HttpService;
+import org.apache.http.protocol.ImmutableHttpProcessor;
+import org.apache.http.protocol.ResponseContent;
+import org.apache.http.protocol.ResponseFlushStrategy;
+import org.apache.http.protocol.UriHttpRequestHandlerMapper;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Measures socket writes and throughput of a blocking server serving batches
+ * of pipelined requests over a loopback connection with and without coalescing
+ * of response flushes.
+ */
+public class PipelinedFlushBenchmark {
+
+    static class WriteCountingOutputStream extends FilterOutputStream {
+
+        private final AtomicLong writes;
+
+        WriteCountingOutputStream(final OutputStream out, final AtomicLong writes) {
+            super(out);
+            this.writes = writes;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            this.writes.incrementAndGet();
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.writes.incrementAndGet();
+            this.out.write(b);
+        }
+
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final int pipeline = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        final int batches = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+        final UriHttpRequestHandlerMapper handlerMapper = new UriHttpRequestHandlerMapper();
+        handlerMapper.register("*", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final HttpRequest request,
+                    final HttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                response.setEntity(new StringEntity("Hello world"));
+            }
+
+        });
+
+        for (final ResponseFlushStrategy flushStrategy: new ResponseFlushStrategy[] {
+                DefaultResponseFlushStrategy.INSTANCE, CoalescingResponseFlushStrategy.INSTANCE,
+                DefaultResponseFlushStrategy.INSTANCE, CoalescingResponseFlushStrategy.INSTANCE }) {
+            final HttpService httpService = new HttpService(
+                    new ImmutableHttpProcessor(new ResponseContent()), null, null, handlerMapper, null,
+                    flushStrategy);
+            final AtomicLong writes = new AtomicLong();
+            final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+            final Thread serverThread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        socket.setTcpNoDelay(true);
+                        final DefaultBHttpServerConnection conn = new DefaultBHttpServerConnection(8 * 1024) {
+
+                            @Override
+                            protected OutputStream getSocketOutputStream(final Socket socket) throws IOException {
+                                return new WriteCountingOutputStream(socket.getOutputStream(), writes);
+                            }
+
+                        };
+                        conn.bind(socket);
+                        try {
+                            while (conn.isOpen()) {
+                                httpService.handleRequest(conn, HttpCoreContext.create());
+                            }
+                        } finally {
+                            conn.shutdown();
+                        }
+                    } catch (final Exception ignore) {
+                        // connection closed by the client
+                    }
+                }
+
+            });
+            serverThread.start();
+
+            final DefaultBHttpClientConnection client = new DefaultBHttpClientConnection(8 * 1024);
+            final Socket clientSocket = new Socket(InetAddress.getByName("127.0.0.1"), serverSocket.getLocalPort());
+            clientSocket.setTcpNoDelay(true);
+            client.bind(clientSocket);
+            final long startTime = System.nanoTime();
+            for (int b = 0; b < batches; b++) {
+                for (int i = 0; i < pipeline; i++) {
+                    final BasicHttpRequest request = new BasicHttpRequest("GET", "/");
+                    request.addHeader("Host", "localhost");
+                    client.sendRequestHeader(request);
+                }
+                client.flush();
+                for (int i = 0; i < pipeline; i++) {
+                    final HttpResponse response = client.receiveResponseHeader();
+                    client.receiveResponseEntity(response);
+                    EntityUtils.consume(response.getEntity());
+                }
+            }
+            final long elapsed = System.nanoTime() - startTime;
+            client.close();
+            serverThread.join();
+            serverSocket.close();
+
+            final long total = (long) pipeline * batches;
+            System.out.println((flushStrategy instanceof CoalescingResponseFlushStrategy
+                    ? "coalescing: " : "default:    ")
+                    + (writes.get() * 1000 / total) / 1000.0 + " writes/response, "
+                    + (total * 1000000000L / elapsed) + " responses/s");
+        }
+    }
+
+}
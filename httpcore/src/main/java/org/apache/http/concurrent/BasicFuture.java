@@ -33,23 +33,56 @@
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Basic implementation of the {@link Future} interface. {@code BasicFuture}
  * can be put into a completed state by invoking any of the following methods:
  * {@link #cancel()}, {@link #failed(Exception)}, or {@link #completed(Object)}.
+ * <p>
+ * As of version 4.4.17 this class does not use object monitors. The outcome
+ * is guarded by a single state word updated with compare-and-set, and threads
+ * blocked in {@link #get()} are queued on a lock-free stack and parked until
+ * the future completes.
+ * </p>
  *
  * @param <T> the future result type of an asynchronous operation.
  * @since 4.2
  */
 public class BasicFuture<T> implements Future<T>, Cancellable {
 
+    private static final int NEW = 0;
+    private static final int COMPLETING = 1;
+    private static final int COMPLETED = 2;
+    private static final int FAILED = 3;
+    private static final int CANCELLED = 4;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<BasicFuture> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(BasicFuture.class, "state");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<BasicFuture, WaitNode> WAITERS =
+            AtomicReferenceFieldUpdater.newUpdater(BasicFuture.class, WaitNode.class, "waiters");
+
+    static final class WaitNode {
+
+        volatile Thread thread;
+        volatile WaitNode next;
+
+        WaitNode() {
+            this.thread = Thread.currentThread();
+        }
+
+    }
+
     private final FutureCallback<T> callback;
 
-    private volatile boolean completed;
-    private volatile boolean cancelled;
-    private volatile T result;
-    private volatile Exception ex;
+    private volatile int state;
+    private volatile WaitNode waiters;
+    // published by the write to state that follows it
+    private Object outcome;
 
     public BasicFuture(final FutureCallback<T> callback) {
         super();
@@ -58,65 +91,140 @@ public BasicFuture(final FutureCallback<T> callback) {
 
     @Override
     public boolean isCancelled() {
-        return this.cancelled;
+        return this.state == CANCELLED;
     }
 
     @Override
     public boolean isDone() {
-        return this.completed;
+        return this.state != NEW;
     }
 
-    private T getResult() throws ExecutionException {
-        if (this.ex != null) {
-            throw new ExecutionException(this.ex);
+    @SuppressWarnings("unchecked")
+    private T getResult(final int s) throws ExecutionException {
+        if (s == FAILED) {
+            throw new ExecutionException((Exception) this.outcome);
         }
-        if (cancelled) {
+        if (s == CANCELLED) {
             throw new CancellationException();
         }
-        return this.result;
+        return (T) this.outcome;
     }
 
     @Override
-    public synchronized T get() throws InterruptedException, ExecutionException {
-        while (!this.completed) {
-            wait();
+    public T get() throws InterruptedException, ExecutionException {
+        int s = this.state;
+        if (s <= COMPLETING) {
+            s = awaitDone(false, 0L);
         }
-        return getResult();
+        return getResult(s);
     }
 
     @Override
-    public synchronized T get(final long timeout, final TimeUnit unit)
+    public T get(final long timeout, final TimeUnit unit)
             throws InterruptedException, ExecutionException, TimeoutException {
         Args.notNull(unit, "Time unit");
-        final long msecs = unit.toMillis(timeout);
-        final long startTime = (msecs <= 0) ? 0 : System.currentTimeMillis();
-        long waitTime = msecs;
-        if (this.completed) {
-            return getResult();
-        } else if (waitTime <= 0) {
-            throw new TimeoutException();
-        } else {
-            for (;;) {
-                wait(waitTime);
-                if (this.completed) {
-                    return getResult();
+        int s = this.state;
+        if (s <= COMPLETING) {
+            final long nanos = unit.toNanos(timeout);
+            if (nanos <= 0) {
+                throw new TimeoutException();
+            }
+            s = awaitDone(true, nanos);
+            if (s <= COMPLETING) {
+                throw new TimeoutException();
+            }
+        }
+        return getResult(s);
+    }
+
+    private int awaitDone(final boolean timed, final long nanos) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        WaitNode node = null;
+        boolean queued = false;
+        for (;;) {
+            if (Thread.interrupted()) {
+                removeWaiter(node);
+                throw new InterruptedException();
+            }
+            final int s = this.state;
+            if (s > COMPLETING) {
+                if (node != null) {
+                    node.thread = null;
                 }
-                waitTime = msecs - (System.currentTimeMillis() - startTime);
-                if (waitTime <= 0) {
-                    throw new TimeoutException();
+                return s;
+            } else if (s == COMPLETING) {
+                // the outcome is about to be published
+                Thread.yield();
+            } else if (node == null) {
+                node = new WaitNode();
+            } else if (!queued) {
+                final WaitNode head = this.waiters;
+                node.next = head;
+                queued = WAITERS.compareAndSet(this, head, node);
+            } else if (timed) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    removeWaiter(node);
+                    return this.state;
                 }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
             }
         }
     }
 
-    public boolean completed(final T result) {
-        synchronized(this) {
-            if (this.completed) {
-                return false;
+    private void removeWaiter(final WaitNode node) {
+        if (node == null) {
+            return;
+        }
+        node.thread = null;
+        boolean retry = true;
+        while (retry) {
+            retry = false;
+            WaitNode pred = null;
+            WaitNode current = this.waiters;
+            while (current != null) {
+                final WaitNode next = current.next;
+                if (current.thread != null) {
+                    pred = current;
+                } else if (pred != null) {
+                    pred.next = next;
+                    if (pred.thread == null) {
+                        // predecessor was removed concurrently
+                        retry = true;
+                        break;
+                    }
+                } else if (!WAITERS.compareAndSet(this, current, next)) {
+                    retry = true;
+                    break;
+                }
+                current = next;
+            }
+        }
+    }
+
+    private boolean complete(final int finalState, final Object value) {
+        if (!STATE.compareAndSet(this, NEW, COMPLETING)) {
+            return false;
+        }
+        this.outcome = value;
+        this.state = finalState;
+        WaitNode node = WAITERS.getAndSet(this, null);
+        while (node != null) {
+            final Thread thread = node.thread;
+            if (thread != null) {
+                node.thread = null;
+                LockSupport.unpark(thread);
             }
-            this.completed = true;
-            this.result = result;
-            notifyAll();
+            node = node.next;
+        }
+        return true;
+    }
+
+    public boolean completed(final T result) {
+        if (!complete(COMPLETED, result)) {
+            return false;
         }
         if (this.callback != null) {
             this.callback.completed(result);
@@ -125,13 +233,8 @@ public boolean completed(final T result) {
     }
 
     public boolean failed(final Exception exception) {
-        synchronized(this) {
-            if (this.completed) {
-                return false;
-            }
-            this.completed = true;
-            this.ex = exception;
-            notifyAll();
+        if (!complete(FAILED, exception)) {
+            return false;
         }
         if (this.callback != null) {
             this.callback.failed(exception);
@@ -141,13 +244,8 @@ public boolean failed(final Exception exception) {
 
     @Override
     public boolean cancel(final boolean mayInterruptIfRunning) {
-        synchronized(this) {
-            if (this.completed) {
-                return false;
-            }
-            this.completed = true;
-            this.cancelled = true;
-            notifyAll();
+        if (!complete(CANCELLED, null)) {
+            return false;
         }
         if (this.callback != null) {
             this.callback.cancelled();
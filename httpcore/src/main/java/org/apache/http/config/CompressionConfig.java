@@ -0,0 +1,150 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.config;
+
+import java.util.zip.Deflater;
+
+import org.apache.http.util.Args;
+
+/**
+ * Content compression policy: compression level, minimum content length
+ * worth compressing and codec buffer size.
+ *
+ * @since 4.4.17
+ */
+public class CompressionConfig implements Cloneable {
+
+    public static final CompressionConfig DEFAULT = new Builder().build();
+
+    private final int compressionLevel;
+    private final long minContentLength;
+    private final int bufferSize;
+
+    CompressionConfig(final int compressionLevel, final long minContentLength, final int bufferSize) {
+        super();
+        this.compressionLevel = compressionLevel;
+        this.minContentLength = minContentLength;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Compression level from {@link Deflater#DEFAULT_COMPRESSION} to
+     * {@link Deflater#BEST_COMPRESSION}.
+     * <p>
+     * Default: {@link Deflater#DEFAULT_COMPRESSION}
+     * </p>
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Entities whose content length is known and below this value are sent
+     * uncompressed. Entities of unknown length are always compressed.
+     * <p>
+     * Default: {@code 1024}
+     * </p>
+     */
+    public long getMinContentLength() {
+        return minContentLength;
+    }
+
+    /**
+     * Size of the buffers used by compressing and decompressing codecs.
+     * <p>
+     * Default: {@code 8192}
+     * </p>
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    @Override
+    protected CompressionConfig clone() throws CloneNotSupportedException {
+        return (CompressionConfig) super.clone();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("[compressionLevel=").append(compressionLevel)
+                .append(", minContentLength=").append(minContentLength)
+                .append(", bufferSize=").append(bufferSize)
+                .append("]");
+        return builder.toString();
+    }
+
+    public static CompressionConfig.Builder custom() {
+        return new Builder();
+    }
+
+    public static CompressionConfig.Builder copy(final CompressionConfig config) {
+        Args.notNull(config, "Compression config");
+        return new Builder()
+            .setCompressionLevel(config.getCompressionLevel())
+            .setMinContentLength(config.getMinContentLength())
+            .setBufferSize(config.getBufferSize());
+    }
+
+    public static class Builder {
+
+        private int compressionLevel;
+        private long minContentLength;
+        private int bufferSize;
+
+        Builder() {
+            this.compressionLevel = Deflater.DEFAULT_COMPRESSION;
+            this.minContentLength = 1024;
+            this.bufferSize = 8192;
+        }
+
+        public Builder setCompressionLevel(final int compressionLevel) {
+            Args.check(compressionLevel >= Deflater.DEFAULT_COMPRESSION
+                    && compressionLevel <= Deflater.BEST_COMPRESSION,
+                    "Invalid compression level: %s", compressionLevel);
+            this.compressionLevel = compressionLevel;
+            return this;
+        }
+
+        public Builder setMinContentLength(final long minContentLength) {
+            this.minContentLength = Args.notNegative(minContentLength, "Min content length");
+            return this;
+        }
+
+        public Builder setBufferSize(final int bufferSize) {
+            this.bufferSize = Args.positive(bufferSize, "Buffer size");
+            return this;
+        }
+
+        public CompressionConfig build() {
+            return new CompressionConfig(compressionLevel, minContentLength, bufferSize);
+        }
+
+    }
+
+}
@@ -51,6 +51,7 @@ public class ConnectionConfig implements Cloneable {
     private final CodingErrorAction malformedInputAction;
     private final CodingErrorAction unmappableInputAction;
     private final MessageConstraints messageConstraints;
+    private final boolean eagerFlush;
 
     ConnectionConfig(
             final int bufferSize,
@@ -58,7 +59,8 @@ public class ConnectionConfig implements Cloneable {
             final Charset charset,
             final CodingErrorAction malformedInputAction,
             final CodingErrorAction unmappableInputAction,
-            final MessageConstraints messageConstraints) {
+            final MessageConstraints messageConstraints,
+            final boolean eagerFlush) {
         super();
         this.bufferSize = bufferSize;
         this.fragmentSizeHint = fragmentSizeHint;
@@ -66,6 +68,7 @@ public class ConnectionConfig implements Cloneable {
         this.malformedInputAction = malformedInputAction;
         this.unmappableInputAction = unmappableInputAction;
         this.messageConstraints = messageConstraints;
+        this.eagerFlush = eagerFlush;
     }
 
     public int getBufferSize() {
@@ -92,6 +95,18 @@ public MessageConstraints getMessageConstraints() {
         return messageConstraints;
     }
 
+    /**
+     * Returns {@code true} if non-blocking connections should write output
+     * requested while processing input at the end of the same input pass
+     * rather than waiting for the channel to be reported as writable.
+     * Ignored by blocking connections.
+     *
+     * @since 4.4.17
+     */
+    public boolean isEagerFlush() {
+        return eagerFlush;
+    }
+
     @Override
     protected ConnectionConfig clone() throws CloneNotSupportedException {
         return (ConnectionConfig) super.clone();
@@ -106,6 +121,7 @@ public String toString() {
                 .append(", malformedInputAction=").append(this.malformedInputAction)
                 .append(", unmappableInputAction=").append(this.unmappableInputAction)
                 .append(", messageConstraints=").append(this.messageConstraints)
+                .append(", eagerFlush=").append(this.eagerFlush)
                 .append("]");
         return builder.toString();
     }
@@ -122,7 +138,8 @@ public static ConnectionConfig.Builder copy(final ConnectionConfig config) {
             .setFragmentSizeHint(config.getFragmentSizeHint())
             .setMalformedInputAction(config.getMalformedInputAction())
             .setUnmappableInputAction(config.getUnmappableInputAction())
-            .setMessageConstraints(config.getMessageConstraints());
+            .setMessageConstraints(config.getMessageConstraints())
+            .setEagerFlush(config.isEagerFlush());
     }
 
     public static class Builder {
@@ -133,6 +150,7 @@ public static class Builder {
         private CodingErrorAction malformedInputAction;
         private CodingErrorAction unmappableInputAction;
         private MessageConstraints messageConstraints;
+        private boolean eagerFlush;
 
         Builder() {
             this.fragmentSizeHint = -1;
@@ -174,6 +192,14 @@ public Builder setMessageConstraints(final MessageConstraints messageConstraints
             return this;
         }
 
+        /**
+         * @since 4.4.17
+         */
+        public Builder setEagerFlush(final boolean eagerFlush) {
+            this.eagerFlush = eagerFlush;
+            return this;
+        }
+
         public ConnectionConfig build() {
             Charset cs = charset;
             if (cs == null && (malformedInputAction != null || unmappableInputAction != null)) {
@@ -187,7 +213,8 @@ public ConnectionConfig build() {
                     cs,
                     malformedInputAction,
                     unmappableInputAction,
-                    messageConstraints);
+                    messageConstraints,
+                    eagerFlush);
         }
 
     }
@@ -45,11 +45,17 @@ public class MessageConstraints implements Cloneable {
 
     private final int maxLineLength;
     private final int maxHeaderCount;
+    private final boolean bufferRecycling;
 
-    MessageConstraints(final int maxLineLength, final int maxHeaderCount) {
+    MessageConstraints(final int maxLineLength, final int maxHeaderCount, final boolean bufferRecycling) {
         super();
         this.maxLineLength = maxLineLength;
         this.maxHeaderCount = maxHeaderCount;
+        this.bufferRecycling = bufferRecycling;
+    }
+
+    MessageConstraints(final int maxLineLength, final int maxHeaderCount) {
+        this(maxLineLength, maxHeaderCount, false);
     }
 
     public int getMaxLineLength() {
@@ -60,6 +66,22 @@ public int getMaxHeaderCount() {
         return maxHeaderCount;
     }
 
+    /**
+     * Determines whether message parsers are to recycle their header line
+     * buffers across messages received over the same connection.
+     * <p>
+     * With buffer recycling enabled message headers are detached from the line
+     * buffers they were parsed from, so that the buffers can be reused for
+     * subsequent messages while earlier messages, for instance pipelined ones,
+     * are still being processed.
+     * </p>
+     *
+     * @since 4.4.17
+     */
+    public boolean isBufferRecycling() {
+        return bufferRecycling;
+    }
+
     @Override
     protected MessageConstraints clone() throws CloneNotSupportedException {
         return (MessageConstraints) super.clone();
@@ -70,6 +92,7 @@ public String toString() {
         final StringBuilder builder = new StringBuilder();
         builder.append("[maxLineLength=").append(maxLineLength)
                 .append(", maxHeaderCount=").append(maxHeaderCount)
+                .append(", bufferRecycling=").append(bufferRecycling)
                 .append("]");
         return builder.toString();
     }
@@ -86,13 +109,15 @@ public static MessageConstraints.Builder copy(final MessageConstraints config) {
         Args.notNull(config, "Message constraints");
         return new Builder()
             .setMaxHeaderCount(config.getMaxHeaderCount())
-            .setMaxLineLength(config.getMaxLineLength());
+            .setMaxLineLength(config.getMaxLineLength())
+            .setBufferRecycling(config.isBufferRecycling());
     }
 
     public static class Builder {
 
         private int maxLineLength;
         private int maxHeaderCount;
+        private boolean bufferRecycling;
 
         Builder() {
             this.maxLineLength = -1;
@@ -109,8 +134,16 @@ public Builder setMaxHeaderCount(final int maxHeaderCount) {
             return this;
         }
 
+        /**
+         * @since 4.4.17
+         */
+        public Builder setBufferRecycling(final boolean bufferRecycling) {
+            this.bufferRecycling = bufferRecycling;
+            return this;
+        }
+
         public MessageConstraints build() {
-            return new MessageConstraints(maxLineLength, maxHeaderCount);
+            return new MessageConstraints(maxLineLength, maxHeaderCount, bufferRecycling);
         }
 
     }
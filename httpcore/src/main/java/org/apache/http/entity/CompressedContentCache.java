@@ -0,0 +1,198 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.entity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.config.CompressionConfig;
+import org.apache.http.util.Args;
+
+/**
+ * Cache of precompressed content of repeatable entities.
+ * <p>
+ * Content is keyed by a key supplied by the caller, which must change
+ * whenever the content does, for instance the request URI combined with the
+ * entity tag or modification date of the resource. The compressed content
+ * is produced once and sent as a byte array with a known content length
+ * afterwards. The cache does not keep a reference to the source entity.
+ * Entities without a key, that are not repeatable, of unknown length or
+ * larger than the maximum entry size are compressed on the fly instead.
+ * The cache evicts least recently used entries once the estimated memory
+ * held by its entries, keys included, exceeds its limit.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class CompressedContentCache {
+
+    // estimated per entry memory held besides the key characters and the content
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final int maxEntrySize;
+    private final long maxTotalSize;
+    private final Map<Key, byte[]> map;
+
+    private long totalSize;
+
+    /**
+     * @param maxEntrySize maximum length of entity content eligible for caching.
+     * @param maxTotalSize maximum total size of cache entries, that is their
+     *   compressed content, keys and an estimated per entry overhead.
+     */
+    public CompressedContentCache(final int maxEntrySize, final long maxTotalSize) {
+        super();
+        this.maxEntrySize = Args.positive(maxEntrySize, "Max entry size");
+        this.maxTotalSize = Args.positive(maxTotalSize, "Max total size");
+        this.map = new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns an entity with the content of the given entity compressed
+     * using the given content coding.
+     *
+     * @param key the key identifying the entity content. If {@code null}
+     *   the content is compressed on the fly.
+     * @param entity the entity to compress.
+     * @param encoding {@code gzip} or {@code deflate}.
+     * @param config compression policy.
+     */
+    public HttpEntity compress(
+            final String key,
+            final HttpEntity entity,
+            final String encoding,
+            final CompressionConfig config) throws IOException {
+        Args.notNull(entity, "Entity");
+        Args.check(ZlibSupport.isSupported(encoding), "Unsupported content coding: %s", encoding);
+        final CompressionConfig cfg = config != null ? config : CompressionConfig.DEFAULT;
+        final long len = entity.getContentLength();
+        if (key == null || !entity.isRepeatable() || len < 0 || len > this.maxEntrySize) {
+            return new CompressingEntity(entity, encoding, cfg.getCompressionLevel(), cfg.getBufferSize());
+        }
+        final Key entryKey = new Key(key, encoding, cfg.getCompressionLevel());
+        byte[] content;
+        synchronized (this) {
+            content = this.map.get(entryKey);
+        }
+        if (content == null) {
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.max(len / 2, 64));
+            final DeflatingOutputStream deflating = new DeflatingOutputStream(
+                    buffer, encoding, cfg.getCompressionLevel(), cfg.getBufferSize());
+            try {
+                entity.writeTo(deflating);
+                deflating.finish();
+            } finally {
+                deflating.release();
+            }
+            content = buffer.toByteArray();
+            put(entryKey, content);
+        }
+        final ByteArrayEntity result = new ByteArrayEntity(content);
+        result.setContentType(entity.getContentType());
+        result.setContentEncoding(encoding);
+        return result;
+    }
+
+    private synchronized void put(final Key key, final byte[] content) {
+        final byte[] previous = this.map.put(key, content);
+        if (previous != null) {
+            this.totalSize -= sizeOf(key, previous);
+        }
+        this.totalSize += sizeOf(key, content);
+        final Iterator<Map.Entry<Key, byte[]>> it = this.map.entrySet().iterator();
+        while (this.totalSize > this.maxTotalSize && it.hasNext()) {
+            final Map.Entry<Key, byte[]> entry = it.next();
+            this.totalSize -= sizeOf(entry.getKey(), entry.getValue());
+            it.remove();
+        }
+    }
+
+    private static long sizeOf(final Key key, final byte[] content) {
+        return content.length + 2L * key.value.length() + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Returns the number of cached entries.
+     */
+    public synchronized int size() {
+        return this.map.size();
+    }
+
+    /**
+     * Returns the total size of cache entries as counted against the limit.
+     */
+    public synchronized long getTotalSize() {
+        return this.totalSize;
+    }
+
+    public synchronized void clear() {
+        this.map.clear();
+        this.totalSize = 0;
+    }
+
+    static class Key {
+
+        private final String value;
+        private final String encoding;
+        private final int level;
+
+        Key(final String value, final String encoding, final int level) {
+            this.value = value;
+            this.encoding = ZlibSupport.isGzip(encoding) ? ZlibSupport.GZIP : ZlibSupport.DEFLATE;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                final Key that = (Key) obj;
+                return this.value.equals(that.value)
+                        && this.encoding.equals(that.encoding)
+                        && this.level == that.level;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.value.hashCode() * 31 + this.encoding.hashCode()) * 31 + this.level;
+        }
+
+    }
+
+}
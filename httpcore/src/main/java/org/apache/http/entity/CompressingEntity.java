@@ -0,0 +1,111 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.util.Args;
+
+/**
+ * Entity wrapper that compresses the content of the wrapped entity
+ * on the fly using the {@code gzip} or {@code deflate} content coding.
+ * Compression is streamed with a {@link Deflater} taken from the per-thread
+ * pool of {@link ZlibSupport}; the content is never buffered in memory
+ * as a whole.
+ *
+ * @since 4.4.17
+ */
+public class CompressingEntity extends HttpEntityWrapper {
+
+    private final String encoding;
+    private final int level;
+    private final int bufferSize;
+
+    /**
+     * @param entity the entity to compress.
+     * @param encoding {@code gzip} or {@code deflate}.
+     * @param level compression level.
+     * @param bufferSize codec buffer size.
+     */
+    public CompressingEntity(
+            final HttpEntity entity, final String encoding, final int level, final int bufferSize) {
+        super(entity);
+        Args.check(ZlibSupport.isSupported(encoding), "Unsupported content coding: %s", encoding);
+        Args.check(level >= Deflater.DEFAULT_COMPRESSION && level <= Deflater.BEST_COMPRESSION,
+                "Invalid compression level: %s", level);
+        this.encoding = encoding;
+        this.level = level;
+        this.bufferSize = Args.positive(bufferSize, "Buffer size");
+    }
+
+    public CompressingEntity(final HttpEntity entity, final String encoding) {
+        this(entity, encoding, Deflater.DEFAULT_COMPRESSION, 8192);
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return new BasicHeader(HTTP.CONTENT_ENCODING, this.encoding);
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return true;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new DeflatingInputStream(
+                this.wrappedEntity.getContent(), this.encoding, this.level, this.bufferSize);
+    }
+
+    @Override
+    public void writeTo(final OutputStream outStream) throws IOException {
+        Args.notNull(outStream, "Output stream");
+        final DeflatingOutputStream deflating = new DeflatingOutputStream(
+                outStream, this.encoding, this.level, this.bufferSize);
+        try {
+            this.wrappedEntity.writeTo(deflating);
+            deflating.finish();
+        } finally {
+            deflating.release();
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.util.Args;
+
+/**
+ * Entity wrapper that decompresses {@code gzip} or {@code deflate} coded
+ * content of the wrapped entity on the fly using an
+ * {@link java.util.zip.Inflater} taken from the per-thread pool of
+ * {@link ZlibSupport}.
+ *
+ * @since 4.4.17
+ */
+public class DecompressingEntity extends HttpEntityWrapper {
+
+    private final String encoding;
+    private final int bufferSize;
+
+    /**
+     * @param entity the entity with compressed content.
+     * @param encoding {@code gzip}, {@code x-gzip} or {@code deflate}.
+     * @param bufferSize codec buffer size.
+     */
+    public DecompressingEntity(final HttpEntity entity, final String encoding, final int bufferSize) {
+        super(entity);
+        Args.check(ZlibSupport.isSupported(encoding), "Unsupported content coding: %s", encoding);
+        this.encoding = encoding;
+        this.bufferSize = Args.positive(bufferSize, "Buffer size");
+    }
+
+    public DecompressingEntity(final HttpEntity entity, final String encoding) {
+        this(entity, encoding, 8192);
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return null;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new InflatingInputStream(this.wrappedEntity.getContent(), this.encoding, this.bufferSize);
+    }
+
+    @Override
+    public void writeTo(final OutputStream outStream) throws IOException {
+        Args.notNull(outStream, "Output stream");
+        final InputStream inStream = getContent();
+        try {
+            final byte[] buffer = new byte[this.bufferSize];
+            int l;
+            while ((l = inStream.read(buffer)) != -1) {
+                outStream.write(buffer, 0, l);
+            }
+        } finally {
+            inStream.close();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Input stream that returns the content of another input stream compressed
+ * using the {@code gzip} or {@code deflate} coding with a pooled
+ * {@link Deflater}.
+ */
+class DeflatingInputStream extends InputStream {
+
+    private final InputStream in;
+    private final String encoding;
+    private final int level;
+    private final CRC32 crc;
+    private final byte[] buffer;
+    private final byte[] single;
+
+    private Deflater deflater;
+    private long size;
+    private byte[] pending;
+    private int pendingPos;
+    private boolean trailerDone;
+    private boolean closed;
+
+    DeflatingInputStream(
+            final InputStream in, final String encoding, final int level, final int bufferSize) {
+        super();
+        this.in = in;
+        this.encoding = encoding;
+        this.level = level;
+        final boolean gzip = ZlibSupport.isGzip(encoding);
+        this.crc = gzip ? new CRC32() : null;
+        this.buffer = new byte[bufferSize];
+        this.single = new byte[1];
+        this.deflater = ZlibSupport.leaseDeflater(encoding, level);
+        this.pending = gzip ? ZlibSupport.gzipHeader() : null;
+        this.trailerDone = !gzip;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int n = read(this.single, 0, 1);
+        return n == -1 ? -1 : this.single[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream already closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        for (;;) {
+            if (this.pending != null) {
+                final int n = Math.min(len, this.pending.length - this.pendingPos);
+                System.arraycopy(this.pending, this.pendingPos, b, off, n);
+                this.pendingPos += n;
+                if (this.pendingPos == this.pending.length) {
+                    this.pending = null;
+                    this.pendingPos = 0;
+                }
+                return n;
+            }
+            if (this.deflater == null) {
+                return -1;
+            }
+            final int n = this.deflater.deflate(b, off, len);
+            if (n > 0) {
+                return n;
+            }
+            if (this.deflater.finished()) {
+                if (!this.trailerDone) {
+                    final byte[] trailer = new byte[ZlibSupport.GZIP_TRAILER_LEN];
+                    ZlibSupport.writeGzipTrailer(this.crc.getValue(), this.size, trailer, 0);
+                    this.pending = trailer;
+                    this.trailerDone = true;
+                }
+                release();
+            } else if (this.deflater.needsInput()) {
+                final int l = this.in.read(this.buffer, 0, this.buffer.length);
+                if (l == -1) {
+                    this.deflater.finish();
+                } else if (l > 0) {
+                    this.deflater.setInput(this.buffer, 0, l);
+                    if (this.crc != null) {
+                        this.crc.update(this.buffer, 0, l);
+                    }
+                    this.size += l;
+                }
+            }
+        }
+    }
+
+    private void release() {
+        if (this.deflater != null) {
+            ZlibSupport.releaseDeflater(this.deflater, this.encoding, this.level);
+            this.deflater = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
+            this.pending = null;
+            release();
+            this.in.close();
+        }
+    }
+
+}
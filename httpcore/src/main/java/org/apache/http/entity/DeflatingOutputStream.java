@@ -0,0 +1,153 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.entity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream that compresses content written to it using the
+ * {@code gzip} or {@code deflate} coding with a pooled {@link Deflater}.
+ * {@link #finish()} terminates the compressed stream without closing
+ * the underlying one.
+ */
+class DeflatingOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final String encoding;
+    private final int level;
+    private final boolean gzip;
+    private final CRC32 crc;
+    private final byte[] buffer;
+    private final byte[] single;
+
+    private Deflater deflater;
+    private long size;
+    private boolean finished;
+
+    DeflatingOutputStream(
+            final OutputStream out, final String encoding, final int level, final int bufferSize) throws IOException {
+        super();
+        this.out = out;
+        this.encoding = encoding;
+        this.level = level;
+        this.gzip = ZlibSupport.isGzip(encoding);
+        this.crc = this.gzip ? new CRC32() : null;
+        this.buffer = new byte[bufferSize];
+        this.single = new byte[1];
+        this.deflater = ZlibSupport.leaseDeflater(encoding, level);
+        if (this.gzip) {
+            this.out.write(ZlibSupport.gzipHeader());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.finished || this.deflater == null) {
+            throw new IOException("Compressed stream already finished");
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        this.single[0] = (byte) b;
+        write(this.single, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+        if (len == 0) {
+            return;
+        }
+        this.deflater.setInput(b, off, len);
+        if (this.crc != null) {
+            this.crc.update(b, off, len);
+        }
+        this.size += len;
+        while (!this.deflater.needsInput()) {
+            deflate();
+        }
+    }
+
+    private void deflate() throws IOException {
+        final int n = this.deflater.deflate(this.buffer, 0, this.buffer.length);
+        if (n > 0) {
+            this.out.write(this.buffer, 0, n);
+        }
+    }
+
+    /**
+     * Terminates the compressed stream, writes the gzip trailer if required
+     * and returns the {@link Deflater} to the pool.
+     */
+    public void finish() throws IOException {
+        if (this.finished) {
+            return;
+        }
+        ensureOpen();
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+            deflate();
+        }
+        if (this.gzip) {
+            ZlibSupport.writeGzipTrailer(this.crc.getValue(), this.size, this.buffer, 0);
+            this.out.write(this.buffer, 0, ZlibSupport.GZIP_TRAILER_LEN);
+        }
+        this.finished = true;
+        release();
+    }
+
+    /**
+     * Returns the {@link Deflater} to the pool without terminating
+     * the compressed stream.
+     */
+    void release() {
+        if (this.deflater != null) {
+            ZlibSupport.releaseDeflater(this.deflater, this.encoding, this.level);
+            this.deflater = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            release();
+            this.out.close();
+        }
+    }
+
+}
@@ -87,6 +87,13 @@ public FileEntity(final File file) {
         this.file = Args.notNull(file, "File");
     }
 
+    /**
+     * @since 4.4.17
+     */
+    public File getFile() {
+        return this.file;
+    }
+
     @Override
     public boolean isRepeatable() {
         return true;
@@ -0,0 +1,216 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.entity;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import org.apache.http.util.Args;
+
+/**
+ * A self contained, repeatable entity that obtains its content from a region
+ * of a file.
+ *
+ * @since 4.4.17
+ */
+public class FileRegionEntity extends AbstractHttpEntity implements Cloneable {
+
+    protected final File file;
+    protected final long position;
+    protected final long count;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param file The file to serve.
+     * @param position The position of the first byte of the region.
+     * @param count The number of bytes in the region.
+     * @param contentType The content type for the given {@code file}.
+     */
+    public FileRegionEntity(
+            final File file,
+            final long position,
+            final long count,
+            final ContentType contentType) {
+        super();
+        this.file = Args.notNull(file, "File");
+        this.position = Args.notNegative(position, "Position");
+        this.count = Args.notNegative(count, "Count");
+        if (contentType != null) {
+            setContentType(contentType.toString());
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param file The file to serve.
+     * @param position The position of the first byte of the region.
+     * @param count The number of bytes in the region.
+     */
+    public FileRegionEntity(final File file, final long position, final long count) {
+        this(file, position, count, null);
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    public long getPosition() {
+        return this.position;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.count;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        final FileInputStream inStream = new FileInputStream(this.file);
+        try {
+            long skip = this.position;
+            while (skip > 0) {
+                final long l = inStream.skip(skip);
+                if (l <= 0) {
+                    break;
+                }
+                skip -= l;
+            }
+        } catch (final IOException ex) {
+            inStream.close();
+            throw ex;
+        }
+        return new RegionInputStream(inStream, this.count);
+    }
+
+    @Override
+    public void writeTo(final OutputStream outStream) throws IOException {
+        Args.notNull(outStream, "Output stream");
+        final RandomAccessFile raf = new RandomAccessFile(this.file, "r");
+        try {
+            raf.seek(this.position);
+            final byte[] tmp = new byte[(int) Math.min(OUTPUT_BUFFER_SIZE, Math.max(this.count, 1))];
+            long remaining = this.count;
+            while (remaining > 0) {
+                final int l = raf.read(tmp, 0, (int) Math.min(tmp.length, remaining));
+                if (l == -1) {
+                    throw new IOException("Premature end of file region; expected "
+                            + this.count + " bytes, got " + (this.count - remaining));
+                }
+                outStream.write(tmp, 0, l);
+                remaining -= l;
+            }
+            outStream.flush();
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Tells that this entity is not streaming.
+     *
+     * @return {@code false}
+     */
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        // File instance is considered immutable
+        // No need to make a copy of it
+        return super.clone();
+    }
+
+    static class RegionInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RegionInputStream(final InputStream in, final long count) {
+            super(in);
+            this.remaining = count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            final int b = super.read();
+            if (b != -1) {
+                this.remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            final int l = super.read(b, off, (int) Math.min(len, this.remaining));
+            if (l > 0) {
+                this.remaining -= l;
+            }
+            return l;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long l = super.skip(Math.min(n, this.remaining));
+            if (l > 0) {
+                this.remaining -= l;
+            }
+            return l;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), this.remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+    }
+
+} // class FileRegionEntity
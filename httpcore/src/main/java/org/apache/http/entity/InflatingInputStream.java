@@ -0,0 +1,205 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.entity;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream that decompresses {@code gzip} or {@code deflate} coded
+ * content using a pooled {@link Inflater}. Both zlib wrapped and raw
+ * deflate streams are accepted as {@code deflate} content.
+ */
+class InflatingInputStream extends InputStream {
+
+    private final InputStream in;
+    private final boolean gzip;
+    private final CRC32 crc;
+    private final byte[] single;
+
+    private byte[] buffer;
+    private int filled;
+    private int inputEnd;
+    private Inflater inflater;
+    private boolean nowrap;
+    private long size;
+    private boolean started;
+    private boolean done;
+    private boolean closed;
+
+    InflatingInputStream(final InputStream in, final String encoding, final int bufferSize) {
+        super();
+        this.in = in;
+        this.gzip = ZlibSupport.isGzip(encoding);
+        this.crc = this.gzip ? new CRC32() : null;
+        this.single = new byte[1];
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int n = read(this.single, 0, 1);
+        return n == -1 ? -1 : this.single[0] & 0xff;
+    }
+
+    private boolean fill(final int min) throws IOException {
+        while (this.filled < min) {
+            if (this.filled == this.buffer.length) {
+                final byte[] expanded = new byte[this.buffer.length * 2];
+                System.arraycopy(this.buffer, 0, expanded, 0, this.filled);
+                this.buffer = expanded;
+            }
+            final int l = this.in.read(this.buffer, this.filled, this.buffer.length - this.filled);
+            if (l == -1) {
+                return false;
+            }
+            this.filled += l;
+        }
+        return true;
+    }
+
+    private boolean start() throws IOException {
+        final int offset;
+        if (this.gzip) {
+            int hlen;
+            for (;;) {
+                hlen = ZlibSupport.gzipHeaderLength(this.buffer, 0, this.filled);
+                if (hlen >= 0) {
+                    break;
+                }
+                if (!fill(this.filled + 1)) {
+                    if (this.filled == 0) {
+                        return false;
+                    }
+                    throw new EOFException("Unexpected end of gzip header");
+                }
+            }
+            this.nowrap = true;
+            offset = hlen;
+        } else {
+            if (!fill(2)) {
+                if (this.filled == 0) {
+                    return false;
+                }
+                throw new EOFException("Unexpected end of deflate stream");
+            }
+            this.nowrap = !ZlibSupport.isZlibHeader(this.buffer[0], this.buffer[1]);
+            offset = 0;
+        }
+        this.inflater = ZlibSupport.leaseInflater(this.nowrap);
+        this.inflater.setInput(this.buffer, offset, this.filled - offset);
+        this.inputEnd = this.filled;
+        return true;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream already closed");
+        }
+        if (this.done) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!this.started) {
+            this.started = true;
+            if (!start()) {
+                this.done = true;
+                return -1;
+            }
+        }
+        for (;;) {
+            final int n;
+            try {
+                n = this.inflater.inflate(b, off, len);
+            } catch (final DataFormatException ex) {
+                throw new ZipException(ex.getMessage());
+            }
+            if (n > 0) {
+                if (this.crc != null) {
+                    this.crc.update(b, off, n);
+                }
+                this.size += n;
+                return n;
+            }
+            if (this.inflater.finished()) {
+                if (this.gzip) {
+                    readTrailer();
+                }
+                this.done = true;
+                release();
+                return -1;
+            }
+            if (this.inflater.needsDictionary()) {
+                throw new ZipException("Preset dictionary not supported");
+            }
+            if (this.inflater.needsInput()) {
+                final int l = this.in.read(this.buffer, 0, this.buffer.length);
+                if (l == -1) {
+                    throw new EOFException("Unexpected end of compressed stream");
+                }
+                this.inflater.setInput(this.buffer, 0, l);
+                this.inputEnd = l;
+            }
+        }
+    }
+
+    private void readTrailer() throws IOException {
+        final int remaining = this.inflater.getRemaining();
+        System.arraycopy(this.buffer, this.inputEnd - remaining, this.buffer, 0, remaining);
+        this.filled = remaining;
+        if (!fill(ZlibSupport.GZIP_TRAILER_LEN)) {
+            throw new EOFException("Unexpected end of gzip trailer");
+        }
+        ZlibSupport.verifyGzipTrailer(this.crc.getValue(), this.size, this.buffer, 0);
+    }
+
+    private void release() {
+        if (this.inflater != null) {
+            ZlibSupport.releaseInflater(this.inflater, this.nowrap);
+            this.inflater = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
+            release();
+            this.in.close();
+        }
+    }
+
+}
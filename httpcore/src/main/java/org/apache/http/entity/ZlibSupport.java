@@ -0,0 +1,325 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.entity;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.apache.http.util.Args;
+
+/**
+ * Support for {@code gzip} and {@code deflate} content codings.
+ * <p>
+ * {@link Deflater} and {@link Inflater} instances allocate native memory
+ * on creation, which makes them expensive to create per message. This class
+ * keeps a small per-thread cache of instances: one {@link Deflater} per
+ * content coding and compression level and one {@link Inflater} per
+ * content coding. Instances are reset on release and shared by all codecs
+ * running on the same thread. An instance released on a thread whose cache
+ * slot is already taken is ended.
+ * </p>
+ * <p>
+ * The {@code gzip} coding is produced using a raw deflate stream framed
+ * by a minimal gzip header and trailer, the {@code deflate} coding using
+ * the zlib format as mandated by RFC 7230.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+public final class ZlibSupport {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * Length of the gzip trailer: CRC-32 and input size modulo 2^32.
+     */
+    public static final int GZIP_TRAILER_LEN = 8;
+
+    private static final byte[] GZIP_HEADER = new byte[] {
+        (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final int LEVELS = 11;
+
+    private static final ThreadLocal<Deflater[]> DEFLATERS = new ThreadLocal<Deflater[]>() {
+
+        @Override
+        protected Deflater[] initialValue() {
+            return new Deflater[LEVELS * 2];
+        }
+
+    };
+
+    private static final ThreadLocal<Inflater[]> INFLATERS = new ThreadLocal<Inflater[]>() {
+
+        @Override
+        protected Inflater[] initialValue() {
+            return new Inflater[2];
+        }
+
+    };
+
+    private ZlibSupport() {
+    }
+
+    /**
+     * Determines whether the given content coding is supported.
+     *
+     * @param encoding content coding token.
+     * @return {@code true} for {@code gzip}, {@code x-gzip} and {@code deflate}.
+     */
+    public static boolean isSupported(final String encoding) {
+        return GZIP.equalsIgnoreCase(encoding)
+                || "x-gzip".equalsIgnoreCase(encoding)
+                || DEFLATE.equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * Determines whether the given content coding denotes {@code gzip}.
+     *
+     * @throws IllegalArgumentException if the content coding is not supported.
+     */
+    public static boolean isGzip(final String encoding) {
+        if (GZIP.equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+            return true;
+        }
+        if (DEFLATE.equalsIgnoreCase(encoding)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unsupported content coding: " + encoding);
+    }
+
+    private static int slot(final boolean gzip, final int level) {
+        Args.check(level >= Deflater.DEFAULT_COMPRESSION && level <= Deflater.BEST_COMPRESSION,
+                "Invalid compression level: %s", level);
+        return (gzip ? LEVELS : 0) + level + 1;
+    }
+
+    /**
+     * Obtains a {@link Deflater} for the given content coding and compression
+     * level, taking it from the per-thread cache if available.
+     *
+     * @param encoding {@code gzip} or {@code deflate}.
+     * @param level compression level from {@link Deflater#DEFAULT_COMPRESSION}
+     *   to {@link Deflater#BEST_COMPRESSION}.
+     */
+    public static Deflater leaseDeflater(final String encoding, final int level) {
+        final boolean gzip = isGzip(encoding);
+        final int slot = slot(gzip, level);
+        final Deflater[] cache = DEFLATERS.get();
+        final Deflater deflater = cache[slot];
+        if (deflater != null) {
+            cache[slot] = null;
+            return deflater;
+        }
+        return new Deflater(level, gzip);
+    }
+
+    /**
+     * Returns a {@link Deflater} obtained with {@link #leaseDeflater(String, int)}
+     * with the same content coding and compression level. The instance must
+     * not be used by the caller afterwards.
+     */
+    public static void releaseDeflater(final Deflater deflater, final String encoding, final int level) {
+        if (deflater == null) {
+            return;
+        }
+        final int slot = slot(isGzip(encoding), level);
+        final Deflater[] cache = DEFLATERS.get();
+        if (cache[slot] == null) {
+            deflater.reset();
+            cache[slot] = deflater;
+        } else {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Obtains an {@link Inflater} for the given content coding, taking it from
+     * the per-thread cache if available. {@code gzip} content is inflated
+     * as a raw deflate stream; the gzip framing is handled by the caller.
+     *
+     * @param encoding {@code gzip} or {@code deflate}.
+     */
+    public static Inflater leaseInflater(final String encoding) {
+        return leaseInflater(isGzip(encoding));
+    }
+
+    /**
+     * Obtains an {@link Inflater} for a raw ({@code nowrap}) or zlib wrapped
+     * deflate stream, taking it from the per-thread cache if available.
+     */
+    public static Inflater leaseInflater(final boolean nowrap) {
+        final int slot = nowrap ? 1 : 0;
+        final Inflater[] cache = INFLATERS.get();
+        final Inflater inflater = cache[slot];
+        if (inflater != null) {
+            cache[slot] = null;
+            return inflater;
+        }
+        return new Inflater(nowrap);
+    }
+
+    /**
+     * Returns an {@link Inflater} obtained with {@link #leaseInflater(boolean)}
+     * with the same {@code nowrap} setting.
+     */
+    public static void releaseInflater(final Inflater inflater, final boolean nowrap) {
+        if (inflater == null) {
+            return;
+        }
+        final int slot = nowrap ? 1 : 0;
+        final Inflater[] cache = INFLATERS.get();
+        if (cache[slot] == null) {
+            inflater.reset();
+            cache[slot] = inflater;
+        } else {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns a copy of the gzip member header written by this class.
+     */
+    public static byte[] gzipHeader() {
+        return GZIP_HEADER.clone();
+    }
+
+    /**
+     * Writes the gzip member trailer.
+     *
+     * @param crc CRC-32 of the uncompressed content.
+     * @param size size of the uncompressed content.
+     * @param dst destination array, at least {@link #GZIP_TRAILER_LEN} bytes
+     *   from {@code off}.
+     */
+    public static void writeGzipTrailer(final long crc, final long size, final byte[] dst, final int off) {
+        writeInt(crc, dst, off);
+        writeInt(size, dst, off + 4);
+    }
+
+    /**
+     * Verifies the gzip member trailer.
+     *
+     * @throws ZipException if the trailer does not match.
+     */
+    public static void verifyGzipTrailer(
+            final long crc, final long size, final byte[] src, final int off) throws ZipException {
+        if (readInt(src, off) != (crc & 0xffffffffL)) {
+            throw new ZipException("Corrupt gzip trailer: CRC mismatch");
+        }
+        if (readInt(src, off + 4) != (size & 0xffffffffL)) {
+            throw new ZipException("Corrupt gzip trailer: size mismatch");
+        }
+    }
+
+    /**
+     * Determines the length of the gzip member header at the given position.
+     *
+     * @return header length, or {@code -1} if more bytes are needed to
+     *   determine it.
+     * @throws ZipException if the bytes do not represent a gzip header.
+     */
+    public static int gzipHeaderLength(final byte[] src, final int off, final int len) throws ZipException {
+        if (len >= 1 && (src[off] & 0xff) != 0x1f
+                || len >= 2 && (src[off + 1] & 0xff) != 0x8b) {
+            throw new ZipException("Not in gzip format");
+        }
+        if (len >= 3 && src[off + 2] != Deflater.DEFLATED) {
+            throw new ZipException("Unsupported gzip compression method");
+        }
+        if (len < GZIP_HEADER.length) {
+            return -1;
+        }
+        final int flags = src[off + 3] & 0xff;
+        int pos = GZIP_HEADER.length;
+        if ((flags & FEXTRA) != 0) {
+            if (len < pos + 2) {
+                return -1;
+            }
+            pos += 2 + ((src[off + pos] & 0xff) | (src[off + pos + 1] & 0xff) << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            pos = skipZeroTerminated(src, off, len, pos);
+            if (pos < 0) {
+                return -1;
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            pos = skipZeroTerminated(src, off, len, pos);
+            if (pos < 0) {
+                return -1;
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            pos += 2;
+        }
+        return pos <= len ? pos : -1;
+    }
+
+    /**
+     * Determines whether the two bytes represent a zlib stream header
+     * as opposed to the start of a raw deflate stream, which some servers
+     * send as {@code deflate} content.
+     */
+    public static boolean isZlibHeader(final byte b0, final byte b1) {
+        final int cmf = b0 & 0xff;
+        final int flg = b1 & 0xff;
+        return (cmf & 0x0f) == Deflater.DEFLATED && (cmf >> 4) <= 7 && (cmf << 8 | flg) % 31 == 0;
+    }
+
+    private static int skipZeroTerminated(final byte[] src, final int off, final int len, final int pos) {
+        for (int i = pos; i < len; i++) {
+            if (src[off + i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static void writeInt(final long value, final byte[] dst, final int off) {
+        dst[off] = (byte) value;
+        dst[off + 1] = (byte) (value >> 8);
+        dst[off + 2] = (byte) (value >> 16);
+        dst[off + 3] = (byte) (value >> 24);
+    }
+
+    private static long readInt(final byte[] src, final int off) {
+        return (src[off] & 0xffL)
+                | (src[off + 1] & 0xffL) << 8
+                | (src[off + 2] & 0xffL) << 16
+                | (src[off + 3] & 0xffL) << 24;
+    }
+
+}
@@ -27,6 +27,9 @@
 
 package org.apache.http.impl;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,6 +38,8 @@
 import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.util.concurrent.atomic.AtomicReference;
@@ -49,6 +54,8 @@
 import org.apache.http.config.MessageConstraints;
 import org.apache.http.entity.BasicHttpEntity;
 import org.apache.http.entity.ContentLengthStrategy;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.FileRegionEntity;
 import org.apache.http.impl.entity.LaxContentLengthStrategy;
 import org.apache.http.impl.entity.StrictContentLengthStrategy;
 import org.apache.http.impl.io.ChunkedInputStream;
@@ -59,12 +66,17 @@
 import org.apache.http.impl.io.HttpTransportMetricsImpl;
 import org.apache.http.impl.io.IdentityInputStream;
 import org.apache.http.impl.io.IdentityOutputStream;
+import org.apache.http.impl.io.InstrumentedTransportMetrics;
 import org.apache.http.impl.io.SessionInputBufferImpl;
 import org.apache.http.impl.io.SessionOutputBufferImpl;
+import org.apache.http.instrument.HttpInstrumentation;
+import org.apache.http.instrument.InstrumentationSupport;
+import org.apache.http.io.HttpTransportMetrics;
 import org.apache.http.io.SessionInputBuffer;
 import org.apache.http.io.SessionOutputBuffer;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.Args;
+import org.apache.http.util.CharArrayBuffer;
 import org.apache.http.util.NetUtils;
 
 /**
@@ -75,14 +87,26 @@
  */
 public class BHttpConnectionBase implements HttpInetConnection {
 
+    private static final HttpInstrumentation INSTRUMENTATION = InstrumentationSupport.getInstrumentation();
+
     private final SessionInputBufferImpl inBuffer;
     private final SessionOutputBufferImpl outbuffer;
     private final MessageConstraints messageConstraints;
     private final HttpConnectionMetricsImpl connMetrics;
+    private final HttpTransportMetricsImpl outTransportMetrics;
     private final ContentLengthStrategy incomingContentStrategy;
     private final ContentLengthStrategy outgoingContentStrategy;
     private final AtomicReference<Socket> socketHolder;
 
+    private final SessionOutputBuffer coalescingOutbuffer;
+
+    private final Object deferredFlushLock;
+
+    private boolean flushCoalescing;
+    private volatile long flushDeferredSince;
+    // guarded by deferredFlushLock; set while output held back may be flushed by another thread
+    private boolean outputIdle;
+
     /**
      * Creates new instance of BHttpConnectionBase.
      *
@@ -109,19 +133,22 @@ protected BHttpConnectionBase(
             final ContentLengthStrategy outgoingContentStrategy) {
         super();
         Args.positive(bufferSize, "Buffer size");
-        final HttpTransportMetricsImpl inTransportMetrics = new HttpTransportMetricsImpl();
-        final HttpTransportMetricsImpl outTransportMetrics = new HttpTransportMetricsImpl();
+        final HttpTransportMetricsImpl inTransportMetrics = new InstrumentedTransportMetrics(this, true);
+        final HttpTransportMetricsImpl outTransportMetrics = new InstrumentedTransportMetrics(this, false);
         this.inBuffer = new SessionInputBufferImpl(inTransportMetrics, bufferSize, -1,
                 messageConstraints != null ? messageConstraints : MessageConstraints.DEFAULT, charDecoder);
         this.outbuffer = new SessionOutputBufferImpl(outTransportMetrics, bufferSize, fragmentSizeHint,
                 charEncoder);
         this.messageConstraints = messageConstraints;
         this.connMetrics = new HttpConnectionMetricsImpl(inTransportMetrics, outTransportMetrics);
+        this.outTransportMetrics = outTransportMetrics;
         this.incomingContentStrategy = incomingContentStrategy != null ? incomingContentStrategy :
             LaxContentLengthStrategy.INSTANCE;
         this.outgoingContentStrategy = outgoingContentStrategy != null ? outgoingContentStrategy :
             StrictContentLengthStrategy.INSTANCE;
         this.socketHolder = new AtomicReference<Socket>();
+        this.coalescingOutbuffer = new CoalescingSessionOutputBuffer();
+        this.deferredFlushLock = new Object();
     }
 
     protected void ensureOpen() throws IOException {
@@ -130,7 +157,7 @@ protected void ensureOpen() throws IOException {
             throw new ConnectionClosedException();
         }
         if (!this.inBuffer.isBound()) {
-            this.inBuffer.bind(getSocketInputStream(socket));
+            this.inBuffer.bind(new OutputFlushingInputStream(getSocketInputStream(socket)));
         }
         if (!this.outbuffer.isBound()) {
             this.outbuffer.bind(getSocketOutputStream(socket));
@@ -171,9 +198,90 @@ protected SessionOutputBuffer getSessionOutputBuffer() {
     }
 
     protected void doFlush() throws IOException {
+        claimOutput();
+        this.flushDeferredSince = 0;
         this.outbuffer.flush();
     }
 
+    /**
+     * Returns {@code true} if input has been read from the socket but not yet
+     * consumed, which in case of a server connection is the head of a pipelined
+     * request.
+     */
+    boolean hasBufferedInput() {
+        return this.inBuffer.hasBufferedData();
+    }
+
+    /**
+     * Returns the number of bytes written to the connection but not yet flushed.
+     */
+    int getBufferedOutputLength() {
+        return this.outbuffer.length();
+    }
+
+    long getFlushDeferredSince() {
+        return this.flushDeferredSince;
+    }
+
+    void setFlushDeferredSince(final long time) {
+        this.flushDeferredSince = time;
+    }
+
+    /**
+     * Marks output held back since the given time as eligible for being flushed
+     * by {@link #flushDeferredOutput(long)} until the connection is used for
+     * output again.
+     */
+    void deferFlush(final long time) {
+        synchronized (this.deferredFlushLock) {
+            if (this.flushDeferredSince == 0) {
+                this.flushDeferredSince = time;
+            }
+            this.outputIdle = true;
+        }
+    }
+
+    /**
+     * Must be called before the connection is used for output, so that output
+     * held back is no longer flushed by another thread.
+     */
+    void claimOutput() {
+        if (this.flushDeferredSince != 0) {
+            synchronized (this.deferredFlushLock) {
+                this.outputIdle = false;
+            }
+        }
+    }
+
+    /**
+     * Flushes output held back since the given time, unless it has already been
+     * flushed or the connection is being used for output. This method may be
+     * called by any thread.
+     */
+    boolean flushDeferredOutput(final long since) throws IOException {
+        synchronized (this.deferredFlushLock) {
+            if (!this.outputIdle || this.flushDeferredSince != since || !isOpen()) {
+                return false;
+            }
+            try {
+                this.outbuffer.flush();
+            } finally {
+                this.outputIdle = false;
+                this.flushDeferredSince = 0;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Once enabled, closing a message content stream no longer flushes the connection
+     * while input of a pipelined request is pending, leaving it up to the caller
+     * to flush the connection after the message has been written.
+     */
+    void setFlushCoalescing(final boolean flushCoalescing) {
+        this.flushCoalescing = flushCoalescing;
+    }
+
     @Override
     public boolean isOpen() {
         return this.socketHolder.get() != null;
@@ -197,7 +305,70 @@ protected OutputStream createOutputStream(
 
     protected OutputStream prepareOutput(final HttpMessage message) throws HttpException {
         final long len = this.outgoingContentStrategy.determineLength(message);
-        return createOutputStream(len, this.outbuffer);
+        return createOutputStream(len, this.flushCoalescing ? this.coalescingOutbuffer : this.outbuffer);
+    }
+
+    /**
+     * Sends the content of a file backed entity by transferring it from the file
+     * directly to the socket channel with {@link FileChannel#transferTo(long, long,
+     * java.nio.channels.WritableByteChannel)}, bypassing the session output buffer
+     * and, where the platform supports it, user space altogether.
+     * <p>
+     * This is only possible if the connection socket has been created by a
+     * {@link SocketChannel} in blocking mode, the entity is a {@link FileEntity}
+     * or {@link FileRegionEntity} and the message content is delimited by its
+     * content length or by closing the connection. Any buffered message head
+     * is flushed before the transfer.
+     * </p>
+     *
+     * @param message the message whose content is to be sent.
+     * @param entity the message entity.
+     * @return {@code true} if the content has been sent, {@code false} if it
+     *   needs to be written to the content output stream instead.
+     *
+     * @since 4.4.17
+     */
+    protected boolean transferFileContent(
+            final HttpMessage message, final HttpEntity entity) throws HttpException, IOException {
+        final Socket socket = this.socketHolder.get();
+        final SocketChannel channel = socket != null ? socket.getChannel() : null;
+        if (channel == null || !channel.isBlocking()) {
+            return false;
+        }
+        final File file;
+        final long position;
+        if (entity instanceof FileRegionEntity) {
+            file = ((FileRegionEntity) entity).getFile();
+            position = ((FileRegionEntity) entity).getPosition();
+        } else if (entity instanceof FileEntity) {
+            file = ((FileEntity) entity).getFile();
+            position = 0L;
+        } else {
+            return false;
+        }
+        final long count = entity.getContentLength();
+        final long len = this.outgoingContentStrategy.determineLength(message);
+        if (count < 0 || len == ContentLengthStrategy.CHUNKED || (len >= 0 && len != count)) {
+            return false;
+        }
+        this.outbuffer.flush();
+        final FileInputStream inStream = new FileInputStream(file);
+        try {
+            final FileChannel fileChannel = inStream.getChannel();
+            long sent = 0;
+            while (sent < count) {
+                final long n = fileChannel.transferTo(position + sent, count - sent, channel);
+                if (n <= 0) {
+                    throw new IOException("Unexpected end of file " + file
+                            + " (expected size: " + count + "; actual size: " + sent + ")");
+                }
+                sent += n;
+                this.outTransportMetrics.incrementBytesTransferred(n);
+            }
+        } finally {
+            inStream.close();
+        }
+        return true;
     }
 
     protected InputStream createInputStream(
@@ -299,6 +470,7 @@ public int getSocketTimeout() {
     public void shutdown() throws IOException {
         final Socket socket = this.socketHolder.getAndSet(null);
         if (socket != null) {
+            INSTRUMENTATION.connectionClosed(this);
             // force abortive close (RST)
             try {
                 socket.setSoLinger(true, 0);
@@ -311,8 +483,10 @@ public void shutdown() throws IOException {
 
     @Override
     public void close() throws IOException {
+        claimOutput();
         final Socket socket = this.socketHolder.getAndSet(null);
         if (socket != null) {
+            INSTRUMENTATION.connectionClosed(this);
             try {
                 this.inBuffer.clear();
                 this.outbuffer.flush();
@@ -386,4 +560,80 @@ public String toString() {
         return "[Not bound]";
     }
 
+    /**
+     * Flushes output held back by flush coalescing before reading from the socket,
+     * as the read may block until the peer receives the output held back.
+     */
+    private class OutputFlushingInputStream extends FilterInputStream {
+
+        OutputFlushingInputStream(final InputStream inStream) {
+            super(inStream);
+        }
+
+        private void flushDeferredOutput() throws IOException {
+            if (flushCoalescing) {
+                synchronized (deferredFlushLock) {
+                    if (outbuffer.length() > 0) {
+                        outbuffer.flush();
+                    }
+                    flushDeferredSince = 0;
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            flushDeferredOutput();
+            return super.read();
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            flushDeferredOutput();
+            return super.read(b, off, len);
+        }
+
+    }
+
+    private class CoalescingSessionOutputBuffer implements SessionOutputBuffer {
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            outbuffer.write(b, off, len);
+        }
+
+        @Override
+        public void write(final byte[] b) throws IOException {
+            outbuffer.write(b);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            outbuffer.write(b);
+        }
+
+        @Override
+        public void writeLine(final String s) throws IOException {
+            outbuffer.writeLine(s);
+        }
+
+        @Override
+        public void writeLine(final CharArrayBuffer buffer) throws IOException {
+            outbuffer.writeLine(buffer);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!inBuffer.hasBufferedData()) {
+                outbuffer.flush();
+            }
+        }
+
+        @Override
+        public HttpTransportMetrics getMetrics() {
+            return outbuffer.getMetrics();
+        }
+
+    }
+
 }
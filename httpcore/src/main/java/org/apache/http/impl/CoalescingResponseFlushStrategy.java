@@ -0,0 +1,183 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpServerConnection;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.ResponseFlushStrategy;
+import org.apache.http.util.Args;
+
+/**
+ * Flush strategy that coalesces responses to pipelined requests.
+ * <p>
+ * The flush of a response is deferred as long as the connection already holds
+ * input of the next request in its input buffer, so that responses to a batch
+ * of pipelined requests get written out with a single socket write instead of
+ * one write per response. A response is flushed immediately once there is no
+ * buffered input, once the total of output held back exceeds the configured
+ * byte budget or once the oldest response held back has been waiting longer
+ * than the configured delay.
+ * </p>
+ * <p>
+ * The delay bound is enforced by a shared timer thread, which flushes output
+ * held back once it has been waiting for the configured delay while the next
+ * request is still being processed, so that a slow request handler does not
+ * hold back responses already completed. Responses held back are also always
+ * flushed before the connection reads more input from the socket, for instance
+ * if only part of the next request head has been received, as that read may
+ * block until the client has received the responses.
+ * </p>
+ * <p>
+ * This strategy can defer flushes only on connections based on
+ * {@link BHttpConnectionBase}. Responses written to other connections are
+ * always flushed immediately. The first response written to a connection
+ * is flushed by its content stream and is not coalesced with the following
+ * ones.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public class CoalescingResponseFlushStrategy implements ResponseFlushStrategy {
+
+    public static final int DEFAULT_MAX_BUFFERED_BYTES = 8 * 1024;
+    public static final int DEFAULT_MAX_DELAY = 10;
+
+    public static final CoalescingResponseFlushStrategy INSTANCE = new CoalescingResponseFlushStrategy();
+
+    private final int maxBufferedBytes;
+    private final int maxDelay;
+
+    /**
+     * Creates new instance of CoalescingResponseFlushStrategy.
+     *
+     * @param maxBufferedBytes the maximum number of bytes held back in the connection
+     *   output buffer. Must be a positive number.
+     * @param maxDelay the maximum time in milliseconds a response can be held back.
+     *   Must be a positive number.
+     */
+    public CoalescingResponseFlushStrategy(final int maxBufferedBytes, final int maxDelay) {
+        super();
+        this.maxBufferedBytes = Args.positive(maxBufferedBytes, "Max buffered bytes");
+        this.maxDelay = Args.positive(maxDelay, "Max delay");
+    }
+
+    public CoalescingResponseFlushStrategy() {
+        this(DEFAULT_MAX_BUFFERED_BYTES, DEFAULT_MAX_DELAY);
+    }
+
+    public int getMaxBufferedBytes() {
+        return this.maxBufferedBytes;
+    }
+
+    public int getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    @Override
+    public boolean isFlushRequired(
+            final HttpServerConnection conn, final HttpResponse response, final HttpContext context) {
+        if (!(conn instanceof BHttpConnectionBase)) {
+            return true;
+        }
+        final BHttpConnectionBase bconn = (BHttpConnectionBase) conn;
+        // keep content streams of subsequent responses from flushing the connection
+        bconn.setFlushCoalescing(true);
+        if (!bconn.hasBufferedInput()) {
+            // no pipelined request is waiting to be processed
+            return true;
+        }
+        if (bconn.getBufferedOutputLength() >= this.maxBufferedBytes) {
+            return true;
+        }
+        final long now = System.currentTimeMillis();
+        final long deferredSince = bconn.getFlushDeferredSince();
+        if (deferredSince == 0) {
+            bconn.deferFlush(now);
+            FlushTimer.INSTANCE.schedule(new DeferredFlush(bconn, now), this.maxDelay, TimeUnit.MILLISECONDS);
+            return false;
+        }
+        if (now - deferredSince >= this.maxDelay) {
+            return true;
+        }
+        bconn.deferFlush(deferredSince);
+        return false;
+    }
+
+    static class DeferredFlush implements Runnable {
+
+        private final BHttpConnectionBase conn;
+        private final long since;
+
+        DeferredFlush(final BHttpConnectionBase conn, final long since) {
+            this.conn = conn;
+            this.since = since;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.conn.flushDeferredOutput(this.since);
+            } catch (final IOException ex) {
+                // the connection is going to fail on its next I/O operation
+            }
+        }
+
+    }
+
+    static class FlushTimer {
+
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        final Thread thread = new Thread(r, "http-flush-timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+
+                });
+
+    }
+
+    @Override
+    public String toString() {
+        return "[maxBufferedBytes=" + this.maxBufferedBytes + ", maxDelay=" + this.maxDelay + "]";
+    }
+
+}
@@ -152,6 +152,9 @@ public void sendRequestEntity(final HttpEntityEnclosingRequest request)
         if (entity == null) {
             return;
         }
+        if (transferFileContent(request, entity)) {
+            return;
+        }
         final OutputStream outStream = prepareOutput(request);
         entity.writeTo(outStream);
         outStream.close();
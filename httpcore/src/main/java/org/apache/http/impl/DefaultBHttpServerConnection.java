@@ -146,6 +146,7 @@ public void sendResponseHeader(final HttpResponse response)
             throws HttpException, IOException {
         Args.notNull(response, "HTTP response");
         ensureOpen();
+        claimOutput();
         this.responseWriter.write(response);
         onResponseSubmitted(response);
         if (response.getStatusLine().getStatusCode() >= 200) {
@@ -162,6 +163,9 @@ public void sendResponseEntity(final HttpResponse response)
         if (entity == null) {
             return;
         }
+        if (transferFileContent(response, entity)) {
+            return;
+        }
         final OutputStream outStream = prepareOutput(response);
         entity.writeTo(outStream);
         outStream.close();
@@ -0,0 +1,86 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.impl.bootstrap;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+
+import javax.net.ServerSocketFactory;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * {@link ServerSocketFactory} that creates server sockets backed by
+ * a {@link ServerSocketChannel}. Sockets accepted by such server sockets
+ * are associated with a {@link java.nio.channels.SocketChannel} in blocking
+ * mode, which enables blocking connections to send file content with
+ * {@link java.nio.channels.FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}.
+ *
+ * @see ServerBootstrap#setServerSocketFactory(ServerSocketFactory)
+ * @see org.apache.http.impl.BHttpConnectionBase#transferFileContent(
+ *   org.apache.http.HttpMessage, org.apache.http.HttpEntity)
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public class ChannelServerSocketFactory extends ServerSocketFactory {
+
+    public static final ChannelServerSocketFactory INSTANCE = new ChannelServerSocketFactory();
+
+    @Override
+    public ServerSocket createServerSocket() throws IOException {
+        return ServerSocketChannel.open().socket();
+    }
+
+    @Override
+    public ServerSocket createServerSocket(final int port) throws IOException {
+        return createServerSocket(port, 0, null);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(final int port, final int backlog) throws IOException {
+        return createServerSocket(port, backlog, null);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(
+            final int port, final int backlog, final InetAddress ifAddress) throws IOException {
+        final ServerSocket serverSocket = createServerSocket();
+        try {
+            serverSocket.bind(new InetSocketAddress(ifAddress, port), backlog);
+        } catch (final IOException ex) {
+            serverSocket.close();
+            throw ex;
+        }
+        return serverSocket;
+    }
+
+}
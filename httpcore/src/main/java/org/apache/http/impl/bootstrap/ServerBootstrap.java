@@ -55,6 +55,7 @@
 import org.apache.http.protocol.ResponseConnControl;
 import org.apache.http.protocol.ResponseContent;
 import org.apache.http.protocol.ResponseDate;
+import org.apache.http.protocol.ResponseFlushStrategy;
 import org.apache.http.protocol.ResponseServer;
 import org.apache.http.protocol.UriHttpRequestHandlerMapper;
 
@@ -78,6 +79,7 @@ public class ServerBootstrap {
     private HttpRequestHandlerMapper handlerMapper;
     private Map<String, HttpRequestHandler> handlerMap;
     private HttpExpectationVerifier expectationVerifier;
+    private ResponseFlushStrategy flushStrategy;
     private ServerSocketFactory serverSocketFactory;
     private SSLContext sslContext;
     private SSLServerSetupHandler sslSetupHandler;
@@ -302,6 +304,22 @@ public final ServerBootstrap setExpectationVerifier(final HttpExpectationVerifie
         return this;
     }
 
+    /**
+     * Assigns {@link ResponseFlushStrategy} instance.
+     * <p>
+     * Use {@link org.apache.http.impl.CoalescingResponseFlushStrategy} to have
+     * responses to pipelined requests written out with fewer socket writes.
+     * </p>
+     *
+     * @return this
+     *
+     * @since 4.4.17
+     */
+    public final ServerBootstrap setResponseFlushStrategy(final ResponseFlushStrategy flushStrategy) {
+        this.flushStrategy = flushStrategy;
+        return this;
+    }
+
     /**
      * Assigns {@link HttpConnectionFactory} instance.
      *
@@ -420,7 +438,7 @@ public HttpServer create() {
 
         final HttpService httpService = new HttpService(
                 httpProcessorCopy, connStrategyCopy, responseFactoryCopy, handlerMapperCopy,
-                this.expectationVerifier);
+                this.expectationVerifier, this.flushStrategy);
 
         ServerSocketFactory serverSocketFactoryCopy = this.serverSocketFactory;
         if (serverSocketFactoryCopy == null) {
@@ -40,6 +40,7 @@
 import org.apache.http.config.MessageConstraints;
 import org.apache.http.io.HttpMessageParser;
 import org.apache.http.io.SessionInputBuffer;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicLineParser;
 import org.apache.http.message.LineParser;
 import org.apache.http.params.HttpParamConfig;
@@ -59,9 +60,14 @@
     private static final int HEAD_LINE    = 0;
     private static final int HEADERS      = 1;
 
+    // bounds of the pool of header line buffers kept for recycling
+    private static final int MAX_SPARE_LINES = 128;
+    private static final int MAX_SPARE_CAPACITY = 8192;
+
     private final SessionInputBuffer sessionBuffer;
     private final MessageConstraints messageConstraints;
     private final List<CharArrayBuffer> headerLines;
+    private final List<CharArrayBuffer> spareLines;
     protected final LineParser lineParser;
 
     private int state;
@@ -89,6 +95,7 @@ public AbstractMessageParser(
         this.messageConstraints = HttpParamConfig.getMessageConstraints(params);
         this.lineParser = (parser != null) ? parser : BasicLineParser.INSTANCE;
         this.headerLines = new ArrayList<CharArrayBuffer>();
+        this.spareLines = null;
         this.state = HEAD_LINE;
     }
 
@@ -112,6 +119,7 @@ public AbstractMessageParser(
         this.lineParser = lineParser != null ? lineParser : BasicLineParser.INSTANCE;
         this.messageConstraints = constraints != null ? constraints : MessageConstraints.DEFAULT;
         this.headerLines = new ArrayList<CharArrayBuffer>();
+        this.spareLines = this.messageConstraints.isBufferRecycling() ? new ArrayList<CharArrayBuffer>() : null;
         this.state = HEAD_LINE;
     }
 
@@ -175,6 +183,16 @@ public static Header[] parseHeaders(
             final int maxLineLen,
             final LineParser parser,
             final List<CharArrayBuffer> headerLines) throws HttpException, IOException {
+        return parseHeaders(inBuffer, maxHeaderCount, maxLineLen, parser, headerLines, null);
+    }
+
+    private static Header[] parseHeaders(
+            final SessionInputBuffer inBuffer,
+            final int maxHeaderCount,
+            final int maxLineLen,
+            final LineParser parser,
+            final List<CharArrayBuffer> headerLines,
+            final List<CharArrayBuffer> spareLines) throws HttpException, IOException {
         Args.notNull(inBuffer, "Session input buffer");
         Args.notNull(parser, "Line parser");
         Args.notNull(headerLines, "Header line list");
@@ -183,7 +201,13 @@ public static Header[] parseHeaders(
         CharArrayBuffer previous = null;
         for (;;) {
             if (current == null) {
-                current = new CharArrayBuffer(64);
+                final int spareCount = spareLines != null ? spareLines.size() : 0;
+                if (spareCount > 0) {
+                    current = spareLines.remove(spareCount - 1);
+                    current.clear();
+                } else {
+                    current = new CharArrayBuffer(64);
+                }
             } else {
                 current.clear();
             }
@@ -225,7 +249,9 @@ public static Header[] parseHeaders(
         for (int i = 0; i < headerLines.size(); i++) {
             final CharArrayBuffer buffer = headerLines.get(i);
             try {
-                headers[i] = parser.parseHeader(buffer);
+                final Header header = parser.parseHeader(buffer);
+                // recycled header lines must not back the headers handed out
+                headers[i] = spareLines != null ? new BasicHeader(header.getName(), header.getValue()) : header;
             } catch (final ParseException ex) {
                 throw new ProtocolException(ex.getMessage());
             }
@@ -268,10 +294,19 @@ public T parse() throws IOException, HttpException {
                     this.messageConstraints.getMaxHeaderCount(),
                     this.messageConstraints.getMaxLineLength(),
                     this.lineParser,
-                    this.headerLines);
+                    this.headerLines,
+                    this.spareLines);
             this.message.setHeaders(headers);
             final T result = this.message;
             this.message = null;
+            if (this.spareLines != null) {
+                // message headers are detached from their header lines
+                for (final CharArrayBuffer line: this.headerLines) {
+                    if (this.spareLines.size() < MAX_SPARE_LINES && line.capacity() <= MAX_SPARE_CAPACITY) {
+                        this.spareLines.add(line);
+                    }
+                }
+            }
             this.headerLines.clear();
             this.state = HEAD_LINE;
             return result;
@@ -0,0 +1,327 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.io;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.http.FormattedHeader;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.util.Args;
+import org.apache.http.util.ByteArrayBuffer;
+import org.apache.http.util.CharArrayBuffer;
+
+/**
+ * Encoder of HTTP message head elements that renders status lines and headers
+ * consisting of ASCII characters only directly into a byte buffer, producing
+ * exactly the same output as {@link org.apache.http.message.BasicLineFormatter}.
+ * <p>
+ * Status lines of HTTP/1.0 and HTTP/1.1 responses with standard reason phrases
+ * as well as {@code name: } prefixes of well-known headers are encoded once
+ * and subsequently copied as is. Elements containing non-ASCII characters are
+ * rejected leaving the destination buffer intact, in which case it is up to
+ * the caller to fall back on the char encoder of the session buffer.
+ * <p>
+ * CR-LF line delimiter is appended to every encoded element.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class AsciiHeadEncoder {
+
+    public static final AsciiHeadEncoder INSTANCE = new AsciiHeadEncoder();
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+
+    private static final String[] WELL_KNOWN_HEADERS = new String[] {
+        HttpHeaders.ACCEPT_RANGES,
+        HttpHeaders.AGE,
+        HttpHeaders.ALLOW,
+        HttpHeaders.CACHE_CONTROL,
+        HttpHeaders.CONNECTION,
+        HttpHeaders.CONTENT_ENCODING,
+        HttpHeaders.CONTENT_LANGUAGE,
+        HttpHeaders.CONTENT_LENGTH,
+        HttpHeaders.CONTENT_LOCATION,
+        HttpHeaders.CONTENT_RANGE,
+        HttpHeaders.CONTENT_TYPE,
+        HttpHeaders.DATE,
+        HttpHeaders.ETAG,
+        HttpHeaders.EXPIRES,
+        HttpHeaders.HOST,
+        HttpHeaders.LAST_MODIFIED,
+        HttpHeaders.LOCATION,
+        HttpHeaders.PRAGMA,
+        HttpHeaders.PROXY_AUTHENTICATE,
+        HttpHeaders.RETRY_AFTER,
+        HttpHeaders.SERVER,
+        HttpHeaders.TRAILER,
+        HttpHeaders.TRANSFER_ENCODING,
+        HttpHeaders.UPGRADE,
+        HttpHeaders.USER_AGENT,
+        HttpHeaders.VARY,
+        HttpHeaders.VIA,
+        HttpHeaders.WARNING,
+        HttpHeaders.WWW_AUTHENTICATE,
+        "Keep-Alive",
+        "Set-Cookie"
+    };
+
+    private static final StatusLineEntry[] HTTP_1_0_STATUS_LINES = createStatusLines(HttpVersion.HTTP_1_0);
+    private static final StatusLineEntry[] HTTP_1_1_STATUS_LINES = createStatusLines(HttpVersion.HTTP_1_1);
+    private static final Map<String, byte[]> HEADER_PREFIXES = createHeaderPrefixes();
+
+    static class StatusLineEntry {
+
+        final String reason;
+        final byte[] line;
+
+        StatusLineEntry(final String reason, final byte[] line) {
+            this.reason = reason;
+            this.line = line;
+        }
+
+    }
+
+    private static StatusLineEntry[] createStatusLines(final ProtocolVersion ver) {
+        final StatusLineEntry[] entries = new StatusLineEntry[MAX_STATUS - MIN_STATUS + 1];
+        final CharArrayBuffer buffer = new CharArrayBuffer(64);
+        for (int status = MIN_STATUS; status <= MAX_STATUS; status++) {
+            final String reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH);
+            if (reason != null) {
+                buffer.clear();
+                appendStatusLine(buffer, ver, status, reason);
+                final ByteArrayBuffer line = new ByteArrayBuffer(buffer.length() + 2);
+                line.append(buffer, 0, buffer.length());
+                line.append(HTTP.CR);
+                line.append(HTTP.LF);
+                entries[status - MIN_STATUS] = new StatusLineEntry(reason, line.toByteArray());
+            }
+        }
+        return entries;
+    }
+
+    private static Map<String, byte[]> createHeaderPrefixes() {
+        final Map<String, byte[]> map = new HashMap<String, byte[]>(WELL_KNOWN_HEADERS.length * 2);
+        for (final String name: WELL_KNOWN_HEADERS) {
+            final ByteArrayBuffer prefix = new ByteArrayBuffer(name.length() + 2);
+            final char[] chars = name.toCharArray();
+            prefix.append(chars, 0, chars.length);
+            prefix.append(':');
+            prefix.append(' ');
+            map.put(name, prefix.toByteArray());
+        }
+        return map;
+    }
+
+    private static void appendStatusLine(
+            final CharArrayBuffer buffer,
+            final ProtocolVersion ver,
+            final int status,
+            final String reason) {
+        buffer.append(ver.getProtocol());
+        buffer.append('/');
+        buffer.append(Integer.toString(ver.getMajor()));
+        buffer.append('.');
+        buffer.append(Integer.toString(ver.getMinor()));
+        buffer.append(' ');
+        buffer.append(Integer.toString(status));
+        buffer.append(' ');
+        if (reason != null) {
+            buffer.append(reason);
+        }
+    }
+
+    private static boolean isAscii(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void appendAscii(final ByteArrayBuffer dst, final String s) {
+        final int off = dst.length();
+        final int len = s.length();
+        dst.ensureCapacity(len);
+        final byte[] b = dst.buffer();
+        for (int i = 0; i < len; i++) {
+            b[off + i] = (byte) s.charAt(i);
+        }
+        dst.setLength(off + len);
+    }
+
+    private static void appendInt(final ByteArrayBuffer dst, final int i) {
+        if (i >= 0 && i < 10) {
+            dst.append('0' + i);
+        } else {
+            appendAscii(dst, Integer.toString(i));
+        }
+    }
+
+    private static void appendCRLF(final ByteArrayBuffer dst) {
+        dst.append(HTTP.CR);
+        dst.append(HTTP.LF);
+    }
+
+    private StatusLineEntry lookupStatusLine(final ProtocolVersion ver, final int status) {
+        if (status < MIN_STATUS || status > MAX_STATUS) {
+            return null;
+        }
+        final StatusLineEntry[] entries;
+        if (HttpVersion.HTTP_1_1.equals(ver)) {
+            entries = HTTP_1_1_STATUS_LINES;
+        } else if (HttpVersion.HTTP_1_0.equals(ver)) {
+            entries = HTTP_1_0_STATUS_LINES;
+        } else {
+            return null;
+        }
+        return entries[status - MIN_STATUS];
+    }
+
+    /**
+     * Encodes the status line followed by CR-LF into the destination buffer.
+     *
+     * @param statusLine the status line.
+     * @param dst the destination buffer.
+     * @return {@code true} if the status line has been encoded, {@code false}
+     *   if it contains non-ASCII characters, in which case the content of
+     *   the destination buffer remains unchanged.
+     */
+    public boolean encodeStatusLine(final StatusLine statusLine, final ByteArrayBuffer dst) {
+        Args.notNull(statusLine, "Status line");
+        Args.notNull(dst, "Byte buffer");
+        final ProtocolVersion ver = statusLine.getProtocolVersion();
+        final int status = statusLine.getStatusCode();
+        final String reason = statusLine.getReasonPhrase();
+        final StatusLineEntry entry = lookupStatusLine(ver, status);
+        if (entry != null && (entry.reason == reason || entry.reason.equals(reason))) {
+            dst.append(entry.line, 0, entry.line.length);
+            return true;
+        }
+        final String protocol = ver.getProtocol();
+        if (!isAscii(protocol) || (reason != null && !isAscii(reason))) {
+            return false;
+        }
+        appendAscii(dst, protocol);
+        dst.append('/');
+        appendInt(dst, ver.getMajor());
+        dst.append('.');
+        appendInt(dst, ver.getMinor());
+        dst.append(' ');
+        appendAscii(dst, Integer.toString(status));
+        dst.append(' ');
+        if (reason != null) {
+            appendAscii(dst, reason);
+        }
+        appendCRLF(dst);
+        return true;
+    }
+
+    /**
+     * Encodes the header followed by CR-LF into the destination buffer.
+     * CR, LF, FF and VT characters in the header value are replaced with
+     * a space exactly as {@link org.apache.http.message.BasicLineFormatter}
+     * would do.
+     *
+     * @param header the header.
+     * @param dst the destination buffer.
+     * @return {@code true} if the header has been encoded, {@code false}
+     *   if it contains non-ASCII characters, in which case the content of
+     *   the destination buffer remains unchanged.
+     */
+    public boolean encodeHeader(final Header header, final ByteArrayBuffer dst) {
+        Args.notNull(header, "Header");
+        Args.notNull(dst, "Byte buffer");
+        if (header instanceof FormattedHeader) {
+            final CharArrayBuffer buffer = ((FormattedHeader) header).getBuffer();
+            final int len = buffer.length();
+            final char[] chars = buffer.buffer();
+            for (int i = 0; i < len; i++) {
+                if (chars[i] > 0x7f) {
+                    return false;
+                }
+            }
+            dst.append(buffer, 0, len);
+            appendCRLF(dst);
+            return true;
+        }
+        final String name = header.getName();
+        final String value = header.getValue();
+        if (!isAscii(name) || (value != null && !isAscii(value))) {
+            return false;
+        }
+        final byte[] prefix = HEADER_PREFIXES.get(name);
+        if (prefix != null) {
+            dst.append(prefix, 0, prefix.length);
+        } else {
+            appendAscii(dst, name);
+            dst.append(':');
+            dst.append(' ');
+        }
+        if (value != null) {
+            final int off = dst.length();
+            final int len = value.length();
+            dst.ensureCapacity(len);
+            final byte[] b = dst.buffer();
+            for (int i = 0; i < len; i++) {
+                final char ch = value.charAt(i);
+                if (ch == '\r' || ch == '\n' || ch == '\f' || ch == 0x0b) {
+                    b[off + i] = ' ';
+                } else {
+                    b[off + i] = (byte) ch;
+                }
+            }
+            dst.setLength(off + len);
+        }
+        appendCRLF(dst);
+        return true;
+    }
+
+    /**
+     * Appends the empty line terminating a message head to the destination buffer.
+     *
+     * @param dst the destination buffer.
+     */
+    public void encodeHeadTerminator(final ByteArrayBuffer dst) {
+        Args.notNull(dst, "Byte buffer");
+        appendCRLF(dst);
+    }
+
+}
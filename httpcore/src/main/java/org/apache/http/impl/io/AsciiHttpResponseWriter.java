@@ -0,0 +1,100 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.io;
+
+import java.io.IOException;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderIterator;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.io.SessionOutputBuffer;
+import org.apache.http.message.BasicLineFormatter;
+import org.apache.http.util.Args;
+import org.apache.http.util.ByteArrayBuffer;
+
+/**
+ * HTTP response writer that renders message heads consisting of ASCII
+ * characters directly into bytes using {@link AsciiHeadEncoder} and copies
+ * the entire head into the session buffer at once. Status lines and header
+ * names of common responses are copied from a cache of pre-encoded byte
+ * sequences instead of being formatted anew for every message.
+ * <p>
+ * Head elements containing non-ASCII characters are formatted with
+ * {@link BasicLineFormatter} and written out through the char encoder of
+ * the session buffer, same as {@link DefaultHttpResponseWriter} would do,
+ * so the output of both writers is always identical.
+ *
+ * @since 4.4.17
+ */
+public class AsciiHttpResponseWriter extends AbstractMessageWriter<HttpResponse> {
+
+    private final AsciiHeadEncoder headEncoder;
+    private final ByteArrayBuffer headBuf;
+
+    public AsciiHttpResponseWriter(final SessionOutputBuffer buffer) {
+        super(buffer, BasicLineFormatter.INSTANCE);
+        this.headEncoder = AsciiHeadEncoder.INSTANCE;
+        this.headBuf = new ByteArrayBuffer(256);
+    }
+
+    private void flushHead() throws IOException {
+        if (this.headBuf.length() > 0) {
+            this.sessionBuffer.write(this.headBuf.buffer(), 0, this.headBuf.length());
+            this.headBuf.clear();
+        }
+    }
+
+    @Override
+    protected void writeHeadLine(final HttpResponse message) throws IOException {
+        final StatusLine statusLine = message.getStatusLine();
+        if (!this.headEncoder.encodeStatusLine(statusLine, this.headBuf)) {
+            flushHead();
+            this.lineFormatter.formatStatusLine(this.lineBuf, statusLine);
+            this.sessionBuffer.writeLine(this.lineBuf);
+        }
+    }
+
+    @Override
+    public void write(final HttpResponse message) throws IOException, HttpException {
+        Args.notNull(message, "HTTP message");
+        this.headBuf.clear();
+        writeHeadLine(message);
+        for (final HeaderIterator it = message.headerIterator(); it.hasNext(); ) {
+            final Header header = it.nextHeader();
+            if (!this.headEncoder.encodeHeader(header, this.headBuf)) {
+                flushHead();
+                this.sessionBuffer.writeLine(this.lineFormatter.formatHeader(this.lineBuf, header));
+            }
+        }
+        this.headEncoder.encodeHeadTerminator(this.headBuf);
+        flushHead();
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.io;
+
+import org.apache.http.MalformedChunkCodingException;
+import org.apache.http.MessageConstraintException;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * Byte level state machine parser of chunk heads of the chunked transfer
+ * coding. The parser consumes the CRLF terminating the data of the preceding
+ * chunk, if any, and the chunk-size line including optional chunk extensions,
+ * decoding the hexadecimal chunk size directly from the input bytes without
+ * intermediate line buffers or strings.
+ * <p>
+ * The parser accepts the same input as line based parsing does: leading and
+ * trailing whitespace around the chunk size and bare LF line delimiters are
+ * tolerated. Input can be fed in arbitrary portions; the parser retains its
+ * state between calls to {@link #update(int)}.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.UNSAFE)
+public final class ChunkHeadParser {
+
+    private static final int DATA_CR    = 0;
+    private static final int DATA_LF    = 1;
+    private static final int SIZE_LWS   = 2;
+    private static final int SIZE       = 3;
+    private static final int SIZE_TWS   = 4;
+    private static final int EXTENSION  = 5;
+    private static final int LINE_LF    = 6;
+    private static final int DONE       = 7;
+
+    private static final long MAX_SIZE = Long.MAX_VALUE >> 4;
+
+    private final int maxLineLength;
+
+    private int state;
+    private int lineLength;
+    private int digits;
+    private long chunkSize;
+
+    /**
+     * @param maxLineLength maximum length of the chunk-size line. Zero or
+     *   negative value disables the check.
+     */
+    public ChunkHeadParser(final int maxLineLength) {
+        super();
+        this.maxLineLength = maxLineLength;
+        this.state = DONE;
+    }
+
+    /**
+     * Prepares the parser for the next chunk head.
+     *
+     * @param endOfChunk {@code true} if the chunk head is preceded by the CRLF
+     *   terminating the data of the previous chunk.
+     */
+    public void reset(final boolean endOfChunk) {
+        this.state = endOfChunk ? DATA_CR : SIZE_LWS;
+        this.lineLength = 0;
+        this.digits = 0;
+        this.chunkSize = 0L;
+    }
+
+    private static int hex(final int b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(final int b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private boolean endOfLine() throws MalformedChunkCodingException {
+        if (this.digits == 0) {
+            throw new MalformedChunkCodingException("Bad chunk header: missing chunk size");
+        }
+        this.state = DONE;
+        return true;
+    }
+
+    /**
+     * Consumes one byte of input.
+     *
+     * @param b byte of input.
+     * @return {@code true} if the chunk head is complete, in which case
+     *   {@link #getChunkSize()} returns the decoded chunk size.
+     * @throws MalformedChunkCodingException if the input does not represent
+     *   a valid chunk head.
+     * @throws MessageConstraintException if the chunk-size line exceeds the
+     *   maximum line length.
+     */
+    public boolean update(final int b) throws MalformedChunkCodingException, MessageConstraintException {
+        switch (this.state) {
+        case DATA_CR:
+            if (b == '\r') {
+                this.state = DATA_LF;
+                return false;
+            }
+            if (b == '\n') {
+                this.state = SIZE_LWS;
+                return false;
+            }
+            throw new MalformedChunkCodingException("CRLF expected at end of chunk");
+        case DATA_LF:
+            if (b == '\n') {
+                this.state = SIZE_LWS;
+                return false;
+            }
+            throw new MalformedChunkCodingException("CRLF expected at end of chunk");
+        case LINE_LF:
+            if (b == '\n') {
+                return endOfLine();
+            }
+            throw new MalformedChunkCodingException("Bad chunk header: CR not followed by LF");
+        case DONE:
+            throw new IllegalStateException("Chunk head already parsed");
+        default:
+            break;
+        }
+        if (b == '\n') {
+            return endOfLine();
+        }
+        if (b == '\r') {
+            this.state = LINE_LF;
+            return false;
+        }
+        this.lineLength++;
+        if (this.maxLineLength > 0 && this.lineLength > this.maxLineLength) {
+            throw new MessageConstraintException("Maximum line length limit exceeded");
+        }
+        switch (this.state) {
+        case SIZE_LWS:
+        case SIZE:
+            final int d = hex(b);
+            if (d >= 0) {
+                if (this.chunkSize > MAX_SIZE) {
+                    throw new MalformedChunkCodingException("Bad chunk header: chunk size too large");
+                }
+                this.chunkSize = (this.chunkSize << 4) | d;
+                this.digits++;
+                this.state = SIZE;
+            } else if (b == ';') {
+                this.state = EXTENSION;
+            } else if (isWhitespace(b)) {
+                if (this.state == SIZE) {
+                    this.state = SIZE_TWS;
+                }
+            } else {
+                throw new MalformedChunkCodingException("Bad chunk header: invalid character in chunk size");
+            }
+            break;
+        case SIZE_TWS:
+            if (b == ';') {
+                this.state = EXTENSION;
+            } else if (!isWhitespace(b)) {
+                throw new MalformedChunkCodingException("Bad chunk header: invalid character in chunk size");
+            }
+            break;
+        default:
+            // chunk extensions are ignored
+            break;
+        }
+        return false;
+    }
+
+    /**
+     * Signals the end of input.
+     *
+     * @return {@code true} if the chunk-size line is deemed complete,
+     *   {@code false} if no part of it has been received.
+     * @throws MalformedChunkCodingException if the input ends within the CRLF
+     *   terminating chunk data or the partial chunk-size line is not valid.
+     */
+    public boolean endOfStream() throws MalformedChunkCodingException {
+        switch (this.state) {
+        case DATA_CR:
+        case DATA_LF:
+            throw new MalformedChunkCodingException("CRLF expected at end of chunk");
+        case DONE:
+            return true;
+        case SIZE_LWS:
+            if (this.lineLength == 0) {
+                return false;
+            }
+            return endOfLine();
+        default:
+            return endOfLine();
+        }
+    }
+
+    /**
+     * Determines whether the current chunk head has been parsed completely.
+     */
+    public boolean isComplete() {
+        return this.state == DONE;
+    }
+
+    /**
+     * Returns the size of the chunk whose head has been parsed.
+     */
+    public long getChunkSize() {
+        return this.chunkSize;
+    }
+
+}
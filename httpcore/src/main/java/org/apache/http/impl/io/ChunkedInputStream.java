@@ -39,7 +39,6 @@
 import org.apache.http.io.BufferInfo;
 import org.apache.http.io.SessionInputBuffer;
 import org.apache.http.util.Args;
-import org.apache.http.util.CharArrayBuffer;
 
 /**
  * Implements chunked transfer coding. The content is received in small chunks.
@@ -62,13 +61,14 @@ public class ChunkedInputStream extends InputStream {
     private static final int CHUNK_LEN               = 1;
     private static final int CHUNK_DATA              = 2;
     private static final int CHUNK_CRLF              = 3;
+    private static final int CHUNK_LAST              = 4;
     private static final int CHUNK_INVALID           = Integer.MAX_VALUE;
 
     private static final int BUFFER_SIZE = 2048;
 
     /** The session input buffer */
     private final SessionInputBuffer in;
-    private final CharArrayBuffer buffer;
+    private final ChunkHeadParser parser;
     private final MessageConstraints constraints;
 
     private int state;
@@ -79,6 +79,9 @@ public class ChunkedInputStream extends InputStream {
     /** The current position within the current chunk */
     private long pos;
 
+    /** True if the parser has consumed part of the next chunk head */
+    private boolean headPending;
+
     /** True if we've reached the end of stream */
     private boolean eof = false;
 
@@ -100,8 +103,16 @@ public ChunkedInputStream(final SessionInputBuffer in, final MessageConstraints
         super();
         this.in = Args.notNull(in, "Session input buffer");
         this.pos = 0L;
-        this.buffer = new CharArrayBuffer(16);
         this.constraints = constraints != null ? constraints : MessageConstraints.DEFAULT;
+        int maxLineLength = this.constraints.getMaxLineLength();
+        if (in instanceof SessionInputBufferImpl) {
+            // chunk heads are no longer read as lines; apply the line length limit of the buffer
+            final int bufferMaxLineLength = ((SessionInputBufferImpl) in).getMaxLineLength();
+            if (bufferMaxLineLength > 0 && (maxLineLength <= 0 || bufferMaxLineLength < maxLineLength)) {
+                maxLineLength = bufferMaxLineLength;
+            }
+        }
+        this.parser = new ChunkHeadParser(maxLineLength);
         this.state = CHUNK_LEN;
     }
 
@@ -160,7 +171,10 @@ public int read() throws IOException {
     }
 
     /**
-     * Read some bytes from the stream.
+     * Read some bytes from the stream. Data of consecutive chunks is
+     * returned in a single call as long as their chunk heads are already
+     * available in the session buffer; the method blocks only if no data
+     * has been read yet.
      * @param b The byte array that will hold the contents from the stream.
      * @param off The offset into the byte array at which bytes will start to be
      * placed.
@@ -179,23 +193,37 @@ public int read (final byte[] b, final int off, final int len) throws IOExceptio
         if (eof) {
             return -1;
         }
-        if (state != CHUNK_DATA) {
-            nextChunk();
-            if (eof) {
-                return -1;
-            }
+        if (len == 0) {
+            return 0;
         }
-        final int readLen = in.read(b, off, (int) Math.min(len, chunkSize - pos));
-        if (readLen != -1) {
+        int total = 0;
+        while (total < len) {
+            if (state != CHUNK_DATA) {
+                if (total == 0) {
+                    nextChunk();
+                    if (eof) {
+                        return -1;
+                    }
+                } else if (!nextChunkIfBuffered()) {
+                    break;
+                }
+            }
+            final int chunk = (int) Math.min(len - total, chunkSize - pos);
+            final int readLen = in.read(b, off + total, chunk);
+            if (readLen == -1) {
+                eof = true;
+                throw new TruncatedChunkException("Truncated chunk (expected size: %,d; actual size: %,d)",
+                                chunkSize, pos);
+            }
             pos += readLen;
+            total += readLen;
             if (pos >= chunkSize) {
                 state = CHUNK_CRLF;
+            } else if (readLen < chunk) {
+                break;
             }
-            return readLen;
         }
-        eof = true;
-        throw new TruncatedChunkException("Truncated chunk (expected size: %,d; actual size: %,d)",
-                        chunkSize, pos);
+        return total;
     }
 
     /**
@@ -218,63 +246,71 @@ private void nextChunk() throws IOException {
         if (state == CHUNK_INVALID) {
             throw new MalformedChunkCodingException("Corrupt data stream");
         }
-        try {
-            chunkSize = getChunkSize();
-            if (chunkSize < 0L) {
-                throw new MalformedChunkCodingException("Negative chunk size");
-            }
-            state = CHUNK_DATA;
-            pos = 0L;
-            if (chunkSize == 0L) {
-                eof = true;
-                parseTrailerHeaders();
-            }
-        } catch (final MalformedChunkCodingException ex) {
-            state = CHUNK_INVALID;
-            throw ex;
+        if (state != CHUNK_LAST) {
+            readChunkHead(true);
+        }
+        if (chunkSize == 0L) {
+            eof = true;
+            parseTrailerHeaders();
         }
     }
 
+    /**
+     * Reads the next chunk head only as far as its bytes are available
+     * in the session buffer without blocking.
+     *
+     * @return {@code true} if the next chunk has data to be read.
+     */
+    private boolean nextChunkIfBuffered() throws IOException {
+        if (!readChunkHead(false)) {
+            return false;
+        }
+        if (chunkSize == 0L) {
+            // leave the trailers for the next read as they may not have arrived yet
+            state = CHUNK_LAST;
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Expects the stream to start with a chunksize in hex with optional
      * comments after a semicolon. The line must end with a CRLF: "a3; some
      * comment\r\n" Positions the stream at the start of the next line.
      */
-    private long getChunkSize() throws IOException {
-        final int st = this.state;
-        switch (st) {
-        case CHUNK_CRLF:
-            this.buffer.clear();
-            final int bytesRead1 = this.in.readLine(this.buffer);
-            if (bytesRead1 == -1) {
-                throw new MalformedChunkCodingException(
-                    "CRLF expected at end of chunk");
-            }
-            if (!this.buffer.isEmpty()) {
-                throw new MalformedChunkCodingException(
-                    "Unexpected content at the end of chunk");
+    private boolean readChunkHead(final boolean blocking) throws IOException {
+        try {
+            if (!headPending) {
+                if (state != CHUNK_CRLF && state != CHUNK_LEN) {
+                    throw new IllegalStateException("Inconsistent codec state");
+                }
+                parser.reset(state == CHUNK_CRLF);
+                headPending = true;
             }
-            state = CHUNK_LEN;
-            //$FALL-THROUGH$
-        case CHUNK_LEN:
-            this.buffer.clear();
-            final int bytesRead2 = this.in.readLine(this.buffer);
-            if (bytesRead2 == -1) {
-                throw new ConnectionClosedException(
+            for (;;) {
+                if (!blocking && !(in instanceof BufferInfo && ((BufferInfo) in).length() > 0)) {
+                    return false;
+                }
+                final int b = in.read();
+                if (b == -1) {
+                    if (!parser.endOfStream()) {
+                        throw new ConnectionClosedException(
                                 "Premature end of chunk coded message body: closing chunk expected");
+                    }
+                    break;
+                }
+                if (parser.update(b)) {
+                    break;
+                }
             }
-            int separator = this.buffer.indexOf(';');
-            if (separator < 0) {
-                separator = this.buffer.length();
-            }
-            final String s = this.buffer.substringTrimmed(0, separator);
-            try {
-                return Long.parseLong(s, 16);
-            } catch (final NumberFormatException e) {
-                throw new MalformedChunkCodingException("Bad chunk header: " + s);
-            }
-        default:
-            throw new IllegalStateException("Inconsistent codec state");
+            headPending = false;
+            chunkSize = parser.getChunkSize();
+            state = CHUNK_DATA;
+            pos = 0L;
+            return true;
+        } catch (final MalformedChunkCodingException ex) {
+            state = CHUNK_INVALID;
+            throw ex;
         }
     }
 
@@ -0,0 +1,70 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.io;
+
+import org.apache.http.instrument.HttpInstrumentation;
+import org.apache.http.instrument.InstrumentationSupport;
+import org.apache.http.util.Args;
+
+/**
+ * {@link HttpTransportMetricsImpl} that also reports transferred bytes
+ * to the {@link HttpInstrumentation} in effect.
+ *
+ * @since 4.4.17
+ */
+public class InstrumentedTransportMetrics extends HttpTransportMetricsImpl {
+
+    private static final HttpInstrumentation INSTRUMENTATION = InstrumentationSupport.getInstrumentation();
+
+    private final Object connection;
+    private final boolean inbound;
+
+    /**
+     * Creates new instance of InstrumentedTransportMetrics.
+     *
+     * @param connection the connection the metrics belong to.
+     * @param inbound {@code true} if the metrics track received data,
+     *   {@code false} if they track sent data.
+     */
+    public InstrumentedTransportMetrics(final Object connection, final boolean inbound) {
+        super();
+        this.connection = Args.notNull(connection, "Connection");
+        this.inbound = inbound;
+    }
+
+    @Override
+    public void incrementBytesTransferred(final long count) {
+        super.incrementBytesTransferred(count);
+        if (this.inbound) {
+            INSTRUMENTATION.bytesReceived(this.connection, count);
+        } else {
+            INSTRUMENTATION.bytesSent(this.connection, count);
+        }
+    }
+
+}
@@ -127,6 +127,10 @@ public int length() {
         return this.bufferLen - this.bufferPos;
     }
 
+    int getMaxLineLength() {
+        return this.constraints.getMaxLineLength();
+    }
+
     @Override
     public int available() {
         return capacity() - length();
@@ -0,0 +1,497 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * {@link HttpInstrumentation} that aggregates events into {@link StripedCounter}
+ * and {@link StripedStats} instances. Recording events does not take locks
+ * and only allocates on the first event of an I/O reactor or connection.
+ * Aggregated values can be exported over JMX with {@link JmxInstrumentationExporter}.
+ * <p>
+ * Besides totals, I/O reactor events are aggregated per I/O reactor until it
+ * terminates and transferred bytes per connection until it is closed.
+ * </p>
+ * <p>
+ * The instrumentation can be activated by setting the
+ * {@link InstrumentationSupport#INSTRUMENTATION_PROPERTY} system property
+ * to the name of this class.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class BasicHttpInstrumentation implements HttpInstrumentation, HttpInstrumentationMXBean {
+
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    static class ExchangeStats {
+
+        final StripedCounter failed = new StripedCounter();
+        final StripedStats responseTime = new StripedStats();
+        final StripedStats exchangeTime = new StripedStats();
+
+        void reset() {
+            this.failed.reset();
+            this.responseTime.reset();
+            this.exchangeTime.reset();
+        }
+
+    }
+
+    static class ReactorStats {
+
+        final StripedCounter readyCount = new StripedCounter();
+        final StripedStats selectTime = new StripedStats();
+        final StripedStats processTime = new StripedStats();
+        final StripedStats busyPollTime = new StripedStats();
+        final StripedCounter busyPollParks = new StripedCounter();
+        final StripedStats activeSessions = new StripedStats();
+
+        void reset() {
+            this.readyCount.reset();
+            this.selectTime.reset();
+            this.processTime.reset();
+            this.busyPollTime.reset();
+            this.busyPollParks.reset();
+            this.activeSessions.reset();
+        }
+
+    }
+
+    static class ConnectionStats {
+
+        // a connection is mostly used by one thread at a time
+        final StripedCounter bytesReceived = new StripedCounter(1);
+        final StripedCounter bytesSent = new StripedCounter(1);
+
+        void reset() {
+            this.bytesReceived.reset();
+            this.bytesSent.reset();
+        }
+
+    }
+
+    private final ConcurrentMap<Object, ReactorStats> reactors;
+    private final ConcurrentMap<Object, ConnectionStats> connections;
+    private final StripedCounter readyCount;
+    private final StripedStats selectTime;
+    private final StripedStats processTime;
+    private final StripedStats busyPollTime;
+    private final StripedCounter busyPollParks;
+    private final StripedStats newChannels;
+    private final StripedStats closedSessions;
+    private final StripedStats pendingInterestOps;
+    private final StripedStats activeSessions;
+    private final StripedCounter bytesReceived;
+    private final StripedCounter bytesSent;
+    private final ExchangeStats serverExchanges;
+    private final ExchangeStats clientExchanges;
+    private final StripedStats leaseWaitTime;
+    private final StripedCounter leasesFailed;
+
+    public BasicHttpInstrumentation() {
+        super();
+        this.reactors = new ConcurrentHashMap<Object, ReactorStats>();
+        this.connections = new ConcurrentHashMap<Object, ConnectionStats>();
+        this.readyCount = new StripedCounter();
+        this.selectTime = new StripedStats();
+        this.processTime = new StripedStats();
+        this.busyPollTime = new StripedStats();
+        this.busyPollParks = new StripedCounter();
+        this.newChannels = new StripedStats();
+        this.closedSessions = new StripedStats();
+        this.pendingInterestOps = new StripedStats();
+        this.activeSessions = new StripedStats();
+        this.bytesReceived = new StripedCounter();
+        this.bytesSent = new StripedCounter();
+        this.serverExchanges = new ExchangeStats();
+        this.clientExchanges = new ExchangeStats();
+        this.leaseWaitTime = new StripedStats();
+        this.leasesFailed = new StripedCounter();
+    }
+
+    private static double toMillis(final double nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private static double parkRatio(final long parks, final long count) {
+        return count > 0 ? (double) parks / count : 0d;
+    }
+
+    private static String label(final Object object) {
+        return object.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(object));
+    }
+
+    private ExchangeStats getExchangeStats(final ExchangeType type) {
+        return type == ExchangeType.SERVER ? this.serverExchanges : this.clientExchanges;
+    }
+
+    private ReactorStats getReactorStats(final Object reactor) {
+        ReactorStats stats = this.reactors.get(reactor);
+        if (stats == null) {
+            stats = new ReactorStats();
+            final ReactorStats existing = this.reactors.putIfAbsent(reactor, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    private ConnectionStats getConnectionStats(final Object connection) {
+        ConnectionStats stats = this.connections.get(connection);
+        if (stats == null) {
+            stats = new ConnectionStats();
+            final ConnectionStats existing = this.connections.putIfAbsent(connection, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void ioReactorLoopCompleted(
+            final Object reactor, final int readyCount, final long selectTime, final long processTime) {
+        this.readyCount.add(readyCount);
+        this.selectTime.record(selectTime);
+        this.processTime.record(processTime);
+        final ReactorStats stats = getReactorStats(reactor);
+        stats.readyCount.add(readyCount);
+        stats.selectTime.record(selectTime);
+        stats.processTime.record(processTime);
+    }
+
+    @Override
+    public void ioReactorBusyPollCompleted(final Object reactor, final long spinTime, final boolean parked) {
+        final ReactorStats stats = getReactorStats(reactor);
+        this.busyPollTime.record(spinTime);
+        stats.busyPollTime.record(spinTime);
+        if (parked) {
+            this.busyPollParks.increment();
+            stats.busyPollParks.increment();
+        }
+    }
+
+    @Override
+    public void ioReactorQueueDepth(
+            final Object reactor,
+            final int newChannels, final int closedSessions, final int pendingInterestOps, final int activeSessions) {
+        this.newChannels.record(newChannels);
+        this.closedSessions.record(closedSessions);
+        this.pendingInterestOps.record(pendingInterestOps);
+        this.activeSessions.record(activeSessions);
+        getReactorStats(reactor).activeSessions.record(activeSessions);
+    }
+
+    @Override
+    public void ioReactorTerminated(final Object reactor) {
+        this.reactors.remove(reactor);
+    }
+
+    @Override
+    public void bytesReceived(final Object connection, final long count) {
+        this.bytesReceived.add(count);
+        getConnectionStats(connection).bytesReceived.add(count);
+    }
+
+    @Override
+    public void bytesSent(final Object connection, final long count) {
+        this.bytesSent.add(count);
+        getConnectionStats(connection).bytesSent.add(count);
+    }
+
+    @Override
+    public void connectionClosed(final Object connection) {
+        this.connections.remove(connection);
+    }
+
+    @Override
+    public void exchangeCompleted(
+            final ExchangeType type, final long startTime, final long headTime, final long endTime) {
+        final ExchangeStats stats = getExchangeStats(type);
+        stats.responseTime.record(headTime - startTime);
+        stats.exchangeTime.record(endTime - startTime);
+    }
+
+    @Override
+    public void exchangeFailed(final ExchangeType type, final long startTime, final long endTime) {
+        getExchangeStats(type).failed.increment();
+    }
+
+    @Override
+    public void leaseCompleted(final Object route, final long waitTime) {
+        this.leaseWaitTime.record(waitTime);
+    }
+
+    @Override
+    public void leaseFailed(final Object route, final long waitTime) {
+        this.leasesFailed.increment();
+    }
+
+    @Override
+    public long getIOReactorLoopCount() {
+        return this.selectTime.getCount();
+    }
+
+    @Override
+    public long getIOReactorReadyCount() {
+        return this.readyCount.sum();
+    }
+
+    @Override
+    public double getIOReactorSelectTimeMean() {
+        return toMillis(this.selectTime.getMean());
+    }
+
+    @Override
+    public double getIOReactorProcessTimeMean() {
+        return toMillis(this.processTime.getMean());
+    }
+
+    @Override
+    public double getIOReactorProcessTimeMax() {
+        return toMillis(this.processTime.getMax());
+    }
+
+    @Override
+    public long getIOReactorBusyPollCount() {
+        return this.busyPollTime.getCount();
+    }
+
+    @Override
+    public double getIOReactorBusyPollParkRatio() {
+        return parkRatio(this.busyPollParks.sum(), this.busyPollTime.getCount());
+    }
+
+    @Override
+    public double getIOReactorBusyPollTimeMean() {
+        return toMillis(this.busyPollTime.getMean());
+    }
+
+    @Override
+    public double getNewChannelQueueDepthMean() {
+        return this.newChannels.getMean();
+    }
+
+    @Override
+    public long getNewChannelQueueDepthMax() {
+        return this.newChannels.getMax();
+    }
+
+    @Override
+    public double getClosedSessionQueueDepthMean() {
+        return this.closedSessions.getMean();
+    }
+
+    @Override
+    public long getClosedSessionQueueDepthMax() {
+        return this.closedSessions.getMax();
+    }
+
+    @Override
+    public double getInterestOpsQueueDepthMean() {
+        return this.pendingInterestOps.getMean();
+    }
+
+    @Override
+    public long getInterestOpsQueueDepthMax() {
+        return this.pendingInterestOps.getMax();
+    }
+
+    @Override
+    public double getActiveSessionsMean() {
+        return this.activeSessions.getMean();
+    }
+
+    @Override
+    public long getActiveSessionsMax() {
+        return this.activeSessions.getMax();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return this.bytesReceived.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return this.bytesSent.sum();
+    }
+
+    @Override
+    public Map<String, IOReactorStatistics> getIOReactorStatistics() {
+        final Map<String, IOReactorStatistics> result = new TreeMap<String, IOReactorStatistics>();
+        for (final Map.Entry<Object, ReactorStats> entry: this.reactors.entrySet()) {
+            final ReactorStats stats = entry.getValue();
+            result.put(label(entry.getKey()), new IOReactorStatistics(
+                    stats.selectTime.getCount(),
+                    stats.readyCount.sum(),
+                    toMillis(stats.selectTime.getMean()),
+                    toMillis(stats.processTime.getMean()),
+                    toMillis(stats.processTime.getMax()),
+                    stats.busyPollTime.getCount(),
+                    parkRatio(stats.busyPollParks.sum(), stats.busyPollTime.getCount()),
+                    stats.activeSessions.getMax()));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, ConnectionStatistics> getConnectionStatistics() {
+        final Map<String, ConnectionStatistics> result = new TreeMap<String, ConnectionStatistics>();
+        for (final Map.Entry<Object, ConnectionStats> entry: this.connections.entrySet()) {
+            final Object connection = entry.getKey();
+            final ConnectionStats stats = entry.getValue();
+            result.put(label(connection), new ConnectionStatistics(
+                    connection.toString(), stats.bytesReceived.sum(), stats.bytesSent.sum()));
+        }
+        return result;
+    }
+
+    @Override
+    public long getServerExchangesCompleted() {
+        return this.serverExchanges.exchangeTime.getCount();
+    }
+
+    @Override
+    public long getServerExchangesFailed() {
+        return this.serverExchanges.failed.sum();
+    }
+
+    @Override
+    public double getServerResponseTimeMean() {
+        return toMillis(this.serverExchanges.responseTime.getMean());
+    }
+
+    @Override
+    public double getServerExchangeTimeMean() {
+        return toMillis(this.serverExchanges.exchangeTime.getMean());
+    }
+
+    @Override
+    public double getServerExchangeTimeMax() {
+        return toMillis(this.serverExchanges.exchangeTime.getMax());
+    }
+
+    @Override
+    public long getClientExchangesCompleted() {
+        return this.clientExchanges.exchangeTime.getCount();
+    }
+
+    @Override
+    public long getClientExchangesFailed() {
+        return this.clientExchanges.failed.sum();
+    }
+
+    @Override
+    public double getClientResponseTimeMean() {
+        return toMillis(this.clientExchanges.responseTime.getMean());
+    }
+
+    @Override
+    public double getClientExchangeTimeMean() {
+        return toMillis(this.clientExchanges.exchangeTime.getMean());
+    }
+
+    @Override
+    public double getClientExchangeTimeMax() {
+        return toMillis(this.clientExchanges.exchangeTime.getMax());
+    }
+
+    @Override
+    public long getLeasesCompleted() {
+        return this.leaseWaitTime.getCount();
+    }
+
+    @Override
+    public long getLeasesFailed() {
+        return this.leasesFailed.sum();
+    }
+
+    @Override
+    public double getLeaseWaitTimeMean() {
+        return toMillis(this.leaseWaitTime.getMean());
+    }
+
+    @Override
+    public double getLeaseWaitTimeMax() {
+        return toMillis(this.leaseWaitTime.getMax());
+    }
+
+    @Override
+    public void reset() {
+        this.readyCount.reset();
+        this.selectTime.reset();
+        this.processTime.reset();
+        this.busyPollTime.reset();
+        this.busyPollParks.reset();
+        this.newChannels.reset();
+        this.closedSessions.reset();
+        this.pendingInterestOps.reset();
+        this.activeSessions.reset();
+        this.bytesReceived.reset();
+        this.bytesSent.reset();
+        this.serverExchanges.reset();
+        this.clientExchanges.reset();
+        this.leaseWaitTime.reset();
+        this.leasesFailed.reset();
+        for (final ReactorStats stats: this.reactors.values()) {
+            stats.reset();
+        }
+        for (final ConnectionStats stats: this.connections.values()) {
+            stats.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[bytesReceived=").append(getBytesReceived())
+            .append(", bytesSent=").append(getBytesSent())
+            .append(", serverExchanges=").append(getServerExchangesCompleted())
+            .append(", clientExchanges=").append(getClientExchangesCompleted())
+            .append(", leases=").append(getLeasesCompleted())
+            .append("]");
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+import java.beans.ConstructorProperties;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * Snapshot of the statistics of a single open connection as reported by
+ * {@link HttpInstrumentationMXBean#getConnectionStatistics()}.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class ConnectionStatistics {
+
+    private final String description;
+    private final long bytesReceived;
+    private final long bytesSent;
+
+    @ConstructorProperties({ "description", "bytesReceived", "bytesSent" })
+    public ConnectionStatistics(final String description, final long bytesReceived, final long bytesSent) {
+        super();
+        this.description = description;
+        this.bytesReceived = bytesReceived;
+        this.bytesSent = bytesSent;
+    }
+
+    /**
+     * Returns the string representation of the connection, usually its
+     * local and remote address.
+     */
+    public String getDescription() {
+        return this.description;
+    }
+
+    public long getBytesReceived() {
+        return this.bytesReceived;
+    }
+
+    public long getBytesSent() {
+        return this.bytesSent;
+    }
+
+    @Override
+    public String toString() {
+        return this.description + " [received=" + this.bytesReceived + ", sent=" + this.bytesSent + "]";
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+/**
+ * Service provider interface receiving runtime events from I/O reactors,
+ * connections, connection pools and protocol handlers.
+ * <p>
+ * The active instrumentation is resolved once per JVM by
+ * {@link InstrumentationSupport}. Methods of this interface are invoked
+ * from I/O dispatch and worker threads in the course of message processing,
+ * so implementations must be thread-safe, must not block and should not
+ * allocate.
+ * </p>
+ * <p>
+ * All times are expressed in nanoseconds as returned by {@link System#nanoTime()}.
+ * </p>
+ * <p>
+ * I/O reactor and connection events carry the I/O reactor or connection they
+ * originate from. Implementations keeping state per I/O reactor or connection
+ * should release it on {@link #ioReactorTerminated(Object)} and
+ * {@link #connectionClosed(Object)} respectively.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+public interface HttpInstrumentation {
+
+    /**
+     * Returns {@code false} if events are discarded. Event sources may use this
+     * method to skip the collection of event data such as timestamps.
+     */
+    boolean isEnabled();
+
+    /**
+     * Triggered once per iteration of an I/O reactor select loop.
+     *
+     * @param reactor the I/O reactor.
+     * @param readyCount number of channels selected for I/O.
+     * @param selectTime time spent waiting for I/O events.
+     * @param processTime time spent processing I/O events and pending tasks.
+     */
+    void ioReactorLoopCompleted(Object reactor, int readyCount, long selectTime, long processTime);
+
+    /**
+     * Triggered when an I/O reactor in busy poll mode has finished spinning on
+     * non-blocking selects.
+     *
+     * @param reactor the I/O reactor.
+     * @param spinTime time spent spinning.
+     * @param parked {@code true} if no work turned up while spinning and the
+     *   I/O reactor fell back to a blocking select.
+     */
+    void ioReactorBusyPollCompleted(Object reactor, long spinTime, boolean parked);
+
+    /**
+     * Triggered periodically by an I/O reactor with the depth of its pending queues.
+     *
+     * @param reactor the I/O reactor.
+     * @param newChannels number of channels pending registration.
+     * @param closedSessions number of closed sessions pending disposal.
+     * @param pendingInterestOps number of pending interest op updates.
+     * @param activeSessions number of active sessions.
+     */
+    void ioReactorQueueDepth(
+            Object reactor, int newChannels, int closedSessions, int pendingInterestOps, int activeSessions);
+
+    /**
+     * Triggered when an I/O reactor has left its select loop.
+     *
+     * @param reactor the I/O reactor.
+     */
+    void ioReactorTerminated(Object reactor);
+
+    /**
+     * Triggered when data has been received by a connection.
+     *
+     * @param connection the connection.
+     * @param count number of bytes received.
+     */
+    void bytesReceived(Object connection, long count);
+
+    /**
+     * Triggered when data has been sent by a connection.
+     *
+     * @param connection the connection.
+     * @param count number of bytes sent.
+     */
+    void bytesSent(Object connection, long count);
+
+    /**
+     * Triggered when a connection has been closed or shut down.
+     *
+     * @param connection the connection.
+     */
+    void connectionClosed(Object connection);
+
+    /**
+     * Triggered when a message exchange has been completed.
+     *
+     * @param type side of the exchange.
+     * @param startTime time the request was submitted (client) or received (server).
+     * @param headTime time the response head was received (client) or submitted (server).
+     * @param endTime time the exchange was completed.
+     */
+    void exchangeCompleted(ExchangeType type, long startTime, long headTime, long endTime);
+
+    /**
+     * Triggered when a message exchange has been terminated by an error.
+     *
+     * @param type side of the exchange.
+     * @param startTime time the request was submitted (client) or received (server).
+     * @param endTime time the exchange failed.
+     */
+    void exchangeFailed(ExchangeType type, long startTime, long endTime);
+
+    /**
+     * Triggered when a connection has been leased from a pool.
+     *
+     * @param route route of the connection.
+     * @param waitTime time spent waiting for the connection.
+     */
+    void leaseCompleted(Object route, long waitTime);
+
+    /**
+     * Triggered when a connection lease request has failed, timed out or
+     * has been cancelled.
+     *
+     * @param route route of the lease request.
+     * @param waitTime time spent waiting for the connection.
+     */
+    void leaseFailed(Object route, long waitTime);
+
+}
@@ -0,0 +1,122 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link BasicHttpInstrumentation}. All times are
+ * expressed in milliseconds.
+ *
+ * @since 4.4.17
+ */
+public interface HttpInstrumentationMXBean {
+
+    long getIOReactorLoopCount();
+
+    long getIOReactorReadyCount();
+
+    double getIOReactorSelectTimeMean();
+
+    double getIOReactorProcessTimeMean();
+
+    double getIOReactorProcessTimeMax();
+
+    long getIOReactorBusyPollCount();
+
+    /**
+     * Returns the fraction of busy poll phases that ended in a blocking select.
+     */
+    double getIOReactorBusyPollParkRatio();
+
+    double getIOReactorBusyPollTimeMean();
+
+    double getNewChannelQueueDepthMean();
+
+    long getNewChannelQueueDepthMax();
+
+    double getClosedSessionQueueDepthMean();
+
+    long getClosedSessionQueueDepthMax();
+
+    double getInterestOpsQueueDepthMean();
+
+    long getInterestOpsQueueDepthMax();
+
+    double getActiveSessionsMean();
+
+    long getActiveSessionsMax();
+
+    long getBytesReceived();
+
+    long getBytesSent();
+
+    /**
+     * Returns statistics of running I/O reactors keyed by I/O reactor.
+     */
+    Map<String, IOReactorStatistics> getIOReactorStatistics();
+
+    /**
+     * Returns statistics of open connections keyed by connection.
+     */
+    Map<String, ConnectionStatistics> getConnectionStatistics();
+
+    long getServerExchangesCompleted();
+
+    long getServerExchangesFailed();
+
+    double getServerResponseTimeMean();
+
+    double getServerExchangeTimeMean();
+
+    double getServerExchangeTimeMax();
+
+    long getClientExchangesCompleted();
+
+    long getClientExchangesFailed();
+
+    double getClientResponseTimeMean();
+
+    double getClientExchangeTimeMean();
+
+    double getClientExchangeTimeMax();
+
+    long getLeasesCompleted();
+
+    long getLeasesFailed();
+
+    double getLeaseWaitTimeMean();
+
+    double getLeaseWaitTimeMax();
+
+    /**
+     * Resets all counters.
+     */
+    void reset();
+
+}
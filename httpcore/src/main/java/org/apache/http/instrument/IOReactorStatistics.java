@@ -0,0 +1,120 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+import java.beans.ConstructorProperties;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * Snapshot of the statistics of a single I/O reactor as reported by
+ * {@link HttpInstrumentationMXBean#getIOReactorStatistics()}. All times are
+ * expressed in milliseconds.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class IOReactorStatistics {
+
+    private final long loopCount;
+    private final long readyCount;
+    private final double selectTimeMean;
+    private final double processTimeMean;
+    private final double processTimeMax;
+    private final long busyPollCount;
+    private final double busyPollParkRatio;
+    private final long activeSessionsMax;
+
+    @ConstructorProperties({
+        "loopCount", "readyCount", "selectTimeMean", "processTimeMean", "processTimeMax",
+        "busyPollCount", "busyPollParkRatio", "activeSessionsMax" })
+    public IOReactorStatistics(
+            final long loopCount,
+            final long readyCount,
+            final double selectTimeMean,
+            final double processTimeMean,
+            final double processTimeMax,
+            final long busyPollCount,
+            final double busyPollParkRatio,
+            final long activeSessionsMax) {
+        super();
+        this.loopCount = loopCount;
+        this.readyCount = readyCount;
+        this.selectTimeMean = selectTimeMean;
+        this.processTimeMean = processTimeMean;
+        this.processTimeMax = processTimeMax;
+        this.busyPollCount = busyPollCount;
+        this.busyPollParkRatio = busyPollParkRatio;
+        this.activeSessionsMax = activeSessionsMax;
+    }
+
+    public long getLoopCount() {
+        return this.loopCount;
+    }
+
+    public long getReadyCount() {
+        return this.readyCount;
+    }
+
+    public double getSelectTimeMean() {
+        return this.selectTimeMean;
+    }
+
+    public double getProcessTimeMean() {
+        return this.processTimeMean;
+    }
+
+    public double getProcessTimeMax() {
+        return this.processTimeMax;
+    }
+
+    public long getBusyPollCount() {
+        return this.busyPollCount;
+    }
+
+    public double getBusyPollParkRatio() {
+        return this.busyPollParkRatio;
+    }
+
+    public long getActiveSessionsMax() {
+        return this.activeSessionsMax;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[loops=").append(this.loopCount)
+            .append(", ready=").append(this.readyCount)
+            .append(", processTimeMean=").append(this.processTimeMean)
+            .append(", activeSessionsMax=").append(this.activeSessionsMax)
+            .append("]");
+        return buffer.toString();
+    }
+
+}
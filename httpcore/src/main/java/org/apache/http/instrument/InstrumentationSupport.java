@@ -0,0 +1,88 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Resolves the {@link HttpInstrumentation} in effect for the JVM.
+ * <p>
+ * The instrumentation is resolved once, when this class is initialized:
+ * </p>
+ * <ol>
+ * <li>if the {@link #INSTRUMENTATION_PROPERTY} system property is set, the class
+ * it names is instantiated with its public no-arg constructor;</li>
+ * <li>otherwise the first {@link HttpInstrumentation} provider registered with
+ * {@link ServiceLoader} is used;</li>
+ * <li>otherwise {@link NoopInstrumentation#INSTANCE} is used.</li>
+ * </ol>
+ * <p>
+ * If the instrumentation cannot be instantiated the no-op instrumentation is used.
+ * Event sources keep the resolved instance in a {@code static final} field,
+ * which lets the JIT compiler inline its methods and eliminate the calls entirely
+ * when the no-op instrumentation is in effect.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+public final class InstrumentationSupport {
+
+    public static final String INSTRUMENTATION_PROPERTY = "org.apache.http.instrumentation";
+
+    private static final HttpInstrumentation INSTRUMENTATION = resolve(
+            System.getProperty(INSTRUMENTATION_PROPERTY), InstrumentationSupport.class.getClassLoader());
+
+    private InstrumentationSupport() {
+    }
+
+    /**
+     * Returns the instrumentation in effect for the JVM.
+     */
+    public static HttpInstrumentation getInstrumentation() {
+        return INSTRUMENTATION;
+    }
+
+    static HttpInstrumentation resolve(final String className, final ClassLoader classLoader) {
+        try {
+            if (className != null) {
+                final Class<?> clazz = Class.forName(className, true, classLoader);
+                return (HttpInstrumentation) clazz.newInstance();
+            }
+            final Iterator<HttpInstrumentation> it = ServiceLoader.load(
+                    HttpInstrumentation.class, classLoader).iterator();
+            if (it.hasNext()) {
+                return it.next();
+            }
+        } catch (final Exception ignore) {
+        } catch (final LinkageError ignore) {
+        }
+        return NoopInstrumentation.INSTANCE;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.http.util.Args;
+
+/**
+ * Exports {@link HttpInstrumentationMXBean} instances over JMX.
+ *
+ * @since 4.4.17
+ */
+public final class JmxInstrumentationExporter {
+
+    public static final String DEFAULT_OBJECT_NAME = "org.apache.http:type=HttpInstrumentation";
+
+    private JmxInstrumentationExporter() {
+    }
+
+    /**
+     * Registers the given instrumentation with the given MBean server.
+     *
+     * @param server the MBean server.
+     * @param instrumentation the instrumentation to export.
+     * @param name the object name.
+     * @return the object name of the registered MBean.
+     * @throws JMException if the MBean could not be registered.
+     */
+    public static ObjectName export(
+            final MBeanServer server,
+            final HttpInstrumentationMXBean instrumentation,
+            final ObjectName name) throws JMException {
+        Args.notNull(server, "MBean server");
+        Args.notNull(instrumentation, "Instrumentation");
+        Args.notNull(name, "Object name");
+        return server.registerMBean(instrumentation, name).getObjectName();
+    }
+
+    /**
+     * Registers the instrumentation in effect for the JVM with the platform MBean
+     * server under {@link #DEFAULT_OBJECT_NAME}, if it is exportable.
+     *
+     * @return the object name of the registered MBean or {@code null} if
+     *   the instrumentation in effect does not implement
+     *   {@link HttpInstrumentationMXBean}.
+     * @throws JMException if the MBean could not be registered.
+     */
+    public static ObjectName export() throws JMException {
+        final HttpInstrumentation instrumentation = InstrumentationSupport.getInstrumentation();
+        if (!(instrumentation instanceof HttpInstrumentationMXBean)) {
+            return null;
+        }
+        return export(ManagementFactory.getPlatformMBeanServer(),
+                (HttpInstrumentationMXBean) instrumentation, new ObjectName(DEFAULT_OBJECT_NAME));
+    }
+
+    /**
+     * Unregisters an MBean previously registered with {@link #export(MBeanServer,
+     * HttpInstrumentationMXBean, ObjectName)}. Does nothing if no MBean is registered
+     * under the given name.
+     *
+     * @param server the MBean server.
+     * @param name the object name.
+     * @throws JMException if the MBean could not be unregistered.
+     */
+    public static void unexport(final MBeanServer server, final ObjectName name) throws JMException {
+        Args.notNull(server, "MBean server");
+        Args.notNull(name, "Object name");
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+}
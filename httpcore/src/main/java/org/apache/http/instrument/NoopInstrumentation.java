@@ -0,0 +1,106 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * {@link HttpInstrumentation} that discards all events. This is the default
+ * instrumentation; as the call sites see a single final implementation with
+ * empty methods the JIT compiler can remove them entirely.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class NoopInstrumentation implements HttpInstrumentation {
+
+    public static final NoopInstrumentation INSTANCE = new NoopInstrumentation();
+
+    private NoopInstrumentation() {
+        super();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void ioReactorLoopCompleted(final Object reactor, final int readyCount, final long selectTime, final long processTime) {
+    }
+
+    @Override
+    public void ioReactorBusyPollCompleted(final Object reactor, final long spinTime, final boolean parked) {
+    }
+
+    @Override
+    public void ioReactorQueueDepth(
+            final Object reactor,
+            final int newChannels, final int closedSessions, final int pendingInterestOps, final int activeSessions) {
+    }
+
+    @Override
+    public void ioReactorTerminated(final Object reactor) {
+    }
+
+    @Override
+    public void bytesReceived(final Object connection, final long count) {
+    }
+
+    @Override
+    public void bytesSent(final Object connection, final long count) {
+    }
+
+    @Override
+    public void connectionClosed(final Object connection) {
+    }
+
+    @Override
+    public void exchangeCompleted(
+            final ExchangeType type, final long startTime, final long headTime, final long endTime) {
+    }
+
+    @Override
+    public void exchangeFailed(final ExchangeType type, final long startTime, final long endTime) {
+    }
+
+    @Override
+    public void leaseCompleted(final Object route, final long waitTime) {
+    }
+
+    @Override
+    public void leaseFailed(final Object route, final long waitTime) {
+    }
+
+    @Override
+    public String toString() {
+        return "[no-op]";
+    }
+
+}
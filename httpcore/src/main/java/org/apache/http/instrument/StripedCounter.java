@@ -0,0 +1,115 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.util.Args;
+
+/**
+ * Counter that spreads updates from concurrent threads across a number of
+ * cells placed on separate cache lines, which keeps contended updates from
+ * serializing on a single memory location. Updates do not allocate.
+ * <p>
+ * The cell is picked by hashing the id of the current thread, so threads
+ * hashing to the same cell still share it. {@link #sum()} is not an atomic
+ * snapshot when updates happen concurrently.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class StripedCounter {
+
+    // 8 longs = 64 bytes, the most common cache line size
+    private static final int PADDING = 8;
+
+    private static final int DEFAULT_STRIPES = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    /**
+     * Creates new instance of StripedCounter.
+     *
+     * @param stripes minimal number of cells. Rounded up to the next power of two.
+     */
+    public StripedCounter(final int stripes) {
+        super();
+        Args.positive(stripes, "Number of stripes");
+        int n = 1;
+        while (n < stripes) {
+            n <<= 1;
+        }
+        this.cells = new AtomicLongArray(n * PADDING);
+        this.mask = n - 1;
+    }
+
+    public StripedCounter() {
+        this(DEFAULT_STRIPES);
+    }
+
+    private int index() {
+        final long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32));
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return (h & this.mask) * PADDING;
+    }
+
+    public void add(final long delta) {
+        this.cells.addAndGet(index(), delta);
+    }
+
+    public void increment() {
+        this.cells.incrementAndGet(index());
+    }
+
+    public long sum() {
+        long total = 0;
+        for (int i = 0; i < this.cells.length(); i += PADDING) {
+            total += this.cells.get(i);
+        }
+        return total;
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.cells.length(); i += PADDING) {
+            this.cells.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.instrument;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * Count, total and maximum of a series of recorded values such as latencies
+ * or queue depths, built on {@link StripedCounter}s. Recording a value does
+ * not allocate; the maximum is only written when it is exceeded.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class StripedStats {
+
+    private final StripedCounter count;
+    private final StripedCounter total;
+    private final AtomicLong max;
+
+    public StripedStats() {
+        super();
+        this.count = new StripedCounter();
+        this.total = new StripedCounter();
+        this.max = new AtomicLong();
+    }
+
+    public void record(final long value) {
+        this.count.increment();
+        this.total.add(value);
+        long current = this.max.get();
+        while (value > current) {
+            if (this.max.compareAndSet(current, value)) {
+                break;
+            }
+            current = this.max.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public long getTotal() {
+        return this.total.sum();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Returns the mean of recorded values or {@code 0} if no value has been recorded.
+     */
+    public double getMean() {
+        final long n = this.count.sum();
+        return n > 0 ? (double) this.total.sum() / n : 0;
+    }
+
+    public void reset() {
+        this.count.reset();
+        this.total.reset();
+        this.max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "[count=" + getCount() + ", total=" + getTotal() + ", max=" + getMax() + "]";
+    }
+
+}
@@ -27,27 +27,33 @@
 package org.apache.http.pool;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.http.annotation.Contract;
 import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.concurrent.BasicFuture;
 import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.instrument.HttpInstrumentation;
+import org.apache.http.instrument.InstrumentationSupport;
 import org.apache.http.util.Args;
 import org.apache.http.util.Asserts;
 
@@ -59,6 +65,11 @@
  * method on the {@link Future} object returned by the
  * {@link #lease(Object, Object, FutureCallback)} method in order for the lease operation
  * to complete.
+ * <p>
+ * Connections can be opened ahead of demand with {@link #prewarm(Object, int)}.
+ * If a minimum number of idle connections is configured for a route,
+ * {@link #startMaintainer(long, TimeUnit)} starts a single background thread that
+ * periodically evicts expired connections and tops the idle connections up again.
  *
  * @param <T> the route type that represents the opposite endpoint of a pooled
  *   connection.
@@ -68,7 +79,23 @@
  */
 @Contract(threading = ThreadingBehavior.SAFE_CONDITIONAL)
 public abstract class AbstractConnPool<T, C, E extends PoolEntry<T, C>>
-                                               implements ConnPool<T, E>, ConnPoolControl<T> {
+                                               implements ConnPool<T, E>, ConnPoolControl<T>, ConnPoolMetricsControl<T> {
+
+    private static final HttpInstrumentation INSTRUMENTATION = InstrumentationSupport.getInstrumentation();
+
+    /**
+     * Maximum number of available connections examined per acquisition of the
+     * pool lock by {@link #evict(long, TimeUnit)}.
+     */
+    public static final int EVICTION_BATCH_SIZE = 16;
+
+    /**
+     * Default maximum number of routes without pooled connections whose
+     * metrics are retained.
+     *
+     * @since 4.4.17
+     */
+    public static final int DEFAULT_MAX_IDLE_ROUTE_METRICS = 1000;
 
     private final Lock lock;
     private final Condition condition;
@@ -78,11 +105,21 @@
     private final LinkedList<E> available;
     private final LinkedList<Future<E>> pending;
     private final Map<T, Integer> maxPerRoute;
+    private final Map<T, Integer> minIdlePerRoute;
+    private final PoolMetricsCollector totalMetrics;
+    private final ConcurrentMap<T, PoolMetricsCollector> routeToMetrics;
+    // routes with metrics but without a route pool, in the order they lost their pool
+    private final LinkedHashMap<T, Boolean> idleMetricsRoutes;
 
+    private volatile int maxIdleRouteMetrics;
     private volatile boolean isShutDown;
     private volatile int defaultMaxPerRoute;
     private volatile int maxTotal;
     private volatile int validateAfterInactivity;
+    private volatile int defaultMinIdlePerRoute;
+    private volatile PoolMaintainer maintainer;
+    private volatile PoolMaintainer evictor;
+    private volatile PoolReusePolicy reusePolicy;
 
     public AbstractConnPool(
             final ConnFactory<T, C> connFactory,
@@ -99,6 +136,12 @@ public AbstractConnPool(
         this.available = new LinkedList<E>();
         this.pending = new LinkedList<Future<E>>();
         this.maxPerRoute = new HashMap<T, Integer>();
+        this.totalMetrics = new PoolMetricsCollector();
+        this.routeToMetrics = new ConcurrentHashMap<T, PoolMetricsCollector>();
+        this.idleMetricsRoutes = new LinkedHashMap<T, Boolean>();
+        this.maxIdleRouteMetrics = DEFAULT_MAX_IDLE_ROUTE_METRICS;
+        this.minIdlePerRoute = new HashMap<T, Integer>();
+        this.reusePolicy = PoolReusePolicy.LIFO;
     }
 
     /**
@@ -143,6 +186,14 @@ public void shutdown() throws IOException {
             return ;
         }
         this.isShutDown = true;
+        final PoolMaintainer currentMaintainer = this.maintainer;
+        if (currentMaintainer != null) {
+            currentMaintainer.close();
+        }
+        final PoolMaintainer currentEvictor = this.evictor;
+        if (currentEvictor != null) {
+            currentEvictor.close();
+        }
         this.lock.lock();
         try {
             for (final E entry: this.available) {
@@ -155,6 +206,8 @@ public void shutdown() throws IOException {
                 pool.shutdown();
             }
             this.routeToPool.clear();
+            this.routeToMetrics.clear();
+            this.idleMetricsRoutes.clear();
             this.leased.clear();
             this.available.clear();
         } finally {
@@ -174,10 +227,31 @@ protected E createEntry(final C conn) {
 
             };
             this.routeToPool.put(route, pool);
+            this.idleMetricsRoutes.remove(route);
         }
         return pool;
     }
 
+    private PoolMetricsCollector getMetrics(final T route) {
+        PoolMetricsCollector metrics = this.routeToMetrics.get(route);
+        if (metrics == null) {
+            metrics = new PoolMetricsCollector(this.totalMetrics);
+            final PoolMetricsCollector existing = this.routeToMetrics.putIfAbsent(route, metrics);
+            if (existing != null) {
+                metrics = existing;
+            } else {
+                routeMetricsAdded(route);
+            }
+        }
+        return metrics;
+    }
+
+    private void updateCapacity(final RouteSpecificPool<T, C, E> pool) {
+        final T route = pool.getRoute();
+        getMetrics(route).updateCapacity(pool.getAllocatedCount() >= getMax(route));
+        this.totalMetrics.updateCapacity(this.leased.size() >= this.maxTotal);
+    }
+
     private static Exception operationAborted() {
         return new CancellationException("Operation aborted");
     }
@@ -195,16 +269,13 @@ public Future<E> lease(final T route, final Object state, final FutureCallback<E
         Args.notNull(route, "Route");
         Asserts.check(!this.isShutDown, "Connection pool shut down");
 
-        return new Future<E>() {
-
-            private final AtomicBoolean cancelled = new AtomicBoolean(false);
-            private final AtomicBoolean done = new AtomicBoolean(false);
-            private final AtomicReference<E> entryRef = new AtomicReference<E>(null);
+        // the callback is invoked here rather than by the future so that
+        // onLease runs after a successful completion but before the callback
+        return new BasicFuture<E>(null) {
 
             @Override
             public boolean cancel(final boolean mayInterruptIfRunning) {
-                if (done.compareAndSet(false, true)) {
-                    cancelled.set(true);
+                if (super.cancel(mayInterruptIfRunning)) {
                     lock.lock();
                     try {
                         condition.signalAll();
@@ -220,13 +291,14 @@ public boolean cancel(final boolean mayInterruptIfRunning) {
             }
 
             @Override
-            public boolean isCancelled() {
-                return cancelled.get();
-            }
-
-            @Override
-            public boolean isDone() {
-                return done.get();
+            public boolean failed(final Exception exception) {
+                if (super.failed(exception)) {
+                    if (callback != null) {
+                        callback.failed(exception);
+                    }
+                    return true;
+                }
+                return false;
             }
 
             @Override
@@ -240,53 +312,71 @@ public E get() throws InterruptedException, ExecutionException {
 
             @Override
             public E get(final long timeout, final TimeUnit timeUnit) throws InterruptedException, ExecutionException, TimeoutException {
+                if (isDone()) {
+                    return leaseOutcome();
+                }
+                final long startTime = System.nanoTime();
                 for (;;) {
                     synchronized (this) {
                         try {
-                            final E entry = entryRef.get();
-                            if (entry != null) {
-                                return entry;
-                            }
-                            if (done.get()) {
-                                throw new ExecutionException(operationAborted());
+                            if (isDone()) {
+                                return leaseOutcome();
                             }
                             final E leasedEntry = getPoolEntryBlocking(route, state, timeout, timeUnit, this);
                             if (validateAfterInactivity > 0)  {
                                 if (leasedEntry.getUpdated() + validateAfterInactivity <= System.currentTimeMillis()) {
                                     if (!validate(leasedEntry)) {
+                                        getMetrics(route).validationFailed();
                                         leasedEntry.close();
                                         release(leasedEntry, false);
                                         continue;
                                     }
                                 }
                             }
-                            if (done.compareAndSet(false, true)) {
-                                entryRef.set(leasedEntry);
-                                done.set(true);
+                            if (completed(leasedEntry)) {
                                 onLease(leasedEntry);
                                 if (callback != null) {
                                     callback.completed(leasedEntry);
                                 }
+                                final long waitTime = System.nanoTime() - startTime;
+                                getMetrics(route).leaseCompleted(TimeUnit.NANOSECONDS.toMicros(waitTime));
+                                if (INSTRUMENTATION.isEnabled()) {
+                                    INSTRUMENTATION.leaseCompleted(route, waitTime);
+                                }
                                 return leasedEntry;
                             } else {
                                 release(leasedEntry, true);
                                 throw new ExecutionException(operationAborted());
                             }
                         } catch (final IOException ex) {
-                            if (done.compareAndSet(false, true)) {
-                                if (callback != null) {
-                                    callback.failed(ex);
-                                }
-                            }
+                            failed(ex);
+                            leaseFailed(route, startTime);
                             throw new ExecutionException(ex);
+                        } catch (final TimeoutException ex) {
+                            leaseFailed(route, startTime);
+                            throw ex;
                         }
                     }
                 }
             }
 
+            private E leaseOutcome() throws InterruptedException, ExecutionException {
+                if (isCancelled()) {
+                    throw new ExecutionException(operationAborted());
+                }
+                return super.get();
+            }
+
         };
     }
 
+    private void leaseFailed(final T route, final long startTime) {
+        getMetrics(route).leaseFailed();
+        if (INSTRUMENTATION.isEnabled()) {
+            INSTRUMENTATION.leaseFailed(route, System.nanoTime() - startTime);
+        }
+    }
+
     /**
      * Attempts to lease a connection for the given route and with the given
      * state from the pool.
@@ -316,6 +406,8 @@ private E getPoolEntryBlocking(
         if (timeout > 0) {
             deadline = new Date (System.currentTimeMillis() + timeUnit.toMillis(timeout));
         }
+        final PoolMetricsCollector metrics = getMetrics(route);
+        boolean saturated = false;
         this.lock.lock();
         try {
             E entry;
@@ -326,12 +418,13 @@ private E getPoolEntryBlocking(
                 }
                 final RouteSpecificPool<T, C, E> pool = getPool(route);
                 for (;;) {
-                    entry = pool.getFree(state);
+                    entry = pool.getFree(state, this.reusePolicy == PoolReusePolicy.LIFO);
                     if (entry == null) {
                         break;
                     }
                     if (entry.isExpired(System.currentTimeMillis())) {
                         entry.close();
+                        metrics.connectionExpired();
                     }
                     if (entry.isClosed()) {
                         this.available.remove(entry);
@@ -344,6 +437,8 @@ private E getPoolEntryBlocking(
                     this.available.remove(entry);
                     this.leased.add(entry);
                     onReuse(entry);
+                    metrics.connectionReused();
+                    updateCapacity(pool);
                     return entry;
                 }
 
@@ -373,14 +468,22 @@ private E getPoolEntryBlocking(
                             lastUsed.close();
                             final RouteSpecificPool<T, C, E> otherpool = getPool(lastUsed.getRoute());
                             otherpool.remove(lastUsed);
+                            updateCapacity(otherpool);
                         }
                         final C conn = this.connFactory.create(route);
                         entry = pool.add(conn);
                         this.leased.add(entry);
+                        metrics.connectionCreated();
+                        updateCapacity(pool);
                         return entry;
                     }
                 }
 
+                updateCapacity(pool);
+                if (!saturated) {
+                    saturated = true;
+                    metrics.leaseSaturated();
+                }
                 boolean success = false;
                 try {
                     pool.queue(future);
@@ -426,6 +529,7 @@ public void release(final E entry, final boolean reusable) {
                     entry.close();
                 }
                 onRelease(entry);
+                updateCapacity(pool);
                 Future<E> future = pool.nextPending();
                 if (future != null) {
                     this.pending.remove(future);
@@ -514,6 +618,310 @@ public int getMaxPerRoute(final T route) {
         }
     }
 
+    private int getMinIdle(final T route) {
+        final Integer v = this.minIdlePerRoute.get(route);
+        return v != null ? v.intValue() : this.defaultMinIdlePerRoute;
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public void setDefaultMinIdlePerRoute(final int min) {
+        Args.notNegative(min, "Min idle per route value");
+        this.lock.lock();
+        try {
+            this.defaultMinIdlePerRoute = min;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public int getDefaultMinIdlePerRoute() {
+        this.lock.lock();
+        try {
+            return this.defaultMinIdlePerRoute;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the number of idle connections the maintainer keeps open for the
+     * given route. A negative value reverts the route to the default.
+     *
+     * @since 4.4.17
+     */
+    public void setMinIdlePerRoute(final T route, final int min) {
+        Args.notNull(route, "Route");
+        this.lock.lock();
+        try {
+            if (min > -1) {
+                this.minIdlePerRoute.put(route, Integer.valueOf(min));
+            } else {
+                this.minIdlePerRoute.remove(route);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public int getMinIdlePerRoute(final T route) {
+        Args.notNull(route, "Route");
+        this.lock.lock();
+        try {
+            return getMinIdle(route);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Opens up to the given number of new connections for the given route
+     * and adds them to the pool as available connections. Connections are
+     * opened in the calling thread. Unlike a lease, prewarming never evicts
+     * idle connections of other routes to make room, so fewer connections
+     * than requested are opened once the route or the pool reaches its limit.
+     *
+     * @param route the route.
+     * @param count the number of connections to open.
+     * @return the number of connections actually opened.
+     * @throws IOException if a connection could not be opened.
+     *
+     * @since 4.4.17
+     */
+    public int prewarm(final T route, final int count) throws IOException {
+        Args.notNull(route, "Route");
+        Args.notNegative(count, "Connection count");
+        int opened = 0;
+        while (opened < count && hasIdleCapacity(route)) {
+            final C conn = this.connFactory.create(route);
+            this.lock.lock();
+            try {
+                if (this.isShutDown || !hasCapacity(route)) {
+                    // lost the race to a concurrent lease
+                    final E entry = createEntry(route, conn);
+                    entry.close();
+                    break;
+                }
+                final RouteSpecificPool<T, C, E> pool = getPool(route);
+                final E entry = pool.add(conn);
+                pool.free(entry, true);
+                this.available.addFirst(entry);
+                getMetrics(route).connectionCreated();
+                updateCapacity(pool);
+                if (!this.pending.isEmpty()) {
+                    this.condition.signalAll();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            opened++;
+        }
+        return opened;
+    }
+
+    private boolean hasIdleCapacity(final T route) {
+        this.lock.lock();
+        try {
+            return !this.isShutDown && hasCapacity(route);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private boolean hasCapacity(final T route) {
+        final RouteSpecificPool<T, C, E> pool = this.routeToPool.get(route);
+        final int allocated = pool != null ? pool.getAllocatedCount() : 0;
+        return allocated < getMax(route)
+                && this.leased.size() + this.available.size() < this.maxTotal;
+    }
+
+    /**
+     * Performs a single maintenance pass: closes expired connections and then
+     * opens connections for every route with fewer idle connections than
+     * its configured minimum. A route whose connections cannot be opened is
+     * skipped until the next pass.
+     *
+     * @since 4.4.17
+     */
+    public void maintain() {
+        if (this.isShutDown) {
+            return;
+        }
+        closeExpired();
+        final Map<T, Integer> deficits = new HashMap<T, Integer>();
+        this.lock.lock();
+        try {
+            final Set<T> routes = new HashSet<T>(this.routeToPool.keySet());
+            routes.addAll(this.minIdlePerRoute.keySet());
+            for (final T route: routes) {
+                final RouteSpecificPool<T, C, E> pool = this.routeToPool.get(route);
+                final int idle = pool != null ? pool.getAvailableCount() : 0;
+                final int deficit = getMinIdle(route) - idle;
+                if (deficit > 0) {
+                    deficits.put(route, Integer.valueOf(deficit));
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        for (final Map.Entry<T, Integer> deficit: deficits.entrySet()) {
+            try {
+                prewarm(deficit.getKey(), deficit.getValue().intValue());
+            } catch (final IOException ignore) {
+                // the route is retried on the next pass
+            }
+        }
+    }
+
+    /**
+     * Starts a background thread that calls {@link #maintain()} with the given
+     * delay between passes. The thread is stopped when the pool is shut down.
+     *
+     * @since 4.4.17
+     */
+    public void startMaintainer(final long interval, final TimeUnit timeUnit) {
+        this.lock.lock();
+        try {
+            Asserts.check(!this.isShutDown, "Connection pool shut down");
+            Asserts.check(this.maintainer == null, "Pool maintainer already started");
+            this.maintainer = new PoolMaintainer("pool-maintainer", new Runnable() {
+
+                @Override
+                public void run() {
+                    maintain();
+                }
+
+            }, interval, timeUnit);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public PoolReusePolicy getReusePolicy() {
+        return this.reusePolicy;
+    }
+
+    /**
+     * Sets the order in which idle persistent connections are reused.
+     * The default is {@link PoolReusePolicy#LIFO}.
+     *
+     * @since 4.4.17
+     */
+    public void setReusePolicy(final PoolReusePolicy reusePolicy) {
+        this.reusePolicy = Args.notNull(reusePolicy, "Reuse policy");
+    }
+
+    /**
+     * Closes and evicts expired connections and connections that have been idle
+     * longer than the given period of time.
+     * <p>
+     * Unlike {@link #closeIdle(long, TimeUnit)} and {@link #closeExpired()} this
+     * method does not scan all available connections while holding the pool lock.
+     * The scan starts with the longest idle connection and examines at most
+     * {@value #EVICTION_BATCH_SIZE} connections per acquisition of the lock,
+     * releasing it between batches, until all available connections have been
+     * examined. Connections are closed outside the lock. Connections leased
+     * while the lock is released may cause some connections to be skipped by
+     * this pass; they are left to a later pass or discarded when next leased.
+     * </p>
+     *
+     * @param maxIdleTime maximum idle time. A non-positive value evicts
+     *   expired connections only.
+     * @param timeUnit time unit.
+     *
+     * @since 4.4.17
+     */
+    public void evict(final long maxIdleTime, final TimeUnit timeUnit) {
+        Args.notNull(timeUnit, "Time unit");
+        final List<E> evicted = new ArrayList<E>(EVICTION_BATCH_SIZE);
+        // connections kept by earlier batches, counted from the longest idle one
+        int kept = 0;
+        boolean done = false;
+        while (!done) {
+            final long now = System.currentTimeMillis();
+            final long idleDeadline = maxIdleTime > 0 ? now - timeUnit.toMillis(maxIdleTime) : Long.MIN_VALUE;
+            this.lock.lock();
+            try {
+                if (this.isShutDown) {
+                    return;
+                }
+                done = true;
+                int scanned = 0;
+                final Iterator<E> it = this.available.descendingIterator();
+                // released connections are added at the head, so kept ones keep their position
+                for (int i = 0; i < kept && it.hasNext(); i++) {
+                    it.next();
+                }
+                while (it.hasNext()) {
+                    if (scanned++ == EVICTION_BATCH_SIZE) {
+                        done = false;
+                        break;
+                    }
+                    final E entry = it.next();
+                    final boolean expired = entry.isExpired(now);
+                    if (!expired && !entry.isClosed() && entry.getUpdated() > idleDeadline) {
+                        kept++;
+                        continue;
+                    }
+                    it.remove();
+                    final RouteSpecificPool<T, C, E> pool = getPool(entry.getRoute());
+                    pool.remove(entry);
+                    if (expired) {
+                        getMetrics(entry.getRoute()).connectionExpired();
+                    }
+                    updateCapacity(pool);
+                    evicted.add(entry);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            for (final E entry: evicted) {
+                entry.close();
+            }
+            evicted.clear();
+        }
+    }
+
+    /**
+     * Starts a background thread that calls {@link #evict(long, TimeUnit)} with
+     * the given delay between passes. The thread is stopped when the pool is
+     * shut down.
+     *
+     * @param interval delay between eviction passes.
+     * @param maxIdleTime maximum idle time. A non-positive value evicts
+     *   expired connections only.
+     * @param timeUnit time unit of both the interval and the maximum idle time.
+     *
+     * @since 4.4.17
+     */
+    public void startEvictor(final long interval, final long maxIdleTime, final TimeUnit timeUnit) {
+        this.lock.lock();
+        try {
+            Asserts.check(!this.isShutDown, "Connection pool shut down");
+            Asserts.check(this.evictor == null, "Pool evictor already started");
+            this.evictor = new PoolMaintainer("pool-evictor", new Runnable() {
+
+                @Override
+                public void run() {
+                    evict(maxIdleTime, timeUnit);
+                }
+
+            }, interval, timeUnit);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
     @Override
     public PoolStats getTotalStats() {
         this.lock.lock();
@@ -544,6 +952,60 @@ public PoolStats getStats(final T route) {
         }
     }
 
+    /**
+     * Sets the maximum number of routes without pooled connections whose
+     * metrics are retained. Once exceeded, metrics of the routes that have
+     * been without connections the longest are discarded.
+     *
+     * @since 4.4.17
+     */
+    public void setMaxIdleRouteMetrics(final int max) {
+        Args.notNegative(max, "Max idle route metrics");
+        this.lock.lock();
+        try {
+            this.maxIdleRouteMetrics = max;
+            trimRouteMetrics();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    public int getMaxIdleRouteMetrics() {
+        return this.maxIdleRouteMetrics;
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    @Override
+    public PoolMetrics getTotalMetrics() {
+        return this.totalMetrics.getMetrics();
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    @Override
+    public PoolMetrics getRouteMetrics(final T route) {
+        Args.notNull(route, "Route");
+        final PoolMetricsCollector metrics = this.routeToMetrics.get(route);
+        return metrics != null ? metrics.getMetrics() : new PoolMetricsCollector().getMetrics();
+    }
+
+    /**
+     * @since 4.4.17
+     */
+    @Override
+    public void resetMetrics() {
+        this.totalMetrics.reset();
+        for (final PoolMetricsCollector metrics: this.routeToMetrics.values()) {
+            metrics.reset();
+        }
+    }
+
     /**
      * Returns snapshot of all knows routes
      * @return the set of routes
@@ -575,6 +1037,7 @@ protected void enumAvailable(final PoolEntryCallback<T, C> callback) {
                     final RouteSpecificPool<T, C, E> pool = getPool(entry.getRoute());
                     pool.remove(entry);
                     it.remove();
+                    updateCapacity(pool);
                 }
             }
             purgePoolMap();
@@ -608,7 +1071,31 @@ private void purgePoolMap() {
             final RouteSpecificPool<T, C, E> pool = entry.getValue();
             if (pool.getPendingCount() + pool.getAllocatedCount() == 0) {
                 it.remove();
+                if (this.routeToMetrics.containsKey(entry.getKey())) {
+                    this.idleMetricsRoutes.put(entry.getKey(), Boolean.TRUE);
+                }
+            }
+        }
+        trimRouteMetrics();
+    }
+
+    private void routeMetricsAdded(final T route) {
+        this.lock.lock();
+        try {
+            if (!this.routeToPool.containsKey(route)) {
+                this.idleMetricsRoutes.put(route, Boolean.TRUE);
+                trimRouteMetrics();
             }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void trimRouteMetrics() {
+        final Iterator<T> it = this.idleMetricsRoutes.keySet().iterator();
+        while (this.idleMetricsRoutes.size() > this.maxIdleRouteMetrics && it.hasNext()) {
+            this.routeToMetrics.remove(it.next());
+            it.remove();
         }
     }
 
@@ -649,6 +1136,7 @@ public void closeExpired() {
             public void process(final PoolEntry<T, C> entry) {
                 if (entry.isExpired(now)) {
                     entry.close();
+                    getMetrics(entry.getRoute()).connectionExpired();
                 }
             }
 
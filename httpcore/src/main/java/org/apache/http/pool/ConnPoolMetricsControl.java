@@ -0,0 +1,53 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.pool;
+
+/**
+ * Interface to access cumulative metrics of a connection pool.
+ * <p>
+ * This is a separate interface rather than an extension of {@link ConnPoolControl}
+ * so that existing implementations of the latter remain compatible.
+ * </p>
+ * <p>
+ * Metrics of a route keep accumulating after the pool has discarded all
+ * connections for that route. Implementations may limit the number of such
+ * idle routes whose metrics are retained.
+ * </p>
+ *
+ * @param <T> the route type that represents the opposite endpoint of a pooled
+ *   connection.
+ * @since 4.4.17
+ */
+public interface ConnPoolMetricsControl<T> {
+
+    PoolMetrics getTotalMetrics();
+
+    PoolMetrics getRouteMetrics(T route);
+
+    void resetMetrics();
+
+}
@@ -0,0 +1,204 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.pool;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.util.Args;
+
+/**
+ * Fixed size histogram with exponentially growing buckets. Bucket {@code 0}
+ * counts zero values, bucket {@code n} counts values in the range
+ * {@code [2^(n-1), 2^n)}. The last bucket also counts all larger values.
+ * <p>
+ * Recording a value costs a few uncontended atomic operations and never
+ * allocates, which makes the histogram suitable for always-on collection.
+ * Percentiles are reported as the upper bound of the bucket they fall into
+ * and are therefore accurate to within a factor of two.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class LatencyHistogram implements Serializable {
+
+    private static final long serialVersionUID = -5392381418155126549L;
+
+    /**
+     * Number of buckets. With microsecond values the last bucket starts at
+     * roughly six days.
+     */
+    public static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        super();
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    static int bucketOf(final long value) {
+        if (value <= 0) {
+            return 0;
+        }
+        return Math.min(64 - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+    }
+
+    /**
+     * Records the given value. Negative values are recorded as zero.
+     */
+    public void record(final long value) {
+        final long v = value > 0 ? value : 0;
+        this.buckets.incrementAndGet(bucketOf(v));
+        this.total.addAndGet(v);
+        for (;;) {
+            final long current = this.max.get();
+            if (v <= current || this.max.compareAndSet(current, v)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += this.buckets.get(i);
+        }
+        return count;
+    }
+
+    public long getTotal() {
+        return this.total.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public double getMean() {
+        final long count = getCount();
+        return count > 0 ? (double) getTotal() / count : 0.0;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of all recorded values.
+     *
+     * @param percentile percentile in the range {@code [0, 100]}.
+     * @return the upper bound of the bucket the percentile falls into, but
+     *   never more than the largest value recorded, or {@code 0} if no value
+     *   has been recorded.
+     */
+    public long getPercentile(final double percentile) {
+        Args.check(percentile >= 0.0 && percentile <= 100.0, "Percentile must be in the range [0, 100]");
+        final long[] counts = getBucketCounts();
+        long count = 0;
+        for (final long n : counts) {
+            count += n;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                final long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upperBound, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a copy of the bucket counts.
+     */
+    public long[] getBucketCounts() {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns a point in time copy of this histogram.
+     */
+    public LatencyHistogram copy() {
+        final LatencyHistogram copy = new LatencyHistogram();
+        copy.add(this);
+        return copy;
+    }
+
+    void add(final LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.addAndGet(i, other.buckets.get(i));
+        }
+        this.total.addAndGet(other.total.get());
+        final long otherMax = other.max.get();
+        for (;;) {
+            final long current = this.max.get();
+            if (otherMax <= current || this.max.compareAndSet(current, otherMax)) {
+                break;
+            }
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.total.set(0);
+        this.max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[count: ");
+        buffer.append(getCount());
+        buffer.append("; mean: ");
+        buffer.append(getMean());
+        buffer.append("; p50: ");
+        buffer.append(getPercentile(50));
+        buffer.append("; p99: ");
+        buffer.append(getPercentile(99));
+        buffer.append("; max: ");
+        buffer.append(getMax());
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
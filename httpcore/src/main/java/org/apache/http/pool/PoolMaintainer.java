@@ -0,0 +1,96 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.pool;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.util.Args;
+
+/**
+ * Runs a pool maintenance task with a fixed delay on a dedicated daemon thread.
+ * A run that fails with a runtime exception does not cancel subsequent runs.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public final class PoolMaintainer implements Closeable {
+
+    private final ScheduledExecutorService executor;
+
+    public PoolMaintainer(
+            final String name,
+            final Runnable task,
+            final long interval,
+            final TimeUnit timeUnit) {
+        super();
+        Args.notNull(name, "Thread name");
+        Args.notNull(task, "Maintenance task");
+        Args.positive(interval, "Maintenance interval");
+        Args.notNull(timeUnit, "Time unit");
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+
+        });
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (final RuntimeException ignore) {
+                    // keep the schedule alive; the next run may well succeed
+                }
+            }
+
+        }, interval, interval, timeUnit);
+    }
+
+    public boolean isShutdown() {
+        return this.executor.isShutdown();
+    }
+
+    /**
+     * Stops the maintenance thread, interrupting a run in progress.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+}
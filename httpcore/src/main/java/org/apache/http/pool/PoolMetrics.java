@@ -0,0 +1,167 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.pool;
+
+import java.io.Serializable;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * Cumulative pool metrics, either for a single route or for the pool as a whole.
+ * <p>
+ * Unlike {@link PoolStats}, which describes the state of the pool at one instant,
+ * the values reported here accumulate from the time the pool was created or its
+ * metrics were last reset.
+ * </p>
+ *
+ * @see ConnPoolMetricsControl
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public class PoolMetrics implements Serializable {
+
+    private static final long serialVersionUID = 6047236618624314335L;
+
+    private final long created;
+    private final long reused;
+    private final long expired;
+    private final long validationFailures;
+    private final long leaseFailures;
+    private final long saturations;
+    private final long timeAtCapacity;
+    private final LatencyHistogram leaseWaitTime;
+
+    public PoolMetrics(
+            final long created,
+            final long reused,
+            final long expired,
+            final long validationFailures,
+            final long leaseFailures,
+            final long saturations,
+            final long timeAtCapacity,
+            final LatencyHistogram leaseWaitTime) {
+        super();
+        this.created = created;
+        this.reused = reused;
+        this.expired = expired;
+        this.validationFailures = validationFailures;
+        this.leaseFailures = leaseFailures;
+        this.saturations = saturations;
+        this.timeAtCapacity = timeAtCapacity;
+        this.leaseWaitTime = leaseWaitTime != null ? leaseWaitTime.copy() : new LatencyHistogram();
+    }
+
+    /**
+     * Gets the number of new connections created by the pool.
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * Gets the number of leases served by an idle persistent connection.
+     */
+    public long getReused() {
+        return this.reused;
+    }
+
+    /**
+     * Gets the number of idle connections discarded because they had expired.
+     */
+    public long getExpired() {
+        return this.expired;
+    }
+
+    /**
+     * Gets the number of idle connections discarded because they failed validation.
+     */
+    public long getValidationFailures() {
+        return this.validationFailures;
+    }
+
+    /**
+     * Gets the number of successful leases.
+     */
+    public long getLeases() {
+        return this.leaseWaitTime.getCount();
+    }
+
+    /**
+     * Gets the number of lease requests that failed or timed out.
+     */
+    public long getLeaseFailures() {
+        return this.leaseFailures;
+    }
+
+    /**
+     * Gets the number of lease requests that had to wait because the pool had
+     * reached its per route or total limit.
+     */
+    public long getSaturations() {
+        return this.saturations;
+    }
+
+    /**
+     * Gets the time in milliseconds the pool spent with all permitted
+     * connections allocated.
+     */
+    public long getTimeAtCapacity() {
+        return this.timeAtCapacity;
+    }
+
+    /**
+     * Gets the distribution of lease wait times in microseconds.
+     */
+    public LatencyHistogram getLeaseWaitTime() {
+        return this.leaseWaitTime.copy();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[created: ");
+        buffer.append(this.created);
+        buffer.append("; reused: ");
+        buffer.append(this.reused);
+        buffer.append("; expired: ");
+        buffer.append(this.expired);
+        buffer.append("; validation failures: ");
+        buffer.append(this.validationFailures);
+        buffer.append("; lease failures: ");
+        buffer.append(this.leaseFailures);
+        buffer.append("; saturations: ");
+        buffer.append(this.saturations);
+        buffer.append("; time at capacity: ");
+        buffer.append(this.timeAtCapacity);
+        buffer.append("; lease wait time: ");
+        buffer.append(this.leaseWaitTime);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.pool;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * Collects {@link PoolMetrics} on behalf of a connection pool. Events can be
+ * propagated to a parent collector, which lets a pool maintain per route and
+ * pool wide metrics with a single call per event.
+ * <p>
+ * Capacity tracking is not propagated, as the parent is usually bound by a
+ * different limit.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class PoolMetricsCollector {
+
+    private final PoolMetricsCollector parent;
+    private final AtomicLong created;
+    private final AtomicLong reused;
+    private final AtomicLong expired;
+    private final AtomicLong validationFailures;
+    private final AtomicLong leaseFailures;
+    private final AtomicLong saturations;
+    private final LatencyHistogram leaseWaitTime;
+
+    private long timeAtCapacity;
+    private long atCapacitySince;
+
+    public PoolMetricsCollector(final PoolMetricsCollector parent) {
+        super();
+        this.parent = parent;
+        this.created = new AtomicLong();
+        this.reused = new AtomicLong();
+        this.expired = new AtomicLong();
+        this.validationFailures = new AtomicLong();
+        this.leaseFailures = new AtomicLong();
+        this.saturations = new AtomicLong();
+        this.leaseWaitTime = new LatencyHistogram();
+        this.atCapacitySince = -1;
+    }
+
+    public PoolMetricsCollector() {
+        this(null);
+    }
+
+    public void connectionCreated() {
+        this.created.incrementAndGet();
+        if (this.parent != null) {
+            this.parent.connectionCreated();
+        }
+    }
+
+    public void connectionReused() {
+        this.reused.incrementAndGet();
+        if (this.parent != null) {
+            this.parent.connectionReused();
+        }
+    }
+
+    public void connectionExpired() {
+        this.expired.incrementAndGet();
+        if (this.parent != null) {
+            this.parent.connectionExpired();
+        }
+    }
+
+    public void validationFailed() {
+        this.validationFailures.incrementAndGet();
+        if (this.parent != null) {
+            this.parent.validationFailed();
+        }
+    }
+
+    /**
+     * Records a lease request that could not be served right away because
+     * the pool was at capacity. Should be called at most once per lease request.
+     */
+    public void leaseSaturated() {
+        this.saturations.incrementAndGet();
+        if (this.parent != null) {
+            this.parent.leaseSaturated();
+        }
+    }
+
+    /**
+     * Records a successful lease.
+     *
+     * @param waitTime the time spent waiting for the lease in microseconds.
+     */
+    public void leaseCompleted(final long waitTime) {
+        this.leaseWaitTime.record(waitTime);
+        if (this.parent != null) {
+            this.parent.leaseCompleted(waitTime);
+        }
+    }
+
+    public void leaseFailed() {
+        this.leaseFailures.incrementAndGet();
+        if (this.parent != null) {
+            this.parent.leaseFailed();
+        }
+    }
+
+    /**
+     * Updates whether all connections permitted by the pool are currently allocated.
+     */
+    public synchronized void updateCapacity(final boolean atCapacity) {
+        if (atCapacity) {
+            if (this.atCapacitySince < 0) {
+                this.atCapacitySince = System.currentTimeMillis();
+            }
+        } else if (this.atCapacitySince >= 0) {
+            this.timeAtCapacity += System.currentTimeMillis() - this.atCapacitySince;
+            this.atCapacitySince = -1;
+        }
+    }
+
+    private synchronized long getTimeAtCapacity() {
+        long time = this.timeAtCapacity;
+        if (this.atCapacitySince >= 0) {
+            time += System.currentTimeMillis() - this.atCapacitySince;
+        }
+        return time;
+    }
+
+    public PoolMetrics getMetrics() {
+        return new PoolMetrics(
+                this.created.get(),
+                this.reused.get(),
+                this.expired.get(),
+                this.validationFailures.get(),
+                this.leaseFailures.get(),
+                this.saturations.get(),
+                getTimeAtCapacity(),
+                this.leaseWaitTime);
+    }
+
+    /**
+     * Resets all metrics of this collector. The parent collector is not affected.
+     */
+    public void reset() {
+        this.created.set(0);
+        this.reused.set(0);
+        this.expired.set(0);
+        this.validationFailures.set(0);
+        this.leaseFailures.set(0);
+        this.saturations.set(0);
+        this.leaseWaitTime.reset();
+        synchronized (this) {
+            this.timeAtCapacity = 0;
+            if (this.atCapacitySince >= 0) {
+                this.atCapacitySince = System.currentTimeMillis();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getMetrics().toString();
+    }
+
+}
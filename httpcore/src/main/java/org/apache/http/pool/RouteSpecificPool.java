@@ -73,9 +73,17 @@ public int getAllocatedCount() {
     }
 
     public E getFree(final Object state) {
+        return getFree(state, true);
+    }
+
+    /**
+     * Leases an available entry, preferring the most recently released entry
+     * if {@code lifo} is {@code true} or the least recently released one otherwise.
+     */
+    public E getFree(final Object state, final boolean lifo) {
         if (!this.available.isEmpty()) {
             if (state != null) {
-                final Iterator<E> it = this.available.iterator();
+                final Iterator<E> it = lifo ? this.available.iterator() : this.available.descendingIterator();
                 while (it.hasNext()) {
                     final E entry = it.next();
                     if (state.equals(entry.getState())) {
@@ -85,7 +93,7 @@ public E getFree(final Object state) {
                     }
                 }
             }
-            final Iterator<E> it = this.available.iterator();
+            final Iterator<E> it = lifo ? this.available.iterator() : this.available.descendingIterator();
             while (it.hasNext()) {
                 final E entry = it.next();
                 if (entry.getState() == null) {
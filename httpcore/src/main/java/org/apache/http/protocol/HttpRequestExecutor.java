@@ -28,8 +28,14 @@
 package org.apache.http.protocol;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.ConnectionReuseStrategy;
 import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
@@ -40,6 +46,8 @@
 import org.apache.http.ProtocolVersion;
 import org.apache.http.annotation.Contract;
 import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.util.Args;
 
 /**
@@ -144,6 +152,155 @@ private static void closeConnection(final HttpClientConnection conn) {
         }
     }
 
+    /**
+     * Executes a sequence of requests over the same connection without waiting
+     * for a response before sending the next request (HTTP/1.1 pipelining).
+     * <p>
+     * All requests are pre-processed and written out back to back with a single
+     * flush of the connection output buffer. Responses are then read in the order
+     * the requests were sent. Response entities are read fully into memory so that
+     * the connection can be advanced to the next response in the pipeline.
+     * Responses are post-processed with the request they correspond to set as
+     * {@link HttpCoreContext#HTTP_REQUEST} in the execution context.
+     * </p>
+     * <p>
+     * Requests are sent without waiting for a {@code 100 Continue} response, so
+     * this method is best suited for requests without an enclosed entity or with
+     * small ones. Non-idempotent requests can be pipelined but will not be reported
+     * as retriable should the pipeline fail.
+     * </p>
+     * <p>
+     * If the pipeline cannot be executed in full the connection gets closed and
+     * a {@link PipelineExecutionException} is thrown carrying the responses received
+     * so far and the requests that can be safely re-executed.
+     * </p>
+     *
+     * @param requests  the requests to execute.
+     * @param processor the processor to pre-process requests and post-process
+     *   responses with.
+     * @param conn      the connection over which to execute the requests.
+     * @param context   the context for executing the requests.
+     * @param connReuseStrategy the strategy used to detect whether the opposite
+     *   endpoint is going to close the connection after a response.
+     *
+     * @return  the responses, in the order of the requests.
+     *
+     * @throws PipelineExecutionException if the pipeline failed after any of
+     *   the requests had been sent.
+     * @throws IOException in case of an I/O error.
+     * @throws HttpException in case of HTTP protocol violation or a processing
+     *   problem prior to sending the requests.
+     *
+     * @since 4.4.17
+     */
+    public List<HttpResponse> executePipelined(
+            final List<? extends HttpRequest> requests,
+            final HttpProcessor processor,
+            final HttpClientConnection conn,
+            final HttpContext context,
+            final ConnectionReuseStrategy connReuseStrategy) throws IOException, HttpException {
+        Args.notEmpty(requests, "Request list");
+        Args.notNull(processor, "HTTP processor");
+        Args.notNull(conn, "Client connection");
+        Args.notNull(context, "HTTP context");
+        final ConnectionReuseStrategy reuseStrategy = connReuseStrategy != null ? connReuseStrategy :
+                DefaultConnectionReuseStrategy.INSTANCE;
+        // nothing is written out should any of the requests fail pre-processing
+        for (final HttpRequest request: requests) {
+            preProcess(request, processor, context);
+        }
+        final List<HttpResponse> responses = new ArrayList<HttpResponse>(requests.size());
+        try {
+            for (final HttpRequest request: requests) {
+                conn.sendRequestHeader(request);
+                if (request instanceof HttpEntityEnclosingRequest) {
+                    final HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest) request;
+                    if (entityRequest.getEntity() != null) {
+                        conn.sendRequestEntity(entityRequest);
+                    }
+                }
+            }
+            conn.flush();
+            context.setAttribute(HttpCoreContext.HTTP_REQ_SENT, Boolean.TRUE);
+            for (int i = 0; i < requests.size(); i++) {
+                final HttpRequest request = requests.get(i);
+                final HttpResponse response = doReceiveResponse(request, conn, context);
+                final HttpEntity entity = response.getEntity();
+                if (entity != null) {
+                    response.setEntity(new BufferedHttpEntity(entity));
+                }
+                context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+                postProcess(response, processor, context);
+                responses.add(response);
+                if (i < requests.size() - 1 && !reuseStrategy.keepAlive(response, context)) {
+                    // the server is not going to process the remaining requests
+                    closeConnection(conn);
+                    final List<HttpRequest> remaining = new ArrayList<HttpRequest>(
+                            requests.subList(i + 1, requests.size()));
+                    throw new PipelineExecutionException(
+                            "Connection closed by the server after " + responses.size() + " of "
+                                    + requests.size() + " responses",
+                            new ConnectionClosedException("Connection closed by peer"),
+                            responses, remaining, remaining);
+                }
+            }
+            return responses;
+        } catch (final PipelineExecutionException ex) {
+            throw ex;
+        } catch (final IOException ex) {
+            closeConnection(conn);
+            throw pipelineFailed(ex, requests, responses);
+        } catch (final HttpException ex) {
+            closeConnection(conn);
+            throw pipelineFailed(ex, requests, responses);
+        } catch (final RuntimeException ex) {
+            closeConnection(conn);
+            throw ex;
+        }
+    }
+
+    /**
+     * Executes a sequence of requests over the same connection without waiting
+     * for a response before sending the next request, using the default
+     * connection re-use strategy.
+     *
+     * @see #executePipelined(List, HttpProcessor, HttpClientConnection, HttpContext,
+     *   ConnectionReuseStrategy)
+     *
+     * @since 4.4.17
+     */
+    public List<HttpResponse> executePipelined(
+            final List<? extends HttpRequest> requests,
+            final HttpProcessor processor,
+            final HttpClientConnection conn,
+            final HttpContext context) throws IOException, HttpException {
+        return executePipelined(requests, processor, conn, context, null);
+    }
+
+    private static PipelineExecutionException pipelineFailed(
+            final Exception cause,
+            final List<? extends HttpRequest> requests,
+            final List<HttpResponse> responses) {
+        final List<HttpRequest> unanswered = new ArrayList<HttpRequest>(
+                requests.subList(responses.size(), requests.size()));
+        final List<HttpRequest> retriable = new ArrayList<HttpRequest>(unanswered.size());
+        for (final HttpRequest request: unanswered) {
+            if (isIdempotent(request)) {
+                retriable.add(request);
+            }
+        }
+        return new PipelineExecutionException(
+                "Pipeline failed after " + responses.size() + " of " + requests.size()
+                        + " responses: " + cause.getMessage(),
+                cause, responses, unanswered, retriable);
+    }
+
+    private static boolean isIdempotent(final HttpRequest request) {
+        final String method = request.getRequestLine().getMethod().toUpperCase(Locale.ROOT);
+        return method.equals("GET") || method.equals("HEAD") || method.equals("OPTIONS")
+                || method.equals("TRACE") || method.equals("PUT") || method.equals("DELETE");
+    }
+
     /**
      * Pre-process the given request using the given protocol processor and
      * initiates the process of request execution.
@@ -47,6 +47,10 @@
 import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.impl.DefaultHttpResponseFactory;
+import org.apache.http.impl.DefaultResponseFlushStrategy;
+import org.apache.http.instrument.ExchangeType;
+import org.apache.http.instrument.HttpInstrumentation;
+import org.apache.http.instrument.InstrumentationSupport;
 import org.apache.http.params.HttpParams;
 import org.apache.http.util.Args;
 import org.apache.http.util.EncodingUtils;
@@ -68,6 +72,10 @@
  * <p>
  * {@code HttpService} can use optional {@link HttpExpectationVerifier}
  * to ensure that incoming requests meet server's expectations.
+ * <p>
+ * {@code HttpService} uses {@link ResponseFlushStrategy} to decide whether
+ * a response is to be flushed to the client immediately or may be sent out
+ * together with responses to subsequent pipelined requests.
  *
  * @since 4.0
  */
@@ -75,6 +83,8 @@
 @Contract(threading = ThreadingBehavior.IMMUTABLE_CONDITIONAL)
 public class HttpService {
 
+    private static final HttpInstrumentation INSTRUMENTATION = InstrumentationSupport.getInstrumentation();
+
     /**
      * TODO: make all variables final in the next major version
      */
@@ -84,6 +94,7 @@ public class HttpService {
     private volatile ConnectionReuseStrategy connStrategy = null;
     private volatile HttpResponseFactory responseFactory = null;
     private volatile HttpExpectationVerifier expectationVerifier = null;
+    private volatile ResponseFlushStrategy flushStrategy = DefaultResponseFlushStrategy.INSTANCE;
 
     /**
      * Create a new HTTP service.
@@ -174,15 +185,18 @@ public HttpService(
      *   {@link DefaultHttpResponseFactory#INSTANCE} will be used.
      * @param handlerMapper  the handler mapper. May be null.
      * @param expectationVerifier the expectation verifier. May be null.
+     * @param flushStrategy the response flush strategy. If {@code null}
+     *   {@link DefaultResponseFlushStrategy#INSTANCE} will be used.
      *
-     * @since 4.3
+     * @since 4.4.17
      */
     public HttpService(
             final HttpProcessor processor,
             final ConnectionReuseStrategy connStrategy,
             final HttpResponseFactory responseFactory,
             final HttpRequestHandlerMapper handlerMapper,
-            final HttpExpectationVerifier expectationVerifier) {
+            final HttpExpectationVerifier expectationVerifier,
+            final ResponseFlushStrategy flushStrategy) {
         super();
         this.processor =  Args.notNull(processor, "HTTP processor");
         this.connStrategy = connStrategy != null ? connStrategy :
@@ -191,6 +205,30 @@ public HttpService(
             DefaultHttpResponseFactory.INSTANCE;
         this.handlerMapper = handlerMapper;
         this.expectationVerifier = expectationVerifier;
+        this.flushStrategy = flushStrategy != null ? flushStrategy :
+            DefaultResponseFlushStrategy.INSTANCE;
+    }
+
+    /**
+     * Create a new HTTP service.
+     *
+     * @param processor the processor to use on requests and responses
+     * @param connStrategy the connection reuse strategy. If {@code null}
+     *   {@link DefaultConnectionReuseStrategy#INSTANCE} will be used.
+     * @param responseFactory  the response factory. If {@code null}
+     *   {@link DefaultHttpResponseFactory#INSTANCE} will be used.
+     * @param handlerMapper  the handler mapper. May be null.
+     * @param expectationVerifier the expectation verifier. May be null.
+     *
+     * @since 4.3
+     */
+    public HttpService(
+            final HttpProcessor processor,
+            final ConnectionReuseStrategy connStrategy,
+            final HttpResponseFactory responseFactory,
+            final HttpRequestHandlerMapper handlerMapper,
+            final HttpExpectationVerifier expectationVerifier) {
+        this(processor, connStrategy, responseFactory, handlerMapper, expectationVerifier, null);
     }
 
     /**
@@ -298,6 +336,33 @@ public HttpParams getParams() {
     public void handleRequest(
             final HttpServerConnection conn,
             final HttpContext context) throws IOException, HttpException {
+        if (!INSTRUMENTATION.isEnabled()) {
+            doHandleRequest(conn, context, null);
+            return;
+        }
+        final ExchangeTimes times = new ExchangeTimes();
+        boolean completed = false;
+        try {
+            doHandleRequest(conn, context, times);
+            completed = true;
+        } finally {
+            // exchanges are timed from the receipt of the request head
+            if (times.start != 0) {
+                if (completed) {
+                    INSTRUMENTATION.exchangeCompleted(
+                            ExchangeType.SERVER, times.start, times.head, System.nanoTime());
+                } else {
+                    INSTRUMENTATION.exchangeFailed(
+                            ExchangeType.SERVER, times.start, System.nanoTime());
+                }
+            }
+        }
+    }
+
+    private void doHandleRequest(
+            final HttpServerConnection conn,
+            final HttpContext context,
+            final ExchangeTimes times) throws IOException, HttpException {
 
         context.setAttribute(HttpCoreContext.HTTP_CONNECTION, conn);
 
@@ -305,7 +370,16 @@ public void handleRequest(
         HttpResponse response = null;
 
         try {
-            request = conn.receiveRequestHeader();
+            try {
+                request = conn.receiveRequestHeader();
+            } catch (final IOException ex) {
+                // do not lose responses held back by the flush strategy
+                flushQuietly(conn);
+                throw ex;
+            }
+            if (times != null) {
+                times.start = System.nanoTime();
+            }
             if (request instanceof HttpEntityEnclosingRequest) {
 
                 if (((HttpEntityEnclosingRequest) request).expectContinue()) {
@@ -359,13 +433,34 @@ public void handleRequest(
 
         this.processor.process(response, context);
         conn.sendResponseHeader(response);
+        if (times != null) {
+            times.head = System.nanoTime();
+        }
         if (canResponseHaveBody(request, response)) {
             conn.sendResponseEntity(response);
         }
-        conn.flush();
 
         if (!this.connStrategy.keepAlive(response, context)) {
+            conn.flush();
             conn.close();
+        } else if (this.flushStrategy.isFlushRequired(conn, response, context)) {
+            conn.flush();
+        }
+    }
+
+    private static final class ExchangeTimes {
+
+        long start;
+        long head;
+
+    }
+
+    private static void flushQuietly(final HttpServerConnection conn) {
+        try {
+            if (conn.isOpen()) {
+                conn.flush();
+            }
+        } catch (final IOException ignore) {
         }
     }
 
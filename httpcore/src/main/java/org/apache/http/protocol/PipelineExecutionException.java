@@ -0,0 +1,114 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.protocol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+
+/**
+ * Signals that a sequence of pipelined requests could not be executed
+ * in full. The exception carries the responses received prior to the failure
+ * as well as the requests left without a response, and tells which of those
+ * requests can be safely re-executed over a new connection.
+ * <p>
+ * The original cause of the failure is available through {@link #getCause()}.
+ * </p>
+ *
+ * @see HttpRequestExecutor#executePipelined(List, HttpProcessor,
+ *   org.apache.http.HttpClientConnection, HttpContext)
+ *
+ * @since 4.4.17
+ */
+public class PipelineExecutionException extends IOException {
+
+    private static final long serialVersionUID = 3806411726245727409L;
+
+    private final transient List<HttpResponse> responses;
+    private final transient List<HttpRequest> unansweredRequests;
+    private final transient List<HttpRequest> retriableRequests;
+
+    /**
+     * Creates a new PipelineExecutionException.
+     *
+     * @param message exception message.
+     * @param cause the original cause of the failure.
+     * @param responses the responses received prior to the failure, in order.
+     * @param unansweredRequests the requests for which no response has been received.
+     * @param retriableRequests the subset of unanswered requests that can be safely
+     *   re-executed.
+     */
+    public PipelineExecutionException(
+            final String message,
+            final Throwable cause,
+            final List<HttpResponse> responses,
+            final List<HttpRequest> unansweredRequests,
+            final List<HttpRequest> retriableRequests) {
+        super(message, cause);
+        this.responses = responses != null
+                ? Collections.unmodifiableList(new ArrayList<HttpResponse>(responses))
+                : Collections.<HttpResponse>emptyList();
+        this.unansweredRequests = unansweredRequests != null
+                ? Collections.unmodifiableList(new ArrayList<HttpRequest>(unansweredRequests))
+                : Collections.<HttpRequest>emptyList();
+        this.retriableRequests = retriableRequests != null
+                ? Collections.unmodifiableList(new ArrayList<HttpRequest>(retriableRequests))
+                : Collections.<HttpRequest>emptyList();
+    }
+
+    /**
+     * Returns responses received prior to the failure in the order
+     * the requests were sent. The n-th response corresponds to the n-th
+     * request of the pipeline.
+     */
+    public List<HttpResponse> getResponses() {
+        return this.responses;
+    }
+
+    /**
+     * Returns requests for which no response has been received. The server may
+     * or may not have processed some of them.
+     */
+    public List<HttpRequest> getUnansweredRequests() {
+        return this.unansweredRequests;
+    }
+
+    /**
+     * Returns unanswered requests that can be safely re-executed, that is
+     * idempotent requests as well as requests the server is known not to have
+     * processed because it closed the connection on an earlier response.
+     */
+    public List<HttpRequest> getRetriableRequests() {
+        return this.retriableRequests;
+    }
+
+}
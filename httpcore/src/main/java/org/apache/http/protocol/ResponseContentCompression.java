@@ -0,0 +1,192 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.protocol;
+
+import java.io.IOException;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.config.CompressionConfig;
+import org.apache.http.entity.CompressedContentCache;
+import org.apache.http.entity.CompressingEntity;
+import org.apache.http.entity.ZlibSupport;
+import org.apache.http.util.Args;
+
+/**
+ * ResponseContentCompression compresses the response entity using
+ * the {@code gzip} or {@code deflate} content coding if the request
+ * indicates the client accepts it, the entity is not already encoded
+ * and its content length is unknown or not below the minimum set by
+ * {@link CompressionConfig#getMinContentLength()}. {@code gzip} is
+ * preferred when both codings are acceptable.
+ * <p>
+ * Partial content ({@code 206} responses or responses carrying
+ * a {@code Content-Range} header), {@code 204} and {@code 304} responses
+ * are never compressed. A strong {@code ETag} of a compressed response
+ * is turned into a weak one, as the compressed representation differs
+ * from the identity one byte for byte.
+ * </p>
+ * <p>
+ * This interceptor must precede {@link ResponseContent} in the protocol
+ * processor. If a {@link CompressedContentCache} is given, repeatable
+ * entities of responses carrying an {@code ETag} or {@code Last-Modified}
+ * header are compressed through it, keyed by the request URI and the
+ * value of that header.
+ * </p>
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE_CONDITIONAL)
+public class ResponseContentCompression implements HttpResponseInterceptor {
+
+    private final CompressionConfig config;
+    private final CompressedContentCache cache;
+
+    public ResponseContentCompression(final CompressionConfig config, final CompressedContentCache cache) {
+        super();
+        this.config = config != null ? config : CompressionConfig.DEFAULT;
+        this.cache = cache;
+    }
+
+    public ResponseContentCompression(final CompressionConfig config) {
+        this(config, null);
+    }
+
+    public ResponseContentCompression() {
+        this(null, null);
+    }
+
+    @Override
+    public void process(final HttpResponse response, final HttpContext context)
+            throws HttpException, IOException {
+        Args.notNull(response, "HTTP response");
+        final HttpEntity entity = response.getEntity();
+        if (entity == null || entity.getContentEncoding() != null
+                || response.containsHeader(HTTP.CONTENT_ENCODING)) {
+            return;
+        }
+        final int status = response.getStatusLine().getStatusCode();
+        if (status == HttpStatus.SC_PARTIAL_CONTENT
+                || status == HttpStatus.SC_NO_CONTENT
+                || status == HttpStatus.SC_NOT_MODIFIED
+                || response.containsHeader(HttpHeaders.CONTENT_RANGE)) {
+            return;
+        }
+        final long len = entity.getContentLength();
+        if (len >= 0 && len < this.config.getMinContentLength()) {
+            return;
+        }
+        final HttpRequest request = context != null ? HttpCoreContext.adapt(context).getRequest() : null;
+        if (request == null) {
+            return;
+        }
+        final String encoding = selectEncoding(request);
+        if (encoding == null) {
+            return;
+        }
+        if (this.cache != null) {
+            response.setEntity(this.cache.compress(cacheKey(request, response), entity, encoding, this.config));
+        } else {
+            response.setEntity(new CompressingEntity(
+                    entity, encoding, this.config.getCompressionLevel(), this.config.getBufferSize()));
+        }
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        final Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+        if (etag != null && !etag.getValue().startsWith("W/")) {
+            response.setHeader(HttpHeaders.ETAG, "W/" + etag.getValue());
+        }
+    }
+
+    private static String cacheKey(final HttpRequest request, final HttpResponse response) {
+        Header validator = response.getFirstHeader(HttpHeaders.ETAG);
+        if (validator == null) {
+            validator = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+        }
+        return validator != null ? request.getRequestLine().getUri() + ' ' + validator.getValue() : null;
+    }
+
+    static String selectEncoding(final HttpRequest request) {
+        float gzip = 0;
+        float deflate = 0;
+        float any = 0;
+        boolean gzipListed = false;
+        boolean deflateListed = false;
+        final Header[] headers = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        for (final Header header : headers) {
+            for (final HeaderElement element : header.getElements()) {
+                final float q = quality(element);
+                final String name = element.getName();
+                if (ZlibSupport.GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                    gzip = Math.max(gzip, q);
+                    gzipListed = true;
+                } else if (ZlibSupport.DEFLATE.equalsIgnoreCase(name)) {
+                    deflate = Math.max(deflate, q);
+                    deflateListed = true;
+                } else if ("*".equals(name)) {
+                    any = Math.max(any, q);
+                }
+            }
+        }
+        if (!gzipListed) {
+            gzip = any;
+        }
+        if (!deflateListed) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return ZlibSupport.GZIP;
+        }
+        if (deflate > 0) {
+            return ZlibSupport.DEFLATE;
+        }
+        return null;
+    }
+
+    private static float quality(final HeaderElement element) {
+        final NameValuePair param = element.getParameterByName("q");
+        if (param == null || param.getValue() == null) {
+            return 1;
+        }
+        try {
+            return Float.parseFloat(param.getValue().trim());
+        } catch (final NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.protocol;
+
+import java.io.IOException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpServerConnection;
+
+/**
+ * Interface for deciding whether a response written to a blocking server
+ * connection must be flushed to the client immediately or can be held in
+ * the connection output buffer and sent out together with responses to
+ * subsequent pipelined requests.
+ * <p>
+ * Implementations of this interface must be thread-safe. Access to shared
+ * data must be synchronized as methods of this interface may be executed
+ * from multiple threads.
+ * </p>
+ *
+ * @see HttpService
+ * @since 4.4.17
+ */
+public interface ResponseFlushStrategy {
+
+    /**
+     * Decides whether the response just written to the given connection must be
+     * flushed now. A flush may only be deferred if the connection is going to be
+     * used to process another request right away, as
+     * {@link HttpService#handleRequest(HttpServerConnection, HttpContext)} does
+     * when called in a loop.
+     *
+     * @param conn the connection the response has been written to.
+     * @param response the response.
+     * @param context the actual execution context.
+     * @return {@code true} if the connection must be flushed,
+     *   {@code false} if the flush can be deferred.
+     * @throws IOException in case of an I/O error.
+     */
+    boolean isFlushRequired(HttpServerConnection conn, HttpResponse response, HttpContext context)
+            throws IOException;
+
+}
@@ -0,0 +1,361 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicLineFormatter;
+import org.apache.http.message.BufferedHeader;
+import org.apache.http.util.Args;
+
+/**
+ * Tiered LRU cache of static files. Depending on its size the content of
+ * a file is held
+ * <ul>
+ * <li>on the heap as a byte array, if the file is not larger than
+ *  {@code maxHeapEntrySize};</li>
+ * <li>in a read-only memory mapped buffer, if the file is not larger than
+ *  {@code maxMappedEntrySize};</li>
+ * <li>on disk only, in which case the cache holds file metadata only and
+ *  the file content is expected to be streamed (preferably with zero-copy
+ *  transfer) by the caller.</li>
+ * </ul>
+ * <p>
+ * Every entry carries pre-rendered representation headers, so resolving a cached
+ * file involves neither content type guessing nor date formatting. Entries get
+ * re-validated against the file system at most once per {@code revalidateInterval}
+ * and are evicted in least recently used order whenever the total number of
+ * entries, the total heap size or the total mapped size exceeds its limit.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class StaticFileCache {
+
+    private static final Map<String, ContentType> DEFAULT_CONTENT_TYPES;
+
+    static {
+        final Map<String, ContentType> map = new HashMap<String, ContentType>();
+        map.put("html", ContentType.create("text/html", Consts.UTF_8));
+        map.put("htm", ContentType.create("text/html", Consts.UTF_8));
+        map.put("txt", ContentType.create("text/plain", Consts.UTF_8));
+        map.put("css", ContentType.create("text/css", Consts.UTF_8));
+        map.put("csv", ContentType.create("text/csv", Consts.UTF_8));
+        map.put("js", ContentType.create("application/javascript", Consts.UTF_8));
+        map.put("json", ContentType.create("application/json", Consts.UTF_8));
+        map.put("xml", ContentType.create("application/xml", Consts.UTF_8));
+        map.put("svg", ContentType.create("image/svg+xml", Consts.UTF_8));
+        map.put("png", ContentType.create("image/png"));
+        map.put("gif", ContentType.create("image/gif"));
+        map.put("jpg", ContentType.create("image/jpeg"));
+        map.put("jpeg", ContentType.create("image/jpeg"));
+        map.put("ico", ContentType.create("image/x-icon"));
+        map.put("webp", ContentType.create("image/webp"));
+        map.put("woff", ContentType.create("font/woff"));
+        map.put("woff2", ContentType.create("font/woff2"));
+        map.put("pdf", ContentType.create("application/pdf"));
+        map.put("zip", ContentType.create("application/zip"));
+        map.put("gz", ContentType.create("application/gzip"));
+        map.put("wasm", ContentType.create("application/wasm"));
+        DEFAULT_CONTENT_TYPES = Collections.unmodifiableMap(map);
+    }
+
+    private final int maxEntries;
+    private final int maxHeapEntrySize;
+    private final long maxHeapSize;
+    private final long maxMappedEntrySize;
+    private final long maxMappedSize;
+    private final long revalidateInterval;
+    private final Map<String, ContentType> contentTypes;
+    private final LinkedHashMap<String, CacheEntry> entries;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    private long heapSize;
+    private long mappedSize;
+
+    static class CacheEntry {
+
+        final StaticFileResource resource;
+        volatile long validated;
+
+        CacheEntry(final StaticFileResource resource, final long validated) {
+            this.resource = resource;
+            this.validated = validated;
+        }
+
+        long heapSize() {
+            final byte[] content = this.resource.getContent();
+            return content != null ? content.length : 0;
+        }
+
+        long mappedSize() {
+            return this.resource.getContent() == null && this.resource.isCached() ? this.resource.getLength() : 0;
+        }
+
+    }
+
+    /**
+     * Creates new instance of StaticFileCache.
+     *
+     * @param maxEntries the maximum number of cache entries.
+     * @param maxHeapEntrySize the maximum size of a file whose content can be held on the heap.
+     * @param maxHeapSize the maximum total size of file content held on the heap.
+     * @param maxMappedEntrySize the maximum size of a file whose content can be memory mapped.
+     *   Must not exceed {@link Integer#MAX_VALUE}.
+     * @param maxMappedSize the maximum total size of memory mapped file content.
+     * @param revalidateInterval the interval in milliseconds during which entries are considered
+     *   valid without checking the file system.
+     * @param contentTypes content types by file extension. If {@code null} a built-in set of
+     *   common content types will be used.
+     */
+    public StaticFileCache(
+            final int maxEntries,
+            final int maxHeapEntrySize,
+            final long maxHeapSize,
+            final long maxMappedEntrySize,
+            final long maxMappedSize,
+            final long revalidateInterval,
+            final Map<String, ContentType> contentTypes) {
+        super();
+        this.maxEntries = Args.positive(maxEntries, "Max entries");
+        this.maxHeapEntrySize = Args.notNegative(maxHeapEntrySize, "Max heap entry size");
+        this.maxHeapSize = Args.notNegative(maxHeapSize, "Max heap size");
+        Args.check(maxMappedEntrySize >= 0 && maxMappedEntrySize <= Integer.MAX_VALUE,
+                "Max mapped entry size must be between 0 and Integer.MAX_VALUE");
+        this.maxMappedEntrySize = maxMappedEntrySize;
+        this.maxMappedSize = Args.notNegative(maxMappedSize, "Max mapped size");
+        this.revalidateInterval = Args.notNegative(revalidateInterval, "Revalidate interval");
+        this.contentTypes = contentTypes != null ? contentTypes : DEFAULT_CONTENT_TYPES;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+
+    /**
+     * Creates a cache of up to 1000 entries, holding files of up to 16 KB on the heap
+     * (up to 16 MB in total) and memory mapping files of up to 1 MB (up to 256 MB
+     * in total). Entries are re-validated at most once a second.
+     */
+    public StaticFileCache() {
+        this(1000, 16 * 1024, 16L * 1024 * 1024, 1024 * 1024, 256L * 1024 * 1024, 1000, null);
+    }
+
+    /**
+     * Resolves the given file to a static resource.
+     *
+     * @param file the file.
+     * @return the resource or {@code null} if the file does not exist or is not a regular file.
+     * @throws IOException in case of an I/O error while loading the file content.
+     */
+    public StaticFileResource resolve(final File file) throws IOException {
+        Args.notNull(file, "File");
+        final String key = file.getPath();
+        final long now = System.currentTimeMillis();
+        final CacheEntry entry;
+        synchronized (this.entries) {
+            entry = this.entries.get(key);
+        }
+        if (entry != null) {
+            final StaticFileResource resource = entry.resource;
+            if (now - entry.validated < this.revalidateInterval) {
+                this.hits.incrementAndGet();
+                return resource;
+            }
+            if (file.isFile()
+                    && file.lastModified() == resource.getLastModified()
+                    && file.length() == resource.getLength()) {
+                entry.validated = now;
+                this.hits.incrementAndGet();
+                return resource;
+            }
+            synchronized (this.entries) {
+                if (this.entries.get(key) == entry) {
+                    this.entries.remove(key);
+                    this.heapSize -= entry.heapSize();
+                    this.mappedSize -= entry.mappedSize();
+                }
+            }
+        }
+        this.misses.incrementAndGet();
+        if (!file.isFile()) {
+            return null;
+        }
+        final StaticFileResource resource = load(file);
+        final CacheEntry newEntry = new CacheEntry(resource, now);
+        synchronized (this.entries) {
+            final CacheEntry previous = this.entries.put(key, newEntry);
+            if (previous != null) {
+                this.heapSize -= previous.heapSize();
+                this.mappedSize -= previous.mappedSize();
+            }
+            this.heapSize += newEntry.heapSize();
+            this.mappedSize += newEntry.mappedSize();
+            evictExcess();
+        }
+        return resource;
+    }
+
+    private void evictExcess() {
+        final Iterator<CacheEntry> it = this.entries.values().iterator();
+        while (it.hasNext()
+                && (this.entries.size() > this.maxEntries
+                        || this.heapSize > this.maxHeapSize
+                        || this.mappedSize > this.maxMappedSize)) {
+            final CacheEntry entry = it.next();
+            final long entryHeapSize = entry.heapSize();
+            final long entryMappedSize = entry.mappedSize();
+            if (this.entries.size() > this.maxEntries
+                    || (this.heapSize > this.maxHeapSize && entryHeapSize > 0)
+                    || (this.mappedSize > this.maxMappedSize && entryMappedSize > 0)) {
+                it.remove();
+                this.heapSize -= entryHeapSize;
+                this.mappedSize -= entryMappedSize;
+                this.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Determines the content type of the given file based on its extension.
+     */
+    protected ContentType getContentType(final File file) {
+        final String name = file.getName();
+        final int i = name.lastIndexOf('.');
+        if (i != -1) {
+            final ContentType contentType = this.contentTypes.get(name.substring(i + 1).toLowerCase(Locale.ROOT));
+            if (contentType != null) {
+                return contentType;
+            }
+        }
+        return ContentType.APPLICATION_OCTET_STREAM;
+    }
+
+    private static Header prerender(final String name, final String value) {
+        return new BufferedHeader(BasicLineFormatter.INSTANCE.formatHeader(null, new BasicHeader(name, value)));
+    }
+
+    private StaticFileResource load(final File file) throws IOException {
+        final RandomAccessFile accessFile = new RandomAccessFile(file, "r");
+        try {
+            final long lastModified = file.lastModified();
+            final long length = accessFile.length();
+            byte[] content = null;
+            ByteBuffer mappedContent = null;
+            if (length <= this.maxHeapEntrySize) {
+                content = new byte[(int) length];
+                accessFile.readFully(content);
+            } else if (length <= this.maxMappedEntrySize) {
+                final FileChannel channel = accessFile.getChannel();
+                mappedContent = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).asReadOnlyBuffer();
+            }
+            final String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+            final ContentType contentType = getContentType(file);
+            final DateFormat dateFormat = new SimpleDateFormat(HttpDateGenerator.PATTERN_RFC1123, Locale.US);
+            dateFormat.setTimeZone(HttpDateGenerator.GMT);
+            final Header[] headers = new Header[] {
+                    prerender(HttpHeaders.CONTENT_TYPE, contentType.toString()),
+                    prerender(HttpHeaders.LAST_MODIFIED, dateFormat.format(new Date(lastModified))),
+                    prerender(HttpHeaders.ETAG, etag),
+                    prerender(HttpHeaders.ACCEPT_RANGES, "bytes")
+            };
+            return new StaticFileResource(
+                    file, length, lastModified, etag, contentType, headers, content, mappedContent);
+        } finally {
+            accessFile.close();
+        }
+    }
+
+    /**
+     * Removes the entry of the given file from the cache, if present.
+     *
+     * @param file the file.
+     */
+    public void invalidate(final File file) {
+        Args.notNull(file, "File");
+        synchronized (this.entries) {
+            final CacheEntry entry = this.entries.remove(file.getPath());
+            if (entry != null) {
+                this.heapSize -= entry.heapSize();
+                this.mappedSize -= entry.mappedSize();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.heapSize = 0;
+            this.mappedSize = 0;
+        }
+    }
+
+    public StaticFileCacheStats getStats() {
+        synchronized (this.entries) {
+            return new StaticFileCacheStats(
+                    this.hits.get(),
+                    this.misses.get(),
+                    this.evictions.get(),
+                    this.entries.size(),
+                    this.heapSize,
+                    this.mappedSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getStats().toString();
+    }
+
+}
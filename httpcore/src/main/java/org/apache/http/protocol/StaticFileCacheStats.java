@@ -0,0 +1,129 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.protocol;
+
+import java.io.Serializable;
+
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+
+/**
+ * Point-in-time statistics of a {@link StaticFileCache}.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public class StaticFileCacheStats implements Serializable {
+
+    private static final long serialVersionUID = 6279236214371442593L;
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int entries;
+    private final long heapSize;
+    private final long mappedSize;
+
+    public StaticFileCacheStats(
+            final long hits,
+            final long misses,
+            final long evictions,
+            final int entries,
+            final long heapSize,
+            final long mappedSize) {
+        super();
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.heapSize = heapSize;
+        this.mappedSize = mappedSize;
+    }
+
+    /**
+     * Gets the number of lookups served from a valid cache entry.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Gets the number of lookups that required loading file metadata or content.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Gets the number of entries evicted from the cache to stay within its limits.
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Gets the number of cache entries.
+     */
+    public int getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * Gets the total size of file content held on the heap.
+     */
+    public long getHeapSize() {
+        return this.heapSize;
+    }
+
+    /**
+     * Gets the total size of memory mapped file content.
+     */
+    public long getMappedSize() {
+        return this.mappedSize;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[hits: ");
+        buffer.append(this.hits);
+        buffer.append("; misses: ");
+        buffer.append(this.misses);
+        buffer.append("; evictions: ");
+        buffer.append(this.evictions);
+        buffer.append("; entries: ");
+        buffer.append(this.entries);
+        buffer.append("; heap: ");
+        buffer.append(this.heapSize);
+        buffer.append("; mapped: ");
+        buffer.append(this.mappedSize);
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.MethodNotSupportedException;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.FileRegionEntity;
+import org.apache.http.util.Args;
+
+/**
+ * {@link HttpRequestHandler} that serves static files from a document root
+ * directory. File metadata, pre-rendered representation headers and
+ * the content of small files are kept in a {@link StaticFileCache}.
+ * Conditional requests ({@code If-None-Match}, {@code If-Modified-Since})
+ * as well as single byte range requests are supported.
+ * <p>
+ * Only {@code GET} and {@code HEAD} methods are supported.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.SAFE)
+public class StaticFileRequestHandler implements HttpRequestHandler {
+
+    private final File docRoot;
+    private final StaticFileCache cache;
+
+    public StaticFileRequestHandler(final File docRoot, final StaticFileCache cache) {
+        super();
+        this.docRoot = Args.notNull(docRoot, "Document root");
+        this.cache = Args.notNull(cache, "Static file cache");
+    }
+
+    public StaticFileRequestHandler(final File docRoot) {
+        this(docRoot, new StaticFileCache());
+    }
+
+    public StaticFileCache getCache() {
+        return this.cache;
+    }
+
+    @Override
+    public void handle(
+            final HttpRequest request,
+            final HttpResponse response,
+            final HttpContext context) throws HttpException, IOException {
+        final String method = request.getRequestLine().getMethod().toUpperCase(Locale.ROOT);
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            throw new MethodNotSupportedException(method + " method not supported");
+        }
+        final File file = StaticFileSupport.resolveFile(this.docRoot, request);
+        if (file == null) {
+            response.setStatusCode(HttpStatus.SC_NOT_FOUND);
+            return;
+        }
+        final StaticFileResource resource = this.cache.resolve(file);
+        if (resource == null) {
+            response.setStatusCode(file.isDirectory() ? HttpStatus.SC_FORBIDDEN : HttpStatus.SC_NOT_FOUND);
+            return;
+        }
+        final StaticFileSupport.ByteRange range = StaticFileSupport.prepareResponse(request, response, resource);
+        if (range != null) {
+            response.setEntity(createEntity(resource, range));
+        }
+    }
+
+    /**
+     * Creates an entity enclosing the given range of the resource content.
+     * Content cached on the heap is served from memory, other files are
+     * streamed from disk.
+     * <p>
+     * The entity is not expected to carry the {@code Content-Type} header
+     * as the pre-rendered one is added to the response by the handler.
+     */
+    protected HttpEntity createEntity(
+            final StaticFileResource resource, final StaticFileSupport.ByteRange range) {
+        final byte[] content = resource.getContent();
+        if (content != null) {
+            return new ByteArrayEntity(content, (int) range.getFirst(), (int) range.getLength());
+        }
+        return new FileRegionEntity(resource.getFile(), range.getFirst(), range.getLength());
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.protocol;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.apache.http.Header;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Static file resolved by {@link StaticFileCache}. Resources carry file
+ * metadata, pre-rendered representation headers ({@code Content-Type},
+ * {@code Last-Modified}, {@code ETag} and {@code Accept-Ranges}) and,
+ * depending on the file size, the file content either as a heap byte array
+ * or as a read-only memory mapped buffer. Large files carry metadata only
+ * and are expected to be streamed from disk.
+ *
+ * @since 4.4.17
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE)
+public final class StaticFileResource {
+
+    private final File file;
+    private final long length;
+    private final long lastModified;
+    private final String etag;
+    private final ContentType contentType;
+    private final Header[] headers;
+    private final byte[] content;
+    private final ByteBuffer mappedContent;
+
+    StaticFileResource(
+            final File file,
+            final long length,
+            final long lastModified,
+            final String etag,
+            final ContentType contentType,
+            final Header[] headers,
+            final byte[] content,
+            final ByteBuffer mappedContent) {
+        super();
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.etag = etag;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.content = content;
+        this.mappedContent = mappedContent;
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    public long getLength() {
+        return this.length;
+    }
+
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Returns the entity tag of the resource including enclosing quotes.
+     */
+    public String getETag() {
+        return this.etag;
+    }
+
+    public ContentType getContentType() {
+        return this.contentType;
+    }
+
+    /**
+     * Returns pre-rendered representation headers of the resource.
+     */
+    public Header[] getHeaders() {
+        return this.headers.clone();
+    }
+
+    Header[] headers() {
+        return this.headers;
+    }
+
+    /**
+     * Returns {@code true} if the resource content is held in memory either
+     * as a heap byte array or as a memory mapped buffer.
+     */
+    public boolean isCached() {
+        return this.content != null || this.mappedContent != null;
+    }
+
+    /**
+     * Returns the file content cached on the heap or {@code null} if
+     * the content is not held on the heap. The returned array must not
+     * be modified.
+     */
+    public byte[] getContent() {
+        return this.content;
+    }
+
+    /**
+     * Returns a read-only view of the memory mapped file content or
+     * {@code null} if the content is not memory mapped.
+     */
+    public ByteBuffer getMappedContent() {
+        return this.mappedContent != null ? this.mappedContent.duplicate() : null;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("[file: ");
+        buffer.append(this.file);
+        buffer.append("; length: ");
+        buffer.append(this.length);
+        buffer.append("; etag: ");
+        buffer.append(this.etag);
+        buffer.append("; tier: ");
+        buffer.append(this.content != null ? "heap" : this.mappedContent != null ? "mapped" : "file");
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+}
@@ -0,0 +1,382 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.util.Args;
+
+/**
+ * Helper methods shared by static file request handlers: resolution of
+ * request URIs to files, evaluation of conditional requests
+ * ({@code If-None-Match}, {@code If-Modified-Since}) and of single byte range
+ * requests ({@code Range}, {@code If-Range}).
+ *
+ * @since 4.4.17
+ */
+public final class StaticFileSupport {
+
+    private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
+
+        @Override
+        protected DateFormat initialValue() {
+            final DateFormat dateFormat = new SimpleDateFormat(HttpDateGenerator.PATTERN_RFC1123, Locale.US);
+            dateFormat.setTimeZone(HttpDateGenerator.GMT);
+            return dateFormat;
+        }
+
+    };
+
+    /**
+     * Range of bytes of a static resource to be enclosed in a response.
+     */
+    public static final class ByteRange {
+
+        private final long first;
+        private final long last;
+
+        ByteRange(final long first, final long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        /**
+         * Returns the position of the first byte of the range.
+         */
+        public long getFirst() {
+            return this.first;
+        }
+
+        /**
+         * Returns the position of the last byte of the range (inclusive).
+         */
+        public long getLast() {
+            return this.last;
+        }
+
+        public long getLength() {
+            return this.last - this.first + 1;
+        }
+
+        @Override
+        public String toString() {
+            return this.first + "-" + this.last;
+        }
+
+    }
+
+    private StaticFileSupport() {
+    }
+
+    private static int hexDigit(final char ch) {
+        return Character.digit(ch, 16);
+    }
+
+    private static String decodePath(final String s) {
+        if (s.indexOf('%') == -1) {
+            return s;
+        }
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            if (ch == '%') {
+                if (i + 2 >= s.length()) {
+                    return null;
+                }
+                final int d1 = hexDigit(s.charAt(i + 1));
+                final int d2 = hexDigit(s.charAt(i + 2));
+                if (d1 == -1 || d2 == -1) {
+                    return null;
+                }
+                buffer.write((d1 << 4) | d2);
+                i += 2;
+            } else {
+                // encode unescaped runs as a whole to keep surrogate pairs intact
+                int end = s.indexOf('%', i);
+                if (end == -1) {
+                    end = s.length();
+                }
+                final byte[] b = s.substring(i, end).getBytes(Consts.UTF_8);
+                buffer.write(b, 0, b.length);
+                i = end - 1;
+            }
+        }
+        return new String(buffer.toByteArray(), Consts.UTF_8);
+    }
+
+    /**
+     * Resolves the path of the request URI to a file within the document root.
+     *
+     * @param docRoot the document root.
+     * @param request the request.
+     * @return the file or {@code null} if the request URI is malformed or attempts
+     *   to escape the document root.
+     */
+    public static File resolveFile(final File docRoot, final HttpRequest request) {
+        Args.notNull(docRoot, "Document root");
+        Args.notNull(request, "HTTP request");
+        String uri = request.getRequestLine().getUri();
+        final int schemeEnd = uri.indexOf("://");
+        if (schemeEnd != -1 && !uri.startsWith("/")) {
+            final int pathStart = uri.indexOf('/', schemeEnd + 3);
+            uri = pathStart != -1 ? uri.substring(pathStart) : "/";
+        }
+        if (!uri.startsWith("/")) {
+            return null;
+        }
+        int end = uri.length();
+        final int query = uri.indexOf('?');
+        if (query != -1) {
+            end = query;
+        }
+        final int fragment = uri.indexOf('#');
+        if (fragment != -1 && fragment < end) {
+            end = fragment;
+        }
+        final String path = decodePath(uri.substring(0, end));
+        if (path == null || path.indexOf('\0') != -1 || path.indexOf('\\') != -1) {
+            return null;
+        }
+        final StringBuilder relative = new StringBuilder(path.length());
+        for (final String segment: path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                return null;
+            }
+            if (relative.length() > 0) {
+                relative.append(File.separatorChar);
+            }
+            relative.append(segment);
+        }
+        return relative.length() > 0 ? new File(docRoot, relative.toString()) : docRoot;
+    }
+
+    /**
+     * Parses an HTTP date in RFC 1123 format.
+     *
+     * @return the date in milliseconds or {@code -1} if the date is malformed.
+     */
+    static long parseDate(final String s) {
+        if (s == null) {
+            return -1;
+        }
+        try {
+            return DATE_FORMAT.get().parse(s.trim()).getTime();
+        } catch (final ParseException ex) {
+            return -1;
+        }
+    }
+
+    private static String stripWeak(final String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    static boolean matchesETag(final String headerValue, final String etag, final boolean weak) {
+        for (final String element: headerValue.split(",")) {
+            final String candidate = element.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            if (weak) {
+                if (stripWeak(candidate).equals(stripWeak(etag))) {
+                    return true;
+                }
+            } else if (candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether or not the client has an up to date representation
+     * of the resource as indicated by the {@code If-None-Match} or, in its
+     * absence, the {@code If-Modified-Since} request header.
+     */
+    public static boolean isNotModified(final HttpRequest request, final StaticFileResource resource) {
+        final Header ifNoneMatch = request.getFirstHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return matchesETag(ifNoneMatch.getValue(), resource.getETag(), true);
+        }
+        final Header ifModifiedSince = request.getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null) {
+            final long date = parseDate(ifModifiedSince.getValue());
+            return date != -1 && resource.getLastModified() / 1000 <= date / 1000;
+        }
+        return false;
+    }
+
+    private static boolean isRangeApplicable(final HttpRequest request, final StaticFileResource resource) {
+        final Header ifRange = request.getFirstHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        final String value = ifRange.getValue().trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return matchesETag(value, resource.getETag(), false);
+        }
+        final long date = parseDate(value);
+        return date != -1 && resource.getLastModified() / 1000 == date / 1000;
+    }
+
+    private static long parseLong(final String s) {
+        if (s.isEmpty() || s.length() > 18) {
+            return -1;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+        }
+        return Long.parseLong(s);
+    }
+
+    /**
+     * Parses a single byte range specification of the {@code Range} header.
+     *
+     * @return the byte range, {@link #UNSATISFIABLE} if the range cannot be satisfied
+     *   or {@code null} if the header is malformed, specifies multiple ranges or
+     *   a unit other than {@code bytes}, in which case it should be ignored.
+     */
+    static ByteRange parseRange(final String value, final long length) {
+        final String s = value.trim();
+        if (!s.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        final String spec = s.substring(6).trim();
+        if (spec.indexOf(',') != -1) {
+            return null;
+        }
+        final int dash = spec.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        final String s1 = spec.substring(0, dash).trim();
+        final String s2 = spec.substring(dash + 1).trim();
+        if (s1.isEmpty()) {
+            final long suffix = parseLong(s2);
+            if (suffix == -1) {
+                return null;
+            }
+            if (suffix == 0 || length == 0) {
+                return UNSATISFIABLE;
+            }
+            return new ByteRange(Math.max(0, length - suffix), length - 1);
+        }
+        final long first = parseLong(s1);
+        if (first == -1) {
+            return null;
+        }
+        long last = length - 1;
+        if (!s2.isEmpty()) {
+            last = parseLong(s2);
+            if (last == -1 || last < first) {
+                return null;
+            }
+        }
+        if (first >= length) {
+            return UNSATISFIABLE;
+        }
+        return new ByteRange(first, Math.min(last, length - 1));
+    }
+
+    /**
+     * Marker range returned by {@link #parseRange(String, long)} for ranges
+     * that cannot be satisfied.
+     */
+    static final ByteRange UNSATISFIABLE = new ByteRange(0, -1);
+
+    /**
+     * Evaluates conditional and range headers of a {@code GET} or {@code HEAD}
+     * request against the resource and populates the status and representation
+     * headers of the response accordingly.
+     *
+     * @param request the request.
+     * @param response the response.
+     * @param resource the resource.
+     * @return the range of the resource content to be enclosed in the response,
+     *   or {@code null} if the response must not enclose any content
+     *   ({@code 304 Not Modified} or {@code 416 Range Not Satisfiable}).
+     */
+    public static ByteRange prepareResponse(
+            final HttpRequest request,
+            final HttpResponse response,
+            final StaticFileResource resource) {
+        Args.notNull(request, "HTTP request");
+        Args.notNull(response, "HTTP response");
+        Args.notNull(resource, "Static resource");
+        final Header[] headers = resource.headers();
+        if (isNotModified(request, resource)) {
+            response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+            for (final Header header: headers) {
+                if (!HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(header.getName())) {
+                    response.addHeader(header);
+                }
+            }
+            return null;
+        }
+        for (final Header header: headers) {
+            response.addHeader(header);
+        }
+        final long length = resource.getLength();
+        final Header rangeHeader = request.getFirstHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null
+                && "GET".equalsIgnoreCase(request.getRequestLine().getMethod())
+                && isRangeApplicable(request, resource)) {
+            final ByteRange range = parseRange(rangeHeader.getValue(), length);
+            if (range == UNSATISFIABLE) {
+                response.setStatusCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.addHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return null;
+            }
+            if (range != null) {
+                response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+                response.addHeader(HttpHeaders.CONTENT_RANGE,
+                        "bytes " + range.getFirst() + "-" + range.getLast() + "/" + length);
+                return range;
+            }
+        }
+        response.setStatusCode(HttpStatus.SC_OK);
+        return new ByteRange(0, length - 1);
+    }
+
+}
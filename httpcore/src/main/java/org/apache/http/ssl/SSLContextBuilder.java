@@ -56,6 +56,7 @@
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509ExtendedKeyManager;
@@ -89,6 +90,10 @@ public class SSLContextBuilder {
     private String trustManagerFactoryAlgorithm = TrustManagerFactory.getDefaultAlgorithm();
     private SecureRandom secureRandom;
     private Provider provider;
+    private int clientSessionCacheSize = -1;
+    private int clientSessionTimeout = -1;
+    private int serverSessionCacheSize = -1;
+    private int serverSessionTimeout = -1;
 
     public static SSLContextBuilder create() {
         return new SSLContextBuilder();
@@ -156,6 +161,64 @@ public SSLContextBuilder setProvider(final String name) {
         return this;
     }
 
+    /**
+     * Sets the maximum number of client side sessions cached for resumption
+     * of subsequent connections to the same peer.
+     *
+     * @param clientSessionCacheSize the maximum number of cached sessions;
+     *   {@code 0} means no limit.
+     * @return this builder
+     * @see SSLSessionContext#setSessionCacheSize(int)
+     * @since 4.4.17
+     */
+    public SSLContextBuilder setClientSessionCacheSize(final int clientSessionCacheSize) {
+        this.clientSessionCacheSize = Args.notNegative(clientSessionCacheSize, "Client session cache size");
+        return this;
+    }
+
+    /**
+     * Sets the time to live of client side sessions cached for resumption.
+     *
+     * @param clientSessionTimeout the session timeout in seconds;
+     *   {@code 0} means no limit.
+     * @return this builder
+     * @see SSLSessionContext#setSessionTimeout(int)
+     * @since 4.4.17
+     */
+    public SSLContextBuilder setClientSessionTimeout(final int clientSessionTimeout) {
+        this.clientSessionTimeout = Args.notNegative(clientSessionTimeout, "Client session timeout");
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of server side sessions cached for resumption
+     * by returning clients.
+     *
+     * @param serverSessionCacheSize the maximum number of cached sessions;
+     *   {@code 0} means no limit.
+     * @return this builder
+     * @see SSLSessionContext#setSessionCacheSize(int)
+     * @since 4.4.17
+     */
+    public SSLContextBuilder setServerSessionCacheSize(final int serverSessionCacheSize) {
+        this.serverSessionCacheSize = Args.notNegative(serverSessionCacheSize, "Server session cache size");
+        return this;
+    }
+
+    /**
+     * Sets the time to live of server side sessions cached for resumption.
+     *
+     * @param serverSessionTimeout the session timeout in seconds;
+     *   {@code 0} means no limit.
+     * @return this builder
+     * @see SSLSessionContext#setSessionTimeout(int)
+     * @since 4.4.17
+     */
+    public SSLContextBuilder setServerSessionTimeout(final int serverSessionTimeout) {
+        this.serverSessionTimeout = Args.notNegative(serverSessionTimeout, "Server session timeout");
+        return this;
+    }
+
     /**
      * Sets the key store type.
      *
@@ -386,9 +449,24 @@ public SSLContext build() throws NoSuchAlgorithmException, KeyManagementExceptio
             sslContext = SSLContext.getInstance(protocolStr);
         }
         initSSLContext(sslContext, keyManagers, trustManagers, secureRandom);
+        initSessionContext(sslContext.getClientSessionContext(), clientSessionCacheSize, clientSessionTimeout);
+        initSessionContext(sslContext.getServerSessionContext(), serverSessionCacheSize, serverSessionTimeout);
         return sslContext;
     }
 
+    private static void initSessionContext(
+            final SSLSessionContext sessionContext, final int cacheSize, final int timeout) {
+        if (sessionContext == null) {
+            return;
+        }
+        if (cacheSize >= 0) {
+            sessionContext.setSessionCacheSize(cacheSize);
+        }
+        if (timeout >= 0) {
+            sessionContext.setSessionTimeout(timeout);
+        }
+    }
+
     static class TrustManagerDelegate implements X509TrustManager {
 
         private final X509TrustManager trustManager;
@@ -517,7 +595,9 @@ public String toString() {
         return "[provider=" + provider + ", protocol=" + protocol + ", keyStoreType=" + keyStoreType
                 + ", keyManagerFactoryAlgorithm=" + keyManagerFactoryAlgorithm + ", keyManagers=" + keyManagers
                 + ", trustManagerFactoryAlgorithm=" + trustManagerFactoryAlgorithm + ", trustManagers=" + trustManagers
-                + ", secureRandom=" + secureRandom + "]";
+                + ", secureRandom=" + secureRandom + ", clientSessionCacheSize=" + clientSessionCacheSize
+                + ", clientSessionTimeout=" + clientSessionTimeout + ", serverSessionCacheSize=" + serverSessionCacheSize
+                + ", serverSessionTimeout=" + serverSessionTimeout + "]";
     }
 
 }
@@ -229,4 +229,64 @@ public void testAsyncNegativeTimeout() throws Exception {
         future.get(-1, TimeUnit.MILLISECONDS);
     }
 
+    @Test
+    public void testMultipleWaiters() throws Exception {
+        final BasicFuture<Object> future = new BasicFuture<Object>(null);
+        final Object result = new Object();
+        final int n = 10;
+        final Object[] results = new Object[n];
+        final Thread[] threads = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        if (index % 2 == 0) {
+                            results[index] = future.get();
+                        } else {
+                            results[index] = future.get(60, TimeUnit.SECONDS);
+                        }
+                    } catch (final Exception ex) {
+                        results[index] = ex;
+                    }
+                }
+
+            };
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        Thread.sleep(100);
+        Assert.assertTrue(future.completed(result));
+        for (int i = 0; i < n; i++) {
+            threads[i].join(5000);
+            Assert.assertSame(result, results[i]);
+        }
+    }
+
+    @Test
+    public void testTimedOutWaiterDoesNotBlockOthers() throws Exception {
+        final BasicFuture<Object> future = new BasicFuture<Object>(null);
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            Assert.fail("TimeoutException expected");
+        } catch (final TimeoutException expected) {
+        }
+        final Object result = new Object();
+        future.completed(result);
+        Assert.assertSame(result, future.get(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected=InterruptedException.class)
+    public void testInterrupted() throws Exception {
+        final BasicFuture<Object> future = new BasicFuture<Object>(null);
+        Thread.currentThread().interrupt();
+        try {
+            future.get();
+        } finally {
+            Assert.assertFalse(Thread.interrupted());
+        }
+    }
+
 }
@@ -0,0 +1,213 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.entity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.config.CompressionConfig;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CompressingEntity}, {@link DecompressingEntity}
+ * and {@link CompressedContentCache}.
+ */
+public class TestCompressingEntity {
+
+    private static byte[] createContent(final int len) {
+        final Random random = new Random(42);
+        final byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return b;
+    }
+
+    private static byte[] toByteArray(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] tmp = new byte[1024];
+        int l;
+        while ((l = in.read(tmp)) != -1) {
+            out.write(tmp, 0, l);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(final byte[] b) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(b);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testGzipWriteTo() throws Exception {
+        final byte[] content = createContent(50000);
+        final CompressingEntity entity = new CompressingEntity(new ByteArrayEntity(content), "gzip");
+        Assert.assertEquals(-1, entity.getContentLength());
+        Assert.assertTrue(entity.isChunked());
+        Assert.assertEquals("gzip", entity.getContentEncoding().getValue());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        Assert.assertArrayEquals(content, toByteArray(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))));
+    }
+
+    @Test
+    public void testGzipGetContent() throws Exception {
+        final byte[] content = createContent(50000);
+        final CompressingEntity entity = new CompressingEntity(
+                new InputStreamEntity(new ByteArrayInputStream(content)), "gzip", Deflater.BEST_SPEED, 512);
+        final byte[] compressed = toByteArray(entity.getContent());
+        Assert.assertArrayEquals(content, toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testDeflate() throws Exception {
+        final byte[] content = createContent(50000);
+        final CompressingEntity entity = new CompressingEntity(new ByteArrayEntity(content), "deflate");
+        final byte[] compressed = toByteArray(entity.getContent());
+        Assert.assertArrayEquals(content, toByteArray(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        Assert.assertArrayEquals(compressed, out.toByteArray());
+    }
+
+    @Test
+    public void testDecompressGzip() throws Exception {
+        final byte[] content = createContent(50000);
+        final DecompressingEntity entity = new DecompressingEntity(
+                new ByteArrayEntity(gzip(content)), "x-gzip", 64);
+        Assert.assertNull(entity.getContentEncoding());
+        Assert.assertArrayEquals(content, EntityUtils.toByteArray(entity));
+    }
+
+    @Test
+    public void testDecompressZlibAndRawDeflate() throws Exception {
+        final byte[] content = createContent(50000);
+        for (final boolean nowrap : new boolean[] { false, true }) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final DeflaterOutputStream deflating = new DeflaterOutputStream(
+                    out, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap));
+            deflating.write(content);
+            deflating.close();
+            final DecompressingEntity entity = new DecompressingEntity(
+                    new ByteArrayEntity(out.toByteArray()), "deflate");
+            Assert.assertArrayEquals(content, toByteArray(entity.getContent()));
+        }
+    }
+
+    @Test(expected = ZipException.class)
+    public void testDecompressCorruptTrailer() throws Exception {
+        final byte[] compressed = gzip(createContent(1000));
+        compressed[compressed.length - 5]++;
+        toByteArray(new DecompressingEntity(new ByteArrayEntity(compressed), "gzip").getContent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedEncoding() throws Exception {
+        new CompressingEntity(new ByteArrayEntity(new byte[0]), "br");
+    }
+
+    @Test
+    public void testPooledInstances() throws Exception {
+        final Deflater deflater = ZlibSupport.leaseDeflater("gzip", 5);
+        ZlibSupport.releaseDeflater(deflater, "gzip", 5);
+        Assert.assertSame(deflater, ZlibSupport.leaseDeflater("gzip", 5));
+        Assert.assertNotSame(deflater, ZlibSupport.leaseDeflater("gzip", 5));
+        Assert.assertNotSame(deflater, ZlibSupport.leaseDeflater("deflate", 5));
+
+        final Inflater inflater = ZlibSupport.leaseInflater("gzip");
+        ZlibSupport.releaseInflater(inflater, true);
+        Assert.assertNotSame(inflater, ZlibSupport.leaseInflater(false));
+        Assert.assertSame(inflater, ZlibSupport.leaseInflater(true));
+    }
+
+    @Test
+    public void testContentCache() throws Exception {
+        final byte[] content = createContent(10000);
+        final CompressedContentCache cache = new CompressedContentCache(20000, 100000);
+
+        final HttpEntity first = cache.compress(
+                "/a \"1\"", new ByteArrayEntity(content, ContentType.TEXT_PLAIN), "gzip", CompressionConfig.DEFAULT);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(first.getContentLength() > 0);
+        Assert.assertFalse(first.isChunked());
+        Assert.assertEquals("gzip", first.getContentEncoding().getValue());
+        Assert.assertEquals(ContentType.TEXT_PLAIN.toString(), first.getContentType().getValue());
+        final byte[] compressed = EntityUtils.toByteArray(first);
+        Assert.assertArrayEquals(content, toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+
+        // a different entity instance with the same key is served from the cache
+        final ByteArrayEntity other = new ByteArrayEntity(new byte[content.length], ContentType.TEXT_PLAIN);
+        final HttpEntity second = cache.compress("/a \"1\"", other, "gzip", CompressionConfig.DEFAULT);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertArrayEquals(compressed, EntityUtils.toByteArray(second));
+        Assert.assertTrue(cache.getTotalSize() > compressed.length);
+
+        cache.compress("/a \"1\"", other, "deflate", CompressionConfig.DEFAULT);
+        Assert.assertEquals(2, cache.size());
+
+        final HttpEntity unkeyed = cache.compress(
+                null, new ByteArrayEntity(content), "gzip", CompressionConfig.DEFAULT);
+        Assert.assertTrue(unkeyed instanceof CompressingEntity);
+        final HttpEntity streamed = cache.compress(
+                "/b", new InputStreamEntity(new ByteArrayInputStream(content)), "gzip", CompressionConfig.DEFAULT);
+        Assert.assertTrue(streamed instanceof CompressingEntity);
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testContentCacheEviction() throws Exception {
+        final CompressedContentCache cache = new CompressedContentCache(20000, 12000);
+        cache.compress("/1", new ByteArrayEntity(createContent(20000)), "gzip", null);
+        final long size1 = cache.getTotalSize();
+        Assert.assertTrue(size1 > 6000);
+        cache.compress("/2", new ByteArrayEntity(createContent(20000)), "gzip", null);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(cache.getTotalSize() <= 12000);
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getTotalSize());
+    }
+
+}
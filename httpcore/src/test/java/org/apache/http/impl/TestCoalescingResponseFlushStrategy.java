@@ -0,0 +1,295 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Consts;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpServerConnection;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.protocol.HttpService;
+import org.apache.http.protocol.ImmutableHttpProcessor;
+import org.apache.http.protocol.ResponseContent;
+import org.apache.http.protocol.ResponseFlushStrategy;
+import org.apache.http.protocol.UriHttpRequestHandlerMapper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class TestCoalescingResponseFlushStrategy {
+
+    static class WriteCountingOutputStream extends ByteArrayOutputStream {
+
+        int writes;
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) {
+            this.writes++;
+            super.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void write(final int b) {
+            this.writes++;
+            super.write(b);
+        }
+
+    }
+
+    @Mock
+    private Socket socket;
+
+    private WriteCountingOutputStream outStream;
+    private DefaultBHttpServerConnection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        this.outStream = new WriteCountingOutputStream();
+        Mockito.when(this.socket.getOutputStream()).thenReturn(this.outStream);
+        this.conn = new DefaultBHttpServerConnection(8 * 1024);
+    }
+
+    private void bind(final int requestCount) throws IOException {
+        final StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < requestCount; i++) {
+            buffer.append("GET /").append(i).append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        }
+        final byte[] raw = buffer.toString().getBytes(Consts.ASCII);
+        Mockito.when(this.socket.getInputStream()).thenReturn(new ByteArrayInputStream(raw));
+        this.conn.bind(this.socket);
+    }
+
+    private void serve(final ResponseFlushStrategy flushStrategy, final int requestCount) throws Exception {
+        final UriHttpRequestHandlerMapper handlerMapper = new UriHttpRequestHandlerMapper();
+        handlerMapper.register("*", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final HttpRequest request,
+                    final HttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                response.setEntity(new StringEntity(request.getRequestLine().getUri()));
+            }
+
+        });
+        final HttpProcessor httpProcessor = new ImmutableHttpProcessor(new ResponseContent());
+        final HttpService httpService = new HttpService(
+                httpProcessor, null, null, handlerMapper, null, flushStrategy);
+        for (int i = 0; i < requestCount; i++) {
+            httpService.handleRequest(this.conn, HttpCoreContext.create());
+        }
+    }
+
+    private int countResponses() {
+        final String s = new String(this.outStream.toByteArray(), Consts.ASCII);
+        int count = 0;
+        int i = 0;
+        while ((i = s.indexOf("HTTP/1.1 200 OK", i)) != -1) {
+            count++;
+            i++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testDefaultStrategyWritesEachResponse() throws Exception {
+        bind(16);
+        serve(DefaultResponseFlushStrategy.INSTANCE, 16);
+
+        Assert.assertEquals(16, countResponses());
+        Assert.assertEquals(16, this.outStream.writes);
+    }
+
+    @Test
+    public void testPipelinedResponsesCoalesced() throws Exception {
+        bind(16);
+        serve(new CoalescingResponseFlushStrategy(8 * 1024, 60000), 16);
+
+        Assert.assertEquals(16, countResponses());
+        // the first response is flushed by its content stream, the remaining
+        // fifteen go out with a single write
+        Assert.assertEquals(2, this.outStream.writes);
+        Assert.assertEquals(0, this.conn.getBufferedOutputLength());
+    }
+
+    @Test
+    public void testHeldBackResponsesFlushedBeforeBlockingRead() throws Exception {
+        // the second request is followed by a partial request head only
+        final String raw =
+                "GET /0 HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                "GET /1 HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                "GET /2 HTTP/1.1\r\nHo";
+        final ByteArrayInputStream inStream = new ByteArrayInputStream(raw.getBytes(Consts.ASCII));
+        final int[] responsesBeforeRead = new int[] { -1 };
+        Mockito.when(this.socket.getInputStream()).thenReturn(new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                final int n = inStream.read(b, off, len);
+                if (n == -1) {
+                    // the client would now wait for responses before sending more
+                    responsesBeforeRead[0] = countResponses();
+                    throw new SocketTimeoutException();
+                }
+                return n;
+            }
+
+        });
+        this.conn.bind(this.socket);
+        serve(new CoalescingResponseFlushStrategy(8 * 1024, 60000), 2);
+        Assert.assertEquals(1, countResponses());
+
+        try {
+            this.conn.receiveRequestHeader();
+            Assert.fail("SocketTimeoutException expected");
+        } catch (final SocketTimeoutException expected) {
+        }
+        Assert.assertEquals(2, responsesBeforeRead[0]);
+        Assert.assertEquals(0, this.conn.getBufferedOutputLength());
+    }
+
+    @Test
+    public void testHeldBackResponsesFlushedWhileHandlerBusy() throws Exception {
+        bind(3);
+        // the first response is flushed by its content stream, the second one is held back
+        final CountDownLatch flushed = new CountDownLatch(2);
+        final int[] responsesWhileBusy = new int[] { -1 };
+        final UriHttpRequestHandlerMapper handlerMapper = new UriHttpRequestHandlerMapper();
+        handlerMapper.register("*", new HttpRequestHandler() {
+
+            @Override
+            public void handle(
+                    final HttpRequest request,
+                    final HttpResponse response,
+                    final HttpContext context) throws HttpException, IOException {
+                if (request.getRequestLine().getUri().equals("/2")) {
+                    // a slow handler must not hold back the response to /1
+                    try {
+                        if (flushed.await(5, TimeUnit.SECONDS)) {
+                            responsesWhileBusy[0] = countResponses();
+                        }
+                    } catch (final InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                response.setEntity(new StringEntity(request.getRequestLine().getUri()));
+            }
+
+        });
+        this.outStream = new WriteCountingOutputStream() {
+
+            @Override
+            public synchronized void write(final byte[] b, final int off, final int len) {
+                super.write(b, off, len);
+                flushed.countDown();
+            }
+
+        };
+        Mockito.when(this.socket.getOutputStream()).thenReturn(this.outStream);
+        final HttpService httpService = new HttpService(
+                new ImmutableHttpProcessor(new ResponseContent()), null, null, handlerMapper, null,
+                new CoalescingResponseFlushStrategy(8 * 1024, 50));
+        for (int i = 0; i < 3; i++) {
+            httpService.handleRequest(this.conn, HttpCoreContext.create());
+        }
+
+        Assert.assertEquals(3, countResponses());
+        Assert.assertEquals(2, responsesWhileBusy[0]);
+    }
+
+    @Test
+    public void testByteBudgetBoundsCoalescing() throws Exception {
+        bind(16);
+        serve(new CoalescingResponseFlushStrategy(256, 60000), 16);
+
+        Assert.assertEquals(16, countResponses());
+        Assert.assertTrue(this.outStream.writes > 1);
+        Assert.assertTrue(this.outStream.writes < 16);
+    }
+
+    @Test
+    public void testDelayBoundsCoalescing() throws Exception {
+        bind(3);
+        final CoalescingResponseFlushStrategy flushStrategy = new CoalescingResponseFlushStrategy(8 * 1024, 100);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        final HttpContext context = HttpCoreContext.create();
+
+        this.conn.receiveRequestHeader();
+        Assert.assertFalse(flushStrategy.isFlushRequired(this.conn, response, context));
+        this.conn.receiveRequestHeader();
+        this.conn.setFlushDeferredSince(System.currentTimeMillis() - 1000);
+        Assert.assertTrue(flushStrategy.isFlushRequired(this.conn, response, context));
+        this.conn.flush();
+        Assert.assertEquals(0, this.conn.getFlushDeferredSince());
+    }
+
+    @Test
+    public void testFlushWithoutBufferedInput() throws Exception {
+        bind(1);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        final HttpContext context = HttpCoreContext.create();
+
+        this.conn.receiveRequestHeader();
+        Assert.assertTrue(CoalescingResponseFlushStrategy.INSTANCE.isFlushRequired(this.conn, response, context));
+    }
+
+    @Test
+    public void testFlushOtherConnections() throws Exception {
+        final HttpServerConnection otherConn = Mockito.mock(HttpServerConnection.class);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+
+        Assert.assertTrue(CoalescingResponseFlushStrategy.INSTANCE.isFlushRequired(
+                otherConn, response, HttpCoreContext.create()));
+    }
+
+}
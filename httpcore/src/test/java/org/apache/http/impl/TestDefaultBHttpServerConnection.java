@@ -28,6 +28,11 @@
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
 
 import org.apache.http.Consts;
@@ -38,9 +43,12 @@
 import org.apache.http.HttpVersion;
 import org.apache.http.config.MessageConstraints;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.FileRegionEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.entity.LaxContentLengthStrategy;
 import org.apache.http.impl.entity.StrictContentLengthStrategy;
+import org.apache.http.impl.bootstrap.ChannelServerSocketFactory;
 import org.apache.http.impl.io.DefaultHttpRequestParserFactory;
 import org.apache.http.impl.io.DefaultHttpResponseWriterFactory;
 import org.apache.http.message.BasicHttpResponse;
@@ -186,4 +194,102 @@ public void testWriteResponseEntity() throws Exception {
         Assert.assertEquals("HTTP/1.1 200 OK\r\nUser-Agent: test\r\nContent-Length: 3\r\n\r\n123", s);
     }
 
+    private static String transfer(
+            final DefaultBHttpServerConnection conn,
+            final HttpResponse response,
+            final int expected) throws Exception {
+        final ServerSocket serverSocket = ChannelServerSocketFactory.INSTANCE.createServerSocket(
+                0, 1, InetAddress.getByName("127.0.0.1"));
+        try {
+            final Socket client = new Socket(InetAddress.getByName("127.0.0.1"), serverSocket.getLocalPort());
+            try {
+                final Socket socket = serverSocket.accept();
+                Assert.assertNotNull(socket.getChannel());
+                conn.bind(socket);
+                conn.sendResponseHeader(response);
+                conn.sendResponseEntity(response);
+                conn.flush();
+                conn.close();
+
+                final InputStream inStream = client.getInputStream();
+                final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                final byte[] tmp = new byte[1024];
+                int l;
+                while ((l = inStream.read(tmp)) != -1) {
+                    buf.write(tmp, 0, l);
+                }
+                Assert.assertEquals(expected, buf.size());
+                return new String(buf.toByteArray(), "ASCII");
+            } finally {
+                client.close();
+            }
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    private static File createTempFile(final String content) throws Exception {
+        final File file = File.createTempFile("httpcore", ".tmp");
+        file.deleteOnExit();
+        final FileOutputStream outStream = new FileOutputStream(file);
+        try {
+            outStream.write(content.getBytes(Consts.ASCII));
+        } finally {
+            outStream.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testTransferFileEntity() throws Exception {
+        final File file = createTempFile("0123456789");
+        try {
+            final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+            response.addHeader("Content-Length", "10");
+            response.setEntity(new FileEntity(file, ContentType.TEXT_PLAIN));
+
+            final String head = "HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n";
+            final String s = transfer(conn, response, head.length() + 10);
+            Assert.assertEquals(head + "0123456789", s);
+            Assert.assertEquals(1, conn.getMetrics().getResponseCount());
+            Assert.assertEquals(head.length() + 10, conn.getMetrics().getSentBytesCount());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testTransferFileRegionEntity() throws Exception {
+        final File file = createTempFile("0123456789");
+        try {
+            final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+            response.addHeader("Content-Length", "4");
+            response.setEntity(new FileRegionEntity(file, 3, 4, ContentType.TEXT_PLAIN));
+
+            final String head = "HTTP/1.1 200 OK\r\nContent-Length: 4\r\n\r\n";
+            final String s = transfer(conn, response, head.length() + 4);
+            Assert.assertEquals(head + "3456", s);
+            Assert.assertEquals(head.length() + 4, conn.getMetrics().getSentBytesCount());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testTransferFileEntityChunked() throws Exception {
+        final File file = createTempFile("0123456789");
+        try {
+            final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+            response.addHeader("Transfer-Encoding", "chunked");
+            response.setEntity(new FileEntity(file, ContentType.TEXT_PLAIN));
+
+            final String head = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n";
+            final String body = "a\r\n0123456789\r\n0\r\n\r\n";
+            final String s = transfer(conn, response, head.length() + body.length());
+            Assert.assertEquals(head + body, s);
+        } finally {
+            file.delete();
+        }
+    }
+
 }
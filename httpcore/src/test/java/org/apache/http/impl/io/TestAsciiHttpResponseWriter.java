@@ -0,0 +1,139 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.io;
+
+import java.nio.charset.Charset;
+
+import org.apache.http.Consts;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.impl.SessionOutputBufferMock;
+import org.apache.http.io.HttpMessageWriter;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BufferedHeader;
+import org.apache.http.util.CharArrayBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link AsciiHttpResponseWriter}.
+ */
+public class TestAsciiHttpResponseWriter {
+
+    private static byte[] writeDefault(final HttpResponse response, final Charset charset) throws Exception {
+        final SessionOutputBufferMock outbuffer = new SessionOutputBufferMock(charset);
+        final HttpMessageWriter<HttpResponse> writer = new DefaultHttpResponseWriter(outbuffer);
+        writer.write(response);
+        outbuffer.flush();
+        return outbuffer.getData();
+    }
+
+    private static byte[] writeAscii(final HttpResponse response, final Charset charset) throws Exception {
+        final SessionOutputBufferMock outbuffer = new SessionOutputBufferMock(charset);
+        final HttpMessageWriter<HttpResponse> writer = AsciiHttpResponseWriterFactory.INSTANCE.create(outbuffer);
+        writer.write(response);
+        outbuffer.flush();
+        return outbuffer.getData();
+    }
+
+    private static void assertSameOutput(final HttpResponse response, final Charset charset) throws Exception {
+        Assert.assertEquals(
+                new String(writeDefault(response, charset), Consts.ISO_8859_1),
+                new String(writeAscii(response, charset), Consts.ISO_8859_1));
+    }
+
+    @Test
+    public void testBasicResponseHead() throws Exception {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("Server", "test");
+        response.addHeader("Content-Length", "10");
+        response.addHeader("X-Custom", "stuff");
+
+        final byte[] data = writeAscii(response, null);
+        Assert.assertEquals(
+                "HTTP/1.1 200 OK\r\n" +
+                "Server: test\r\n" +
+                "Content-Length: 10\r\n" +
+                "X-Custom: stuff\r\n" +
+                "\r\n", new String(data, Consts.ASCII));
+    }
+
+    @Test
+    public void testStatusLines() throws Exception {
+        assertSameOutput(new BasicHttpResponse(HttpVersion.HTTP_1_0, 404, "Not Found"), null);
+        assertSameOutput(new BasicHttpResponse(HttpVersion.HTTP_1_1, 404, "Whatever"), null);
+        assertSameOutput(new BasicHttpResponse(HttpVersion.HTTP_1_1, 299, null), null);
+        assertSameOutput(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, ""), null);
+        assertSameOutput(new BasicHttpResponse(HttpVersion.HTTP_0_9, 200, "OK"), null);
+        assertSameOutput(new BasicHttpResponse(HttpVersion.HTTP_1_1, 999, "Weird"), null);
+    }
+
+    @Test
+    public void testHeaderValueSanitization() throws Exception {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader("Location", "/a\r\nb\fc\u000bd");
+        response.addHeader("X-Empty", null);
+        assertSameOutput(response, null);
+    }
+
+    @Test
+    public void testFormattedHeader() throws Exception {
+        final CharArrayBuffer buf = new CharArrayBuffer(32);
+        buf.append("Content-Type:   text/plain");
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.addHeader(new BufferedHeader(buf));
+        assertSameOutput(response, null);
+    }
+
+    @Test
+    public void testNonAsciiFallback() throws Exception {
+        final String s = "Здравствуйте";
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, s);
+        response.addHeader("Server", "test");
+        response.addHeader("X-Name", s);
+        response.addHeader(new BasicHeader(s, "value"));
+        response.addHeader("Connection", "close");
+        assertSameOutput(response, Consts.UTF_8);
+        assertSameOutput(response, null);
+    }
+
+    @Test
+    public void testLargeHead() throws Exception {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        final StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            buffer.append("0123456789");
+        }
+        for (int i = 0; i < 10; i++) {
+            response.addHeader("X-Header-" + i, buffer.toString());
+        }
+        assertSameOutput(response, null);
+    }
+
+}
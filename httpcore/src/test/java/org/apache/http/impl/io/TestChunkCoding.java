@@ -95,6 +95,21 @@ public void testChunkedInputStreamLargeBuffer() throws IOException {
     }
 
     //Test for when buffer is smaller than chunk size.
+    @Test
+    public void testChunkedInputStreamReadSpansChunks() throws IOException {
+        final String input = "5\r\n01234\r\n5\r\n56789\r\n6\r\nabcdef\r\n0\r\nFooter1: abcde\r\n\r\n";
+        final ChunkedInputStream in = new ChunkedInputStream(
+                new SessionInputBufferMock(input.getBytes(Consts.ISO_8859_1), 1024));
+        final byte[] buffer = new byte[300];
+        Assert.assertEquals(16, in.read(buffer));
+        Assert.assertEquals("0123456789abcdef", new String(buffer, 0, 16, Consts.ISO_8859_1));
+        Assert.assertEquals(-1, in.read(buffer));
+        final Header[] footers = in.getFooters();
+        Assert.assertEquals(1, footers.length);
+        Assert.assertEquals("Footer1", footers[0].getName());
+        in.close();
+    }
+
     @Test
     public void testChunkedInputStreamSmallBuffer() throws IOException {
         final ChunkedInputStream in = new ChunkedInputStream(
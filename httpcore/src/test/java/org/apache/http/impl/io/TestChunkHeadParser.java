@@ -0,0 +1,121 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.impl.io;
+
+import org.apache.http.Consts;
+import org.apache.http.MalformedChunkCodingException;
+import org.apache.http.MessageConstraintException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ChunkHeadParser}.
+ */
+public class TestChunkHeadParser {
+
+    private static long parse(final ChunkHeadParser parser, final String s) throws Exception {
+        final byte[] b = s.getBytes(Consts.ASCII);
+        for (int i = 0; i < b.length; i++) {
+            if (parser.update(b[i])) {
+                Assert.assertEquals("Trailing input", b.length - 1, i);
+                return parser.getChunkSize();
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testChunkSize() throws Exception {
+        final ChunkHeadParser parser = new ChunkHeadParser(-1);
+        parser.reset(false);
+        Assert.assertEquals(0x1aF, parse(parser, "1aF\r\n"));
+        Assert.assertTrue(parser.isComplete());
+        parser.reset(true);
+        Assert.assertEquals(0x10, parse(parser, "\r\n  10 ;name=\"value\"\r\n"));
+        parser.reset(true);
+        Assert.assertEquals(0, parse(parser, "\n0\n"));
+        parser.reset(false);
+        Assert.assertEquals(0x7fffffffffffffffL, parse(parser, "7fffffffffffffff\r\n"));
+    }
+
+    @Test
+    public void testPartialInput() throws Exception {
+        final ChunkHeadParser parser = new ChunkHeadParser(-1);
+        parser.reset(true);
+        Assert.assertEquals(-1, parse(parser, "\r"));
+        Assert.assertEquals(-1, parse(parser, "\n2"));
+        Assert.assertFalse(parser.isComplete());
+        Assert.assertEquals(0x20, parse(parser, "0\r\n"));
+    }
+
+    @Test
+    public void testEndOfStream() throws Exception {
+        final ChunkHeadParser parser = new ChunkHeadParser(-1);
+        parser.reset(false);
+        Assert.assertFalse(parser.endOfStream());
+        parse(parser, "5");
+        Assert.assertTrue(parser.endOfStream());
+        Assert.assertEquals(5, parser.getChunkSize());
+        parser.reset(true);
+        try {
+            parser.endOfStream();
+            Assert.fail("MalformedChunkCodingException expected");
+        } catch (final MalformedChunkCodingException expected) {
+        }
+    }
+
+    private static void assertMalformed(final boolean endOfChunk, final String s) throws Exception {
+        final ChunkHeadParser parser = new ChunkHeadParser(-1);
+        parser.reset(endOfChunk);
+        try {
+            parse(parser, s);
+            Assert.fail("MalformedChunkCodingException expected: " + s);
+        } catch (final MalformedChunkCodingException expected) {
+        }
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        assertMalformed(true, "x\r\n5\r\n");
+        assertMalformed(true, "\rx");
+        assertMalformed(false, "\r\n");
+        assertMalformed(false, "5x\r\n");
+        assertMalformed(false, "5 5\r\n");
+        assertMalformed(false, "-5\r\n");
+        assertMalformed(false, "5\rx");
+        assertMalformed(false, "80000000000000000\r\n");
+    }
+
+    @Test(expected = MessageConstraintException.class)
+    public void testMaxLineLength() throws Exception {
+        final ChunkHeadParser parser = new ChunkHeadParser(10);
+        parser.reset(false);
+        parse(parser, "5; and some very looooong comment\r\n");
+    }
+
+}
@@ -30,10 +30,12 @@
 
 import org.apache.http.ConnectionClosedException;
 import org.apache.http.Consts;
+import org.apache.http.FormattedHeader;
 import org.apache.http.Header;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpVersion;
 import org.apache.http.RequestLine;
+import org.apache.http.config.MessageConstraints;
 import org.apache.http.impl.SessionInputBufferMock;
 import org.apache.http.io.SessionInputBuffer;
 import org.junit.Assert;
@@ -71,6 +73,56 @@ public void testBasicMessageParsing() throws Exception {
         Assert.assertEquals(3, headers.length);
     }
 
+    @Test
+    public void testBufferRecycling() throws Exception {
+        final String s =
+            "GET /one HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "User-Agent: whatever\r\n" +
+            "\r\n" +
+            "GET /two HTTP/1.1\r\n" +
+            "Host: otherhost\r\n" +
+            "\r\n";
+        final SessionInputBuffer inBuffer = new SessionInputBufferMock(s, Consts.ASCII);
+
+        final DefaultHttpRequestParser parser = new DefaultHttpRequestParser(inBuffer, null, null,
+                MessageConstraints.custom().setBufferRecycling(true).build());
+        final HttpRequest request1 = parser.parse();
+        final Header[] headers1 = request1.getAllHeaders();
+        Assert.assertEquals(2, headers1.length);
+        Assert.assertEquals("whatever", request1.getFirstHeader("User-Agent").getValue());
+
+        final HttpRequest request2 = parser.parse();
+        Assert.assertEquals("/two", request2.getRequestLine().getUri());
+        final Header[] headers2 = request2.getAllHeaders();
+        Assert.assertEquals(1, headers2.length);
+        Assert.assertEquals("Host", headers2[0].getName());
+        Assert.assertEquals("otherhost", headers2[0].getValue());
+        // headers of the first message are detached from the recycled line buffers
+        Assert.assertFalse(headers1[1] instanceof FormattedHeader);
+        Assert.assertEquals("localhost", headers1[0].getValue());
+        Assert.assertEquals("whatever", headers1[1].getValue());
+    }
+
+    @Test
+    public void testNoBufferRecyclingByDefault() throws Exception {
+        final String s =
+            "GET /one HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "\r\n" +
+            "GET /two HTTP/1.1\r\n" +
+            "Host: otherhost\r\n" +
+            "\r\n";
+        final SessionInputBuffer inBuffer = new SessionInputBufferMock(s, Consts.ASCII);
+
+        final DefaultHttpRequestParser parser = new DefaultHttpRequestParser(inBuffer);
+        final Header header1 = parser.parse().getFirstHeader("Host");
+        final Header header2 = parser.parse().getFirstHeader("Host");
+        Assert.assertEquals("localhost", header1.getValue());
+        Assert.assertEquals("otherhost", header2.getValue());
+        Assert.assertNotSame(((FormattedHeader) header1).getBuffer(), ((FormattedHeader) header2).getBuffer());
+    }
+
     @Test
     public void testConnectionClosedException() throws Exception {
         final SessionInputBuffer inBuffer = new SessionInputBufferMock(new byte[] {});
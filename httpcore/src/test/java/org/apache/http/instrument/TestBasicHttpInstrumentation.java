@@ -0,0 +1,202 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.instrument;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBasicHttpInstrumentation {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testExchanges() {
+        final BasicHttpInstrumentation instrumentation = new BasicHttpInstrumentation();
+        Assert.assertTrue(instrumentation.isEnabled());
+        instrumentation.exchangeCompleted(ExchangeType.SERVER, 0, 2 * MS, 4 * MS);
+        instrumentation.exchangeCompleted(ExchangeType.SERVER, 0, 4 * MS, 8 * MS);
+        instrumentation.exchangeFailed(ExchangeType.SERVER, 0, MS);
+        instrumentation.exchangeCompleted(ExchangeType.CLIENT, 0, MS, MS);
+
+        Assert.assertEquals(2, instrumentation.getServerExchangesCompleted());
+        Assert.assertEquals(1, instrumentation.getServerExchangesFailed());
+        Assert.assertEquals(3.0, instrumentation.getServerResponseTimeMean(), 0.001);
+        Assert.assertEquals(6.0, instrumentation.getServerExchangeTimeMean(), 0.001);
+        Assert.assertEquals(8.0, instrumentation.getServerExchangeTimeMax(), 0.001);
+        Assert.assertEquals(1, instrumentation.getClientExchangesCompleted());
+        Assert.assertEquals(0, instrumentation.getClientExchangesFailed());
+
+        instrumentation.reset();
+        Assert.assertEquals(0, instrumentation.getServerExchangesCompleted());
+        Assert.assertEquals(0, instrumentation.getServerExchangesFailed());
+        Assert.assertEquals(0, instrumentation.getClientExchangesCompleted());
+    }
+
+    @Test
+    public void testReactorAndTransport() {
+        final BasicHttpInstrumentation instrumentation = new BasicHttpInstrumentation();
+        final Object reactor1 = new Object();
+        final Object reactor2 = new Object();
+        final Object conn1 = new Object();
+        final Object conn2 = new Object();
+        instrumentation.ioReactorLoopCompleted(reactor1, 3, 10 * MS, MS);
+        instrumentation.ioReactorLoopCompleted(reactor2, 1, 20 * MS, 3 * MS);
+        instrumentation.ioReactorBusyPollCompleted(reactor1, MS, true);
+        instrumentation.ioReactorBusyPollCompleted(reactor1, MS, false);
+        instrumentation.ioReactorBusyPollCompleted(reactor2, 4 * MS, true);
+        instrumentation.ioReactorBusyPollCompleted(reactor2, 2 * MS, false);
+        instrumentation.ioReactorQueueDepth(reactor1, 5, 1, 0, 10);
+        instrumentation.ioReactorQueueDepth(reactor2, 1, 3, 0, 20);
+        instrumentation.bytesReceived(conn1, 100);
+        instrumentation.bytesSent(conn1, 50);
+        instrumentation.bytesSent(conn2, 25);
+
+        Assert.assertEquals(2, instrumentation.getIOReactorLoopCount());
+        Assert.assertEquals(4, instrumentation.getIOReactorReadyCount());
+        Assert.assertEquals(15.0, instrumentation.getIOReactorSelectTimeMean(), 0.001);
+        Assert.assertEquals(2.0, instrumentation.getIOReactorProcessTimeMean(), 0.001);
+        Assert.assertEquals(3.0, instrumentation.getIOReactorProcessTimeMax(), 0.001);
+        Assert.assertEquals(4, instrumentation.getIOReactorBusyPollCount());
+        Assert.assertEquals(0.5, instrumentation.getIOReactorBusyPollParkRatio(), 0.001);
+        Assert.assertEquals(2.0, instrumentation.getIOReactorBusyPollTimeMean(), 0.001);
+        Assert.assertEquals(5, instrumentation.getNewChannelQueueDepthMax());
+        Assert.assertEquals(3, instrumentation.getClosedSessionQueueDepthMax());
+        Assert.assertEquals(15.0, instrumentation.getActiveSessionsMean(), 0.001);
+        Assert.assertEquals(100, instrumentation.getBytesReceived());
+        Assert.assertEquals(75, instrumentation.getBytesSent());
+
+        final Map<String, IOReactorStatistics> reactors = instrumentation.getIOReactorStatistics();
+        Assert.assertEquals(2, reactors.size());
+        long loops = 0;
+        long ready = 0;
+        double processTimeMax = 0;
+        long activeSessionsMax = 0;
+        for (final IOReactorStatistics stats: reactors.values()) {
+            Assert.assertEquals(1, stats.getLoopCount());
+            Assert.assertEquals(2, stats.getBusyPollCount());
+            Assert.assertEquals(0.5, stats.getBusyPollParkRatio(), 0.001);
+            loops += stats.getLoopCount();
+            ready += stats.getReadyCount();
+            processTimeMax = Math.max(processTimeMax, stats.getProcessTimeMax());
+            activeSessionsMax = Math.max(activeSessionsMax, stats.getActiveSessionsMax());
+        }
+        Assert.assertEquals(2, loops);
+        Assert.assertEquals(4, ready);
+        Assert.assertEquals(3.0, processTimeMax, 0.001);
+        Assert.assertEquals(20, activeSessionsMax);
+
+        final Map<String, ConnectionStatistics> connections = instrumentation.getConnectionStatistics();
+        Assert.assertEquals(2, connections.size());
+        long received = 0;
+        long sent = 0;
+        for (final ConnectionStatistics stats: connections.values()) {
+            Assert.assertNotNull(stats.getDescription());
+            received += stats.getBytesReceived();
+            sent += stats.getBytesSent();
+        }
+        Assert.assertEquals(100, received);
+        Assert.assertEquals(75, sent);
+
+        instrumentation.ioReactorTerminated(reactor1);
+        instrumentation.connectionClosed(conn1);
+        Assert.assertEquals(1, instrumentation.getIOReactorStatistics().size());
+        Assert.assertEquals(1, instrumentation.getConnectionStatistics().size());
+        Assert.assertEquals(25, instrumentation.getConnectionStatistics().values().iterator().next().getBytesSent());
+        // totals outlive reactors and connections
+        Assert.assertEquals(2, instrumentation.getIOReactorLoopCount());
+        Assert.assertEquals(100, instrumentation.getBytesReceived());
+    }
+
+    @Test
+    public void testLeases() {
+        final BasicHttpInstrumentation instrumentation = new BasicHttpInstrumentation();
+        instrumentation.leaseCompleted("route", MS);
+        instrumentation.leaseCompleted("route", 3 * MS);
+        instrumentation.leaseFailed("route", 10 * MS);
+
+        Assert.assertEquals(2, instrumentation.getLeasesCompleted());
+        Assert.assertEquals(1, instrumentation.getLeasesFailed());
+        Assert.assertEquals(2.0, instrumentation.getLeaseWaitTimeMean(), 0.001);
+        Assert.assertEquals(3.0, instrumentation.getLeaseWaitTimeMax(), 0.001);
+    }
+
+    @Test
+    public void testJmxExport() throws Exception {
+        final BasicHttpInstrumentation instrumentation = new BasicHttpInstrumentation();
+        final Object reactor = new Object();
+        final Object conn = new Object();
+        instrumentation.ioReactorLoopCompleted(reactor, 2, MS, MS);
+        instrumentation.bytesReceived(conn, 42);
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(
+                JmxInstrumentationExporter.DEFAULT_OBJECT_NAME + ",name=" + System.identityHashCode(instrumentation));
+        JmxInstrumentationExporter.export(server, instrumentation, name);
+        try {
+            Assert.assertTrue(server.isRegistered(name));
+            Assert.assertEquals(Long.valueOf(42), server.getAttribute(name, "BytesReceived"));
+            final TabularData reactors = (TabularData) server.getAttribute(name, "IOReactorStatistics");
+            Assert.assertEquals(1, reactors.size());
+            final CompositeData reactorRow = (CompositeData) reactors.values().iterator().next();
+            final CompositeData reactorStats = (CompositeData) reactorRow.get("value");
+            Assert.assertEquals(Long.valueOf(2), reactorStats.get("readyCount"));
+            final TabularData connections = (TabularData) server.getAttribute(name, "ConnectionStatistics");
+            Assert.assertEquals(1, connections.size());
+            final CompositeData connRow = (CompositeData) connections.values().iterator().next();
+            final CompositeData connStats = (CompositeData) connRow.get("value");
+            Assert.assertEquals(Long.valueOf(42), connStats.get("bytesReceived"));
+            Assert.assertEquals(conn.toString(), connStats.get("description"));
+            server.invoke(name, "reset", null, null);
+            Assert.assertEquals(0, instrumentation.getBytesReceived());
+        } finally {
+            JmxInstrumentationExporter.unexport(server, name);
+        }
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testResolve() {
+        final ClassLoader classLoader = getClass().getClassLoader();
+        Assert.assertSame(NoopInstrumentation.INSTANCE,
+                InstrumentationSupport.resolve(null, classLoader));
+        Assert.assertTrue(InstrumentationSupport.resolve(
+                BasicHttpInstrumentation.class.getName(), classLoader) instanceof BasicHttpInstrumentation);
+        Assert.assertSame(NoopInstrumentation.INSTANCE,
+                InstrumentationSupport.resolve("org.example.NoSuchInstrumentation", classLoader));
+        Assert.assertSame(NoopInstrumentation.INSTANCE,
+                InstrumentationSupport.resolve(String.class.getName(), classLoader));
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.instrument;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestStripedCounter {
+
+    @Test
+    public void testSumAcrossThreads() throws Exception {
+        final StripedCounter counter = new StripedCounter(4);
+        final int threadCount = 8;
+        final int increments = 10000;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (final InterruptedException ex) {
+                        return;
+                    }
+                    for (int n = 0; n < increments; n++) {
+                        counter.increment();
+                    }
+                }
+
+            };
+            threads[i].start();
+        }
+        startLatch.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(threadCount * increments, counter.sum());
+        counter.reset();
+        Assert.assertEquals(0, counter.sum());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidStripes() {
+        new StripedCounter(0);
+    }
+
+    @Test
+    public void testStats() {
+        final StripedStats stats = new StripedStats();
+        Assert.assertEquals(0, stats.getCount());
+        Assert.assertEquals(0.0, stats.getMean(), 0.0);
+        stats.record(10);
+        stats.record(30);
+        stats.record(20);
+        Assert.assertEquals(3, stats.getCount());
+        Assert.assertEquals(60, stats.getTotal());
+        Assert.assertEquals(30, stats.getMax());
+        Assert.assertEquals(20.0, stats.getMean(), 0.0);
+        stats.reset();
+        Assert.assertEquals(0, stats.getCount());
+        Assert.assertEquals(0, stats.getMax());
+    }
+
+}
@@ -27,13 +27,18 @@
 package org.apache.http.pool;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.http.HttpConnection;
+import org.apache.http.concurrent.FutureCallback;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Matchers;
@@ -165,6 +170,57 @@ public void testLeaseRelease() throws Exception {
         Assert.assertEquals(0, totals.getLeased());
     }
 
+    @Test
+    public void testOnLeaseBeforeCallback() throws Exception {
+        final HttpConnection conn = Mockito.mock(HttpConnection.class);
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn);
+
+        final AtomicInteger leases = new AtomicInteger();
+        final AtomicReference<Future<LocalPoolEntry>> cancelOnLease = new AtomicReference<Future<LocalPoolEntry>>();
+        final LocalConnPool pool = new LocalConnPool(connFactory, 2, 10) {
+
+            @Override
+            protected void onLease(final LocalPoolEntry entry) {
+                leases.incrementAndGet();
+                final Future<LocalPoolEntry> future = cancelOnLease.get();
+                if (future != null) {
+                    future.cancel(true);
+                }
+            }
+
+        };
+        final AtomicInteger leasesOnCallback = new AtomicInteger(-1);
+        final Future<LocalPoolEntry> future = pool.lease("somehost", null, new FutureCallback<LocalPoolEntry>() {
+
+            @Override
+            public void completed(final LocalPoolEntry result) {
+                leasesOnCallback.set(leases.get());
+            }
+
+            @Override
+            public void failed(final Exception ex) {
+            }
+
+            @Override
+            public void cancelled() {
+            }
+
+        });
+        final LocalPoolEntry entry = future.get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals(1, leases.get());
+        Assert.assertEquals(1, leasesOnCallback.get());
+
+        // once onLease runs the lease can no longer be cancelled
+        final Future<LocalPoolEntry> future2 = pool.lease("somehost", null);
+        cancelOnLease.set(future2);
+        Assert.assertNotNull(future2.get(1, TimeUnit.SECONDS));
+        Assert.assertFalse(future2.isCancelled());
+        Assert.assertEquals(2, leases.get());
+        Assert.assertEquals(2, pool.getTotalStats().getLeased());
+    }
+
     @Test
     public void testLeaseIllegal() throws Exception {
         final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
@@ -865,4 +921,353 @@ public void testValidateConnectionStale() throws Exception {
         Mockito.verify(connFactory, Mockito.times(2)).create("somehost");
     }
 
+    @Test
+    public void testMetrics() throws Exception {
+        final HttpConnection conn = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 1, 10);
+
+        final LocalPoolEntry entry1 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        final LocalPoolEntry entry2 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry1, entry2);
+
+        final Future<LocalPoolEntry> future3 = pool.lease("somehost", null);
+        try {
+            future3.get(10, TimeUnit.MILLISECONDS);
+            Assert.fail("TimeoutException should have been thrown");
+        } catch (final TimeoutException expected) {
+        }
+
+        final PoolMetrics metrics = pool.getRouteMetrics("somehost");
+        Assert.assertEquals(1, metrics.getCreated());
+        Assert.assertEquals(1, metrics.getReused());
+        Assert.assertEquals(2, metrics.getLeases());
+        Assert.assertEquals(1, metrics.getLeaseFailures());
+        Assert.assertEquals(1, metrics.getSaturations());
+        Assert.assertTrue(metrics.getTimeAtCapacity() >= 10);
+        Assert.assertEquals(2, metrics.getLeaseWaitTime().getCount());
+
+        final PoolMetrics totals = pool.getTotalMetrics();
+        Assert.assertEquals(1, totals.getCreated());
+        Assert.assertEquals(1, totals.getReused());
+        Assert.assertEquals(1, totals.getSaturations());
+        Assert.assertEquals(0, totals.getTimeAtCapacity());
+
+        pool.release(entry2, false);
+        pool.resetMetrics();
+        Assert.assertEquals(0, pool.getRouteMetrics("somehost").getLeases());
+        Assert.assertEquals(0, pool.getRouteMetrics("somehost").getTimeAtCapacity());
+        Assert.assertEquals(0, pool.getTotalMetrics().getCreated());
+    }
+
+    @Test
+    public void testMetricsExpiredAndValidation() throws Exception {
+        final HttpConnection conn = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn.isOpen()).thenReturn(true);
+        Mockito.when(conn.isStale()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 2, 10);
+        pool.setValidateAfterInactivity(5);
+
+        final LocalPoolEntry entry1 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        entry1.updateExpiry(1, TimeUnit.MILLISECONDS);
+        pool.release(entry1, true);
+        Thread.sleep(10);
+        pool.closeExpired();
+        Assert.assertEquals(1, pool.getTotalMetrics().getExpired());
+
+        final LocalPoolEntry entry2 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        pool.release(entry2, true);
+        Thread.sleep(10);
+        final LocalPoolEntry entry3 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotSame(entry2, entry3);
+
+        // route metrics outlive the route pool discarded once its only connection expired
+        final PoolMetrics metrics = pool.getRouteMetrics("somehost");
+        Assert.assertEquals(1, metrics.getExpired());
+        Assert.assertEquals(1, metrics.getValidationFailures());
+        Assert.assertEquals(3, metrics.getCreated());
+        Assert.assertEquals(3, pool.getTotalMetrics().getCreated());
+    }
+
+    @Test
+    public void testIdleRouteMetricsRetainedUpToLimit() throws Exception {
+        final HttpConnection conn = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.anyString())).thenReturn(conn);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 2, 10);
+        pool.setMaxIdleRouteMetrics(1);
+        final LocalPoolEntry entry1 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        Assert.assertEquals(1, pool.getRouteMetrics("somehost").getCreated());
+        Assert.assertEquals(0, pool.getRouteMetrics("otherhost").getCreated());
+
+        pool.closeIdle(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(pool.getRoutes().isEmpty());
+        Assert.assertEquals(1, pool.getRouteMetrics("somehost").getCreated());
+
+        // metrics of the route idle the longest are dropped beyond the limit
+        final LocalPoolEntry entry2 = pool.lease("otherhost", null).get(1, TimeUnit.SECONDS);
+        pool.release(entry2, true);
+        pool.closeIdle(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(pool.getRoutes().isEmpty());
+        Assert.assertEquals(0, pool.getRouteMetrics("somehost").getCreated());
+        Assert.assertEquals(1, pool.getRouteMetrics("otherhost").getCreated());
+        Assert.assertEquals(2, pool.getTotalMetrics().getCreated());
+
+        // maintenance visits routes with a pool or a minimum, not routes with metrics only
+        pool.maintain();
+        Assert.assertTrue(pool.getRoutes().isEmpty());
+        Mockito.verify(connFactory, Mockito.times(2)).create(Matchers.anyString());
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn1.isOpen()).thenReturn(true);
+        final HttpConnection conn2 = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn2.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn1, conn2);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 2, 10);
+        Assert.assertEquals(2, pool.prewarm("somehost", 5));
+        Assert.assertEquals(0, pool.prewarm("somehost", 1));
+
+        final PoolStats stats = pool.getStats("somehost");
+        Assert.assertEquals(2, stats.getAvailable());
+        Assert.assertEquals(0, stats.getLeased());
+
+        final LocalPoolEntry entry1 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        final LocalPoolEntry entry2 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        Assert.assertNotNull(entry1);
+        Assert.assertNotNull(entry2);
+        Mockito.verify(connFactory, Mockito.times(2)).create("somehost");
+        Assert.assertEquals(2, pool.getRouteMetrics("somehost").getReused());
+    }
+
+    @Test
+    public void testPrewarmRespectsMaxTotal() throws Exception {
+        final HttpConnection conn = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.anyString())).thenReturn(conn);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 2, 3);
+        Assert.assertEquals(2, pool.prewarm("somehost", 2));
+        Assert.assertEquals(1, pool.prewarm("otherhost", 2));
+        Assert.assertEquals(3, pool.getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void testMaintainMinIdle() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn1.isOpen()).thenReturn(true);
+        final HttpConnection conn2 = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn2.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn1, conn2);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 2, 10);
+        pool.setMinIdlePerRoute("somehost", 1);
+        Assert.assertEquals(1, pool.getMinIdlePerRoute("somehost"));
+        Assert.assertEquals(0, pool.getMinIdlePerRoute("otherhost"));
+
+        pool.maintain();
+        Assert.assertEquals(1, pool.getStats("somehost").getAvailable());
+        pool.maintain();
+        Mockito.verify(connFactory, Mockito.times(1)).create("somehost");
+
+        final LocalPoolEntry entry1 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        entry1.updateExpiry(1, TimeUnit.MILLISECONDS);
+        pool.release(entry1, true);
+        Thread.sleep(10);
+
+        pool.maintain();
+        Mockito.verify(conn1).close();
+        Mockito.verify(connFactory, Mockito.times(2)).create("somehost");
+        final PoolStats stats = pool.getStats("somehost");
+        Assert.assertEquals(1, stats.getAvailable());
+        Assert.assertEquals(0, stats.getLeased());
+        Assert.assertEquals(1, pool.getRouteMetrics("somehost").getExpired());
+    }
+
+    @Test
+    public void testMaintainer() throws Exception {
+        final HttpConnection conn = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 2, 10);
+        pool.setMinIdlePerRoute("somehost", 2);
+        pool.startMaintainer(10, TimeUnit.MILLISECONDS);
+        try {
+            pool.startMaintainer(10, TimeUnit.MILLISECONDS);
+            Assert.fail("IllegalStateException should have been thrown");
+        } catch (final IllegalStateException expected) {
+        }
+        final long deadline = System.currentTimeMillis() + GRACE_PERIOD;
+        while (pool.getStats("somehost").getAvailable() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, pool.getStats("somehost").getAvailable());
+        pool.shutdown();
+        Mockito.verify(conn, Mockito.times(2)).close();
+    }
+
+    @Test
+    public void testReusePolicy() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn1.isOpen()).thenReturn(true);
+        final HttpConnection conn2 = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn2.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn1, conn2);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 2, 10);
+        Assert.assertEquals(PoolReusePolicy.LIFO, pool.getReusePolicy());
+        final LocalPoolEntry entry1 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        final LocalPoolEntry entry2 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        pool.release(entry1, true);
+        pool.release(entry2, true);
+
+        final LocalPoolEntry entry3 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry2, entry3);
+        pool.release(entry3, true);
+
+        pool.setReusePolicy(PoolReusePolicy.FIFO);
+        final LocalPoolEntry entry4 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry1, entry4);
+        pool.release(entry4, true);
+        final LocalPoolEntry entry5 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        Assert.assertSame(entry2, entry5);
+    }
+
+    @Test
+    public void testEvict() throws Exception {
+        final HttpConnection conn1 = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn1.isOpen()).thenReturn(true);
+        final HttpConnection conn2 = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn2.isOpen()).thenReturn(true);
+        final HttpConnection conn3 = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn3.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn1, conn2, conn3);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 3, 10);
+        final LocalPoolEntry entry1 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        final LocalPoolEntry entry2 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        final LocalPoolEntry entry3 = pool.lease("somehost", null).get(1, TimeUnit.SECONDS);
+        entry1.updateExpiry(0, TimeUnit.MILLISECONDS);
+        pool.release(entry1, true);
+        entry2.updateExpiry(0, TimeUnit.MILLISECONDS);
+        pool.release(entry2, true);
+
+        Thread.sleep(200);
+
+        entry3.updateExpiry(0, TimeUnit.MILLISECONDS);
+        pool.release(entry3, true);
+
+        pool.evict(100, TimeUnit.MILLISECONDS);
+        Mockito.verify(conn1).close();
+        Mockito.verify(conn2).close();
+        Mockito.verify(conn3, Mockito.never()).close();
+        Assert.assertEquals(1, pool.getStats("somehost").getAvailable());
+        Assert.assertEquals(1, pool.getTotalStats().getAvailable());
+
+        entry3.updateExpiry(1, TimeUnit.MILLISECONDS);
+        Thread.sleep(10);
+        pool.evict(0, TimeUnit.MILLISECONDS);
+        Mockito.verify(conn3).close();
+        Assert.assertEquals(0, pool.getTotalStats().getAvailable());
+        Assert.assertEquals(1, pool.getTotalMetrics().getExpired());
+    }
+
+    @Test
+    public void testEvictLargePool() throws Exception {
+        final HttpConnection conn = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn);
+
+        final int n = AbstractConnPool.EVICTION_BATCH_SIZE * 3 + 1;
+        final LocalConnPool pool = new LocalConnPool(connFactory, n, n);
+        Assert.assertEquals(n, pool.prewarm("somehost", n));
+        Thread.sleep(20);
+        pool.evict(1, TimeUnit.MILLISECONDS);
+        Mockito.verify(conn, Mockito.times(n)).close();
+        Assert.assertEquals(0, pool.getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void testEvictExpiredReleasedAfterLiveConnections() throws Exception {
+        final HttpConnection conn = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn);
+
+        final int n = AbstractConnPool.EVICTION_BATCH_SIZE * 2 + 2;
+        final LocalConnPool pool = new LocalConnPool(connFactory, n, n);
+        final List<LocalPoolEntry> entries = new ArrayList<LocalPoolEntry>(n);
+        for (int i = 0; i < n; i++) {
+            entries.add(pool.lease("somehost", null).get(1, TimeUnit.SECONDS));
+        }
+        // the longest idle connections never expire, later ones do
+        for (int i = 0; i < n; i++) {
+            final LocalPoolEntry entry = entries.get(i);
+            entry.updateExpiry(i < n / 2 ? 0 : 1, TimeUnit.MILLISECONDS);
+            pool.release(entry, true);
+        }
+        Thread.sleep(10);
+        pool.evict(0, TimeUnit.MILLISECONDS);
+        Mockito.verify(conn, Mockito.times(n / 2)).close();
+        Assert.assertEquals(n / 2, pool.getTotalStats().getAvailable());
+        Assert.assertEquals(n / 2, pool.getTotalMetrics().getExpired());
+    }
+
+    @Test
+    public void testEvictor() throws Exception {
+        final HttpConnection conn = Mockito.mock(HttpConnection.class);
+        Mockito.when(conn.isOpen()).thenReturn(true);
+
+        final LocalConnFactory connFactory = Mockito.mock(LocalConnFactory.class);
+        Mockito.when(connFactory.create(Matchers.eq("somehost"))).thenReturn(conn);
+
+        final LocalConnPool pool = new LocalConnPool(connFactory, 2, 10);
+        Assert.assertEquals(2, pool.prewarm("somehost", 2));
+        pool.startEvictor(10, 10, TimeUnit.MILLISECONDS);
+        try {
+            pool.startEvictor(10, 10, TimeUnit.MILLISECONDS);
+            Assert.fail("IllegalStateException should have been thrown");
+        } catch (final IllegalStateException expected) {
+        }
+        final long deadline = System.currentTimeMillis() + GRACE_PERIOD;
+        while (pool.getStats("somehost").getAvailable() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, pool.getStats("somehost").getAvailable());
+        Mockito.verify(conn, Mockito.timeout(GRACE_PERIOD).times(2)).close();
+        pool.shutdown();
+    }
+
 }
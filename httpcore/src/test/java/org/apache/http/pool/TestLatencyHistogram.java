@@ -0,0 +1,80 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+package org.apache.http.pool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBuckets() {
+        Assert.assertEquals(0, LatencyHistogram.bucketOf(-1));
+        Assert.assertEquals(0, LatencyHistogram.bucketOf(0));
+        Assert.assertEquals(1, LatencyHistogram.bucketOf(1));
+        Assert.assertEquals(2, LatencyHistogram.bucketOf(2));
+        Assert.assertEquals(2, LatencyHistogram.bucketOf(3));
+        Assert.assertEquals(11, LatencyHistogram.bucketOf(1024));
+        Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentile(50));
+        for (int i = 0; i < 99; i++) {
+            histogram.record(10);
+        }
+        histogram.record(5000);
+        Assert.assertEquals(100, histogram.getCount());
+        Assert.assertEquals(5000, histogram.getMax());
+        Assert.assertEquals(59.9, histogram.getMean(), 0.001);
+        Assert.assertEquals(15, histogram.getPercentile(50));
+        Assert.assertEquals(15, histogram.getPercentile(99));
+        Assert.assertEquals(5000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testCopyAndReset() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1);
+        histogram.record(100);
+        final LatencyHistogram copy = histogram.copy();
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMax());
+        Assert.assertEquals(2, copy.getCount());
+        Assert.assertEquals(101, copy.getTotal());
+        Assert.assertEquals(100, copy.getMax());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new LatencyHistogram().getPercentile(101);
+    }
+
+}
@@ -27,8 +27,16 @@
 
 package org.apache.http.protocol;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
 
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.Consts;
 import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
@@ -36,11 +44,17 @@
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpVersion;
 import org.apache.http.ProtocolException;
+import org.apache.http.config.MessageConstraints;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.DefaultBHttpClientConnection;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.message.BasicHttpRequest;
 import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 
@@ -450,4 +464,162 @@ public void testExecutionRuntimeException() throws Exception {
         }
     }
 
+    @Test
+    public void testExecutePipelined() throws Exception {
+        final HttpClientConnection conn = Mockito.mock(HttpClientConnection.class);
+        final HttpProcessor httprocessor = Mockito.mock(HttpProcessor.class);
+        final HttpRequestExecutor executor = new HttpRequestExecutor();
+
+        final HttpCoreContext context = HttpCoreContext.create();
+        final HttpRequest request1 = new BasicHttpRequest("GET", "/1", HttpVersion.HTTP_1_1);
+        final HttpRequest request2 = new BasicHttpRequest("GET", "/2", HttpVersion.HTTP_1_1);
+        final HttpRequest request3 = new BasicHttpRequest("GET", "/3", HttpVersion.HTTP_1_1);
+
+        final HttpResponse response1 = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        final BasicHttpEntity entity1 = new BasicHttpEntity();
+        entity1.setContent(new ByteArrayInputStream(new byte[] {'1'}));
+        entity1.setContentLength(1);
+        response1.addHeader("Content-Length", "1");
+        response1.setEntity(entity1);
+        final HttpResponse response2 = new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content");
+        final HttpResponse response3 = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        final BasicHttpEntity entity3 = new BasicHttpEntity();
+        entity3.setContent(new ByteArrayInputStream(new byte[] {'3'}));
+        entity3.setContentLength(1);
+        response3.addHeader("Content-Length", "1");
+        response3.setEntity(entity3);
+        Mockito.when(conn.receiveResponseHeader()).thenReturn(response1, response2, response3);
+
+        final List<HttpResponse> responses = executor.executePipelined(
+                Arrays.asList(request1, request2, request3), httprocessor, conn, context);
+
+        Assert.assertEquals(Arrays.asList(response1, response2, response3), responses);
+        Assert.assertTrue(response1.getEntity().isRepeatable());
+        Assert.assertEquals("1", EntityUtils.toString(response1.getEntity()));
+        Assert.assertNull(response2.getEntity());
+        Assert.assertEquals("3", EntityUtils.toString(response3.getEntity()));
+        Assert.assertSame(request3, context.getRequest());
+        Assert.assertEquals(Boolean.TRUE, context.isRequestSent());
+
+        final InOrder inOrder = Mockito.inOrder(conn);
+        inOrder.verify(conn).sendRequestHeader(request1);
+        inOrder.verify(conn).sendRequestHeader(request2);
+        inOrder.verify(conn).sendRequestHeader(request3);
+        inOrder.verify(conn).flush();
+        inOrder.verify(conn, Mockito.times(3)).receiveResponseHeader();
+        Mockito.verify(conn, Mockito.times(1)).flush();
+        Mockito.verify(conn, Mockito.never()).close();
+        Mockito.verify(httprocessor).process(request1, context);
+        Mockito.verify(httprocessor).process(response2, context);
+    }
+
+    @Test
+    public void testExecutePipelinedBufferRecycling() throws Exception {
+        final String s =
+                "HTTP/1.1 200 OK\r\nContent-Length: 1\r\nX-Id: first\r\n\r\n1" +
+                "HTTP/1.1 204 No Content\r\nX-Id: 2nd\r\nServer: test\r\n\r\n" +
+                "HTTP/1.1 200 OK\r\nX-Id: third\r\nContent-Length: 1\r\n\r\n3";
+        final Socket socket = Mockito.mock(Socket.class);
+        Mockito.when(socket.getInputStream()).thenReturn(new ByteArrayInputStream(s.getBytes(Consts.ASCII)));
+        Mockito.when(socket.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        final DefaultBHttpClientConnection conn = new DefaultBHttpClientConnection(1024, null, null,
+                MessageConstraints.custom().setBufferRecycling(true).build());
+        conn.bind(socket);
+        final HttpRequestExecutor executor = new HttpRequestExecutor();
+
+        final List<HttpResponse> responses = executor.executePipelined(
+                Arrays.<HttpRequest>asList(
+                        new BasicHttpRequest("GET", "/1", HttpVersion.HTTP_1_1),
+                        new BasicHttpRequest("GET", "/2", HttpVersion.HTTP_1_1),
+                        new BasicHttpRequest("GET", "/3", HttpVersion.HTTP_1_1)),
+                Mockito.mock(HttpProcessor.class), conn, HttpCoreContext.create());
+
+        Assert.assertEquals(3, responses.size());
+        Assert.assertEquals("first", responses.get(0).getFirstHeader("X-Id").getValue());
+        Assert.assertEquals("1", responses.get(0).getFirstHeader("Content-Length").getValue());
+        Assert.assertEquals("2nd", responses.get(1).getFirstHeader("X-Id").getValue());
+        Assert.assertEquals("test", responses.get(1).getFirstHeader("Server").getValue());
+        Assert.assertEquals("third", responses.get(2).getFirstHeader("X-Id").getValue());
+        Assert.assertEquals("1", EntityUtils.toString(responses.get(0).getEntity()));
+        Assert.assertEquals("3", EntityUtils.toString(responses.get(2).getEntity()));
+    }
+
+    @Test
+    public void testExecutePipelinedConnectionClosedByServer() throws Exception {
+        final HttpClientConnection conn = Mockito.mock(HttpClientConnection.class);
+        final HttpProcessor httprocessor = Mockito.mock(HttpProcessor.class);
+        final HttpRequestExecutor executor = new HttpRequestExecutor();
+
+        final HttpCoreContext context = HttpCoreContext.create();
+        final HttpRequest request1 = new BasicHttpRequest("GET", "/1", HttpVersion.HTTP_1_1);
+        final HttpEntityEnclosingRequest request2 = new BasicHttpEntityEnclosingRequest(
+                "POST", "/2", HttpVersion.HTTP_1_1);
+        request2.setEntity(new StringEntity("stuff"));
+        final HttpRequest request3 = new BasicHttpRequest("GET", "/3", HttpVersion.HTTP_1_1);
+
+        final HttpResponse response1 = new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content");
+        response1.addHeader("Connection", "close");
+        Mockito.when(conn.receiveResponseHeader()).thenReturn(response1);
+
+        try {
+            executor.executePipelined(Arrays.asList(request1, request2, request3), httprocessor, conn, context);
+            Assert.fail("PipelineExecutionException should have been thrown");
+        } catch (final PipelineExecutionException ex) {
+            Assert.assertEquals(Arrays.asList(response1), ex.getResponses());
+            Assert.assertEquals(Arrays.asList(request2, request3), ex.getUnansweredRequests());
+            Assert.assertEquals(Arrays.asList(request2, request3), ex.getRetriableRequests());
+            Assert.assertTrue(ex.getCause() instanceof ConnectionClosedException);
+        }
+        Mockito.verify(conn).sendRequestEntity(request2);
+        Mockito.verify(conn).close();
+    }
+
+    @Test
+    public void testExecutePipelinedIOFailure() throws Exception {
+        final HttpClientConnection conn = Mockito.mock(HttpClientConnection.class);
+        final HttpProcessor httprocessor = Mockito.mock(HttpProcessor.class);
+        final HttpRequestExecutor executor = new HttpRequestExecutor();
+
+        final HttpCoreContext context = HttpCoreContext.create();
+        final HttpRequest request1 = new BasicHttpRequest("GET", "/1", HttpVersion.HTTP_1_1);
+        final HttpRequest request2 = new BasicHttpEntityEnclosingRequest("POST", "/2", HttpVersion.HTTP_1_1);
+        final HttpRequest request3 = new BasicHttpRequest("DELETE", "/3", HttpVersion.HTTP_1_1);
+
+        final HttpResponse response1 = new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content");
+        final IOException failure = new SocketTimeoutException("timeout");
+        Mockito.when(conn.receiveResponseHeader()).thenReturn(response1).thenThrow(failure);
+
+        try {
+            executor.executePipelined(Arrays.asList(request1, request2, request3), httprocessor, conn, context);
+            Assert.fail("PipelineExecutionException should have been thrown");
+        } catch (final PipelineExecutionException ex) {
+            Assert.assertSame(failure, ex.getCause());
+            Assert.assertEquals(Arrays.asList(response1), ex.getResponses());
+            Assert.assertEquals(Arrays.asList(request2, request3), ex.getUnansweredRequests());
+            Assert.assertEquals(Arrays.asList(request3), ex.getRetriableRequests());
+        }
+        Mockito.verify(conn, Mockito.never()).sendRequestEntity(Matchers.<HttpEntityEnclosingRequest>any());
+        Mockito.verify(conn).close();
+    }
+
+    @Test
+    public void testExecutePipelinedPreProcessingFailure() throws Exception {
+        final HttpClientConnection conn = Mockito.mock(HttpClientConnection.class);
+        final HttpProcessor httprocessor = Mockito.mock(HttpProcessor.class);
+        final HttpRequestExecutor executor = new HttpRequestExecutor();
+
+        final HttpCoreContext context = HttpCoreContext.create();
+        final HttpRequest request1 = new BasicHttpRequest("GET", "/1", HttpVersion.HTTP_1_1);
+        final HttpRequest request2 = new BasicHttpRequest("GET", "/2", HttpVersion.HTTP_1_1);
+        Mockito.doThrow(new ProtocolException("oppsie")).when(httprocessor).process(request2, context);
+
+        try {
+            executor.executePipelined(Arrays.asList(request1, request2), httprocessor, conn, context);
+            Assert.fail("ProtocolException should have been thrown");
+        } catch (final ProtocolException expected) {
+        }
+        Mockito.verify(conn, Mockito.never()).sendRequestHeader(Matchers.<HttpRequest>any());
+        Mockito.verify(conn, Mockito.never()).close();
+    }
+
 }
@@ -30,13 +30,16 @@
 import java.net.InetAddress;
 
 import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpInetConnection;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.HttpVersion;
 import org.apache.http.ProtocolException;
+import org.apache.http.config.CompressionConfig;
 import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.CompressingEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
@@ -1010,4 +1013,96 @@ public void testResponseServerInvalidInput() throws Exception {
         }
     }
 
+    @Test
+    public void testResponseContentCompressionGzip() throws Exception {
+        final HttpContext context = new BasicHttpContext(null);
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "deflate;q=0.5, gzip");
+        context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        response.setEntity(new StringEntity(createString(2000)));
+        final ResponseContentCompression interceptor = new ResponseContentCompression();
+        interceptor.process(response, context);
+        Assert.assertTrue(response.getEntity() instanceof CompressingEntity);
+        Assert.assertEquals("gzip", response.getEntity().getContentEncoding().getValue());
+        Assert.assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getFirstHeader(HttpHeaders.VARY).getValue());
+        new ResponseContent().process(response, context);
+        Assert.assertEquals("gzip", response.getFirstHeader(HTTP.CONTENT_ENCODING).getValue());
+        Assert.assertEquals(HTTP.CHUNK_CODING, response.getFirstHeader(HTTP.TRANSFER_ENCODING).getValue());
+    }
+
+    @Test
+    public void testResponseContentCompressionPolicy() throws Exception {
+        final HttpContext context = new BasicHttpContext(null);
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, deflate");
+        context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+        final ResponseContentCompression interceptor = new ResponseContentCompression(
+                CompressionConfig.custom().setMinContentLength(100).build());
+
+        final HttpResponse small = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        small.setEntity(new StringEntity(createString(99)));
+        interceptor.process(small, context);
+        Assert.assertTrue(small.getEntity() instanceof StringEntity);
+
+        final HttpResponse large = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        large.setEntity(new StringEntity(createString(100)));
+        interceptor.process(large, context);
+        Assert.assertEquals("deflate", large.getEntity().getContentEncoding().getValue());
+
+        final HttpResponse encoded = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        final StringEntity entity = new StringEntity(createString(100));
+        entity.setContentEncoding("br");
+        encoded.setEntity(entity);
+        interceptor.process(encoded, context);
+        Assert.assertSame(entity, encoded.getEntity());
+
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+        final HttpResponse identity = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        identity.setEntity(new StringEntity(createString(100)));
+        interceptor.process(identity, context);
+        Assert.assertNull(identity.getEntity().getContentEncoding());
+        Assert.assertNull(identity.getFirstHeader(HttpHeaders.VARY));
+    }
+
+    @Test
+    public void testResponseContentCompressionSkipsBodilessAndPartialResponses() throws Exception {
+        final HttpContext context = new BasicHttpContext(null);
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+        final ResponseContentCompression interceptor = new ResponseContentCompression();
+
+        for (final int status: new int[] {
+                HttpStatus.SC_PARTIAL_CONTENT, HttpStatus.SC_NO_CONTENT, HttpStatus.SC_NOT_MODIFIED }) {
+            final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null);
+            final StringEntity entity = new StringEntity(createString(2000));
+            response.setEntity(entity);
+            interceptor.process(response, context);
+            Assert.assertSame(entity, response.getEntity());
+        }
+
+        final HttpResponse ranged = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        ranged.addHeader(HttpHeaders.CONTENT_RANGE, "bytes 0-1999/4000");
+        final StringEntity entity = new StringEntity(createString(2000));
+        ranged.setEntity(entity);
+        interceptor.process(ranged, context);
+        Assert.assertSame(entity, ranged.getEntity());
+
+        final HttpResponse tagged = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        tagged.addHeader(HttpHeaders.ETAG, "W/\"1234\"");
+        tagged.setEntity(new StringEntity(createString(2000)));
+        interceptor.process(tagged, context);
+        Assert.assertEquals("gzip", tagged.getEntity().getContentEncoding().getValue());
+        Assert.assertEquals("W/\"1234\"", tagged.getFirstHeader(HttpHeaders.ETAG).getValue());
+    }
+
+    private static String createString(final int len) {
+        final StringBuilder buffer = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            buffer.append((char) ('a' + i % 26));
+        }
+        return buffer.toString();
+    }
+
 }
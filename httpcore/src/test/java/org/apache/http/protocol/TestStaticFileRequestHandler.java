@@ -0,0 +1,347 @@
+/*
+ * ====================================================================
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package org.apache.http.protocol;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.MethodNotSupportedException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.CompressedContentCache;
+import org.apache.http.entity.FileRegionEntity;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link StaticFileRequestHandler} and {@link StaticFileCache}.
+ */
+public class TestStaticFileRequestHandler {
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File docRoot;
+    private StaticFileCache cache;
+    private StaticFileRequestHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        this.docRoot = this.tempFolder.getRoot();
+        this.cache = new StaticFileCache(10, 16, 1024, 64, 1024, 60000, null);
+        this.handler = new StaticFileRequestHandler(this.docRoot, this.cache);
+    }
+
+    private File createFile(final String name, final int len) throws IOException {
+        final File file = new File(this.docRoot, name);
+        final FileOutputStream outStream = new FileOutputStream(file);
+        try {
+            for (int i = 0; i < len; i++) {
+                outStream.write('a' + (i % 26));
+            }
+        } finally {
+            outStream.close();
+        }
+        return file;
+    }
+
+    private HttpResponse execute(final BasicHttpRequest request) throws Exception {
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        this.handler.handle(request, response, new BasicHttpContext());
+        return response;
+    }
+
+    @Test
+    public void testGetSmallFile() throws Exception {
+        createFile("small.txt", 10);
+        final HttpResponse response = execute(new BasicHttpRequest("GET", "/small.txt?q=1"));
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("text/plain; charset=UTF-8", response.getFirstHeader("Content-Type").getValue());
+        Assert.assertNotNull(response.getFirstHeader("ETag"));
+        Assert.assertNotNull(response.getFirstHeader("Last-Modified"));
+        Assert.assertEquals("bytes", response.getFirstHeader("Accept-Ranges").getValue());
+        final HttpEntity entity = response.getEntity();
+        Assert.assertTrue(entity instanceof ByteArrayEntity);
+        Assert.assertEquals("abcdefghij", EntityUtils.toString(entity));
+    }
+
+    @Test
+    public void testCompressionSkipsRangeResponses() throws Exception {
+        createFile("text.txt", 2000);
+        final ResponseContentCompression compression = new ResponseContentCompression();
+
+        final BasicHttpRequest rangeRequest = new BasicHttpRequest("GET", "/text.txt");
+        rangeRequest.addHeader("Accept-Encoding", "gzip");
+        rangeRequest.addHeader("Range", "bytes=0-1499");
+        final HttpContext rangeContext = new BasicHttpContext();
+        rangeContext.setAttribute(HttpCoreContext.HTTP_REQUEST, rangeRequest);
+        final HttpResponse partial = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        this.handler.handle(rangeRequest, partial, rangeContext);
+        compression.process(partial, rangeContext);
+        Assert.assertEquals(HttpStatus.SC_PARTIAL_CONTENT, partial.getStatusLine().getStatusCode());
+        Assert.assertEquals("bytes 0-1499/2000", partial.getFirstHeader("Content-Range").getValue());
+        Assert.assertNull(partial.getEntity().getContentEncoding());
+        Assert.assertNull(partial.getFirstHeader("Vary"));
+        Assert.assertEquals(1500, EntityUtils.toByteArray(partial.getEntity()).length);
+        final String etag = partial.getFirstHeader("ETag").getValue();
+        Assert.assertFalse(etag.startsWith("W/"));
+
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/text.txt");
+        request.addHeader("Accept-Encoding", "gzip");
+        final HttpContext context = new BasicHttpContext();
+        context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+        final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        this.handler.handle(request, response, context);
+        compression.process(response, context);
+        Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("gzip", response.getEntity().getContentEncoding().getValue());
+        Assert.assertEquals(1, response.getHeaders("ETag").length);
+        Assert.assertEquals("W/" + etag, response.getFirstHeader("ETag").getValue());
+    }
+
+    @Test
+    public void testCompressedContentCached() throws Exception {
+        createFile("text.txt", 2000);
+        final CompressedContentCache compressedCache = new CompressedContentCache(4096, 65536);
+        final ResponseContentCompression compression = new ResponseContentCompression(null, compressedCache);
+
+        byte[] previous = null;
+        for (int i = 0; i < 3; i++) {
+            final BasicHttpRequest request = new BasicHttpRequest("GET", "/text.txt");
+            request.addHeader("Accept-Encoding", "gzip");
+            final HttpContext context = new BasicHttpContext();
+            context.setAttribute(HttpCoreContext.HTTP_REQUEST, request);
+            final HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+            this.handler.handle(request, response, context);
+            compression.process(response, context);
+            Assert.assertEquals("gzip", response.getEntity().getContentEncoding().getValue());
+            final byte[] compressed = EntityUtils.toByteArray(response.getEntity());
+            if (previous != null) {
+                Assert.assertArrayEquals(previous, compressed);
+            }
+            previous = compressed;
+        }
+        Assert.assertEquals(1, compressedCache.size());
+    }
+
+    @Test
+    public void testCacheTiers() throws Exception {
+        final StaticFileResource small = this.cache.resolve(createFile("small.bin", 16));
+        final StaticFileResource medium = this.cache.resolve(createFile("medium.bin", 64));
+        final StaticFileResource large = this.cache.resolve(createFile("large.bin", 65));
+        Assert.assertNotNull(small.getContent());
+        Assert.assertNull(small.getMappedContent());
+        Assert.assertNull(medium.getContent());
+        Assert.assertNotNull(medium.getMappedContent());
+        Assert.assertEquals(64, medium.getMappedContent().remaining());
+        Assert.assertFalse(large.isCached());
+        Assert.assertEquals(65, large.getLength());
+        Assert.assertEquals("application/octet-stream", large.getContentType().getMimeType());
+
+        Assert.assertSame(small, this.cache.resolve(new File(this.docRoot, "small.bin")));
+        final StaticFileCacheStats stats = this.cache.getStats();
+        Assert.assertEquals(1, stats.getHits());
+        Assert.assertEquals(3, stats.getMisses());
+        Assert.assertEquals(3, stats.getEntries());
+        Assert.assertEquals(16, stats.getHeapSize());
+        Assert.assertEquals(64, stats.getMappedSize());
+    }
+
+    @Test
+    public void testCacheEviction() throws Exception {
+        final StaticFileCache smallCache = new StaticFileCache(2, 16, 1024, 64, 1024, 60000, null);
+        smallCache.resolve(createFile("a.txt", 1));
+        smallCache.resolve(createFile("b.txt", 1));
+        smallCache.resolve(createFile("c.txt", 1));
+        final StaticFileCacheStats stats = smallCache.getStats();
+        Assert.assertEquals(2, stats.getEntries());
+        Assert.assertEquals(1, stats.getEvictions());
+        Assert.assertEquals(2, stats.getHeapSize());
+    }
+
+    @Test
+    public void testCacheRevalidation() throws Exception {
+        final StaticFileCache revalidatingCache = new StaticFileCache(10, 16, 1024, 64, 1024, 0, null);
+        final File file = createFile("a.txt", 4);
+        final StaticFileResource resource1 = revalidatingCache.resolve(file);
+        Assert.assertSame(resource1, revalidatingCache.resolve(file));
+        createFile("a.txt", 8);
+        final StaticFileResource resource2 = revalidatingCache.resolve(file);
+        Assert.assertNotSame(resource1, resource2);
+        Assert.assertEquals(8, resource2.getLength());
+        Assert.assertTrue(file.delete());
+        Assert.assertNull(revalidatingCache.resolve(file));
+        Assert.assertEquals(0, revalidatingCache.getStats().getEntries());
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+        Assert.assertEquals(HttpStatus.SC_NOT_FOUND,
+                execute(new BasicHttpRequest("GET", "/missing.txt")).getStatusLine().getStatusCode());
+        Assert.assertEquals(HttpStatus.SC_NOT_FOUND,
+                execute(new BasicHttpRequest("GET", "/../etc/passwd")).getStatusLine().getStatusCode());
+        Assert.assertEquals(HttpStatus.SC_NOT_FOUND,
+                execute(new BasicHttpRequest("GET", "/%2e%2e/etc/passwd")).getStatusLine().getStatusCode());
+        Assert.assertEquals(HttpStatus.SC_FORBIDDEN,
+                execute(new BasicHttpRequest("GET", "/")).getStatusLine().getStatusCode());
+    }
+
+    @Test(expected=MethodNotSupportedException.class)
+    public void testMethodNotSupported() throws Exception {
+        createFile("small.txt", 10);
+        execute(new BasicHttpRequest("POST", "/small.txt"));
+    }
+
+    @Test
+    public void testResolveFile() throws Exception {
+        Assert.assertEquals(new File(this.docRoot, "a b" + File.separator + "c.txt"),
+                StaticFileSupport.resolveFile(this.docRoot, new BasicHttpRequest("GET", "/a%20b/./c.txt#frag")));
+        Assert.assertEquals(new File(this.docRoot, "c.txt"),
+                StaticFileSupport.resolveFile(this.docRoot, new BasicHttpRequest("GET", "http://host/c.txt")));
+        Assert.assertNull(StaticFileSupport.resolveFile(this.docRoot, new BasicHttpRequest("GET", "c.txt")));
+        Assert.assertNull(StaticFileSupport.resolveFile(this.docRoot, new BasicHttpRequest("GET", "/a%2")));
+        // supplementary characters, escaped and unescaped
+        final File file = new File(this.docRoot, "\uD83D\uDE00 x");
+        Assert.assertEquals(file, StaticFileSupport.resolveFile(
+                this.docRoot, new BasicHttpRequest("GET", "/%F0%9F%98%80%20x")));
+        Assert.assertEquals(file, StaticFileSupport.resolveFile(
+                this.docRoot, new BasicHttpRequest("GET", "/\uD83D\uDE00%20x")));
+    }
+
+    @Test
+    public void testIfNoneMatch() throws Exception {
+        createFile("small.txt", 10);
+        final String etag = execute(new BasicHttpRequest("GET", "/small.txt")).getFirstHeader("ETag").getValue();
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/small.txt");
+        request.addHeader("If-None-Match", "\"other\", W/" + etag);
+        final HttpResponse response = execute(request);
+        Assert.assertEquals(HttpStatus.SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+        Assert.assertNull(response.getEntity());
+        Assert.assertEquals(etag, response.getFirstHeader("ETag").getValue());
+        Assert.assertNull(response.getFirstHeader("Content-Type"));
+
+        final BasicHttpRequest request2 = new BasicHttpRequest("GET", "/small.txt");
+        request2.addHeader("If-None-Match", "\"other\"");
+        Assert.assertEquals(HttpStatus.SC_OK, execute(request2).getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void testIfModifiedSince() throws Exception {
+        createFile("small.txt", 10);
+        final String lastModified = execute(new BasicHttpRequest("GET", "/small.txt"))
+                .getFirstHeader("Last-Modified").getValue();
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/small.txt");
+        request.addHeader("If-Modified-Since", lastModified);
+        Assert.assertEquals(HttpStatus.SC_NOT_MODIFIED, execute(request).getStatusLine().getStatusCode());
+
+        final BasicHttpRequest request2 = new BasicHttpRequest("GET", "/small.txt");
+        request2.addHeader("If-Modified-Since", "Thu, 01 Jan 1970 00:00:00 GMT");
+        Assert.assertEquals(HttpStatus.SC_OK, execute(request2).getStatusLine().getStatusCode());
+
+        final BasicHttpRequest request3 = new BasicHttpRequest("GET", "/small.txt");
+        request3.addHeader("If-Modified-Since", "garbage");
+        Assert.assertEquals(HttpStatus.SC_OK, execute(request3).getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        createFile("large.txt", 100);
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/large.txt");
+        request.addHeader("Range", "bytes=2-5");
+        final HttpResponse response = execute(request);
+        Assert.assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("bytes 2-5/100", response.getFirstHeader("Content-Range").getValue());
+        final HttpEntity entity = response.getEntity();
+        Assert.assertTrue(entity instanceof FileRegionEntity);
+        Assert.assertEquals(4, entity.getContentLength());
+        Assert.assertEquals("cdef", EntityUtils.toString(entity));
+
+        final BasicHttpRequest request2 = new BasicHttpRequest("GET", "/large.txt");
+        request2.addHeader("Range", "bytes=-3");
+        final HttpResponse response2 = execute(request2);
+        Assert.assertEquals("bytes 97-99/100", response2.getFirstHeader("Content-Range").getValue());
+        Assert.assertEquals("tuv", EntityUtils.toString(response2.getEntity()));
+
+        final BasicHttpRequest request3 = new BasicHttpRequest("GET", "/large.txt");
+        request3.addHeader("Range", "bytes=98-");
+        final HttpResponse response3 = execute(request3);
+        Assert.assertEquals("bytes 98-99/100", response3.getFirstHeader("Content-Range").getValue());
+    }
+
+    @Test
+    public void testRangeSmallFile() throws Exception {
+        createFile("small.txt", 10);
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/small.txt");
+        request.addHeader("Range", "bytes=8-100");
+        final HttpResponse response = execute(request);
+        Assert.assertEquals(HttpStatus.SC_PARTIAL_CONTENT, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("bytes 8-9/10", response.getFirstHeader("Content-Range").getValue());
+        Assert.assertEquals("ij", EntityUtils.toString(response.getEntity()));
+    }
+
+    @Test
+    public void testRangeNotSatisfiable() throws Exception {
+        createFile("small.txt", 10);
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/small.txt");
+        request.addHeader("Range", "bytes=10-");
+        final HttpResponse response = execute(request);
+        Assert.assertEquals(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusLine().getStatusCode());
+        Assert.assertEquals("bytes */10", response.getFirstHeader("Content-Range").getValue());
+        Assert.assertNull(response.getEntity());
+    }
+
+    @Test
+    public void testRangeIgnored() throws Exception {
+        createFile("small.txt", 10);
+        final BasicHttpRequest request = new BasicHttpRequest("GET", "/small.txt");
+        request.addHeader("Range", "bytes=0-1,4-5");
+        Assert.assertEquals(HttpStatus.SC_OK, execute(request).getStatusLine().getStatusCode());
+
+        final BasicHttpRequest request2 = new BasicHttpRequest("GET", "/small.txt");
+        request2.addHeader("Range", "bytes=0-1");
+        request2.addHeader("If-Range", "\"stale\"");
+        final HttpResponse response2 = execute(request2);
+        Assert.assertEquals(HttpStatus.SC_OK, response2.getStatusLine().getStatusCode());
+        Assert.assertEquals(10, response2.getEntity().getContentLength());
+
+        final BasicHttpRequest request3 = new BasicHttpRequest("HEAD", "/small.txt");
+        request3.addHeader("Range", "bytes=0-1");
+        Assert.assertEquals(HttpStatus.SC_OK, execute(request3).getStatusLine().getStatusCode());
+    }
+
+}
@@ -104,6 +104,25 @@ public void testBuildDefault() throws Exception {
         new SSLContextBuilder().build();
     }
 
+    @Test
+    public void testBuildSessionCacheSettings() throws Exception {
+        final SSLContext sslContext = SSLContextBuilder.create()
+                .setClientSessionCacheSize(32)
+                .setClientSessionTimeout(300)
+                .setServerSessionCacheSize(1024)
+                .setServerSessionTimeout(600)
+                .build();
+        Assert.assertEquals(32, sslContext.getClientSessionContext().getSessionCacheSize());
+        Assert.assertEquals(300, sslContext.getClientSessionContext().getSessionTimeout());
+        Assert.assertEquals(1024, sslContext.getServerSessionContext().getSessionCacheSize());
+        Assert.assertEquals(600, sslContext.getServerSessionContext().getSessionTimeout());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSessionCacheSize() throws Exception {
+        SSLContextBuilder.create().setClientSessionCacheSize(-1);
+    }
+
     @Test
     public void testBuildAllNull() throws Exception {
         final SSLContext sslContext = SSLContextBuilder.create()